@@ -0,0 +1,83 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOChangeBatch;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Makes a bulk edit of a model of 20 or 100 entities that a listener is
+ * registered with the way the editors register theirs, once without and
+ * once within an EOChangeBatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOChangeBatchBenchmark {
+	@Param( { "20", "100" })
+	public int entityCount;
+
+	private File _folder;
+
+	private File _modelFolder;
+
+	private EOModel _model;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = EOModelFixtures.temporaryFolder("EOChangeBatchBenchmark");
+		_modelFolder = new File(_folder, "ChangeBatch.eomodeld");
+		EOModelFixtures.writeModel(_modelFolder, entityCount);
+	}
+
+	@Setup(Level.Invocation)
+	public void loadModel(final Blackhole blackhole) throws Exception {
+		_model = EOModelFixtures.loadModelGroup(_modelFolder).getModels().iterator().next();
+		EOModelFixtures.addPropertyChangeListener(_model, new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent event) {
+				blackhole.consume(event);
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EOModelFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public void edit() throws Exception {
+		EOModelFixtures.bulkEdit(_model);
+	}
+
+	@Benchmark
+	public void editBatched() throws Exception {
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			EOModelFixtures.bulkEdit(_model);
+		} finally {
+			batch.end();
+		}
+	}
+}
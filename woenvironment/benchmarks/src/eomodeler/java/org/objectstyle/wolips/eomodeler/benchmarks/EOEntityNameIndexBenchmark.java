@@ -0,0 +1,69 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads and resolves a model with one entity of 300 or 3000 attributes, and
+ * verifies it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOEntityNameIndexBenchmark {
+	@Param( { "300", "3000" })
+	public int attributeCount;
+
+	private File _folder;
+
+	private File _modelFolder;
+
+	private EOModelGroup _modelGroup;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = EOModelFixtures.temporaryFolder("EOEntityNameIndexBenchmark");
+		_modelFolder = new File(_folder, "Wide.eomodeld");
+		EOModelFixtures.writeWideModel(_modelFolder, attributeCount);
+		_modelGroup = EOModelFixtures.loadModelGroup(_modelFolder);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EOModelFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public EOModelGroup loadModelGroup() throws Exception {
+		return EOModelFixtures.loadModelGroup(_modelFolder);
+	}
+
+	@Benchmark
+	public Set<EOModelVerificationFailure> verify() {
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		_modelGroup.verify(failures);
+		return failures;
+	}
+}
@@ -0,0 +1,67 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.io.File;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a folder of 12 projects, each with a model of 100 entities, into a
+ * model group with one loader thread and with four.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOModelGroupLoadBenchmark {
+	@Param( { "1", "4" })
+	public int loadThreads;
+
+	private File _folder;
+
+	private URL _folderURL;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = EOModelFixtures.temporaryFolder("EOModelGroupLoadBenchmark");
+		EOModelFixtures.writeProjects(_folder, 12, 100);
+		_folderURL = _folder.toURL();
+		EOModel.setLoadThreads(loadThreads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EOModelFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public EOModelGroup loadModelGroup() throws Exception {
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModelGroup modelGroup = new EOModelGroup();
+		modelGroup.loadModelsFromURL(_folderURL, -1, failures, true, new NullProgressMonitor());
+		modelGroup.resolve(failures);
+		return modelGroup;
+	}
+}
@@ -0,0 +1,69 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a model of 100 or 600 entities, completely or lazily, and lists the
+ * names of its entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOModelLazyLoadBenchmark {
+	@Param( { "100", "600" })
+	public int entityCount;
+
+	@Param( { "false", "true" })
+	public boolean lazyLoading;
+
+	private File _folder;
+
+	private File _modelFolder;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = EOModelFixtures.temporaryFolder("EOModelLazyLoadBenchmark");
+		_modelFolder = new File(_folder, "LazyLoad.eomodeld");
+		EOModelFixtures.writeModel(_modelFolder, entityCount);
+		EOModel.setLazyLoading(lazyLoading);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EOModelFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public Set<String> loadEntityNames() throws Exception {
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModelGroup modelGroup = new EOModelGroup();
+		EOModel model = new EOModel("LazyLoad");
+		modelGroup.addModel(model);
+		model.loadFromURL(_modelFolder.toURL(), failures);
+		return modelGroup.getEntityNames();
+	}
+}
@@ -0,0 +1,64 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.io.File;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a model of 100 or 600 entities, written to a temporary folder, with
+ * one loader thread and with four.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOModelLoadBenchmark {
+	@Param( { "100", "600" })
+	public int entityCount;
+
+	@Param( { "1", "4" })
+	public int loadThreads;
+
+	private File _folder;
+
+	private URL _modelURL;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = EOModelFixtures.temporaryFolder("EOModelLoadBenchmark");
+		File modelFolder = new File(_folder, "Load.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, entityCount);
+		_modelURL = modelFolder.toURL();
+		EOModel.setLoadThreads(loadThreads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EOModelFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public EOModel loadModel() throws Exception {
+		return new EOModel(_modelURL, new LinkedHashSet<EOModelVerificationFailure>());
+	}
+}
@@ -0,0 +1,81 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saves every entity of a model of 200 or 1000 entities into an empty
+ * folder, and again into a folder that already holds the same files, on one
+ * save thread or on four.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOModelSaveBenchmark {
+	@Param( { "200", "1000" })
+	public int entityCount;
+
+	@Param( { "1", "4" })
+	public int saveThreads;
+
+	private File _folder;
+
+	private File _emptyFolder;
+
+	private File _savedFolder;
+
+	private EOModel _model;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = EOModelFixtures.temporaryFolder("EOModelSaveBenchmark");
+		File modelFolder = new File(_folder, "Save.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, entityCount);
+		_model = EOModelFixtures.loadModelGroup(modelFolder).getModels().iterator().next();
+		EOModel.setSaveThreads(saveThreads);
+		_emptyFolder = new File(_folder, "Empty");
+		_savedFolder = new File(_folder, "Saved");
+		EOModelFixtures.markAllDirty(_model);
+		_model.saveToFolder(_savedFolder);
+	}
+
+	@Setup(Level.Invocation)
+	public void markAllDirty() {
+		EOModelFixtures.delete(_emptyFolder);
+		EOModelFixtures.markAllDirty(_model);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EOModelFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public File save() throws Exception {
+		return _model.saveToFolder(_emptyFolder);
+	}
+
+	@Benchmark
+	public File saveUnchanged() throws Exception {
+		return _model.saveToFolder(_savedFolder);
+	}
+}
@@ -0,0 +1,67 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EODataType;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EOPerformanceLint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lints a model of 200 or 2000 entities, each with a to-many relationship
+ * without a batch fetch size to the previous one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOPerformanceLintBenchmark {
+	@Param( { "200", "2000" })
+	public int entityCount;
+
+	private EOModelGroup _modelGroup;
+
+	private EOPerformanceLint _lint;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_modelGroup = new EOModelGroup();
+		EOModel model = new EOModel("Benchmark");
+		_modelGroup.addModel(model);
+		EOEntity prototypes = EOModelFixtures.addEntity(model, "EOPrototypes", null);
+		EOAttribute idPrototype = EOModelFixtures.addAttribute(prototypes, "id", null, EODataType.INTEGER, false);
+		EOEntity previousEntity = null;
+		for (int entityNum = 0; entityNum < entityCount; entityNum++) {
+			EOEntity entity = EOModelFixtures.addEntity(model, "Entity" + entityNum, "ENTITY" + entityNum);
+			EOAttribute id = EOModelFixtures.addPrimaryKey(entity, idPrototype);
+			EOModelFixtures.addAttribute(entity, "name", "NAME", EODataType.STRING, true);
+			EOModelFixtures.addAttribute(entity, "nextID", "NEXT_ID", EODataType.INTEGER, false);
+			EOEntity destination = previousEntity == null ? entity : previousEntity;
+			EOModelFixtures.addRelationship(entity, "previous", destination, true, id, destination.getAttributeNamed("nextID"));
+			previousEntity = entity;
+		}
+		_lint = new EOPerformanceLint();
+	}
+
+	@Benchmark
+	public Object lint() {
+		return _lint.lint(_modelGroup.getModels());
+	}
+}
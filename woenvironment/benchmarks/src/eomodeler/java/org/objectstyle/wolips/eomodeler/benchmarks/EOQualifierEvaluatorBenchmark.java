@@ -0,0 +1,49 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierEvaluator;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filters 100,000 synthetic Person rows with a compiled qualifier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOQualifierEvaluatorBenchmark {
+	@Param( { "age > 30", "name caseInsensitiveLike '*an*'", "salary >= 50000.5 and active = 1 and birthDate < '1980-01-01'", "company.country = 'CH' or projects.name = 'Apollo'", "not (name like 'M*') and (rating > 2.5 or age < 25)" })
+	public String qualifier;
+
+	private List<Map<String, Object>> _rows;
+
+	private EOQualifierEvaluator.RowPredicate _predicate;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_rows = EOQualifierFixtures.createPersonRows(100000);
+		_predicate = new EOQualifierEvaluator(EOQualifierFixtures.createPersonEntity()).compile(qualifier, null);
+	}
+
+	@Benchmark
+	public int filter() {
+		return _predicate.count(_rows);
+	}
+}
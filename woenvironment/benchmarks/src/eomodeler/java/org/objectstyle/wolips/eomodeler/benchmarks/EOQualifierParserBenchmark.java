@@ -0,0 +1,56 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierCache;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a generated qualifier of 200 or 2000 terms, and looks it up in a
+ * cache that already holds it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOQualifierParserBenchmark {
+	@Param( { "200", "2000" })
+	public int termCount;
+
+	private String _qualifierString;
+
+	private EOQualifierCache _cache;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_qualifierString = EOQualifierFixtures.generateQualifier(termCount);
+		_cache = new EOQualifierCache(EOQualifierCache.DEFAULT_MAX_ENTRIES);
+		_cache.parseQualifier(_qualifierString);
+	}
+
+	@Benchmark
+	public EOQualifier parse() throws Exception {
+		return new EOQualifierParser().parseQualifier(_qualifierString);
+	}
+
+	@Benchmark
+	public EOQualifier parseCached() throws Exception {
+		return _cache.parseQualifier(_qualifierString);
+	}
+}
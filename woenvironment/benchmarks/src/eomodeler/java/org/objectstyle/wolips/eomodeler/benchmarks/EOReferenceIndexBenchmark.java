@@ -0,0 +1,72 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up the referencing relationships and children of every entity of a
+ * model of 100 or 500 entities, by scanning the model group and through the
+ * reference index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EOReferenceIndexBenchmark {
+	@Param( { "100", "500" })
+	public int entityCount;
+
+	private File _folder;
+
+	private Set<EOEntity> _entities;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = EOModelFixtures.temporaryFolder("EOReferenceIndexBenchmark");
+		File modelFolder = new File(_folder, "References.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, entityCount);
+		_entities = EOModelFixtures.loadModelGroup(modelFolder).getEntities();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EOModelFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public int scan() {
+		int references = 0;
+		for (EOEntity entity : _entities) {
+			references += EOModelFixtures.scanReferencingRelationships(entity).size() + EOModelFixtures.scanChildrenEntities(entity).size();
+		}
+		return references;
+	}
+
+	@Benchmark
+	public int index() {
+		int references = 0;
+		for (EOEntity entity : _entities) {
+			references += entity.getReferencingRelationships().size() + entity.getChildrenEntities().size();
+		}
+		return references;
+	}
+}
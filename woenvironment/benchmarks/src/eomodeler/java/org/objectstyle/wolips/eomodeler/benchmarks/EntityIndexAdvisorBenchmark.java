@@ -0,0 +1,74 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EODataType;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntityIndex;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.sql.EntityIndexAdvisor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Advises on the indexes of a model group of 200 or 2000 entities, each with
+ * a to-one relationship to the previous one. Every other entity indexes the
+ * foreign key, and every fourth entity has an index that duplicates its
+ * primary key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityIndexAdvisorBenchmark {
+	@Param( { "200", "2000" })
+	public int entityCount;
+
+	private EOModelGroup _modelGroup;
+
+	private EntityIndexAdvisor _advisor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_modelGroup = new EOModelGroup();
+		EOModel model = new EOModel("Benchmark");
+		_modelGroup.addModel(model);
+		EOEntity previousEntity = null;
+		for (int entityNum = 0; entityNum < entityCount; entityNum++) {
+			EOEntity entity = EOModelFixtures.addEntity(model, "Entity" + entityNum, "ENTITY" + entityNum);
+			EOAttribute id = EOModelFixtures.addPrimaryKey(entity, null);
+			EOAttribute previousID = EOModelFixtures.addAttribute(entity, "previousID", "PREVIOUS_ID", EODataType.INTEGER);
+			if (entityNum % 2 == 1) {
+				EOModelFixtures.addEntityIndex(entity, "Previous" + entityNum, EOEntityIndex.Constraint.None, previousID);
+			}
+			if (entityNum % 4 == 0) {
+				EOModelFixtures.addEntityIndex(entity, "ID" + entityNum, EOEntityIndex.Constraint.None, id);
+			}
+			// the first entity refers to itself
+			EOEntity destination = previousEntity == null ? entity : previousEntity;
+			EOModelFixtures.addRelationship(entity, "previous", destination, false, previousID, destination.getAttributeNamed("id"));
+			previousEntity = entity;
+		}
+		_advisor = new EntityIndexAdvisor();
+	}
+
+	@Benchmark
+	public Object advise() {
+		return _advisor.advise(_modelGroup);
+	}
+}
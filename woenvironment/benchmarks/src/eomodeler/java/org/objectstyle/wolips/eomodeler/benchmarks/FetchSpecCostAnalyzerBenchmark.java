@@ -0,0 +1,60 @@
+package org.objectstyle.wolips.eomodeler.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.sql.FetchSpecCostAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Analyzes 100 or 1000 fetch specs of a Person entity, each with a join, a
+ * negation, a sort ordering and a prefetch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchSpecCostAnalyzerBenchmark {
+	@Param( { "100", "1000" })
+	public int fetchSpecCount;
+
+	private EOModel _model;
+
+	private FetchSpecCostAnalyzer _analyzer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_model = EOModelFixtures.createCompanyModel();
+		EOEntity person = _model.getEntityNamed("Person");
+		for (int fetchSpecNum = 0; fetchSpecNum < fetchSpecCount; fetchSpecNum++) {
+			EOModelFixtures.addFetchSpec(person, "generated" + fetchSpecNum, "(name = 'Name" + fetchSpecNum + "' or age < " + fetchSpecNum + ") and company.name like 'C*' and not (id = " + fetchSpecNum + ")", "company.name", fetchSpecNum % 2 == 0, Integer.valueOf(fetchSpecNum % 100), "projects");
+		}
+		Map<String, Integer> rowCounts = new HashMap<String, Integer>();
+		rowCounts.put("Company", Integer.valueOf(1000));
+		rowCounts.put("Person", Integer.valueOf(1000000));
+		rowCounts.put("Project", Integer.valueOf(5000000));
+		_analyzer = new FetchSpecCostAnalyzer(rowCounts, FetchSpecCostAnalyzer.DEFAULT_ROW_COUNT);
+	}
+
+	@Benchmark
+	public Object analyze() {
+		return _analyzer.analyze(_model);
+	}
+}
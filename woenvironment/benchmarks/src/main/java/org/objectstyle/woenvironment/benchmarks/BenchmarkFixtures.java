@@ -0,0 +1,252 @@
+package org.objectstyle.woenvironment.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates the fixtures for the benchmarks: EOModel-style property lists of
+ * a given number of entities and framework roots on the file system. The same
+ * arguments always produce the same fixtures, so results stay comparable
+ * between runs.
+ */
+public class BenchmarkFixtures {
+	private static final String[] PROTOTYPES = { "id", "boolean", "varchar50", "varchar255", "intNumber", "dateTime", "longText", "amount" };
+
+	private static final String[] EXTERNAL_TYPES = { "int", "varchar", "timestamp", "decimal", "text", "blob" };
+
+	private static final String[] APPLE_FRAMEWORKS = { "JavaFoundation", "JavaEOControl", "JavaEOAccess", "JavaWebObjects", "JavaJDBCAdaptor", "JavaXML" };
+
+	/**
+	 * Returns a model with the given number of entities, each with 10
+	 * attributes and 2 relationships, stored under the "entities" key.
+	 */
+	public static Map<Object, Object> model(int entityCount) {
+		Map<Object, Object> model = new HashMap<Object, Object>();
+		model.put("EOModelVersion", "2.1");
+		model.put("adaptorName", "JDBC");
+		List<Object> entities = new ArrayList<Object>();
+		for (int i = 0; i < entityCount; i++) {
+			entities.add(BenchmarkFixtures.entity("Entity" + i, 10, 2, i));
+		}
+		model.put("entities", entities);
+		return model;
+	}
+
+	/**
+	 * Returns a Map equivalent to an entity plist.
+	 */
+	public static Map<Object, Object> entity(String name, int attributeCount, int relationshipCount, long seed) {
+		Random random = new Random(seed);
+		Map<Object, Object> entity = new HashMap<Object, Object>();
+		entity.put("name", name);
+		entity.put("className", "com.example.model." + name);
+		entity.put("externalName", name.toUpperCase());
+		List<Object> primaryKeyAttributes = new ArrayList<Object>();
+		primaryKeyAttributes.add("id");
+		entity.put("primaryKeyAttributes", primaryKeyAttributes);
+
+		List<Object> attributes = new ArrayList<Object>();
+		List<Object> classProperties = new ArrayList<Object>();
+		for (int i = 0; i < attributeCount; i++) {
+			Map<Object, Object> attribute = new HashMap<Object, Object>();
+			String attributeName = i == 0 ? "id" : "attribute" + i;
+			attribute.put("name", attributeName);
+			attribute.put("columnName", attributeName.toUpperCase());
+			attribute.put("prototypeName", BenchmarkFixtures.PROTOTYPES[random.nextInt(BenchmarkFixtures.PROTOTYPES.length)]);
+			attribute.put("externalType", BenchmarkFixtures.EXTERNAL_TYPES[random.nextInt(BenchmarkFixtures.EXTERNAL_TYPES.length)]);
+			attribute.put("allowsNull", random.nextBoolean() ? "Y" : "N");
+			if (random.nextBoolean()) {
+				attribute.put("width", String.valueOf(random.nextInt(1000)));
+			}
+			attributes.add(attribute);
+			classProperties.add(attributeName);
+		}
+		entity.put("attributes", attributes);
+
+		List<Object> relationships = new ArrayList<Object>();
+		for (int i = 0; i < relationshipCount; i++) {
+			Map<Object, Object> relationship = new HashMap<Object, Object>();
+			relationship.put("name", "relationship" + i);
+			relationship.put("destination", "Entity" + random.nextInt(1000));
+			relationship.put("isToMany", random.nextBoolean() ? "Y" : "N");
+			relationship.put("joinSemantic", "EOInnerJoin");
+			Map<Object, Object> join = new HashMap<Object, Object>();
+			join.put("sourceAttribute", "attribute" + (1 + random.nextInt(Math.max(1, attributeCount - 1))));
+			join.put("destinationAttribute", "id");
+			List<Object> joins = new ArrayList<Object>();
+			joins.add(join);
+			relationship.put("joins", joins);
+			relationships.add(relationship);
+			classProperties.add("relationship" + i);
+		}
+		entity.put("relationships", relationships);
+		entity.put("classProperties", classProperties);
+		return entity;
+	}
+
+	/**
+	 * Returns the given property list as an XML plist. Only strings, maps and
+	 * collections are supported.
+	 */
+	public static String xmlFromPropertyList(Object plist) {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<!DOCTYPE plist PUBLIC \"-//Apple Computer//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n");
+		xml.append("<plist version=\"1.0\">\n");
+		BenchmarkFixtures._appendXML(plist, xml, 0);
+		xml.append("</plist>\n");
+		return xml.toString();
+	}
+
+	protected static void _appendXML(Object plist, StringBuilder xml, int level) {
+		for (int i = 0; i < level; i++) {
+			xml.append('\t');
+		}
+		if (plist instanceof Map) {
+			xml.append("<dict>\n");
+			Map<?, ?> map = (Map<?, ?>) plist;
+			for (Object key : new TreeSet<Object>(map.keySet())) {
+				for (int i = 0; i <= level; i++) {
+					xml.append('\t');
+				}
+				xml.append("<key>");
+				BenchmarkFixtures._appendEscaped(key.toString(), xml);
+				xml.append("</key>\n");
+				BenchmarkFixtures._appendXML(map.get(key), xml, level + 1);
+			}
+			BenchmarkFixtures._indent(xml, level);
+			xml.append("</dict>\n");
+		} else if (plist instanceof Collection) {
+			xml.append("<array>\n");
+			for (Iterator<?> iterator = ((Collection<?>) plist).iterator(); iterator.hasNext();) {
+				BenchmarkFixtures._appendXML(iterator.next(), xml, level + 1);
+			}
+			BenchmarkFixtures._indent(xml, level);
+			xml.append("</array>\n");
+		} else {
+			xml.append("<string>");
+			BenchmarkFixtures._appendEscaped(String.valueOf(plist), xml);
+			xml.append("</string>\n");
+		}
+	}
+
+	protected static void _indent(StringBuilder xml, int level) {
+		for (int i = 0; i < level; i++) {
+			xml.append('\t');
+		}
+	}
+
+	protected static void _appendEscaped(String string, StringBuilder xml) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '<') {
+				xml.append("&lt;");
+			} else if (c == '>') {
+				xml.append("&gt;");
+			} else if (c == '&') {
+				xml.append("&amp;");
+			} else {
+				xml.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Creates a frameworks folder with the given number of frameworks below
+	 * the given folder. Each framework has a Resources/Info.plist and a jar in
+	 * Resources/Java, like a built WebObjects framework.
+	 */
+	public static File frameworksFolder(File parentFolder, String name, int frameworkCount) throws IOException {
+		File frameworksFolder = new File(parentFolder, name);
+		for (int i = 0; i < frameworkCount; i++) {
+			String frameworkName = BenchmarkFixtures.frameworkName(i);
+			File javaFolder = new File(frameworksFolder, frameworkName + ".framework/Resources/Java");
+			if (!javaFolder.mkdirs()) {
+				throw new IOException("Failed to create " + javaFolder + ".");
+			}
+			BenchmarkFixtures._write(new File(javaFolder, frameworkName.toLowerCase() + ".jar"), "");
+			BenchmarkFixtures._write(new File(javaFolder.getParentFile(), "Info.plist"), BenchmarkFixtures.xmlFromPropertyList(BenchmarkFixtures.infoPlist(frameworkName)));
+		}
+		return frameworksFolder;
+	}
+
+	/**
+	 * Returns the name of the framework with the given index; the first few are
+	 * named like the Apple frameworks.
+	 */
+	public static String frameworkName(int index) {
+		return index < BenchmarkFixtures.APPLE_FRAMEWORKS.length ? BenchmarkFixtures.APPLE_FRAMEWORKS[index] : "Framework" + index;
+	}
+
+	public static Map<Object, Object> infoPlist(String frameworkName) {
+		Map<Object, Object> infoPlist = new HashMap<Object, Object>();
+		infoPlist.put("CFBundleDevelopmentRegion", "English");
+		infoPlist.put("CFBundleExecutable", frameworkName);
+		infoPlist.put("CFBundleIdentifier", "com.example." + frameworkName);
+		infoPlist.put("CFBundleInfoDictionaryVersion", "6.0");
+		infoPlist.put("CFBundlePackageType", "FMWK");
+		infoPlist.put("CFBundleShortVersionString", "1.0");
+		infoPlist.put("CFBundleVersion", "1.0");
+		infoPlist.put("NSJavaNeeded", "YES");
+		infoPlist.put("NSJavaRoot", "Resources/Java");
+		List<Object> javaPath = new ArrayList<Object>();
+		javaPath.add(frameworkName.toLowerCase() + ".jar");
+		infoPlist.put("NSJavaPathClient", javaPath);
+		infoPlist.put("NSJavaPath", javaPath);
+		infoPlist.put("NSPrincipalClass", "com.example." + frameworkName);
+		return infoPlist;
+	}
+
+	/**
+	 * Returns the raw jar paths of a classpath that uses the given number of
+	 * frameworks, each of which is found in the user, local and system
+	 * frameworks folders, plus one plain jar per ten frameworks.
+	 */
+	public static List<String> classpath(int frameworkCount) {
+		List<String> classpath = new ArrayList<String>();
+		String[] frameworksFolders = { "/Users/dev/Library/Frameworks", "/Library/Frameworks", "/System/Library/Frameworks" };
+		for (String frameworksFolder : frameworksFolders) {
+			for (int i = 0; i < frameworkCount; i++) {
+				String frameworkName = BenchmarkFixtures.frameworkName(i);
+				classpath.add(frameworksFolder + "/" + frameworkName + ".framework/Resources/Java/" + frameworkName.toLowerCase() + ".jar");
+				if (i % 10 == 0) {
+					classpath.add("/opt/lib/library" + i + ".jar");
+				}
+			}
+		}
+		return classpath;
+	}
+
+	/**
+	 * Deletes the given file or folder and everything in it.
+	 */
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				BenchmarkFixtures.delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	protected static void _write(File file, String contents) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.objectstyle.woenvironment.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.woenvironment.frameworks.Dependency;
+import org.objectstyle.woenvironment.frameworks.DependencyOrdering;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Orders the classpath of an application that uses 50 or 500 frameworks, each
+ * of which is installed in three frameworks folders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DependencyOrderingBenchmark {
+	@Param( { "50", "500" })
+	public int frameworkCount;
+
+	private List<JarDependency> _dependencies;
+
+	@Setup
+	public void setUp() {
+		_dependencies = new ArrayList<JarDependency>();
+		for (String jarPath : BenchmarkFixtures.classpath(frameworkCount)) {
+			_dependencies.add(new JarDependency(jarPath));
+		}
+	}
+
+	@Benchmark
+	public Object orderDependencies() {
+		return new JarDependencyOrdering().orderDependencies(_dependencies);
+	}
+
+	public static class JarDependency extends Dependency {
+		private String _jarPath;
+
+		public JarDependency(String jarPath) {
+			_jarPath = jarPath;
+		}
+
+		@Override
+		public String getProjectFrameworkName() {
+			return null;
+		}
+
+		@Override
+		public boolean isProject() {
+			return false;
+		}
+
+		@Override
+		public boolean isWOProject() {
+			return false;
+		}
+
+		@Override
+		public String getSystemRoot() {
+			return "/System";
+		}
+
+		@Override
+		public String getRawPath() {
+			return _jarPath;
+		}
+
+		@Override
+		public String getLocation() {
+			return _jarPath;
+		}
+	}
+
+	public static class JarDependencyOrdering extends DependencyOrdering<JarDependency> {
+		public JarDependencyOrdering() {
+			super(false);
+		}
+
+		@Override
+		protected void addWOProject(JarDependency dependency) {
+			// DO NOTHING
+		}
+	}
+}
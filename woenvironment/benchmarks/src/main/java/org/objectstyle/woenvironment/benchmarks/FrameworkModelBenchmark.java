@@ -0,0 +1,116 @@
+package org.objectstyle.woenvironment.benchmarks;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.woenvironment.frameworks.AbstractFolderFramework;
+import org.objectstyle.woenvironment.frameworks.ExternalFolderRoot;
+import org.objectstyle.woenvironment.frameworks.FrameworkModel;
+import org.objectstyle.woenvironment.frameworks.IFramework;
+import org.objectstyle.woenvironment.frameworks.Root;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scans, loads and looks up frameworks in a model with a local and a system
+ * root of 50 or 500 frameworks each, created in a temporary folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameworkModelBenchmark {
+	@Param( { "50", "500" })
+	public int frameworkCount;
+
+	@Param( { "0", "8" })
+	public int discoveryThreads;
+
+	private File _folder;
+
+	private File _localFrameworksFolder;
+
+	private File _systemFrameworksFolder;
+
+	private BenchmarkFrameworkModel _model;
+
+	private String _lastFrameworkName;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		_folder = File.createTempFile("FrameworkModelBenchmark", "");
+		_folder.delete();
+		_localFrameworksFolder = BenchmarkFixtures.frameworksFolder(_folder, "Local", frameworkCount);
+		_systemFrameworksFolder = BenchmarkFixtures.frameworksFolder(_folder, "System", frameworkCount);
+		_model = new BenchmarkFrameworkModel(_localFrameworksFolder, _systemFrameworksFolder);
+		_model.getAllFrameworks();
+		_lastFrameworkName = BenchmarkFixtures.frameworkName(frameworkCount - 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchmarkFixtures.delete(_folder);
+	}
+
+	@Benchmark
+	public Object scanRoots() {
+		BenchmarkFrameworkModel model = new BenchmarkFrameworkModel(_localFrameworksFolder, _systemFrameworksFolder);
+		model.setDiscoveryThreads(discoveryThreads);
+		return model.getAllFrameworks();
+	}
+
+	@Benchmark
+	public Object loadInfoPlists() {
+		int count = 0;
+		for (IFramework framework : new BenchmarkFrameworkModel(_localFrameworksFolder, _systemFrameworksFolder).getAllFrameworks()) {
+			if (((AbstractFolderFramework) framework).getInfoPlist() != null) {
+				count++;
+			}
+		}
+		return Integer.valueOf(count);
+	}
+
+	@Benchmark
+	public Object getFrameworkWithName() {
+		return _model.getFrameworkWithName(_lastFrameworkName);
+	}
+
+	@Benchmark
+	public Object getAllFrameworks() {
+		return _model.getAllFrameworks();
+	}
+
+	public static class BenchmarkFrameworkModel extends FrameworkModel<IFramework> {
+		private File _localFrameworksFolder;
+
+		private File _systemFrameworksFolder;
+
+		public BenchmarkFrameworkModel(File localFrameworksFolder, File systemFrameworksFolder) {
+			_localFrameworksFolder = localFrameworksFolder;
+			_systemFrameworksFolder = systemFrameworksFolder;
+		}
+
+		@Override
+		protected List<Root<IFramework>> createRoots() {
+			List<Root<IFramework>> roots = new LinkedList<Root<IFramework>>();
+			roots.add(new ExternalFolderRoot(Root.LOCAL_ROOT, "Local Frameworks", _localFrameworksFolder.getParentFile(), _localFrameworksFolder));
+			roots.add(new ExternalFolderRoot(Root.SYSTEM_ROOT, "System Frameworks", _systemFrameworksFolder.getParentFile(), _systemFrameworksFolder));
+			return roots;
+		}
+	}
+}
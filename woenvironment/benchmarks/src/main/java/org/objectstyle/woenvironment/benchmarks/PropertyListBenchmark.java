@@ -0,0 +1,86 @@
+package org.objectstyle.woenvironment.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.objectstyle.woenvironment.plist.CompactParserDataStructureFactory;
+import org.objectstyle.woenvironment.plist.SimpleParserDataStructureFactory;
+import org.objectstyle.woenvironment.plist.WOLBinaryPropertyListSerialization;
+import org.objectstyle.woenvironment.plist.WOLPropertyListParser;
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+import org.objectstyle.woenvironment.plist.WOLPropertyListWriter;
+import org.objectstyle.woenvironment.plist.WOLXMLPropertyListSerialization;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses and writes a model with 10, 100 and 1000 entities in the OpenStep,
+ * XML and binary formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyListBenchmark {
+	@Param( { "10", "100", "1000" })
+	public int entityCount;
+
+	private Map<Object, Object> _model;
+
+	private String _openStep;
+
+	private String _xml;
+
+	private byte[] _binary;
+
+	@Setup
+	public void setUp() throws Exception {
+		_model = BenchmarkFixtures.model(entityCount);
+		_openStep = WOLPropertyListSerialization.stringFromPropertyList(_model);
+		_xml = BenchmarkFixtures.xmlFromPropertyList(_model);
+		_binary = WOLBinaryPropertyListSerialization.bytesFromPropertyList(_model);
+	}
+
+	@Benchmark
+	public Object parseOpenStep() throws Exception {
+		return new WOLPropertyListParser(new SimpleParserDataStructureFactory()).parse(_openStep);
+	}
+
+	@Benchmark
+	public Object parseOpenStepCompact() throws Exception {
+		return new WOLPropertyListParser(new CompactParserDataStructureFactory()).parse(_openStep);
+	}
+
+	@Benchmark
+	public Object parseXML() throws Exception {
+		return WOLXMLPropertyListSerialization.propertyListFromString(_xml, new SimpleParserDataStructureFactory());
+	}
+
+	@Benchmark
+	public Object parseBinary() throws Exception {
+		return WOLBinaryPropertyListSerialization.propertyListFromBytes(_binary, new SimpleParserDataStructureFactory());
+	}
+
+	@Benchmark
+	public Object serializeOpenStep() throws Exception {
+		StringBuilder buffer = new StringBuilder(_openStep.length());
+		new WOLPropertyListWriter().write(_model, buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public Object serializeBinary() throws Exception {
+		return WOLBinaryPropertyListSerialization.bytesFromPropertyList(_model);
+	}
+}
@@ -106,8 +106,17 @@ public abstract class AbstractFolderFramework extends Framework {
     return propertyList;
   }
 
-  @SuppressWarnings("unchecked")
   protected File addJars(File defaultJarFolder, Map<String, Object> infoPlist, String jarRootKey, String jarListKey, List<File> jarFiles) {
+    return addJars(defaultJarFolder, infoPlist, jarRootKey, jarListKey, jarFiles, null);
+  }
+
+  /**
+   * Adds the jars of the given Info.plist keys to jarFiles and, if
+   * inspectedFiles is not null, the folders whose contents decided which jars
+   * were found to inspectedFiles.
+   */
+  @SuppressWarnings("unchecked")
+  protected File addJars(File defaultJarFolder, Map<String, Object> infoPlist, String jarRootKey, String jarListKey, List<File> jarFiles, List<File> inspectedFiles) {
 	  boolean guessJars = true;
 	  
 	  File jarFolder = defaultJarFolder;
@@ -129,6 +138,9 @@ public abstract class AbstractFolderFramework extends Framework {
 			  if (javaPaths != null) {
 			    for (String javaPath : javaPaths) {
 			      File jarFile = new File(jarFolder, javaPath);
+			      if (inspectedFiles != null) {
+			        inspectedFiles.add(jarFile.getParentFile());
+			      }
 			      String jarFileName = jarFile.getName();
 			      if (jarFile.exists() && !isSourceJar(jarFileName)) {
 			        jarFiles.add(jarFile);
@@ -139,19 +151,29 @@ public abstract class AbstractFolderFramework extends Framework {
 		  }
 	  }
 	  
+	  if (inspectedFiles != null) {
+		  inspectedFiles.add(jarFolder);
+	  }
 	  if (guessJars && jarFolder.exists()) {
-		  guessJars(jarFolder, jarFiles);
+		  guessJars(jarFolder, jarFiles, inspectedFiles);
 	  }
 	  
 	  return jarFolder;
   }
   
   protected void guessJars(File folder, List<File> jarFiles) {
+    guessJars(folder, jarFiles, null);
+  }
+
+  protected void guessJars(File folder, List<File> jarFiles, List<File> inspectedFiles) {
+    if (inspectedFiles != null) {
+      inspectedFiles.add(folder);
+    }
     File[] guessedJarFiles = folder.listFiles();
     if (guessedJarFiles != null && guessedJarFiles.length > 0) {
       for (File guessedJarFile : guessedJarFiles) {
         if (guessedJarFile.isDirectory()) {
-          guessJars(guessedJarFile, jarFiles);
+          guessJars(guessedJarFile, jarFiles, inspectedFiles);
         }
         else {
           String guessedJarFileName = guessedJarFile.getName();
@@ -163,12 +185,37 @@ public abstract class AbstractFolderFramework extends Framework {
     }
   }
   
+  /**
+   * Returns the scan cache of this framework's root, or null if it doesn't
+   * have one.
+   */
+  protected FrameworkScanCache getScanCache() {
+    FrameworkScanCache scanCache = null;
+    Root<?> root = getRoot();
+    if (root instanceof AbstractFolderRoot) {
+      scanCache = ((AbstractFolderRoot<?>) root).getScanCache();
+    }
+    return scanCache;
+  }
+
   public synchronized void reloadLibraries() {
+    FrameworkScanCache scanCache = getScanCache();
+    if (scanCache != null) {
+      List<FrameworkLibrary> cachedLibraries = scanCache.getFrameworkLibraries(_frameworkFolder);
+      if (cachedLibraries != null) {
+        _libraries = cachedLibraries;
+        return;
+      }
+    }
+
+    long scanTime = System.currentTimeMillis();
     List<File> jarFiles = new LinkedList<File>();
+    List<File> inspectedFiles = new LinkedList<File>();
+    inspectedFiles.add(new File(_frameworkFolder, "Resources/Info.plist"));
 
     Map<String, Object> infoPlist = getInfoPlist();
-    _javaFolder = addJars(new File(_frameworkFolder, "Resources/Java"), infoPlist, "NSJavaRoot", "NSJavaPath", jarFiles);
-    _javaClientFolder = addJars(new File(_frameworkFolder, "WebServerResources/Java"), infoPlist, "NSJavaClientRoot", "NSJavaPathClient", jarFiles);
+    _javaFolder = addJars(new File(_frameworkFolder, "Resources/Java"), infoPlist, "NSJavaRoot", "NSJavaPath", jarFiles, inspectedFiles);
+    _javaClientFolder = addJars(new File(_frameworkFolder, "WebServerResources/Java"), infoPlist, "NSJavaClientRoot", "NSJavaPathClient", jarFiles, inspectedFiles);
 
     _libraries = new LinkedList<FrameworkLibrary>();
     for (File jarFile : jarFiles) {
@@ -181,6 +228,10 @@ public abstract class AbstractFolderFramework extends Framework {
       FrameworkLibrary library = new FrameworkLibrary(jarFile, sourceJarFile, null, null, null);
       _libraries.add(library);
     }
+
+    if (scanCache != null) {
+      scanCache.setFrameworkLibraries(_frameworkFolder, _libraries, inspectedFiles, scanTime);
+    }
   }
 
   protected String getSourceJarNameForJarNamed(String jarName) {
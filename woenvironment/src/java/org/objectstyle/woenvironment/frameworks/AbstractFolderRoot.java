@@ -56,18 +56,30 @@
 package org.objectstyle.woenvironment.frameworks;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public abstract class AbstractFolderRoot<T extends IFramework> extends Root<T> {
   private File rootFolder;
   private File frameworksFolder;
   private Set<T> frameworks;
+  private Map<String, T> frameworksByName;
+  private FrameworkScanCache scanCache;
 
   public AbstractFolderRoot(String shortName, String name, File rootFolder, File frameworksFolder) {
     super(shortName, name);
     this.rootFolder = rootFolder;
     this.frameworksFolder = frameworksFolder;
+    this.scanCache = FrameworkScanCache.defaultCache();
   }
 
   public File getRootFolder() {
@@ -78,27 +90,119 @@ public abstract class AbstractFolderRoot<T extends IFramework> extends Root<T> {
     return frameworksFolder;
   }
 
+  /**
+   * Returns the cache that remembers the frameworks and libraries of this root
+   * across processes, or null if there is none.
+   */
+  public FrameworkScanCache getScanCache() {
+    return scanCache;
+  }
+
+  public synchronized void setScanCache(FrameworkScanCache scanCache) {
+    this.scanCache = scanCache;
+  }
+
   protected abstract T createFramework(File frameworkFolder);
 
   @Override
   public synchronized Set<T> getFrameworks() {
+    return discoverFrameworks(null);
+  }
+
+  /**
+   * Creates the frameworks of this root on the given executor (or on the
+   * calling thread if it is null), so Info.plist parsing and jar guessing for
+   * the frameworks of a root can run side by side. The result is published as
+   * an unmodifiable snapshot together with its name index.
+   */
+  @Override
+  public synchronized Set<T> discoverFrameworks(ExecutorService executor) {
     if (frameworks == null) {
-	    frameworks = new TreeSet<T>();
-	    if (this.frameworksFolder != null && this.frameworksFolder.exists()) {
-	      File[] frameworkFolders = this.frameworksFolder.listFiles();
-	      if (frameworkFolders != null) {
-	        for (File frameworkFolder : frameworkFolders) {
-	          String frameworkFolderName = frameworkFolder.getName();
-	          if (frameworkFolderName.endsWith(".framework") && new File(frameworkFolder, "Resources/Java").exists()) {
-	            frameworks.add(createFramework(frameworkFolder));
-	          }
+	    Set<T> discoveredFrameworks = new TreeSet<T>();
+	    if (this.frameworksFolder != null) {
+	      List<String> frameworkFolderNames = null;
+	      if (scanCache != null) {
+	        frameworkFolderNames = scanCache.getFrameworkFolderNames(this.frameworksFolder);
+	      }
+	      if (frameworkFolderNames == null) {
+	        frameworkFolderNames = scanFrameworkFolderNames();
+	      }
+	      if (executor == null) {
+	        for (String frameworkFolderName : frameworkFolderNames) {
+	          discoveredFrameworks.add(createFramework(new File(this.frameworksFolder, frameworkFolderName)));
+	        }
+	      }
+	      else {
+	        List<Future<T>> futureFrameworks = new ArrayList<Future<T>>(frameworkFolderNames.size());
+	        for (String frameworkFolderName : frameworkFolderNames) {
+	          final File frameworkFolder = new File(this.frameworksFolder, frameworkFolderName);
+	          futureFrameworks.add(executor.submit(new Callable<T>() {
+	            public T call() {
+	              return createFramework(frameworkFolder);
+	            }
+	          }));
+	        }
+	        for (Future<T> futureFramework : futureFrameworks) {
+	          discoveredFrameworks.add(FrameworkModel.getResult(futureFramework));
+	        }
+	      }
+	      if (scanCache != null) {
+	        try {
+	          scanCache.saveIfNeeded(this.frameworksFolder);
+	        }
+	        catch (IOException e) {
+	          // the cache only saves time, so we can carry on without it
 	        }
 	      }
 	    }
+	    Map<String, T> discoveredFrameworksByName = new HashMap<String, T>(discoveredFrameworks.size() * 2);
+	    for (T framework : discoveredFrameworks) {
+	      if (!discoveredFrameworksByName.containsKey(framework.getName())) {
+	        discoveredFrameworksByName.put(framework.getName(), framework);
+	      }
+	    }
+	    frameworksByName = discoveredFrameworksByName;
+	    frameworks = Collections.unmodifiableSet(discoveredFrameworks);
     }
     return frameworks;
   }
 
+  @Override
+  public synchronized T getFrameworkWithName(String frameworkName) {
+    discoverFrameworks(null);
+    return frameworksByName.get(frameworkName);
+  }
+
+  /**
+   * Lists the framework folders that have a Resources/Java folder and records
+   * the result in the scan cache.
+   */
+  protected List<String> scanFrameworkFolderNames() {
+    long scanTime = System.currentTimeMillis();
+    List<String> frameworkFolderNames = new ArrayList<String>();
+    List<File> inspectedFiles = new ArrayList<File>();
+    inspectedFiles.add(this.frameworksFolder);
+    if (this.frameworksFolder.exists()) {
+      File[] frameworkFolders = this.frameworksFolder.listFiles();
+      if (frameworkFolders != null) {
+        for (File frameworkFolder : frameworkFolders) {
+          String frameworkFolderName = frameworkFolder.getName();
+          if (frameworkFolderName.endsWith(".framework")) {
+            File resourcesFolder = new File(frameworkFolder, "Resources");
+            inspectedFiles.add(resourcesFolder);
+            if (new File(resourcesFolder, "Java").exists()) {
+              frameworkFolderNames.add(frameworkFolderName);
+            }
+          }
+        }
+      }
+    }
+    if (scanCache != null) {
+      scanCache.setFrameworkFolderNames(this.frameworksFolder, frameworkFolderNames, inspectedFiles, scanTime);
+    }
+    return frameworkFolderNames;
+  }
+
   @Override
   public String toString() {
     return "[" + getClass().getSimpleName() + ": name = " + getName() + "; folder = " + this.frameworksFolder + "]";
@@ -46,14 +46,22 @@
 package org.objectstyle.woenvironment.frameworks;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * DependencyOrdering turns a raw classpath into the order WebObjects expects:
+ * woa dependencies, then projects, then non-Apple frameworks (so Wonder
+ * patches win over WebObjects), then Apple frameworks, then everything else.
+ * All the jars of a framework are kept together and only the first location of
+ * each framework is used. Every dependency is looked up in hash-indexed
+ * structures, so ordering is linear in the number of dependencies.
+ */
 public abstract class DependencyOrdering<T extends Dependency> {
   // We need to track with frameworks were projects, because they "win" when competing
   // with the same named framework from a /Frameworks folder
@@ -84,7 +92,7 @@ public abstract class DependencyOrdering<T extends Dependency> {
     dependencyFramework = new HashMap<T, String>();
     frameworkDependencies = new HashMap<String, List<T>>();
     addedFrameworkPaths = new LinkedHashMap<String, String>();
-    pendingResult = new LinkedList<T>();
+    pendingResult = new ArrayList<T>();
   }
   
   public List<T> orderDependencies(List<T> dependencies) {
@@ -92,7 +100,7 @@ public abstract class DependencyOrdering<T extends Dependency> {
 
     for (T dependency : dependencies) {
       String dependencyRawPath = dependency.getRawPath();
-      String[] dependencyRawSegments = dependencyRawPath.split("[\\/]");
+      String[] dependencyRawSegments = splitRawPath(dependencyRawPath);
 
       // rewrite the raw path from its segments to normalize it against
       // other paths we will make (just makes sure they're all consistent)
@@ -137,7 +145,7 @@ public abstract class DependencyOrdering<T extends Dependency> {
           dependencyFramework.put(dependency, frameworkName);
           List<T> thisFrameworkDependencies = frameworkDependencies.get(frameworkName);
           if (thisFrameworkDependencies == null) {
-            thisFrameworkDependencies = new LinkedList<T>();
+            thisFrameworkDependencies = new ArrayList<T>();
             frameworkDependencies.put(frameworkName, thisFrameworkDependencies);
           }
           thisFrameworkDependencies.add(dependency);
@@ -154,12 +162,12 @@ public abstract class DependencyOrdering<T extends Dependency> {
     }
 
     // sort classpath: project in front, then frameworks, then apple frameworks, then the rest
-    List<T> processedDeps = new LinkedList<T>();
-    List<T> otherDeps = new LinkedList<T>();
-    List<T> nonAppleDeps = new LinkedList<T>();
-    List<T> appleDeps = new LinkedList<T>();
-    List<T> projectDeps = new LinkedList<T>();
-    List<T> woaDeps = new LinkedList<T>();
+    Set<T> processedDeps = new HashSet<T>();
+    List<T> otherDeps = new ArrayList<T>();
+    List<T> nonAppleDeps = new ArrayList<T>();
+    List<T> appleDeps = new ArrayList<T>();
+    List<T> projectDeps = new ArrayList<T>();
+    List<T> woaDeps = new ArrayList<T>();
     for (T dependency : pendingResult) {
       if (!processedDeps.contains(dependency)) {
         String frameworkName = dependencyFramework.get(dependency);
@@ -202,7 +210,7 @@ public abstract class DependencyOrdering<T extends Dependency> {
 //			}
     }
 
-    List<T> sortedDependencies = new ArrayList<T>();
+    List<T> sortedDependencies = new ArrayList<T>(woaDeps.size() + projectDeps.size() + nonAppleDeps.size() + appleDeps.size() + otherDeps.size());
     if (woaDeps.size() > 0) {
       sortedDependencies.addAll(woaDeps);
     }
@@ -225,7 +233,7 @@ public abstract class DependencyOrdering<T extends Dependency> {
     return sortedDependencies;
   }
   
-  protected void addDependencies(T dependency, String frameworkName, List<T> categorizedDeps, List<T> processedDeps) {
+  protected void addDependencies(T dependency, String frameworkName, List<T> categorizedDeps, Collection<T> processedDeps) {
     if (frameworkName == null) {
       categorizedDeps.add(dependency);
       processedDeps.add(dependency);
@@ -245,12 +253,35 @@ public abstract class DependencyOrdering<T extends Dependency> {
 
   protected abstract void addWOProject(T dependency);
 
+  /**
+   * Splits a raw path at '/' the way String.split("[\\/]") did (trailing empty
+   * segments are dropped), without compiling a regex for every dependency.
+   */
+  protected String[] splitRawPath(String rawPath) {
+    List<String> segments = new ArrayList<String>();
+    int segmentStart = 0;
+    int separatorIndex;
+    while ((separatorIndex = rawPath.indexOf('/', segmentStart)) != -1) {
+      segments.add(rawPath.substring(segmentStart, separatorIndex));
+      segmentStart = separatorIndex + 1;
+    }
+    if (segments.isEmpty()) {
+      return new String[] { rawPath };
+    }
+    segments.add(rawPath.substring(segmentStart));
+    int segmentCount = segments.size();
+    while (segmentCount > 0 && segments.get(segmentCount - 1).length() == 0) {
+      segmentCount--;
+    }
+    return segments.subList(0, segmentCount).toArray(new String[segmentCount]);
+  }
+
   protected String joinRawPath(String[] pathSegments) {
     return joinRawPath(pathSegments, pathSegments.length);
   }
 
   protected String joinRawPath(String[] pathSegments, int length) {
-    StringBuffer path = new StringBuffer();
+    StringBuilder path = new StringBuilder();
     for (int i = 0; i < length; i++) {
       path.append(pathSegments[i]);
       if (i < length - 1) {
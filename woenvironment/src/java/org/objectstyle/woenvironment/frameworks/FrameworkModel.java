@@ -55,77 +55,101 @@
  */
 package org.objectstyle.woenvironment.frameworks;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * FrameworkModel is the list of roots that frameworks and applications are
+ * looked up in; a name that is found in several roots resolves to the first.
+ * The frameworks and applications of all roots are indexed by name the first
+ * time they are needed, so lookups don't walk the roots. With discovery
+ * threads set, the roots and their frameworks are loaded in parallel before
+ * they are indexed.
+ */
 public abstract class FrameworkModel<T extends IFramework> {
 	private List<Root<T>> roots;
 
+	private int discoveryThreads;
+
+	private Map<String, T> frameworksByName;
+
+	private Map<String, T> applicationsByName;
+
 	protected abstract List<Root<T>> createRoots();
 	
 	public synchronized void invalidateRoots() {
 		this.roots = null;
+		this.frameworksByName = null;
+		this.applicationsByName = null;
 	}
 	
 	public synchronized List<Root<T>> getRoots() {
 		if (this.roots == null) {
 			this.roots = createRoots();
+			this.frameworksByName = null;
+			this.applicationsByName = null;
 		}
 		return this.roots;
 	}
 
+	public synchronized int getDiscoveryThreads() {
+		return this.discoveryThreads;
+	}
+
+	/**
+	 * Sets the number of threads that load frameworks in parallel the next time
+	 * the roots are indexed; 0 or 1 loads them on the calling thread.
+	 */
+	public synchronized void setDiscoveryThreads(int discoveryThreads) {
+		this.discoveryThreads = discoveryThreads;
+	}
+
 	public synchronized Set<T> getAllFrameworks() {
-		Map<String, T> frameworks = new HashMap<String, T>();
-		for (Root<T> root : getRoots()) {
-			for (T framework : root.getFrameworks()) {
-				String frameworkName = framework.getName();
-				if (!frameworks.containsKey(frameworkName)) {
-					frameworks.put(frameworkName, framework);
-				}
-			}
-		}
-		return new HashSet<T>(frameworks.values());
+		return new HashSet<T>(getFrameworksByName().values());
 	}
 
 	public synchronized Set<T> getAllApplications() {
-		Map<String, T> applications = new HashMap<String, T>();
-		for (Root<T> root : getRoots()) {
-			for (T application : root.getApplications()) {
-				String frameworkName = application.getName();
-				if (!applications.containsKey(frameworkName)) {
-					applications.put(frameworkName, application);
+		if (this.applicationsByName == null) {
+			Map<String, T> applications = new HashMap<String, T>();
+			for (Root<T> root : getRoots()) {
+				for (T application : root.getApplications()) {
+					String frameworkName = application.getName();
+					if (!applications.containsKey(frameworkName)) {
+						applications.put(frameworkName, application);
+					}
 				}
 			}
+			this.applicationsByName = Collections.unmodifiableMap(applications);
 		}
-		return new HashSet<T>(applications.values());
+		return new HashSet<T>(this.applicationsByName.values());
 	}
 
 	public synchronized void refreshRoots() {
-		this.roots = null;
+		invalidateRoots();
 		getRoots();
 	}
 
-	public T getFrameworkWithName(String frameworkName) {
-		for (Root<T> root : getRoots()) {
-			T framework = root.getFrameworkWithName(frameworkName);
-			if (framework != null) {
-				return framework;
-			}
-		}
-		return null;
+	public synchronized T getFrameworkWithName(String frameworkName) {
+		return getFrameworksByName().get(frameworkName);
 	}
 
-	public T getApplicationWithName(String applicationName) {
-		for (Root<T> root : getRoots()) {
-			T application = root.getApplicationWithName(applicationName);
-			if (application != null) {
-				return application;
-			}
+	public synchronized T getApplicationWithName(String applicationName) {
+		if (this.applicationsByName == null) {
+			getAllApplications();
 		}
-		return null;
+		return this.applicationsByName.get(applicationName);
 	}
 
   public Root<T> getRootWithShortName(String shortName) {
@@ -136,4 +160,89 @@ public abstract class FrameworkModel<T extends IFramework> {
     }
     return null;
   }
-}
\ No newline at end of file
+
+	/**
+	 * Returns the frameworks of all roots by name, discovering them first if
+	 * they haven't been yet.
+	 */
+	protected synchronized Map<String, T> getFrameworksByName() {
+		if (this.frameworksByName == null) {
+			List<Root<T>> currentRoots = getRoots();
+			if (this.discoveryThreads > 1) {
+				discoverFrameworks(currentRoots, this.discoveryThreads);
+			}
+			Map<String, T> frameworks = new HashMap<String, T>();
+			for (Root<T> root : currentRoots) {
+				for (T framework : root.getFrameworks()) {
+					String frameworkName = framework.getName();
+					if (!frameworks.containsKey(frameworkName)) {
+						frameworks.put(frameworkName, framework);
+					}
+				}
+			}
+			this.frameworksByName = Collections.unmodifiableMap(frameworks);
+		}
+		return this.frameworksByName;
+	}
+
+	/**
+	 * Loads the frameworks of the given roots in parallel. Each root is listed
+	 * on its own thread and hands its frameworks to a shared pool of the given
+	 * size; the framework tasks never wait on anything, so the two pools can't
+	 * starve each other.
+	 */
+	protected void discoverFrameworks(List<Root<T>> discoveryRoots, int threads) {
+		final ExecutorService frameworkExecutor = Executors.newFixedThreadPool(threads, new DiscoveryThreadFactory());
+		ExecutorService rootExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, discoveryRoots.size())), new DiscoveryThreadFactory());
+		try {
+			List<Future<Set<T>>> futureFrameworks = new ArrayList<Future<Set<T>>>(discoveryRoots.size());
+			for (final Root<T> root : discoveryRoots) {
+				futureFrameworks.add(rootExecutor.submit(new Callable<Set<T>>() {
+					public Set<T> call() {
+						return root.discoverFrameworks(frameworkExecutor);
+					}
+				}));
+			}
+			for (Future<Set<T>> futureFramework : futureFrameworks) {
+				FrameworkModel.getResult(futureFramework);
+			}
+		}
+		finally {
+			rootExecutor.shutdownNow();
+			frameworkExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for the given discovery task and rethrows whatever it failed with.
+	 */
+	protected static <V> V getResult(Future<V> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while discovering frameworks.", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException("Failed to discover frameworks.", cause);
+		}
+	}
+
+	protected static class DiscoveryThreadFactory implements ThreadFactory {
+		private static final AtomicInteger _threadNumber = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "FrameworkModel discovery " + _threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,407 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.frameworks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectstyle.woenvironment.plist.PropertyListParserException;
+import org.objectstyle.woenvironment.plist.SimpleParserDataStructureFactory;
+import org.objectstyle.woenvironment.plist.WOLBinaryPropertyListSerialization;
+
+/**
+ * FrameworkScanCache remembers what AbstractFolderRoot and
+ * AbstractFolderFramework found on disk -- the framework folders of a root and
+ * the jars and source jars of each framework -- and keeps it in one binary
+ * plist per root in a cache folder, so a new process doesn't have to list and
+ * walk every framework again.
+ * <p>
+ * Every entry records the modification dates of the folders (and the
+ * Info.plist) that were read to produce it. An entry is only used if all of
+ * them are unchanged, which costs one stat per folder instead of a listing.
+ * Entries whose folders changed less than TIMESTAMP_GRANULARITY before the
+ * scan aren't cached, because a change within the same timestamp tick would
+ * go unnoticed.
+ * <p>
+ * Roots don't use a cache unless one is set on them, or unless the
+ * "woenvironment.frameworkScanCache" system property names a cache folder (see
+ * defaultCache).
+ */
+public class FrameworkScanCache {
+  public static final String CACHE_FOLDER_PROPERTY = "woenvironment.frameworkScanCache";
+
+  public static final long TIMESTAMP_GRANULARITY = 2000;
+
+  private static final int FORMAT_VERSION = 1;
+
+  private static FrameworkScanCache _defaultCache;
+
+  private static String _defaultCacheFolderName;
+
+  private File _cacheFolder;
+
+  private Map<File, RootEntry> _rootEntries;
+
+  /**
+   * Returns the cache in the folder named by the
+   * "woenvironment.frameworkScanCache" system property, or null if it isn't
+   * set.
+   */
+  public static synchronized FrameworkScanCache defaultCache() {
+    String cacheFolderName = System.getProperty(FrameworkScanCache.CACHE_FOLDER_PROPERTY);
+    if (cacheFolderName == null || cacheFolderName.length() == 0) {
+      _defaultCache = null;
+    }
+    else if (_defaultCache == null || !cacheFolderName.equals(_defaultCacheFolderName)) {
+      _defaultCache = new FrameworkScanCache(new File(cacheFolderName));
+    }
+    _defaultCacheFolderName = cacheFolderName;
+    return _defaultCache;
+  }
+
+  public FrameworkScanCache(File cacheFolder) {
+    _cacheFolder = cacheFolder;
+    _rootEntries = new HashMap<File, RootEntry>();
+  }
+
+  public File getCacheFolder() {
+    return _cacheFolder;
+  }
+
+  /**
+   * Returns the names of the framework folders of the given frameworks folder,
+   * or null if they aren't cached or the folder changed since.
+   */
+  public synchronized List<String> getFrameworkFolderNames(File frameworksFolder) {
+    RootEntry rootEntry = rootEntry(frameworksFolder);
+    List<String> frameworkFolderNames = null;
+    if (rootEntry.frameworkFolderNames != null) {
+      if (FrameworkScanCache.isCurrent(rootEntry.stamps)) {
+        frameworkFolderNames = rootEntry.frameworkFolderNames;
+      }
+      else {
+        rootEntry.frameworkFolderNames = null;
+        rootEntry.stamps = null;
+        rootEntry.dirty = true;
+      }
+    }
+    return frameworkFolderNames;
+  }
+
+  /**
+   * Remembers the framework folders of the given frameworks folder.
+   * 
+   * @param frameworksFolder
+   *          the frameworks folder
+   * @param frameworkFolderNames
+   *          the names of the framework folders that were found
+   * @param inspectedFiles
+   *          the files and folders whose contents or existence decided the
+   *          result
+   * @param scanTime
+   *          when the scan started
+   */
+  public synchronized void setFrameworkFolderNames(File frameworksFolder, List<String> frameworkFolderNames, List<File> inspectedFiles, long scanTime) {
+    RootEntry rootEntry = rootEntry(frameworksFolder);
+    Map<String, Long> stamps = FrameworkScanCache.stampsForFiles(inspectedFiles, scanTime);
+    rootEntry.frameworkFolderNames = stamps == null ? null : new ArrayList<String>(frameworkFolderNames);
+    rootEntry.stamps = stamps;
+    rootEntry.dirty = true;
+  }
+
+  /**
+   * Returns the libraries of the given framework folder, or null if they
+   * aren't cached or any of the folders they were found in changed since.
+   */
+  public synchronized List<FrameworkLibrary> getFrameworkLibraries(File frameworkFolder) {
+    RootEntry rootEntry = rootEntry(frameworkFolder.getParentFile());
+    FrameworkEntry frameworkEntry = rootEntry.frameworks.get(frameworkFolder.getName());
+    List<FrameworkLibrary> libraries = null;
+    if (frameworkEntry != null) {
+      if (FrameworkScanCache.isCurrent(frameworkEntry.stamps)) {
+        libraries = new ArrayList<FrameworkLibrary>(frameworkEntry.libraries.size());
+        for (String[] library : frameworkEntry.libraries) {
+          libraries.add(new FrameworkLibrary(new File(library[0]), new File(library[1]), null, null, null));
+        }
+      }
+      else {
+        rootEntry.frameworks.remove(frameworkFolder.getName());
+        rootEntry.dirty = true;
+      }
+    }
+    return libraries;
+  }
+
+  /**
+   * Remembers the libraries of the given framework folder.
+   * 
+   * @param frameworkFolder
+   *          the framework folder
+   * @param libraries
+   *          the libraries that were found
+   * @param inspectedFiles
+   *          the files and folders whose contents or existence decided the
+   *          result
+   * @param scanTime
+   *          when the scan started
+   */
+  public synchronized void setFrameworkLibraries(File frameworkFolder, List<FrameworkLibrary> libraries, List<File> inspectedFiles, long scanTime) {
+    RootEntry rootEntry = rootEntry(frameworkFolder.getParentFile());
+    Map<String, Long> stamps = FrameworkScanCache.stampsForFiles(inspectedFiles, scanTime);
+    if (stamps == null) {
+      rootEntry.frameworks.remove(frameworkFolder.getName());
+    }
+    else {
+      FrameworkEntry frameworkEntry = new FrameworkEntry();
+      frameworkEntry.stamps = stamps;
+      frameworkEntry.libraries = new ArrayList<String[]>(libraries.size());
+      for (FrameworkLibrary library : libraries) {
+        File sourceJar = library.getSourceJar() == null ? library.getLibraryFile() : library.getSourceJar();
+        frameworkEntry.libraries.add(new String[] { library.getLibraryFile().getPath(), sourceJar.getPath() });
+      }
+      rootEntry.frameworks.put(frameworkFolder.getName(), frameworkEntry);
+    }
+    rootEntry.dirty = true;
+  }
+
+  /**
+   * Forgets everything about the given frameworks folder and deletes its cache
+   * file.
+   */
+  public synchronized void invalidate(File frameworksFolder) {
+    _rootEntries.remove(frameworksFolder);
+    File cacheFile = cacheFileForFolder(frameworksFolder);
+    if (cacheFile.exists()) {
+      cacheFile.delete();
+    }
+  }
+
+  /**
+   * Writes the cache file of the given frameworks folder if anything changed
+   * since it was read or written.
+   */
+  public synchronized void saveIfNeeded(File frameworksFolder) throws IOException {
+    RootEntry rootEntry = _rootEntries.get(frameworksFolder);
+    if (rootEntry != null && rootEntry.dirty) {
+      Map<String, Object> frameworks = new LinkedHashMap<String, Object>();
+      for (Map.Entry<String, FrameworkEntry> frameworkEntry : rootEntry.frameworks.entrySet()) {
+        List<Object> libraries = new ArrayList<Object>(frameworkEntry.getValue().libraries.size());
+        for (String[] library : frameworkEntry.getValue().libraries) {
+          List<Object> paths = new ArrayList<Object>(2);
+          paths.add(library[0]);
+          paths.add(library[1]);
+          libraries.add(paths);
+        }
+        Map<String, Object> framework = new LinkedHashMap<String, Object>();
+        framework.put("stamps", frameworkEntry.getValue().stamps);
+        framework.put("libraries", libraries);
+        frameworks.put(frameworkEntry.getKey(), framework);
+      }
+      Map<String, Object> plist = new LinkedHashMap<String, Object>();
+      plist.put("version", Integer.valueOf(FrameworkScanCache.FORMAT_VERSION));
+      plist.put("folder", frameworksFolder.getPath());
+      if (rootEntry.frameworkFolderNames != null) {
+        plist.put("stamps", rootEntry.stamps);
+        plist.put("frameworkFolders", rootEntry.frameworkFolderNames);
+      }
+      plist.put("frameworks", frameworks);
+
+      if (!_cacheFolder.exists() && !_cacheFolder.mkdirs()) {
+        throw new IOException("Failed to create the framework cache folder '" + _cacheFolder + "'.");
+      }
+      File cacheFile = cacheFileForFolder(frameworksFolder);
+      File temporaryCacheFile = new File(cacheFile.getPath() + ".tmp");
+      try {
+        WOLBinaryPropertyListSerialization.propertyListToFile(temporaryCacheFile, plist);
+      }
+      catch (PropertyListParserException e) {
+        throw new IOException("Failed to write the framework cache '" + cacheFile + "': " + e.getMessage());
+      }
+      if (cacheFile.exists()) {
+        cacheFile.delete();
+      }
+      if (!temporaryCacheFile.renameTo(cacheFile)) {
+        temporaryCacheFile.delete();
+        throw new IOException("Failed to write the framework cache '" + cacheFile + "'.");
+      }
+      rootEntry.dirty = false;
+    }
+  }
+
+  protected File cacheFileForFolder(File frameworksFolder) {
+    String path = frameworksFolder.getPath();
+    StringBuilder fileName = new StringBuilder();
+    String folderName = frameworksFolder.getName();
+    for (int i = 0; i < folderName.length(); i++) {
+      char ch = folderName.charAt(i);
+      fileName.append(Character.isLetterOrDigit(ch) ? ch : '_');
+    }
+    fileName.append('-');
+    fileName.append(Integer.toHexString(path.hashCode()));
+    fileName.append(".bplist");
+    return new File(_cacheFolder, fileName.toString());
+  }
+
+  protected RootEntry rootEntry(File frameworksFolder) {
+    RootEntry rootEntry = _rootEntries.get(frameworksFolder);
+    if (rootEntry == null) {
+      rootEntry = loadRootEntry(frameworksFolder);
+      _rootEntries.put(frameworksFolder, rootEntry);
+    }
+    return rootEntry;
+  }
+
+  /**
+   * Reads the cache file of the given frameworks folder. A missing, unreadable
+   * or foreign cache file just yields an empty entry.
+   */
+  @SuppressWarnings("unchecked")
+  protected RootEntry loadRootEntry(File frameworksFolder) {
+    RootEntry rootEntry = new RootEntry();
+    File cacheFile = cacheFileForFolder(frameworksFolder);
+    if (cacheFile.exists()) {
+      try {
+        Map<String, Object> plist = (Map<String, Object>) WOLBinaryPropertyListSerialization.propertyListWithContentsOfFile(cacheFile, new SimpleParserDataStructureFactory());
+        Number version = (Number) plist.get("version");
+        if (version != null && version.intValue() == FrameworkScanCache.FORMAT_VERSION && frameworksFolder.getPath().equals(plist.get("folder"))) {
+          List<String> frameworkFolderNames = (List<String>) plist.get("frameworkFolders");
+          if (frameworkFolderNames != null) {
+            rootEntry.frameworkFolderNames = new ArrayList<String>(frameworkFolderNames);
+            rootEntry.stamps = FrameworkScanCache.stampsFromPropertyList(plist.get("stamps"));
+          }
+          Map<String, Object> frameworks = (Map<String, Object>) plist.get("frameworks");
+          if (frameworks != null) {
+            for (Map.Entry<String, Object> framework : frameworks.entrySet()) {
+              Map<String, Object> frameworkPlist = (Map<String, Object>) framework.getValue();
+              FrameworkEntry frameworkEntry = new FrameworkEntry();
+              frameworkEntry.stamps = FrameworkScanCache.stampsFromPropertyList(frameworkPlist.get("stamps"));
+              List<Object> libraries = (List<Object>) frameworkPlist.get("libraries");
+              frameworkEntry.libraries = new ArrayList<String[]>(libraries.size());
+              for (Object library : libraries) {
+                List<Object> paths = (List<Object>) library;
+                frameworkEntry.libraries.add(new String[] { (String) paths.get(0), (String) paths.get(1) });
+              }
+              rootEntry.frameworks.put(framework.getKey(), frameworkEntry);
+            }
+          }
+        }
+      }
+      catch (Throwable t) {
+        // a damaged cache is the same as no cache
+        rootEntry = new RootEntry();
+      }
+    }
+    return rootEntry;
+  }
+
+  /**
+   * Returns the modification dates of the given files (0 for missing ones),
+   * or null if one of them changed too close to the scan time to be trusted.
+   */
+  protected static Map<String, Long> stampsForFiles(List<File> files, long scanTime) {
+    Map<String, Long> stamps = new LinkedHashMap<String, Long>();
+    for (File file : files) {
+      long lastModified = file.lastModified();
+      if (lastModified > scanTime - FrameworkScanCache.TIMESTAMP_GRANULARITY) {
+        return null;
+      }
+      stamps.put(file.getPath(), Long.valueOf(lastModified));
+    }
+    return stamps;
+  }
+
+  protected static boolean isCurrent(Map<String, Long> stamps) {
+    if (stamps == null) {
+      return false;
+    }
+    for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+      if (new File(stamp.getKey()).lastModified() != stamp.getValue().longValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected static Map<String, Long> stampsFromPropertyList(Object stampsPlist) {
+    Map<String, Long> stamps = new LinkedHashMap<String, Long>();
+    for (Map.Entry<String, Object> stamp : ((Map<String, Object>) stampsPlist).entrySet()) {
+      stamps.put(stamp.getKey(), Long.valueOf(((Number) stamp.getValue()).longValue()));
+    }
+    return stamps;
+  }
+
+  protected static class RootEntry {
+    public Map<String, Long> stamps;
+
+    public List<String> frameworkFolderNames;
+
+    public Map<String, FrameworkEntry> frameworks = new HashMap<String, FrameworkEntry>();
+
+    public boolean dirty;
+  }
+
+  protected static class FrameworkEntry {
+    public Map<String, Long> stamps;
+
+    public List<String[]> libraries;
+  }
+}
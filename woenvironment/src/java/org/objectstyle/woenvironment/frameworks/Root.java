@@ -56,6 +56,7 @@
 package org.objectstyle.woenvironment.frameworks;
 
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 public abstract class Root<T extends IFramework> {
 	public static final String PROJECT_ROOT = "Project";
@@ -82,6 +83,15 @@ public abstract class Root<T extends IFramework> {
 
 	public abstract Set<T> getFrameworks();
 
+	/**
+	 * Loads the frameworks of this root, using the given executor for work that
+	 * can be done per framework if the root supports it. By default this is
+	 * just getFrameworks.
+	 */
+	public Set<T> discoverFrameworks(ExecutorService executor) {
+		return getFrameworks();
+	}
+
 	public T getFrameworkWithName(String frameworkName) {
 		Set<T> frameworks = getFrameworks();
 		for (T framework : frameworks) {
@@ -0,0 +1,337 @@
+package org.objectstyle.woenvironment.plist;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * CompactMap stores its keys and values in two parallel arrays that grow one
+ * slot at a time, so the small dictionaries that make up most property lists
+ * don't pay for hash tables and entry objects. Without a comparator the
+ * entries keep their insertion order and lookups are linear; once a map
+ * outgrows MAX_LINEAR_SIZE entries it moves into a LinkedHashMap. With a
+ * comparator the entries are kept sorted and found by binary search, which
+ * gives the same ordering and key semantics as a TreeMap with that comparator.
+ * <p>
+ * If a StringCanonicalizer is given, String keys and values are canonicalized
+ * as they are put. CompactMap is not synchronized.
+ */
+public class CompactMap<K, V> extends AbstractMap<K, V> {
+	public static final int MAX_LINEAR_SIZE = 32;
+
+	private static final Object[] EMPTY_ARRAY = new Object[0];
+
+	private Comparator<? super K> _comparator;
+
+	private StringCanonicalizer _canonicalizer;
+
+	private Object[] _keys;
+
+	private Object[] _values;
+
+	private int _size;
+
+	private Map<K, V> _linkedMap;
+
+	private int _modCount;
+
+	private Set<Map.Entry<K, V>> _entrySet;
+
+	public CompactMap() {
+		this(null, null);
+	}
+
+	public CompactMap(StringCanonicalizer canonicalizer) {
+		this(null, canonicalizer);
+	}
+
+	/**
+	 * Constructs a new CompactMap.
+	 *
+	 * @param comparator
+	 *            the comparator that orders the keys, or null to keep the
+	 *            insertion order
+	 * @param canonicalizer
+	 *            the canonicalizer for String keys and values, or null
+	 */
+	public CompactMap(Comparator<? super K> comparator, StringCanonicalizer canonicalizer) {
+		_comparator = comparator;
+		_canonicalizer = canonicalizer;
+		_keys = CompactMap.EMPTY_ARRAY;
+		_values = CompactMap.EMPTY_ARRAY;
+	}
+
+	public Comparator<? super K> comparator() {
+		return _comparator;
+	}
+
+	@Override
+	public int size() {
+		return _linkedMap != null ? _linkedMap.size() : _size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (_linkedMap != null) {
+			return _linkedMap.containsKey(key);
+		}
+		return _indexOf(key) >= 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (_linkedMap != null) {
+			return _linkedMap.get(key);
+		}
+		int index = _indexOf(key);
+		return index >= 0 ? (V) _values[index] : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		if (_canonicalizer != null) {
+			key = (K) _canonicalizer.canonicalize(key);
+			value = (V) _canonicalizer.canonicalize(value);
+		}
+		if (_linkedMap != null) {
+			return _linkedMap.put(key, value);
+		}
+		int index = _indexOf(key);
+		if (index >= 0) {
+			V oldValue = (V) _values[index];
+			_values[index] = value;
+			return oldValue;
+		}
+		if (_comparator == null && _size >= CompactMap.MAX_LINEAR_SIZE) {
+			_linkedMap = new LinkedHashMap<K, V>(_size * 2);
+			for (int i = 0; i < _size; i++) {
+				_linkedMap.put((K) _keys[i], (V) _values[i]);
+			}
+			_keys = _values = CompactMap.EMPTY_ARRAY;
+			_size = 0;
+			_modCount++;
+			return _linkedMap.put(key, value);
+		}
+		int insertionIndex = _comparator == null ? _size : -(index + 1);
+		if (_size == _keys.length) {
+			int capacity = _size < CompactMap.MAX_LINEAR_SIZE ? _size + 1 : _size + (_size >> 1);
+			Object[] keys = new Object[capacity];
+			Object[] values = new Object[capacity];
+			System.arraycopy(_keys, 0, keys, 0, insertionIndex);
+			System.arraycopy(_values, 0, values, 0, insertionIndex);
+			System.arraycopy(_keys, insertionIndex, keys, insertionIndex + 1, _size - insertionIndex);
+			System.arraycopy(_values, insertionIndex, values, insertionIndex + 1, _size - insertionIndex);
+			_keys = keys;
+			_values = values;
+		} else {
+			System.arraycopy(_keys, insertionIndex, _keys, insertionIndex + 1, _size - insertionIndex);
+			System.arraycopy(_values, insertionIndex, _values, insertionIndex + 1, _size - insertionIndex);
+		}
+		_keys[insertionIndex] = key;
+		_values[insertionIndex] = value;
+		_size++;
+		_modCount++;
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		if (_linkedMap != null) {
+			return _linkedMap.remove(key);
+		}
+		int index = _indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		V oldValue = (V) _values[index];
+		_removeAt(index);
+		return oldValue;
+	}
+
+	@Override
+	public void clear() {
+		_linkedMap = null;
+		_keys = _values = CompactMap.EMPTY_ARRAY;
+		_size = 0;
+		_modCount++;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (_entrySet == null) {
+			_entrySet = new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public int size() {
+					return CompactMap.this.size();
+				}
+
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					if (_linkedMap != null) {
+						return _linkedMap.entrySet().iterator();
+					}
+					return new _EntryIterator();
+				}
+
+				@Override
+				public void clear() {
+					CompactMap.this.clear();
+				}
+			};
+		}
+		return _entrySet;
+	}
+
+	protected void _removeAt(int index) {
+		int tailLength = _size - index - 1;
+		System.arraycopy(_keys, index + 1, _keys, index, tailLength);
+		System.arraycopy(_values, index + 1, _values, index, tailLength);
+		_size--;
+		_keys[_size] = null;
+		_values[_size] = null;
+		_modCount++;
+	}
+
+	/**
+	 * Returns the index of the key, or, for sorted maps, (-(insertion index) -
+	 * 1) if the key is missing and -1 for unsorted ones.
+	 */
+	@SuppressWarnings("unchecked")
+	protected int _indexOf(Object key) {
+		if (_comparator != null) {
+			int low = 0;
+			int high = _size - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int comparison = _comparator.compare((K) _keys[middle], (K) key);
+				if (comparison < 0) {
+					low = middle + 1;
+				} else if (comparison > 0) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -(low + 1);
+		}
+		if (key == null) {
+			for (int i = 0; i < _size; i++) {
+				if (_keys[i] == null) {
+					return i;
+				}
+			}
+		} else {
+			int hashCode = key.hashCode();
+			for (int i = 0; i < _size; i++) {
+				Object existingKey = _keys[i];
+				if (existingKey == key || (existingKey != null && existingKey.hashCode() == hashCode && key.equals(existingKey))) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * _EntryIterator walks the arrays in order; its entries write through to
+	 * the map.
+	 */
+	protected class _EntryIterator implements Iterator<Map.Entry<K, V>> {
+		private int _nextIndex;
+
+		private int _lastIndex = -1;
+
+		private int _expectedModCount = _modCount;
+
+		public boolean hasNext() {
+			return _nextIndex < _size;
+		}
+
+		public Map.Entry<K, V> next() {
+			if (_expectedModCount != _modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (_nextIndex >= _size) {
+				throw new NoSuchElementException();
+			}
+			_lastIndex = _nextIndex++;
+			return new _Entry(_lastIndex);
+		}
+
+		public void remove() {
+			if (_lastIndex < 0) {
+				throw new IllegalStateException();
+			}
+			if (_expectedModCount != _modCount) {
+				throw new ConcurrentModificationException();
+			}
+			_removeAt(_lastIndex);
+			_nextIndex = _lastIndex;
+			_lastIndex = -1;
+			_expectedModCount = _modCount;
+		}
+	}
+
+	/**
+	 * _Entry is a view of one slot of the arrays.
+	 */
+	protected class _Entry implements Map.Entry<K, V> {
+		private int _index;
+
+		public _Entry(int index) {
+			_index = index;
+		}
+
+		@SuppressWarnings("unchecked")
+		public K getKey() {
+			return (K) _keys[_index];
+		}
+
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V) _values[_index];
+		}
+
+		@SuppressWarnings("unchecked")
+		public V setValue(V value) {
+			if (_canonicalizer != null) {
+				value = (V) _canonicalizer.canonicalize(value);
+			}
+			V oldValue = (V) _values[_index];
+			_values[_index] = value;
+			return oldValue;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+			Object key = getKey();
+			Object value = getValue();
+			return (key == null ? entry.getKey() == null : key.equals(entry.getKey())) && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			Object key = getKey();
+			Object value = getValue();
+			return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
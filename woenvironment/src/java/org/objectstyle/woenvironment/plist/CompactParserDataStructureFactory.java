@@ -0,0 +1,65 @@
+package org.objectstyle.woenvironment.plist;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * CompactParserDataStructureFactory is the memory-optimized counterpart of
+ * SimpleParserDataStructureFactory. Dictionaries become insertion-ordered
+ * CompactMaps, arrays become ArrayLists that start small, and String keys and
+ * values are canonicalized through a StringCanonicalizer (the shared one by
+ * default), so that property lists that repeat the same keys over and over
+ * only retain each of them once.
+ */
+public class CompactParserDataStructureFactory implements ParserDataStructureFactory {
+	private StringCanonicalizer _canonicalizer;
+
+	public CompactParserDataStructureFactory() {
+		this(StringCanonicalizer.sharedCanonicalizer());
+	}
+
+	public CompactParserDataStructureFactory(StringCanonicalizer canonicalizer) {
+		_canonicalizer = canonicalizer;
+	}
+
+	public StringCanonicalizer getCanonicalizer() {
+		return _canonicalizer;
+	}
+
+	public Collection<Object> createCollection(String keyPath) {
+		return new CanonicalizingList(_canonicalizer);
+	}
+
+	public Map<Object, Object> createMap(String keyPath) {
+		return new CompactMap<Object, Object>(_canonicalizer);
+	}
+
+	/**
+	 * CanonicalizingList is an ArrayList that canonicalizes the Strings that
+	 * are added to it.
+	 */
+	public static class CanonicalizingList extends ArrayList<Object> {
+		private StringCanonicalizer _canonicalizer;
+
+		public CanonicalizingList(StringCanonicalizer canonicalizer) {
+			super(4);
+			_canonicalizer = canonicalizer;
+		}
+
+		@Override
+		public boolean add(Object o) {
+			return super.add(_canonicalizer.canonicalize(o));
+		}
+
+		@Override
+		public void add(int index, Object element) {
+			super.add(index, _canonicalizer.canonicalize(element));
+		}
+
+		@Override
+		public Object set(int index, Object element) {
+			return super.set(index, _canonicalizer.canonicalize(element));
+		}
+	}
+}
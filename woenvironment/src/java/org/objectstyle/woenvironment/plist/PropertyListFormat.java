@@ -0,0 +1,16 @@
+package org.objectstyle.woenvironment.plist;
+
+/**
+ * The on-disk formats that property lists can be written in.
+ */
+public enum PropertyListFormat {
+	/**
+	 * The OpenStep ASCII format written by WOLPropertyListSerialization.
+	 */
+	OPENSTEP,
+
+	/**
+	 * The bplist00 format written by WOLBinaryPropertyListSerialization.
+	 */
+	BINARY;
+}
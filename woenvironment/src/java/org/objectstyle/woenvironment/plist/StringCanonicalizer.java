@@ -0,0 +1,94 @@
+package org.objectstyle.woenvironment.plist;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StringCanonicalizer maps equal short strings onto a single instance, so the
+ * keys and small values that repeat across thousands of parsed dictionaries
+ * ("name", "columnName", "Y", "varchar" ...) are only retained once. The table
+ * is bounded: once it holds maxEntries strings, strings that are not in it yet
+ * are returned as they are. Unlike String.intern, the strings are not kept in
+ * the VM-wide pool and go away with the canonicalizer.
+ */
+public class StringCanonicalizer {
+	public static final int DEFAULT_MAX_ENTRIES = 16384;
+
+	public static final int DEFAULT_MAX_LENGTH = 48;
+
+	private static final StringCanonicalizer _sharedCanonicalizer = new StringCanonicalizer(StringCanonicalizer.DEFAULT_MAX_ENTRIES, StringCanonicalizer.DEFAULT_MAX_LENGTH);
+
+	private ConcurrentHashMap<String, String> _strings;
+
+	private int _maxEntries;
+
+	private int _maxLength;
+
+	/**
+	 * Returns the canonicalizer shared by everything that doesn't provide its
+	 * own, so strings are shared across all the files that are parsed.
+	 */
+	public static StringCanonicalizer sharedCanonicalizer() {
+		return _sharedCanonicalizer;
+	}
+
+	/**
+	 * Constructs a new StringCanonicalizer.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of strings in the table
+	 * @param maxLength
+	 *            the maximum length of strings that are canonicalized
+	 */
+	public StringCanonicalizer(int maxEntries, int maxLength) {
+		_maxEntries = maxEntries;
+		_maxLength = maxLength;
+		_strings = new ConcurrentHashMap<String, String>();
+	}
+
+	/**
+	 * Returns the canonical instance of the given string, or the string itself
+	 * if it is too long or the table is full.
+	 */
+	public String canonicalize(String string) {
+		if (string == null || string.length() > _maxLength) {
+			return string;
+		}
+		String canonicalString = _strings.get(string);
+		if (canonicalString == null) {
+			if (_strings.size() >= _maxEntries) {
+				canonicalString = string;
+			} else {
+				// drop the reference to a larger char[] that a substring may
+				// share
+				String compactString = new String(string);
+				canonicalString = _strings.putIfAbsent(compactString, compactString);
+				if (canonicalString == null) {
+					canonicalString = compactString;
+				}
+			}
+		}
+		return canonicalString;
+	}
+
+	/**
+	 * Returns the canonical instance of the given object if it is a string, or
+	 * the object itself otherwise.
+	 */
+	public Object canonicalize(Object object) {
+		return object instanceof String ? canonicalize((String) object) : object;
+	}
+
+	/**
+	 * Returns the number of strings in the table.
+	 */
+	public int size() {
+		return _strings.size();
+	}
+
+	/**
+	 * Empties the table.
+	 */
+	public void clear() {
+		_strings.clear();
+	}
+}
@@ -0,0 +1,615 @@
+package org.objectstyle.woenvironment.plist;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization.EMMutableData;
+
+/**
+ * WOLBinaryPropertyListSerialization reads and writes property lists in the
+ * Apple bplist00 format. Parsing produces the same kinds of object graphs as
+ * WOLPropertyListSerialization (maps and collections created by a
+ * ParserDataStructureFactory with the same key paths, Strings, and
+ * EMMutableData for data), plus Booleans, Numbers and Dates for the binary
+ * types that have no ASCII equivalent.
+ *
+ * Strings, numbers and booleans are uniqued when writing, and each uniqued
+ * object is decoded only once when reading.
+ */
+@SuppressWarnings("all")
+public class WOLBinaryPropertyListSerialization {
+	private static final byte[] MAGIC = { 'b', 'p', 'l', 'i', 's', 't', '0', '0' };
+
+	private static final int TRAILER_LENGTH = 32;
+
+	/**
+	 * Seconds between 1970-01-01 and 2001-01-01, the bplist date epoch.
+	 */
+	private static final long EPOCH_OFFSET_MILLIS = 978307200000L;
+
+	private WOLBinaryPropertyListSerialization() {
+		throw new IllegalStateException("Can't instantiate an instance of class " + getClass().getName());
+	}
+
+	/**
+	 * Returns whether or not the given bytes start with the bplist00 header.
+	 */
+	public static boolean isBinaryPropertyList(byte[] bytes) {
+		boolean binary = bytes != null && bytes.length >= MAGIC.length;
+		for (int i = 0; binary && i < MAGIC.length; i++) {
+			binary = bytes[i] == MAGIC[i];
+		}
+		return binary;
+	}
+
+	public static Object propertyListFromBytes(byte[] bytes) throws PropertyListParserException {
+		return WOLBinaryPropertyListSerialization.propertyListFromBytes(bytes, new SimpleParserDataStructureFactory());
+	}
+
+	public static Object propertyListFromBytes(byte[] bytes, ParserDataStructureFactory factory) throws PropertyListParserException {
+		return new _Reader(bytes, factory).read();
+	}
+
+	public static Object propertyListWithPathURL(URL url, ParserDataStructureFactory factory) throws IOException, PropertyListParserException {
+		InputStream is = url.openStream();
+		try {
+			return propertyListWithContentsOfInputStream(is, factory);
+		} finally {
+			is.close();
+		}
+	}
+
+	public static Object propertyListWithContentsOfInputStream(InputStream inputStream, ParserDataStructureFactory factory) throws IOException, PropertyListParserException {
+		return propertyListFromBytes(WOLPropertyListSerialization.bytesFromInputStream(inputStream), factory);
+	}
+
+	public static Object propertyListWithContentsOfFile(String path, ParserDataStructureFactory factory) throws IOException, PropertyListParserException {
+		return propertyListWithContentsOfFile(new File(path), factory);
+	}
+
+	public static Object propertyListWithContentsOfFile(File file, ParserDataStructureFactory factory) throws IOException, PropertyListParserException {
+		return propertyListFromBytes(WOLPropertyListSerialization.bytesFromFile(file), factory);
+	}
+
+	public static byte[] bytesFromPropertyList(Object plist) throws PropertyListParserException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			propertyListToStream(baos, plist);
+		} catch (IOException e) {
+			throw new PropertyListParserException("Failed to write binary property list.", e);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Saves property list to file in bplist00 format.
+	 *
+	 * @throws PropertyListParserException
+	 * @throws IOException
+	 */
+	public static void propertyListToFile(File f, Object plist) throws PropertyListParserException, IOException {
+		OutputStream os = new FileOutputStream(f);
+		try {
+			propertyListToStream(os, plist);
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * Writes property list to stream in bplist00 format. The stream is flushed
+	 * but not closed.
+	 *
+	 * @throws PropertyListParserException
+	 * @throws IOException
+	 */
+	public static void propertyListToStream(OutputStream os, Object plist) throws PropertyListParserException, IOException {
+		if (plist != null) {
+			new _Writer().write(plist, os);
+		}
+	}
+
+	/**
+	 * _Reader decodes a complete bplist00 document held in memory.
+	 */
+	protected static class _Reader {
+		private byte[] _bytes;
+
+		private ParserDataStructureFactory _factory;
+
+		private int _objectRefSize;
+
+		private long[] _offsets;
+
+		private Object[] _uniquedObjects;
+
+		private boolean[] _reading;
+
+		public _Reader(byte[] bytes, ParserDataStructureFactory factory) {
+			_bytes = bytes;
+			_factory = factory;
+		}
+
+		public Object read() throws PropertyListParserException {
+			if (!isBinaryPropertyList(_bytes)) {
+				throw new PropertyListParserException("The data is not a bplist00 property list.");
+			}
+			if (_bytes.length < MAGIC.length + TRAILER_LENGTH) {
+				throw new PropertyListParserException("The binary property list is truncated (" + _bytes.length + " bytes).");
+			}
+			int trailer = _bytes.length - TRAILER_LENGTH;
+			int offsetIntSize = _bytes[trailer + 6] & 0xFF;
+			_objectRefSize = _bytes[trailer + 7] & 0xFF;
+			long objectCount = _readLong(trailer + 8, 8);
+			long topObject = _readLong(trailer + 16, 8);
+			long offsetTableOffset = _readLong(trailer + 24, 8);
+			if (offsetIntSize < 1 || offsetIntSize > 8 || _objectRefSize < 1 || _objectRefSize > 8) {
+				throw new PropertyListParserException("The binary property list has an invalid trailer (offset size " + offsetIntSize + ", reference size " + _objectRefSize + ").");
+			}
+			if (objectCount < 1 || topObject < 0 || topObject >= objectCount || offsetTableOffset < MAGIC.length || offsetTableOffset + objectCount * offsetIntSize > trailer) {
+				throw new PropertyListParserException("The binary property list has an invalid trailer (" + objectCount + " objects, top object " + topObject + ", offset table at " + offsetTableOffset + ").");
+			}
+			int count = (int) objectCount;
+			_offsets = new long[count];
+			for (int i = 0; i < count; i++) {
+				_offsets[i] = _readLong((int) offsetTableOffset + i * offsetIntSize, offsetIntSize);
+				if (_offsets[i] < MAGIC.length || _offsets[i] >= offsetTableOffset) {
+					throw new PropertyListParserException("The binary property list has an invalid offset for object " + i + ": " + _offsets[i] + ".");
+				}
+			}
+			_uniquedObjects = new Object[count];
+			_reading = new boolean[count];
+			return _readObject((int) topObject, WOLPropertyListParser.ROOT);
+		}
+
+		private Object _readObject(int objectIndex, String keyPath) throws PropertyListParserException {
+			if (objectIndex < 0 || objectIndex >= _offsets.length) {
+				throw new PropertyListParserException("The binary property list references a nonexistent object " + objectIndex + ".");
+			}
+			Object object = _uniquedObjects[objectIndex];
+			if (object != null) {
+				return object;
+			}
+			if (_reading[objectIndex]) {
+				throw new PropertyListParserException("The binary property list contains a reference cycle at object " + objectIndex + ".");
+			}
+			_reading[objectIndex] = true;
+			int offset = (int) _offsets[objectIndex];
+			int marker = _bytes[offset] & 0xFF;
+			int type = marker >> 4;
+			int info = marker & 0x0F;
+			switch (type) {
+			case 0x0:
+				if (info == 0x8) {
+					object = Boolean.FALSE;
+				} else if (info == 0x9) {
+					object = Boolean.TRUE;
+				} else {
+					throw new PropertyListParserException("The binary property list contains an unsupported object (marker 0x" + Integer.toHexString(marker) + ") at offset " + offset + ".");
+				}
+				_uniquedObjects[objectIndex] = object;
+				break;
+			case 0x1:
+				object = _readInteger(offset + 1, 1 << info);
+				_uniquedObjects[objectIndex] = object;
+				break;
+			case 0x2:
+				if (info == 2) {
+					object = Float.valueOf(Float.intBitsToFloat((int) _readLong(offset + 1, 4)));
+				} else if (info == 3) {
+					object = Double.valueOf(Double.longBitsToDouble(_readLong(offset + 1, 8)));
+				} else {
+					throw new PropertyListParserException("The binary property list contains a real of unsupported size " + (1 << info) + " at offset " + offset + ".");
+				}
+				_uniquedObjects[objectIndex] = object;
+				break;
+			case 0x3:
+				double seconds = Double.longBitsToDouble(_readLong(offset + 1, 8));
+				object = new Date(EPOCH_OFFSET_MILLIS + (long) (seconds * 1000));
+				_uniquedObjects[objectIndex] = object;
+				break;
+			case 0x4: {
+				int[] lengthAndStart = _readLength(offset, info);
+				_checkRange(lengthAndStart[1], lengthAndStart[0]);
+				EMMutableData data = new EMMutableData(lengthAndStart[0]);
+				for (int i = 0; i < lengthAndStart[0]; i++) {
+					data.appendByte(_bytes[lengthAndStart[1] + i]);
+				}
+				object = data;
+				break;
+			}
+			case 0x5: {
+				int[] lengthAndStart = _readLength(offset, info);
+				_checkRange(lengthAndStart[1], lengthAndStart[0]);
+				char[] chars = new char[lengthAndStart[0]];
+				for (int i = 0; i < chars.length; i++) {
+					chars[i] = (char) (_bytes[lengthAndStart[1] + i] & 0xFF);
+				}
+				object = new String(chars);
+				_uniquedObjects[objectIndex] = object;
+				break;
+			}
+			case 0x6: {
+				int[] lengthAndStart = _readLength(offset, info);
+				_checkRange(lengthAndStart[1], lengthAndStart[0] * 2);
+				char[] chars = new char[lengthAndStart[0]];
+				for (int i = 0; i < chars.length; i++) {
+					int charOffset = lengthAndStart[1] + i * 2;
+					chars[i] = (char) (((_bytes[charOffset] & 0xFF) << 8) | (_bytes[charOffset + 1] & 0xFF));
+				}
+				object = new String(chars);
+				_uniquedObjects[objectIndex] = object;
+				break;
+			}
+			case 0xA: {
+				int[] lengthAndStart = _readLength(offset, info);
+				_checkRange(lengthAndStart[1], lengthAndStart[0] * _objectRefSize);
+				Collection<Object> array = _factory.createCollection(keyPath);
+				for (int i = 0; i < lengthAndStart[0]; i++) {
+					int ref = (int) _readLong(lengthAndStart[1] + i * _objectRefSize, _objectRefSize);
+					array.add(_readObject(ref, keyPath));
+				}
+				object = array;
+				break;
+			}
+			case 0xD: {
+				int[] lengthAndStart = _readLength(offset, info);
+				int count = lengthAndStart[0];
+				_checkRange(lengthAndStart[1], count * 2 * _objectRefSize);
+				Map<Object, Object> dictionary = _factory.createMap(keyPath);
+				for (int i = 0; i < count; i++) {
+					int keyRef = (int) _readLong(lengthAndStart[1] + i * _objectRefSize, _objectRefSize);
+					int valueRef = (int) _readLong(lengthAndStart[1] + (count + i) * _objectRefSize, _objectRefSize);
+					Object key = _readObject(keyRef, keyPath);
+					if (!(key instanceof String)) {
+						throw new PropertyListParserException("The binary property list contains a dictionary key that is not a String at offset " + offset + ".");
+					}
+					dictionary.put(key, _readObject(valueRef, keyPath + "." + key));
+				}
+				object = dictionary;
+				break;
+			}
+			default:
+				throw new PropertyListParserException("The binary property list contains an unsupported object (marker 0x" + Integer.toHexString(marker) + ") at offset " + offset + ".");
+			}
+			_reading[objectIndex] = false;
+			return object;
+		}
+
+		/**
+		 * Returns the length of a data, string or container object and the
+		 * offset its contents start at.
+		 */
+		private int[] _readLength(int offset, int info) throws PropertyListParserException {
+			int length;
+			int start;
+			if (info == 0x0F) {
+				int lengthMarker = _bytes[offset + 1] & 0xFF;
+				if ((lengthMarker >> 4) != 0x1) {
+					throw new PropertyListParserException("The binary property list contains an invalid length at offset " + offset + ".");
+				}
+				int lengthSize = 1 << (lengthMarker & 0x0F);
+				long longLength = _readLong(offset + 2, lengthSize);
+				if (longLength < 0 || longLength > Integer.MAX_VALUE) {
+					throw new PropertyListParserException("The binary property list contains an invalid length " + longLength + " at offset " + offset + ".");
+				}
+				length = (int) longLength;
+				start = offset + 2 + lengthSize;
+			} else {
+				length = info;
+				start = offset + 1;
+			}
+			return new int[] { length, start };
+		}
+
+		private Number _readInteger(int offset, int size) throws PropertyListParserException {
+			Number number;
+			if (size == 16) {
+				_checkRange(offset, size);
+				byte[] bigBytes = new byte[size];
+				System.arraycopy(_bytes, offset, bigBytes, 0, size);
+				BigInteger bigInteger = new BigInteger(bigBytes);
+				number = (bigInteger.bitLength() < 64) ? (Number) Long.valueOf(bigInteger.longValue()) : (Number) bigInteger;
+			} else if (size <= 8) {
+				long value = _readLong(offset, size);
+				if (size < 8 && value > Integer.MAX_VALUE) {
+					number = Long.valueOf(value);
+				} else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+					number = Integer.valueOf((int) value);
+				} else {
+					number = Long.valueOf(value);
+				}
+			} else {
+				throw new PropertyListParserException("The binary property list contains an integer of unsupported size " + size + " at offset " + offset + ".");
+			}
+			return number;
+		}
+
+		/**
+		 * Reads an unsigned big-endian value; 8-byte values are returned as
+		 * signed longs.
+		 */
+		private long _readLong(int offset, int size) throws PropertyListParserException {
+			_checkRange(offset, size);
+			long value = 0;
+			for (int i = 0; i < size; i++) {
+				value = (value << 8) | (_bytes[offset + i] & 0xFF);
+			}
+			return value;
+		}
+
+		private void _checkRange(int offset, int length) throws PropertyListParserException {
+			if (offset < 0 || length < 0 || offset + length > _bytes.length) {
+				throw new PropertyListParserException("The binary property list is truncated: " + length + " bytes at offset " + offset + " extend past the end of the data.");
+			}
+		}
+	}
+
+	/**
+	 * _Writer flattens a property list into a uniqued object table and writes
+	 * it as a bplist00 document.
+	 */
+	protected static class _Writer {
+		private List<Object> _objects;
+
+		private List<int[]> _references;
+
+		private Map<Object, Integer> _uniquedObjects;
+
+		private Map<Object, Integer> _containers;
+
+		public _Writer() {
+			_objects = new ArrayList<Object>();
+			_references = new ArrayList<int[]>();
+			_uniquedObjects = new HashMap<Object, Integer>();
+			_containers = new IdentityHashMap<Object, Integer>();
+		}
+
+		public void write(Object plist, OutputStream os) throws IOException, PropertyListParserException {
+			_flatten(plist);
+			int objectCount = _objects.size();
+			int objectRefSize = _bytesNeeded(objectCount - 1);
+
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+			out.write(MAGIC);
+			long[] offsets = new long[objectCount];
+			for (int i = 0; i < objectCount; i++) {
+				offsets[i] = out.size();
+				_writeObject(out, _objects.get(i), _references.get(i), objectRefSize);
+			}
+			long offsetTableOffset = out.size();
+			int offsetIntSize = _bytesNeeded(offsetTableOffset);
+			for (int i = 0; i < objectCount; i++) {
+				_writeLong(out, offsets[i], offsetIntSize);
+			}
+			out.write(new byte[6]);
+			out.writeByte(offsetIntSize);
+			out.writeByte(objectRefSize);
+			out.writeLong(objectCount);
+			out.writeLong(0);
+			out.writeLong(offsetTableOffset);
+			out.flush();
+		}
+
+		/**
+		 * Adds the object (and everything it contains) to the object table and
+		 * returns its index.
+		 */
+		private int _flatten(Object object) throws PropertyListParserException {
+			Integer existingIndex;
+			if (object instanceof List || object instanceof Set) {
+				existingIndex = _containers.get(object);
+				if (existingIndex == null) {
+					int index = _addObject(object, null);
+					_containers.put(object, Integer.valueOf(index));
+					List<Integer> refs = new ArrayList<Integer>();
+					for (Object child : (Collection) object) {
+						if (child != null) {
+							refs.add(Integer.valueOf(_flatten(child)));
+						}
+					}
+					_references.set(index, _toArray(refs));
+					existingIndex = Integer.valueOf(index);
+				}
+			} else if (object instanceof Map) {
+				existingIndex = _containers.get(object);
+				if (existingIndex == null) {
+					Map dictionary = (Map) object;
+					int index = _addObject(object, null);
+					_containers.put(object, Integer.valueOf(index));
+					List<Integer> keyRefs = new ArrayList<Integer>();
+					List<Integer> valueRefs = new ArrayList<Integer>();
+					for (Object key : _sortedKeys(dictionary)) {
+						Object value = dictionary.get(key);
+						if (value != null) {
+							keyRefs.add(Integer.valueOf(_flatten(key)));
+							valueRefs.add(Integer.valueOf(_flatten(value)));
+						}
+					}
+					keyRefs.addAll(valueRefs);
+					_references.set(index, _toArray(keyRefs));
+					existingIndex = Integer.valueOf(index);
+				}
+			} else if (object instanceof EMMutableData) {
+				existingIndex = _containers.get(object);
+				if (existingIndex == null) {
+					existingIndex = Integer.valueOf(_addObject(object, null));
+					_containers.put(object, existingIndex);
+				}
+			} else {
+				Object uniqueObject = _uniqueValue(object);
+				existingIndex = _uniquedObjects.get(uniqueObject);
+				if (existingIndex == null) {
+					existingIndex = Integer.valueOf(_addObject(uniqueObject, null));
+					_uniquedObjects.put(uniqueObject, existingIndex);
+				}
+			}
+			return existingIndex.intValue();
+		}
+
+		/**
+		 * Returns the value that will be written for a scalar; anything that
+		 * has no binary representation is written as its toString, just like
+		 * the ASCII format does.
+		 */
+		private Object _uniqueValue(Object object) {
+			Object value;
+			if (object instanceof String || object instanceof Boolean || object instanceof Date) {
+				value = object;
+			} else if (object instanceof Integer || object instanceof Long || object instanceof Short || object instanceof Byte) {
+				value = Long.valueOf(((Number) object).longValue());
+			} else if (object instanceof Float || object instanceof Double) {
+				value = object;
+			} else {
+				value = object.toString();
+			}
+			return value;
+		}
+
+		private int _addObject(Object object, int[] refs) {
+			_objects.add(object);
+			_references.add(refs);
+			return _objects.size() - 1;
+		}
+
+		private List _sortedKeys(Map dictionary) throws PropertyListParserException {
+			List keys = new ArrayList(dictionary.keySet());
+			try {
+				Collections.sort(keys);
+			} catch (Exception e) {
+				keys = new ArrayList(dictionary.keySet());
+			}
+			for (int i = 0; i < keys.size(); i++) {
+				Object key = keys.get(i);
+				if (key == null) {
+					throw new PropertyListParserException("Property list generation failed while attempting to write hashtable. Property list dictionaries must have String's as keys.  The attempkey was '" + key + "'.");
+				} else if (!(key instanceof String)) {
+					keys.set(i, key.toString());
+				}
+			}
+			return keys;
+		}
+
+		private void _writeObject(DataOutputStream out, Object object, int[] refs, int objectRefSize) throws IOException {
+			if (object instanceof Boolean) {
+				out.writeByte(((Boolean) object).booleanValue() ? 0x09 : 0x08);
+			} else if (object instanceof Long) {
+				_writeInteger(out, ((Long) object).longValue());
+			} else if (object instanceof Float) {
+				out.writeByte(0x22);
+				out.writeFloat(((Float) object).floatValue());
+			} else if (object instanceof Double) {
+				out.writeByte(0x23);
+				out.writeDouble(((Double) object).doubleValue());
+			} else if (object instanceof Date) {
+				out.writeByte(0x33);
+				out.writeDouble((((Date) object).getTime() - EPOCH_OFFSET_MILLIS) / 1000.0);
+			} else if (object instanceof EMMutableData) {
+				byte[] bytes = ((EMMutableData) object).bytes();
+				_writeMarker(out, 0x4, bytes.length);
+				out.write(bytes);
+			} else if (object instanceof String) {
+				String string = (String) object;
+				int length = string.length();
+				boolean ascii = true;
+				for (int i = 0; ascii && i < length; i++) {
+					ascii = string.charAt(i) < 0x80;
+				}
+				if (ascii) {
+					_writeMarker(out, 0x5, length);
+					out.writeBytes(string);
+				} else {
+					_writeMarker(out, 0x6, length);
+					out.writeChars(string);
+				}
+			} else if (object instanceof Map) {
+				_writeMarker(out, 0xD, refs.length / 2);
+				_writeReferences(out, refs, objectRefSize);
+			} else {
+				_writeMarker(out, 0xA, refs.length);
+				_writeReferences(out, refs, objectRefSize);
+			}
+		}
+
+		private void _writeMarker(DataOutputStream out, int type, int length) throws IOException {
+			if (length < 0x0F) {
+				out.writeByte((type << 4) | length);
+			} else {
+				out.writeByte((type << 4) | 0x0F);
+				_writeInteger(out, length);
+			}
+		}
+
+		private void _writeInteger(DataOutputStream out, long value) throws IOException {
+			if (value < 0) {
+				out.writeByte(0x13);
+				out.writeLong(value);
+			} else {
+				int size = _bytesNeeded(value);
+				if (size == 8) {
+					out.writeByte(0x13);
+				} else {
+					out.writeByte(0x10 | (size == 1 ? 0 : size == 2 ? 1 : 2));
+				}
+				_writeLong(out, value, size);
+			}
+		}
+
+		private void _writeReferences(DataOutputStream out, int[] refs, int objectRefSize) throws IOException {
+			for (int i = 0; i < refs.length; i++) {
+				_writeLong(out, refs[i], objectRefSize);
+			}
+		}
+
+		private void _writeLong(DataOutputStream out, long value, int size) throws IOException {
+			for (int i = size - 1; i >= 0; i--) {
+				out.writeByte((int) (value >> (8 * i)));
+			}
+		}
+
+		/**
+		 * Returns 1, 2, 4 or 8 -- the number of bytes needed for an unsigned
+		 * value.
+		 */
+		private int _bytesNeeded(long value) {
+			int size;
+			if (value < 0) {
+				size = 8;
+			} else if (value <= 0xFFL) {
+				size = 1;
+			} else if (value <= 0xFFFFL) {
+				size = 2;
+			} else if (value <= 0xFFFFFFFFL) {
+				size = 4;
+			} else {
+				size = 8;
+			}
+			return size;
+		}
+
+		private int[] _toArray(List<Integer> list) {
+			int[] array = new int[list.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = list.get(i).intValue();
+			}
+			return array;
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package org.objectstyle.woenvironment.plist;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * WOLLazyPropertyList is a read-only view of an OpenStep property list whose
+ * top-level object is a dictionary. Creating it memory-maps the file and makes
+ * one structural scan that records where each top-level key and value starts
+ * and ends, without decoding any values. A value (and everything nested in it)
+ * is parsed the first time it is requested and then cached. Keys, size and
+ * containsKey never decode values.
+ * <p>
+ * Values are parsed with WOLPropertyListParser, using the same key paths
+ * ("root.key") that a full parse would use, so factories such as the
+ * EOModeler one still see the structure they expect. The top-level map itself
+ * is not created by the factory.
+ * <p>
+ * Lazy parsing relies on the structural characters being single ASCII bytes,
+ * which is the case for UTF-8 and the single byte encodings. For other
+ * platform encodings, for binary property lists and for documents that are
+ * not dictionaries, the propertyListWith... methods fall back to a full parse.
+ * Note that on some platforms a mapped file can't be replaced until the
+ * mapping has been garbage collected.
+ */
+public class WOLLazyPropertyList extends AbstractMap<Object, Object> {
+	private static final Object NOT_DECODED = new Object();
+
+	private ByteBuffer _buffer;
+
+	private Charset _charset;
+
+	private ParserDataStructureFactory _factory;
+
+	private List<Object> _keys;
+
+	private List<int[]> _valueRanges;
+
+	private Map<Object, Integer> _indexes;
+
+	private Object[] _values;
+
+	private Set<Map.Entry<Object, Object>> _entrySet;
+
+	/**
+	 * Returns a lazy view of the given file if it contains an OpenStep
+	 * dictionary, or else the fully parsed property list.
+	 */
+	public static Object propertyListWithContentsOfFile(File file, ParserDataStructureFactory factory) throws IOException, PropertyListParserException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel channel = fis.getChannel();
+			// the mapping stays valid after the channel has been closed
+			return WOLLazyPropertyList.propertyListWithContentsOfBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), factory);
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Returns a lazy view of the given bytes if they contain an OpenStep
+	 * dictionary, or else the fully parsed property list. The buffer must not
+	 * be modified afterwards.
+	 */
+	public static Object propertyListWithContentsOfBuffer(ByteBuffer buffer, ParserDataStructureFactory factory) throws PropertyListParserException {
+		Charset charset = Charset.defaultCharset();
+		int start = buffer.position();
+		if (!_isBinaryPropertyList(buffer) && WOLLazyPropertyList._isAsciiCompatible(charset)) {
+			int index = WOLLazyPropertyList._skipWhitespaceAndComments(buffer, start);
+			if (index != -1 && buffer.get(index) == '{') {
+				return new WOLLazyPropertyList(buffer, charset, factory);
+			}
+		}
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return WOLPropertyListSerialization._Utilities.propertyListFromBytes(bytes, factory);
+	}
+
+	protected WOLLazyPropertyList(ByteBuffer buffer, Charset charset, ParserDataStructureFactory factory) throws PropertyListParserException {
+		_buffer = buffer;
+		_charset = charset;
+		_factory = factory;
+		_keys = new ArrayList<Object>();
+		_valueRanges = new ArrayList<int[]>();
+		_indexes = new HashMap<Object, Integer>();
+		_scan();
+		_values = new Object[_keys.size()];
+		for (int i = 0; i < _values.length; i++) {
+			_values[i] = WOLLazyPropertyList.NOT_DECODED;
+		}
+	}
+
+	public ParserDataStructureFactory getFactory() {
+		return _factory;
+	}
+
+	@Override
+	public int size() {
+		return _keys.size();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return _indexes.containsKey(key);
+	}
+
+	@Override
+	public Object get(Object key) {
+		Integer index = _indexes.get(key);
+		return index == null ? null : _valueAt(index.intValue());
+	}
+
+	/**
+	 * Returns whether or not the value for the given key has been parsed yet.
+	 */
+	public synchronized boolean isDecoded(Object key) {
+		Integer index = _indexes.get(key);
+		return index != null && _values[index.intValue()] != WOLLazyPropertyList.NOT_DECODED;
+	}
+
+	@Override
+	public Set<Map.Entry<Object, Object>> entrySet() {
+		if (_entrySet == null) {
+			_entrySet = new AbstractSet<Map.Entry<Object, Object>>() {
+				@Override
+				public int size() {
+					return _keys.size();
+				}
+
+				@Override
+				public Iterator<Map.Entry<Object, Object>> iterator() {
+					return new _EntryIterator();
+				}
+			};
+		}
+		return _entrySet;
+	}
+
+	protected synchronized Object _valueAt(int index) {
+		Object value = _values[index];
+		if (value == WOLLazyPropertyList.NOT_DECODED) {
+			int[] range = _valueRanges.get(index);
+			try {
+				value = new WOLPropertyListParser(_factory).parse(_decode(range[0], range[1]), WOLPropertyListParser.ROOT + "." + _keys.get(index));
+			} catch (PropertyListParserException e) {
+				throw new IllegalArgumentException("Property list parsing failed while attempting to read the value of " + _keys.get(index) + ".", e);
+			}
+			_values[index] = value;
+		}
+		return value;
+	}
+
+	protected char[] _decode(int start, int end) {
+		ByteBuffer range = _buffer.duplicate();
+		range.limit(end);
+		range.position(start);
+		CharBuffer chars = _charset.decode(range);
+		char[] characters = new char[chars.remaining()];
+		chars.get(characters);
+		return characters;
+	}
+
+	protected void _scan() throws PropertyListParserException {
+		int limit = _buffer.limit();
+		int index = WOLLazyPropertyList._skipWhitespaceAndComments(_buffer, _buffer.position()) + 1;
+		index = WOLLazyPropertyList._skipWhitespaceAndComments(_buffer, index);
+		while (index != -1 && _buffer.get(index) != '}') {
+			int keyStart = index;
+			index = WOLLazyPropertyList._skipKey(_buffer, index);
+			Object key = _decodeKey(keyStart, index == -1 ? limit : index);
+			index = WOLLazyPropertyList._skipWhitespaceAndComments(_buffer, index);
+			if (index == -1 || _buffer.get(index) != '=') {
+				throw new IllegalArgumentException("Property list parsing failed while attempting to read dictionary. Read key " + key + " with no value. At offset: " + keyStart + ".");
+			}
+			index = WOLLazyPropertyList._skipWhitespaceAndComments(_buffer, index + 1);
+			if (index == -1) {
+				throw new IllegalArgumentException("Property list parsing failed while attempting to read dictionary. Read key " + key + " with no value. At offset: " + keyStart + ".");
+			}
+			int valueStart = index;
+			index = WOLLazyPropertyList._skipValue(_buffer, index);
+			int valueEnd = index == -1 ? limit : index;
+			index = WOLLazyPropertyList._skipWhitespaceAndComments(_buffer, index);
+			if (index == -1 || _buffer.get(index) != ';') {
+				throw new IllegalArgumentException("Property list parsing failed while attempting to read dictionary. Read key and value with no terminating semicolon. At offset: " + keyStart + ".");
+			}
+			index = WOLLazyPropertyList._skipWhitespaceAndComments(_buffer, index + 1);
+
+			Integer existingIndex = _indexes.get(key);
+			if (existingIndex == null) {
+				_indexes.put(key, Integer.valueOf(_keys.size()));
+				_keys.add(key);
+				_valueRanges.add(new int[] { valueStart, valueEnd });
+			} else {
+				_valueRanges.set(existingIndex.intValue(), new int[] { valueStart, valueEnd });
+			}
+		}
+		if (index == -1) {
+			throw new IllegalArgumentException("Property list parsing failed while attempting to read dictionary. Exhausted input before end of dictionary was found.");
+		}
+		index = WOLLazyPropertyList._skipWhitespaceAndComments(_buffer, index + 1);
+		if (index != -1) {
+			throw new PropertyListParserException("The property list contained an object, but it appears to be truncated (offset: " + index + ").");
+		}
+	}
+
+	protected Object _decodeKey(int start, int end) throws PropertyListParserException {
+		boolean quoted = _buffer.get(start) == '"';
+		boolean escaped = false;
+		for (int i = start; !escaped && i < end; i++) {
+			escaped = _buffer.get(i) == '\\';
+		}
+		Object key;
+		if (escaped) {
+			key = new WOLPropertyListParser(_factory).parse(_decode(start, end));
+		} else if (quoted) {
+			key = new String(_decode(start + 1, end - 1));
+		} else {
+			key = new String(_decode(start, end));
+		}
+		return key;
+	}
+
+	protected static boolean _isBinaryPropertyList(ByteBuffer buffer) {
+		byte[] header = new byte[Math.min(8, buffer.remaining())];
+		buffer.duplicate().get(header);
+		return WOLBinaryPropertyListSerialization.isBinaryPropertyList(header);
+	}
+
+	protected static boolean _isAsciiCompatible(Charset charset) {
+		boolean compatible = "UTF-8".equals(charset.name()) || "US-ASCII".equals(charset.name());
+		if (!compatible && charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1.0f) {
+			String structuralCharacters = "{}()<>;,=\"\\/* \t\r\n\f_$:.azAZ09";
+			byte[] asciiBytes = new byte[structuralCharacters.length()];
+			for (int i = 0; i < asciiBytes.length; i++) {
+				asciiBytes[i] = (byte) structuralCharacters.charAt(i);
+			}
+			compatible = charset.encode(structuralCharacters).equals(ByteBuffer.wrap(asciiBytes));
+		}
+		return compatible;
+	}
+
+	protected static int _skipKey(ByteBuffer buffer, int index) {
+		byte b = buffer.get(index);
+		if (b == '"') {
+			index = WOLLazyPropertyList._skipQuotedString(buffer, index);
+		} else if (WOLLazyPropertyList._isUnquotedStringByte(b)) {
+			index = WOLLazyPropertyList._skipUnquotedString(buffer, index);
+		} else {
+			throw new IllegalArgumentException("Property list parsing failed while attempting to read dictionary. Failed to read key or key is not a String. At offset: " + index + ".");
+		}
+		return index;
+	}
+
+	protected static int _skipValue(ByteBuffer buffer, int index) {
+		byte b = buffer.get(index);
+		if (b == '"') {
+			index = WOLLazyPropertyList._skipQuotedString(buffer, index);
+		} else if (b == '<') {
+			index = WOLLazyPropertyList._skipData(buffer, index);
+		} else if (b == '(' || b == '{') {
+			index = WOLLazyPropertyList._skipCollection(buffer, index);
+		} else if (WOLLazyPropertyList._isUnquotedStringByte(b)) {
+			index = WOLLazyPropertyList._skipUnquotedString(buffer, index);
+		} else {
+			throw new IllegalArgumentException("Property list parsing failed while attempting to read dictionary. Failed to read value. At offset: " + index + ".");
+		}
+		return index;
+	}
+
+	protected static int _skipCollection(ByteBuffer buffer, int index) {
+		int startIndex = index;
+		int limit = buffer.limit();
+		int depth = 0;
+		while (index < limit) {
+			index = WOLLazyPropertyList._skipWhitespaceAndComments(buffer, index);
+			if (index == -1) {
+				break;
+			}
+			byte b = buffer.get(index);
+			if (b == '(' || b == '{') {
+				depth++;
+				index++;
+			} else if (b == ')' || b == '}') {
+				depth--;
+				index++;
+				if (depth == 0) {
+					return index < limit ? index : -1;
+				}
+			} else if (b == '"') {
+				index = WOLLazyPropertyList._skipQuotedString(buffer, index);
+			} else if (b == '<') {
+				index = WOLLazyPropertyList._skipData(buffer, index);
+			} else if (WOLLazyPropertyList._isUnquotedStringByte(b)) {
+				index = WOLLazyPropertyList._skipUnquotedString(buffer, index);
+			} else {
+				index++;
+			}
+			if (index == -1) {
+				break;
+			}
+		}
+		throw new IllegalArgumentException("Property list parsing failed while attempting to read a collection. Input exhausted before its end was found. Collection began at offset: " + startIndex + ".");
+	}
+
+	protected static int _skipQuotedString(ByteBuffer buffer, int index) {
+		int startIndex = index;
+		int limit = buffer.limit();
+		for (index++; index < limit; index++) {
+			byte b = buffer.get(index);
+			if (b == '\\') {
+				index++;
+			} else if (b == '"') {
+				index++;
+				return index < limit ? index : -1;
+			}
+		}
+		throw new IllegalArgumentException("Property list parsing failed while attempting to read quoted string. Input exhausted before closing quote was found. Opening quote was at offset: " + startIndex + ".");
+	}
+
+	protected static int _skipData(ByteBuffer buffer, int index) {
+		int startIndex = index;
+		int limit = buffer.limit();
+		for (index++; index < limit; index++) {
+			if (buffer.get(index) == '>') {
+				index++;
+				return index < limit ? index : -1;
+			}
+		}
+		throw new IllegalArgumentException("Property list parsing failed while attempting to read data. Input exhausted before data was terminated with '>'. Data began at offset: " + startIndex + ".");
+	}
+
+	protected static int _skipUnquotedString(ByteBuffer buffer, int index) {
+		int limit = buffer.limit();
+		while (index < limit && WOLLazyPropertyList._isUnquotedStringByte(buffer.get(index))) {
+			index++;
+		}
+		return index < limit ? index : -1;
+	}
+
+	protected static int _skipWhitespaceAndComments(ByteBuffer buffer, int index) {
+		int limit = buffer.limit();
+		while (index != -1 && index < limit) {
+			byte b = buffer.get(index);
+			if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f') {
+				index++;
+			} else if (b == '/' && index + 1 < limit && buffer.get(index + 1) == '/') {
+				for (index += 2; index < limit && buffer.get(index) != '\n'; index++) {
+					// DO NOTHING
+				}
+			} else if (b == '/' && index + 1 < limit && buffer.get(index + 1) == '*') {
+				int startIndex = index;
+				for (index += 2; index + 1 < limit && (buffer.get(index) != '*' || buffer.get(index + 1) != '/'); index++) {
+					// DO NOTHING
+				}
+				if (index + 1 >= limit) {
+					throw new IllegalArgumentException("Property list parsing failed while attempting to find closing */ to comment that began at offset: " + startIndex + ".");
+				}
+				index += 2;
+			} else {
+				break;
+			}
+		}
+		return index != -1 && index < limit ? index : -1;
+	}
+
+	protected static boolean _isUnquotedStringByte(byte b) {
+		return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_' || b == '$' || b == ':' || b == '.' || b == '/';
+	}
+
+	/**
+	 * _EntryIterator walks the keys in file order and only parses a value when
+	 * getValue is called on its entry.
+	 */
+	protected class _EntryIterator implements Iterator<Map.Entry<Object, Object>> {
+		private int _index;
+
+		public boolean hasNext() {
+			return _index < _keys.size();
+		}
+
+		public Map.Entry<Object, Object> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final int index = _index++;
+			return new Map.Entry<Object, Object>() {
+				public Object getKey() {
+					return _keys.get(index);
+				}
+
+				public Object getValue() {
+					return _valueAt(index);
+				}
+
+				public Object setValue(Object value) {
+					throw new UnsupportedOperationException("WOLLazyPropertyList is read-only.");
+				}
+
+				@Override
+				public boolean equals(Object obj) {
+					if (!(obj instanceof Map.Entry)) {
+						return false;
+					}
+					Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+					Object value = getValue();
+					return getKey().equals(entry.getKey()) && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+				}
+
+				@Override
+				public int hashCode() {
+					Object value = getValue();
+					return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+				}
+			};
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("WOLLazyPropertyList is read-only.");
+		}
+	}
+}
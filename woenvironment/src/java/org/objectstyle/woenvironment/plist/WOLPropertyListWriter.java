@@ -0,0 +1,417 @@
+package org.objectstyle.woenvironment.plist;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization.EMMutableData;
+
+/**
+ * WOLPropertyListWriter writes OpenStep-style ASCII property lists directly to
+ * an Appendable (a Writer, a StringBuilder, etc.) instead of building the
+ * whole document in memory first. The output is identical to
+ * WOLPropertyListSerialization.stringFromPropertyList: collections and
+ * dictionaries that fit are collapsed onto a single line, which is decided by
+ * rendering at most one line's worth of a value into a small scratch buffer.
+ *
+ * WOLPropertyListWriter has no per-write state and can be shared between
+ * threads.
+ */
+@SuppressWarnings("all")
+public class WOLPropertyListWriter {
+	private static final int ONE_LINE_LIMIT = 79;
+
+	private static final String INDENTATION = "    ";
+
+	/**
+	 * Writes the given property list to the given Appendable.
+	 *
+	 * @param plist
+	 *            the property list to write
+	 * @param out
+	 *            the Appendable to write to
+	 * @throws IOException
+	 *             if the Appendable fails
+	 * @throws PropertyListParserException
+	 *             if the property list contains a dictionary with a null key
+	 */
+	public void write(Object plist, Appendable out) throws IOException, PropertyListParserException {
+		_appendObject(plist, out, 0);
+	}
+
+	/**
+	 * Writes the given property list to the given OutputStream using the given
+	 * encoding. The stream is flushed but not closed.
+	 *
+	 * @param plist
+	 *            the property list to write
+	 * @param out
+	 *            the OutputStream to write to
+	 * @param encoding
+	 *            the encoding to use, or null for the platform default
+	 * @throws IOException
+	 *             if the OutputStream fails
+	 * @throws PropertyListParserException
+	 *             if the property list contains a dictionary with a null key
+	 */
+	public void write(Object plist, OutputStream out, String encoding) throws IOException, PropertyListParserException {
+		Writer writer = new BufferedWriter(encoding == null ? new OutputStreamWriter(out) : new OutputStreamWriter(out, encoding));
+		write(plist, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Returns the property list that parsing this writer's output for the
+	 * given property list would produce with a SimpleParserDataStructureFactory
+	 * (booleans and other objects become strings, null values are dropped,
+	 * etc.), without actually writing it out.
+	 *
+	 * @param plist
+	 *            the property list to normalize
+	 * @return the normalized property list
+	 * @throws PropertyListParserException
+	 *             if the property list contains a dictionary with a null key
+	 */
+	public Object normalizedPropertyList(Object plist) throws PropertyListParserException {
+		Object normalizedPlist;
+		if (plist == null) {
+			normalizedPlist = null;
+		} else if (plist instanceof String || plist instanceof EMMutableData) {
+			normalizedPlist = plist;
+		} else if (plist instanceof List || plist instanceof Set) {
+			List<Object> normalizedCollection = new ArrayList<Object>();
+			for (Object obj : (Collection) plist) {
+				if (obj != null) {
+					normalizedCollection.add(normalizedPropertyList(obj));
+				}
+			}
+			normalizedPlist = normalizedCollection;
+		} else if (plist instanceof Map) {
+			Map dictionary = (Map) plist;
+			Map<Object, Object> normalizedDictionary = new HashMap<Object, Object>();
+			for (Object key : _sortedKeys(dictionary)) {
+				Object value = dictionary.get(key);
+				if (value != null) {
+					normalizedDictionary.put(key, normalizedPropertyList(value));
+				}
+			}
+			normalizedPlist = normalizedDictionary;
+		} else if (plist instanceof Boolean) {
+			normalizedPlist = ((Boolean) plist).booleanValue() ? "true" : "false";
+		} else {
+			normalizedPlist = plist.toString();
+		}
+		return normalizedPlist;
+	}
+
+	private void _appendObject(Object object, Appendable out, int indentionLevel) throws IOException, PropertyListParserException {
+		if (object instanceof String) {
+			_appendString((String) object, out);
+		} else if (object instanceof StringBuffer) {
+			_appendString(((StringBuffer) object).toString(), out);
+		} else if (object instanceof EMMutableData) {
+			_appendData((EMMutableData) object, out);
+		} else if (object instanceof List) {
+			_appendCollection((List) object, out, indentionLevel);
+		} else if (object instanceof Set) {
+			_appendCollection((Set) object, out, indentionLevel);
+		} else if (object instanceof Map) {
+			_appendDictionary((Map) object, out, indentionLevel);
+		} else if (object instanceof Boolean) {
+			String value = ((Boolean) object).booleanValue() ? "true" : "false";
+			_appendString(value, out);
+		} else {
+			_appendString(object.toString(), out);
+		}
+	}
+
+	/**
+	 * Writes a string, quoting it unless it consists only of ASCII letters and
+	 * digits.
+	 */
+	private void _appendString(String string, Appendable out) throws IOException {
+		int length = string.length();
+		boolean shouldQuote = length == 0;
+		for (int i = 0; !shouldQuote && i < length; i++) {
+			char c = string.charAt(i);
+			shouldQuote = !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'));
+		}
+		if (shouldQuote) {
+			out.append('\"');
+			_appendEscapedString(string, out);
+			out.append('\"');
+		} else {
+			out.append(string);
+		}
+	}
+
+	private void _appendEscapedString(String string, Appendable out) throws IOException {
+		int length = string.length();
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			if (c < '\200') {
+				if (c == '\n') {
+					out.append("\\n");
+				} else if (c == '\r') {
+					out.append("\\r");
+				} else if (c == '\t') {
+					out.append("\\t");
+				} else if (c == '"') {
+					out.append("\\\"");
+				} else if (c == '\\') {
+					out.append("\\\\");
+				} else if (c == '\f') {
+					out.append("\\f");
+				} else if (c == '\b') {
+					out.append("\\b");
+				} else if (c == '\007') {
+					out.append("\\a");
+				} else if (c == '\013') {
+					out.append("\\v");
+				} else {
+					out.append(c);
+				}
+			} else {
+				out.append("\\U");
+				out.append(_hexDigitForNibble((c >> 12) & 15));
+				out.append(_hexDigitForNibble((c >> 8) & 15));
+				out.append(_hexDigitForNibble((c >> 4) & 15));
+				out.append(_hexDigitForNibble(c & 15));
+			}
+		}
+	}
+
+	private void _appendData(EMMutableData data, Appendable out) throws IOException {
+		out.append('<');
+		byte bytes[] = data.bytes();
+		for (int i = 0; i < bytes.length; i++) {
+			out.append(_hexDigitForNibble((bytes[i] >> 4) & 15));
+			out.append(_hexDigitForNibble(bytes[i] & 15));
+		}
+		out.append('>');
+	}
+
+	private void _appendCollection(Collection collection, Appendable out, int indentionLevel) throws IOException, PropertyListParserException {
+		out.append('(');
+		if (!collection.isEmpty()) {
+			String oneLine = _oneLineCollection(collection, indentionLevel);
+			if (oneLine != null) {
+				out.append(oneLine);
+			} else {
+				Iterator iter = collection.iterator();
+				for (int i = 0; iter.hasNext(); i++) {
+					Object obj = iter.next();
+					if (obj != null) {
+						if (i > 0) {
+							out.append(", ");
+						}
+						out.append('\n');
+						_appendIndentation(out, indentionLevel + 1);
+						_appendObject(obj, out, indentionLevel + 1);
+					}
+				}
+				out.append('\n');
+				_appendIndentation(out, indentionLevel);
+			}
+		}
+		out.append(')');
+	}
+
+	private String _oneLineCollection(Collection collection, int indentionLevel) throws IOException, PropertyListParserException {
+		StringBuilder oneLine = new StringBuilder(ONE_LINE_LIMIT);
+		Iterator iter = collection.iterator();
+		for (int i = 0; iter.hasNext(); i++) {
+			Object obj = iter.next();
+			if (obj != null) {
+				String item = _renderWithinLimit(obj, indentionLevel + 1, ONE_LINE_LIMIT - oneLine.length());
+				if (item == null) {
+					return null;
+				}
+				if (i > 0) {
+					oneLine.append(", ");
+				}
+				oneLine.append(item);
+			}
+		}
+		return oneLine.length() < ONE_LINE_LIMIT - 1 ? oneLine.toString() : null;
+	}
+
+	private void _appendDictionary(Map dictionary, Appendable out, int indentionLevel) throws IOException, PropertyListParserException {
+		out.append('{');
+		if (!dictionary.isEmpty()) {
+			List keys = _sortedKeys(dictionary);
+			String oneLine = _oneLineDictionary(dictionary, keys, indentionLevel);
+			if (oneLine != null) {
+				out.append(oneLine);
+			} else {
+				for (Object key : keys) {
+					Object value = dictionary.get(key);
+					if (value != null) {
+						out.append('\n');
+						_appendIndentation(out, indentionLevel + 1);
+						_appendString((String) key, out);
+						out.append(" = ");
+						_appendObject(value, out, indentionLevel + 1);
+						out.append("; ");
+					}
+				}
+				out.append('\n');
+				_appendIndentation(out, indentionLevel);
+			}
+		}
+		out.append('}');
+	}
+
+	private String _oneLineDictionary(Map dictionary, List keys, int indentionLevel) throws IOException, PropertyListParserException {
+		StringBuilder oneLine = new StringBuilder(ONE_LINE_LIMIT);
+		for (Object key : keys) {
+			Object value = dictionary.get(key);
+			if (value != null) {
+				String keyString = _renderWithinLimit(key, indentionLevel + 1, ONE_LINE_LIMIT - oneLine.length());
+				if (keyString == null) {
+					return null;
+				}
+				String valueString = _renderWithinLimit(value, indentionLevel + 1, ONE_LINE_LIMIT - oneLine.length() - keyString.length());
+				if (valueString == null) {
+					return null;
+				}
+				oneLine.append(keyString);
+				oneLine.append(" = ");
+				oneLine.append(valueString);
+				oneLine.append("; ");
+			}
+		}
+		return oneLine.length() < ONE_LINE_LIMIT - 1 ? oneLine.toString() : null;
+	}
+
+	/**
+	 * Returns the dictionary's keys as Strings, sorted if they are comparable.
+	 */
+	private List _sortedKeys(Map dictionary) throws PropertyListParserException {
+		Set keySet = dictionary.keySet();
+		List keys = new ArrayList(keySet);
+		try {
+			Collections.sort(keys);
+		} catch (Exception e) {
+			keys = new ArrayList(keySet);
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			Object key = keys.get(i);
+			if (key == null) {
+				throw new PropertyListParserException("Property list generation failed while attempting to write hashtable. Non-String key found in Hashtable. Property list dictionaries must have String's as keys.  The attempkey was '" + key + "'.");
+			} else if (!(key instanceof String)) {
+				keys.set(i, key.toString());
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Renders the given object into a String, or returns null if the rendered
+	 * form would be limit characters or longer.
+	 */
+	private String _renderWithinLimit(Object object, int indentionLevel, int limit) throws IOException, PropertyListParserException {
+		String rendered;
+		if (limit <= 0) {
+			rendered = null;
+		} else {
+			LimitedStringBuilder builder = new LimitedStringBuilder(limit);
+			try {
+				_appendObject(object, builder, indentionLevel);
+				rendered = builder.toString();
+			} catch (LimitExceededException e) {
+				if (e.getBuilder() != builder) {
+					throw e;
+				}
+				rendered = null;
+			}
+		}
+		return rendered;
+	}
+
+	private void _appendIndentation(Appendable out, int indentionLevel) throws IOException {
+		for (int i = 0; i < indentionLevel; i++) {
+			out.append(INDENTATION);
+		}
+	}
+
+	private static final char _hexDigitForNibble(int nibble) {
+		return (char) (nibble <= 9 ? '0' + nibble : 'a' + (nibble - 10));
+	}
+
+	/**
+	 * LimitedStringBuilder is an Appendable that throws a LimitExceededException
+	 * as soon as its length reaches the limit.
+	 */
+	protected static class LimitedStringBuilder implements Appendable {
+		private StringBuilder _builder;
+
+		private int _limit;
+
+		private LimitExceededException _limitExceededException;
+
+		public LimitedStringBuilder(int limit) {
+			_builder = new StringBuilder(Math.min(limit, ONE_LINE_LIMIT));
+			_limit = limit;
+		}
+
+		public Appendable append(char c) {
+			_builder.append(c);
+			_checkLimit();
+			return this;
+		}
+
+		public Appendable append(CharSequence csq) {
+			_builder.append(csq);
+			_checkLimit();
+			return this;
+		}
+
+		public Appendable append(CharSequence csq, int start, int end) {
+			_builder.append(csq, start, end);
+			_checkLimit();
+			return this;
+		}
+
+		private void _checkLimit() {
+			if (_builder.length() >= _limit) {
+				if (_limitExceededException == null) {
+					_limitExceededException = new LimitExceededException(this);
+				}
+				throw _limitExceededException;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return _builder.toString();
+		}
+	}
+
+	protected static class LimitExceededException extends RuntimeException {
+		private LimitedStringBuilder _builder;
+
+		public LimitExceededException(LimitedStringBuilder builder) {
+			_builder = builder;
+		}
+
+		public LimitedStringBuilder getBuilder() {
+			return _builder;
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+}
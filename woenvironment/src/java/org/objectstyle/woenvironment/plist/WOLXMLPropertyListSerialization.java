@@ -4,42 +4,61 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.math.BigInteger;
 import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization.EMMutableData;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
+/**
+ * WOLXMLPropertyListSerialization parses XML property lists with a streaming
+ * SAX parser, building the maps and collections directly from the parse
+ * events without ever creating a DOM. Besides dict, array, string, true and
+ * false, it understands data (as EMMutableData), date (as java.util.Date),
+ * integer (as Integer, Long or BigInteger) and real (as Double). Integer, real
+ * and date values that cannot be parsed are returned as their trimmed text.
+ */
 public class WOLXMLPropertyListSerialization {
-	private static final DocumentBuilderFactory _builderFactory;
-	
-	static { 
-		_builderFactory = DocumentBuilderFactory.newInstance();
-		_builderFactory.setValidating(false);
-		_builderFactory.setNamespaceAware(false);
-		_builderFactory.setAttribute("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+	private static final SAXParserFactory _parserFactory;
+
+	static {
+		_parserFactory = SAXParserFactory.newInstance();
+		_parserFactory.setValidating(false);
+		_parserFactory.setNamespaceAware(false);
+		try {
+			_parserFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		} catch (Exception e) {
+			// the EntityResolver in _Handler keeps the DTD from being loaded
+			// anyway
+		}
 	}
-	
+
 	public static Object propertyListFromString(String string) throws IOException, PropertyListParserException, SAXException, ParserConfigurationException {
 		return WOLXMLPropertyListSerialization.propertyListFromString(string, new SimpleParserDataStructureFactory());
 	}
 
 	public static Object propertyListFromString(String string, ParserDataStructureFactory factory) throws PropertyListParserException, SAXException, IOException, ParserConfigurationException {
-		return parse(_builderFactory.newDocumentBuilder().parse(new InputSource(new StringReader(string))), factory);
+		return parse(new InputSource(new StringReader(string)), factory);
 	}
 
 	public static Object propertyListWithPathURL(URL url, ParserDataStructureFactory factory) throws IOException, PropertyListParserException, SAXException, ParserConfigurationException {
 		InputStream is = url.openStream();
 		try {
-			return parse(_builderFactory.newDocumentBuilder().parse(is), factory);
+			return parse(new InputSource(is), factory);
 		}
 		finally {
 			is.close();
@@ -47,87 +66,309 @@ public class WOLXMLPropertyListSerialization {
 	}
 
 	public static Object propertyListWithContentsOfInputStream(InputStream inputStream, ParserDataStructureFactory factory) throws IOException, PropertyListParserException, SAXException, ParserConfigurationException {
-		return parse(_builderFactory.newDocumentBuilder().parse(inputStream), factory);
+		return parse(new InputSource(inputStream), factory);
 	}
 
 	public static Object propertyListWithContentsOfFile(String path, ParserDataStructureFactory factory) throws IOException, PropertyListParserException, SAXException, ParserConfigurationException {
-		return parse(_builderFactory.newDocumentBuilder().parse(new File(path)), factory);
+		return propertyListWithContentsOfFile(new File(path), factory);
 	}
 
 	public static Object propertyListWithContentsOfFile(File file, ParserDataStructureFactory factory) throws IOException, PropertyListParserException, SAXException, ParserConfigurationException {
-		return parse(_builderFactory.newDocumentBuilder().parse(file), factory);
+		InputSource inputSource = new InputSource(file.toURI().toASCIIString());
+		return parse(inputSource, factory);
 	}
 
-	protected static Object parse(Document document, ParserDataStructureFactory factory) {
-		document.normalize();
-		Element plistElement = document.getDocumentElement();
-		if ("plist".equalsIgnoreCase(plistElement.getNodeName())) {
-			NodeList plistChildren = plistElement.getChildNodes();
-			for (int i = 0; i < plistChildren.getLength(); i++) {
-				Node plistChild = plistChildren.item(i);
-				if (plistChild instanceof Element) {
-					return parseValue((Element) plistChild, "", factory);
+	protected static Object parse(InputSource inputSource, ParserDataStructureFactory factory) throws SAXException, IOException, ParserConfigurationException {
+		SAXParser parser;
+		synchronized (_parserFactory) {
+			parser = _parserFactory.newSAXParser();
+		}
+		_Handler handler = new _Handler(factory);
+		parser.parse(inputSource, handler);
+		return handler.getPropertyList();
+	}
+
+	/**
+	 * _Handler turns SAX events into a property list. Element names are
+	 * matched case-insensitively, the first element inside the plist element
+	 * is the result, and dictionary values are stored under the most recently
+	 * read key.
+	 */
+	protected static class _Handler extends DefaultHandler {
+		private ParserDataStructureFactory _factory;
+
+		private List<_Container> _containers;
+
+		private boolean _inPlist;
+
+		private boolean _done;
+
+		private int _ignoredDepth;
+
+		private String _textElementName;
+
+		private int _textDepth;
+
+		private StringBuilder _text;
+
+		private SimpleDateFormat _dateFormat;
+
+		private Object _propertyList;
+
+		public _Handler(ParserDataStructureFactory factory) {
+			_factory = factory;
+			_containers = new ArrayList<_Container>();
+			_text = new StringBuilder();
+		}
+
+		public Object getPropertyList() {
+			return _propertyList;
+		}
+
+		@Override
+		public InputSource resolveEntity(String publicId, String systemId) {
+			return new InputSource(new StringReader(""));
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			if (_ignoredDepth > 0) {
+				_ignoredDepth++;
+			} else if (_textElementName != null) {
+				_textDepth++;
+			} else if (!_inPlist) {
+				if (!_done && "plist".equalsIgnoreCase(qName)) {
+					_inPlist = true;
+				} else {
+					_ignoredDepth = 1;
 				}
+			} else if (_done && _containers.isEmpty()) {
+				_ignoredDepth = 1;
+			} else if ("dict".equalsIgnoreCase(qName)) {
+				_containers.add(new _Container(_factory.createMap(_childKeyPath()), _childKeyPath()));
+			} else if ("array".equalsIgnoreCase(qName)) {
+				_containers.add(new _Container(_factory.createCollection(_childKeyPath()), _childKeyPath()));
+			} else if ("true".equalsIgnoreCase(qName)) {
+				_addValue(Boolean.TRUE);
+				_ignoredDepth = 1;
+			} else if ("false".equalsIgnoreCase(qName)) {
+				_addValue(Boolean.FALSE);
+				_ignoredDepth = 1;
+			} else if (_isTextElement(qName)) {
+				_textElementName = qName;
+				_textDepth = 1;
+				_text.setLength(0);
+			} else {
+				_addValue(null);
+				_ignoredDepth = 1;
 			}
 		}
-		return null;
-	}
 
-	protected static Map<Object, Object> parseDict(Element dictElement, String keyPath, ParserDataStructureFactory factory) {
-		Map<Object, Object> result = factory.createMap(keyPath);
-		NodeList dictNodes = dictElement.getChildNodes();
-		String key = null;
-		for (int i = 0; i < dictNodes.getLength(); i++) {
-			Node node = dictNodes.item(i);
-			if (node instanceof Element) {
-				String nodeName = node.getNodeName();
-				if ("key".equalsIgnoreCase(nodeName)) {
-					key = node.getTextContent();
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if (_ignoredDepth > 0) {
+				_ignoredDepth--;
+			} else if (_textElementName != null) {
+				_textDepth--;
+				if (_textDepth == 0) {
+					String elementName = _textElementName;
+					_textElementName = null;
+					_endTextElement(elementName, _text.toString());
 				}
-				else {
-					String newKeyPath = keyPath.length() == 0 ? key : (keyPath + "." + key);
-					Object value = parseValue((Element) node, newKeyPath, factory);
-					result.put(key, value);
+			} else if (!_containers.isEmpty()) {
+				_Container container = _containers.remove(_containers.size() - 1);
+				_addValue(container.getValue());
+			} else if (_inPlist) {
+				_inPlist = false;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (_textElementName != null) {
+				_text.append(ch, start, length);
+			}
+		}
+
+		protected boolean _isTextElement(String elementName) {
+			return "key".equalsIgnoreCase(elementName) || "string".equalsIgnoreCase(elementName) || "data".equalsIgnoreCase(elementName) || "date".equalsIgnoreCase(elementName) || "integer".equalsIgnoreCase(elementName) || "real".equalsIgnoreCase(elementName);
+		}
+
+		protected void _endTextElement(String elementName, String text) throws SAXException {
+			if ("key".equalsIgnoreCase(elementName)) {
+				_Container container = _currentContainer();
+				if (container != null && container.getValue() instanceof Map) {
+					container.setKey(text);
+				} else {
+					_addValue(null);
 				}
+			} else if ("string".equalsIgnoreCase(elementName)) {
+				_addValue(text);
+			} else if ("data".equalsIgnoreCase(elementName)) {
+				_addValue(_parseData(text));
+			} else if ("date".equalsIgnoreCase(elementName)) {
+				_addValue(_parseDate(text.trim()));
+			} else if ("integer".equalsIgnoreCase(elementName)) {
+				_addValue(_parseInteger(text.trim()));
+			} else if ("real".equalsIgnoreCase(elementName)) {
+				_addValue(_parseReal(text.trim()));
 			}
 		}
-		return result;
-	}
 
-	protected static Collection<Object> parseArray(Element arrayElement, String keyPath, ParserDataStructureFactory factory) {
-		Collection<Object> result = factory.createCollection(keyPath);
-		NodeList arrayNodes = arrayElement.getChildNodes();
-		for (int i = 0; i < arrayNodes.getLength(); i++) {
-			Node node = arrayNodes.item(i);
-			if (node instanceof Element) {
-				Object value = parseValue((Element) node, keyPath, factory);
-				result.add(value);
+		protected void _addValue(Object value) {
+			_Container container = _currentContainer();
+			if (container == null) {
+				if (!_done) {
+					_propertyList = value;
+					_done = true;
+				}
+			} else {
+				container.addValue(value);
 			}
 		}
-		return result;
+
+		protected _Container _currentContainer() {
+			return _containers.isEmpty() ? null : _containers.get(_containers.size() - 1);
+		}
+
+		protected String _childKeyPath() {
+			_Container container = _currentContainer();
+			String keyPath;
+			if (container == null) {
+				keyPath = "";
+			} else if (container.getValue() instanceof Map) {
+				String key = container.getKey();
+				keyPath = container.getKeyPath().length() == 0 ? key : (container.getKeyPath() + "." + key);
+			} else {
+				keyPath = container.getKeyPath();
+			}
+			return keyPath;
+		}
+
+		protected Object _parseInteger(String text) {
+			Object value;
+			try {
+				long longValue = Long.parseLong(text);
+				if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+					value = Integer.valueOf((int) longValue);
+				} else {
+					value = Long.valueOf(longValue);
+				}
+			} catch (NumberFormatException e) {
+				try {
+					value = new BigInteger(text);
+				} catch (NumberFormatException e2) {
+					value = text;
+				}
+			}
+			return value;
+		}
+
+		protected Object _parseReal(String text) {
+			Object value;
+			if ("nan".equalsIgnoreCase(text)) {
+				value = Double.valueOf(Double.NaN);
+			} else if ("inf".equalsIgnoreCase(text) || "+inf".equalsIgnoreCase(text) || "infinity".equalsIgnoreCase(text) || "+infinity".equalsIgnoreCase(text)) {
+				value = Double.valueOf(Double.POSITIVE_INFINITY);
+			} else if ("-inf".equalsIgnoreCase(text) || "-infinity".equalsIgnoreCase(text)) {
+				value = Double.valueOf(Double.NEGATIVE_INFINITY);
+			} else {
+				try {
+					value = Double.valueOf(text);
+				} catch (NumberFormatException e) {
+					value = text;
+				}
+			}
+			return value;
+		}
+
+		protected Object _parseDate(String text) {
+			if (_dateFormat == null) {
+				_dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+				_dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+			}
+			Object value;
+			try {
+				value = _dateFormat.parse(text);
+			} catch (ParseException e) {
+				value = text;
+			}
+			return value;
+		}
+
+		protected EMMutableData _parseData(String text) throws SAXException {
+			EMMutableData data = new EMMutableData(text.length() * 3 / 4);
+			int accumulator = 0;
+			int bits = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				int sextet;
+				if (c >= 'A' && c <= 'Z') {
+					sextet = c - 'A';
+				} else if (c >= 'a' && c <= 'z') {
+					sextet = c - 'a' + 26;
+				} else if (c >= '0' && c <= '9') {
+					sextet = c - '0' + 52;
+				} else if (c == '+') {
+					sextet = 62;
+				} else if (c == '/') {
+					sextet = 63;
+				} else if (c == '=') {
+					break;
+				} else if (Character.isWhitespace(c)) {
+					continue;
+				} else {
+					throw new SAXException("Property list parsing failed while attempting to read data. Illegal base64 character '" + c + "'.");
+				}
+				accumulator = (accumulator << 6) | sextet;
+				bits += 6;
+				if (bits >= 8) {
+					bits -= 8;
+					data.appendByte((byte) (accumulator >> bits));
+				}
+			}
+			return data;
+		}
 	}
 
-	protected static Object parseValue(Element element, String keyPath, ParserDataStructureFactory factory) {
-		Object value;
-		String nodeName = element.getNodeName();
-		if ("string".equalsIgnoreCase(nodeName)) {
-			value = element.getTextContent();
+	/**
+	 * _Container is a dict or array that is still being parsed.
+	 */
+	protected static class _Container {
+		private Object _value;
+
+		private String _keyPath;
+
+		private String _key;
+
+		public _Container(Object value, String keyPath) {
+			_value = value;
+			_keyPath = keyPath;
 		}
-		else if ("true".equalsIgnoreCase(nodeName)) {
-			value = Boolean.TRUE;
+
+		public Object getValue() {
+			return _value;
 		}
-		else if ("false".equalsIgnoreCase(nodeName)) {
-			value = Boolean.FALSE;
+
+		public String getKeyPath() {
+			return _keyPath;
 		}
-		else if ("array".equalsIgnoreCase(nodeName)) {
-			value = parseArray(element, keyPath, factory);
+
+		public String getKey() {
+			return _key;
 		}
-		else if ("dict".equalsIgnoreCase(nodeName)) {
-			value = parseDict(element, keyPath, factory);
+
+		public void setKey(String key) {
+			_key = key;
 		}
-		else {
-			value = null;
+
+		@SuppressWarnings("unchecked")
+		public void addValue(Object value) {
+			if (_value instanceof Map) {
+				((Map<Object, Object>) _value).put(_key, value);
+			} else {
+				((Collection<Object>) _value).add(value);
+			}
 		}
-		return value;
 	}
 }
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -32,6 +33,8 @@ public abstract class AbstractManifestEOModelGroupFactory implements IEOModelGro
 				throw new EOModelException("Unknown model resource: " + modelGroupResource);
 			}
 
+			// all the models are found first, so they can be read together
+			List<URL> modelURLs = new LinkedList<URL>();
 			List<ManifestSearchFolder> searchFolders = getSearchFolders(modelGroupFile);
 			if (searchFolders != null) {
 				LinkedHashSet<ManifestSearchFolder> uniqueSearchFolders = new LinkedHashSet<ManifestSearchFolder>(searchFolders);
@@ -42,12 +45,13 @@ public abstract class AbstractManifestEOModelGroupFactory implements IEOModelGro
 						printedHeader = true;
 					}
 					System.out.println("  " + searchFolder);
-					modelGroup.loadModelsFromURL(searchFolder.getFolder().toURL(), searchFolder.getDepth(), failures, skipOnDuplicates, progressMonitor);
+					modelURLs.addAll(EOModelGroup.findModelURLs(searchFolder.getFolder().toURL(), searchFolder.getDepth()));
 				}
 			}
 			if (modelGroupFile != null && modelGroupFile.getName().endsWith(".eomodeld")) {
-				modelGroup.loadModelsFromURL(modelGroupFile.toURL(), 1, failures, skipOnDuplicates, progressMonitor);
+				modelURLs.addAll(EOModelGroup.findModelURLs(modelGroupFile.toURL(), 1));
 			}
+			modelGroup.loadModelsFromURLs(modelURLs, failures, skipOnDuplicates, progressMonitor);
 		} catch (IOException e) {
 			throw new EOModelException("Failed to load model groups.", e);
 		}
@@ -415,6 +415,9 @@ public class EOAttribute extends AbstractEOArgument<EOEntity> implements IEOAttr
 			}
 		}
 		super.setName((String) _nullIfPrototyped(AbstractEOArgument.NAME, newName), _fireEvents);
+		if (!_fireEvents && myEntity != null) {
+			myEntity._attributeNameChanged(this, oldName);
+		}
 		if (myEntity != null && myEntity.getModel() != null) {
 			for (EOEntity childrenEntity : myEntity.getChildrenEntities()) {
 				EOAttribute childAttribute = childrenEntity.getAttributeNamed(oldName);
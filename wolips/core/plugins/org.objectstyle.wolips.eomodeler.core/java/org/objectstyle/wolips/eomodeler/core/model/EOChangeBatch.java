@@ -0,0 +1,322 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EOChangeBatch holds back the property change notifications of model objects
+ * while a bulk edit (an import, a paste, a reverse engineering) runs on the
+ * current thread, and hands them to the listeners when the outermost batch
+ * ends. The model objects still update their own state (caches, indexes,
+ * dirty flags) right away; only the listener callbacks are deferred.
+ * <p>
+ * The notifications are coalesced per object: successive changes of a property
+ * collapse into one change from the first old value to the last new value
+ * (and disappear if they end up equal), and repeated notifications about the
+ * same child (e.g. ATTRIBUTE for an attribute that changed five times) are
+ * only delivered once. At the end of the batch every object that changed
+ * fires one event per changed property, objects in the order they first
+ * changed.
+ * <p>
+ * Batches nest, so a method can open one without knowing whether its caller
+ * already did:
+ * 
+ * <pre>
+ * EOChangeBatch batch = EOChangeBatch.begin();
+ * try {
+ * 	...
+ * } finally {
+ * 	batch.end();
+ * }
+ * </pre>
+ */
+public class EOChangeBatch {
+	private static final ThreadLocal<EOChangeBatch> _currentBatch = new ThreadLocal<EOChangeBatch>();
+
+	private int _depth;
+
+	private int _changeCount;
+
+	private Map<Object, PendingChanges> _pendingChangesBySource;
+
+	private List<PendingChanges> _pendingChanges;
+
+	/**
+	 * Opens a batch on the current thread, or joins the one that is already
+	 * open. Every call must be matched by a call to end().
+	 */
+	public static EOChangeBatch begin() {
+		EOChangeBatch batch = _currentBatch.get();
+		if (batch == null) {
+			batch = new EOChangeBatch();
+			_currentBatch.set(batch);
+		}
+		batch._depth++;
+		return batch;
+	}
+
+	/**
+	 * Returns the batch that is open on the current thread, or null.
+	 */
+	public static EOChangeBatch currentBatch() {
+		return _currentBatch.get();
+	}
+
+	public static boolean isBatching() {
+		return _currentBatch.get() != null;
+	}
+
+	protected EOChangeBatch() {
+		_pendingChangesBySource = new IdentityHashMap<Object, PendingChanges>();
+		_pendingChanges = new ArrayList<PendingChanges>();
+	}
+
+	/**
+	 * Returns the number of notifications that were handed to this batch so
+	 * far, before coalescing.
+	 */
+	public int getChangeCount() {
+		return _changeCount;
+	}
+
+	/**
+	 * Returns the number of notifications this batch will deliver if it ended
+	 * now.
+	 */
+	public int getPendingChangeCount() {
+		int pendingChangeCount = 0;
+		for (PendingChanges pendingChanges : _pendingChanges) {
+			pendingChangeCount += pendingChanges.size();
+		}
+		return pendingChangeCount;
+	}
+
+	/**
+	 * Closes one level of this batch. When the outermost level is closed, the
+	 * batch is removed from the current thread and the coalesced notifications
+	 * are delivered; changes the listeners make in response are delivered
+	 * immediately.
+	 */
+	public void end() {
+		if (_depth <= 0 || _currentBatch.get() != this) {
+			throw new IllegalStateException("This change batch is not open on the current thread.");
+		}
+		_depth--;
+		if (_depth == 0) {
+			_currentBatch.set(null);
+			_fireChanges();
+		}
+	}
+
+	/**
+	 * Queues a notification that would have been fired on the given
+	 * PropertyChangeSupport.
+	 */
+	public void _propertyChanged(Object source, PropertyChangeSupport propertyChangeSupport, String propertyName, Object oldValue, Object newValue) {
+		_changeCount++;
+		PendingChanges pendingChanges = _pendingChangesBySource.get(source);
+		if (pendingChanges == null) {
+			pendingChanges = new PendingChanges(source, propertyChangeSupport);
+			_pendingChangesBySource.put(source, pendingChanges);
+			_pendingChanges.add(pendingChanges);
+		}
+		pendingChanges.add(propertyName, oldValue, newValue);
+	}
+
+	protected void _fireChanges() {
+		List<PendingChanges> pendingChangesList = _pendingChanges;
+		_pendingChangesBySource = new IdentityHashMap<Object, PendingChanges>();
+		_pendingChanges = new ArrayList<PendingChanges>();
+		RuntimeException listenerException = null;
+		for (PendingChanges pendingChanges : pendingChangesList) {
+			for (PendingChange pendingChange : pendingChanges.getChanges()) {
+				try {
+					pendingChanges.getPropertyChangeSupport().firePropertyChange(new PropertyChangeEvent(pendingChanges.getSource(), pendingChange.getPropertyName(), pendingChange.getOldValue(), pendingChange.getNewValue()));
+				} catch (RuntimeException e) {
+					// keep delivering, a listener that fails shouldn't leave the
+					// others behind
+					if (listenerException == null) {
+						listenerException = e;
+					}
+				}
+			}
+		}
+		if (listenerException != null) {
+			throw listenerException;
+		}
+	}
+
+	/**
+	 * PendingChanges is the queue of one object's coalesced changes.
+	 */
+	protected static class PendingChanges {
+		private Object _source;
+
+		private PropertyChangeSupport _propertyChangeSupport;
+
+		private List<PendingChange> _changes;
+
+		private Map<PendingChangeKey, PendingChange> _changesByNewValue;
+
+		public PendingChanges(Object source, PropertyChangeSupport propertyChangeSupport) {
+			_source = source;
+			_propertyChangeSupport = propertyChangeSupport;
+			_changes = new ArrayList<PendingChange>();
+			_changesByNewValue = new HashMap<PendingChangeKey, PendingChange>();
+		}
+
+		public Object getSource() {
+			return _source;
+		}
+
+		public PropertyChangeSupport getPropertyChangeSupport() {
+			return _propertyChangeSupport;
+		}
+
+		public List<PendingChange> getChanges() {
+			return _changes;
+		}
+
+		public int size() {
+			return _changes.size();
+		}
+
+		public void add(String propertyName, Object oldValue, Object newValue) {
+			if (oldValue == null && newValue != null) {
+				// "this child changed" notifications, only tell about each child
+				// once
+				PendingChange duplicateChange = _changesByNewValue.get(new PendingChangeKey(propertyName, newValue));
+				if (duplicateChange != null && duplicateChange.getOldValue() == null) {
+					return;
+				}
+			}
+			PendingChangeKey oldValueKey = new PendingChangeKey(propertyName, oldValue);
+			PendingChange previousChange = _changesByNewValue.remove(oldValueKey);
+			if (previousChange != null) {
+				previousChange.setNewValue(newValue);
+				_changesByNewValue.put(new PendingChangeKey(propertyName, newValue), previousChange);
+			} else {
+				PendingChange change = new PendingChange(propertyName, oldValue, newValue);
+				_changes.add(change);
+				_changesByNewValue.put(new PendingChangeKey(propertyName, newValue), change);
+			}
+		}
+	}
+
+	/**
+	 * PendingChange is one coalesced change of a property.
+	 */
+	protected static class PendingChange {
+		private String _propertyName;
+
+		private Object _oldValue;
+
+		private Object _newValue;
+
+		public PendingChange(String propertyName, Object oldValue, Object newValue) {
+			_propertyName = propertyName;
+			_oldValue = oldValue;
+			_newValue = newValue;
+		}
+
+		public String getPropertyName() {
+			return _propertyName;
+		}
+
+		public Object getOldValue() {
+			return _oldValue;
+		}
+
+		public Object getNewValue() {
+			return _newValue;
+		}
+
+		public void setNewValue(Object newValue) {
+			_newValue = newValue;
+		}
+	}
+
+	/**
+	 * PendingChangeKey finds the pending change of a property by its new value.
+	 * Values are compared by identity, since the sets and maps that are passed
+	 * around as values may change after the notification was sent.
+	 */
+	protected static class PendingChangeKey {
+		private String _propertyName;
+
+		private Object _value;
+
+		public PendingChangeKey(String propertyName, Object value) {
+			_propertyName = propertyName;
+			_value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return (_propertyName == null ? 0 : _propertyName.hashCode() * 31) + System.identityHashCode(_value);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PendingChangeKey)) {
+				return false;
+			}
+			PendingChangeKey key = (PendingChangeKey) obj;
+			return _value == key._value && (_propertyName == null ? key._propertyName == null : _propertyName.equals(key._propertyName));
+		}
+	}
+}
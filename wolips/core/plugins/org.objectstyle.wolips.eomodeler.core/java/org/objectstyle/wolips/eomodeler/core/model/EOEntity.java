@@ -56,15 +56,16 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.objectstyle.woenvironment.plist.PropertyListParserException;
-import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
 import org.objectstyle.wolips.baseforplugins.util.ComparisonUtils;
 import org.objectstyle.wolips.baseforplugins.util.StringUtils;
+import org.objectstyle.wolips.baseforplugins.util.URLUtils;
 import org.objectstyle.wolips.eomodeler.core.Messages;
 import org.objectstyle.wolips.eomodeler.core.kvc.KeyPath;
 import org.objectstyle.wolips.eomodeler.core.model.history.EOAttributeAddedEvent;
@@ -184,6 +185,12 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 
 	private Set<EOEntityIndex> myEntityIndexes;
 
+	private EOModelObjectNameIndex<EOAttribute> _attributesIndex = new EOModelObjectNameIndex<EOAttribute>();
+
+	private EOModelObjectNameIndex<EORelationship> _relationshipsIndex = new EOModelObjectNameIndex<EORelationship>();
+
+	private EOModelObjectNameIndex<EOFetchSpecification> _fetchSpecsIndex = new EOModelObjectNameIndex<EOFetchSpecification>();
+
 	private EOModelMap myEntityMap;
 
 	private EOModelMap myFetchSpecsMap;
@@ -206,6 +213,10 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	
 	private EOLastModified _fspecLastModified;
 
+	private volatile LazyLoad _lazyLoad;
+
+	private Set<EOModelVerificationFailure> _lazyLoadFailures;
+
 	public EOEntity() {
 		myAttributes = new HashSet<EOAttribute>();
 		myRelationships = new HashSet<EORelationship>();
@@ -222,6 +233,136 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		this();
 		myName = _name;
 	}
+
+	/**
+	 * Creates the shell of an entity of a lazily loaded model, which only
+	 * knows the name and class name from index.eomodeld and reads the rest
+	 * of the entity from its files the first time it is needed.
+	 */
+	public static EOEntity _createLazyEntity(String name, String className, URL entityURL, URL fetchSpecsURL, EOModelSnapshot snapshot) {
+		EOEntity entity = new EOEntity(name);
+		entity.myClassName = className;
+		entity.setEntityDirty(false);
+		entity._lazyLoad = new LazyLoad(entityURL, fetchSpecsURL, snapshot);
+		return entity;
+	}
+
+	/**
+	 * Returns false for the shell of a lazily loaded entity that hasn't read
+	 * its files yet.
+	 */
+	public boolean isLoaded() {
+		return _lazyLoad == null;
+	}
+
+	/**
+	 * Reads the files of a lazily loaded entity unless it has been read
+	 * already. The state that is read from the files is only used through
+	 * its accessors (getAttributes, getExternalName and so on), which call
+	 * this first, and by the methods that copy all of it (toEntityMap,
+	 * _cloneJustEntity). The load lock of the model is only taken while the
+	 * entity is a shell; the entities of a model group are read one at a
+	 * time, so concurrent callers wait for the entity to be complete, and
+	 * nested calls from the thread that is reading the entity return right
+	 * away.
+	 */
+	protected void _materialize() {
+		if (_lazyLoad != null) {
+			synchronized (_getLoadLock()) {
+				LazyLoad lazyLoad = _lazyLoad;
+				if (lazyLoad != null && !lazyLoad.loading) {
+					lazyLoad.loading = true;
+					try {
+						_load(lazyLoad);
+					} finally {
+						_lazyLoad = null;
+					}
+				}
+			}
+		}
+	}
+
+	protected Object _getLoadLock() {
+		EOModel model = myModel;
+		return model == null ? this : model._getLoadLock();
+	}
+
+	protected boolean _isLazyShell() {
+		LazyLoad lazyLoad = _lazyLoad;
+		return lazyLoad != null && !lazyLoad.loading;
+	}
+
+	protected boolean _isLoading() {
+		LazyLoad lazyLoad = _lazyLoad;
+		return lazyLoad != null && lazyLoad.loading;
+	}
+
+	/**
+	 * Reads the files of the entity and catches up with the resolves it
+	 * missed while it was a shell. Failures are kept until the entity is
+	 * verified, because the load that asked for them is long gone.
+	 */
+	private void _load(LazyLoad lazyLoad) {
+		String shellName = myName;
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		try {
+			// reading the files isn't a change to the model
+			lazyLoad.reading = true;
+			try {
+				loadFromURL(lazyLoad.entityURL, failures, lazyLoad.snapshot);
+				if (URLUtils.exists(lazyLoad.fetchSpecsURL)) {
+					loadFetchSpecsFromURL(lazyLoad.fetchSpecsURL, failures, lazyLoad.snapshot);
+				}
+			} finally {
+				lazyLoad.reading = false;
+			}
+		} catch (EOModelException e) {
+			failures.add(new EOModelVerificationFailure(myModel, this, e.getMessage(), false, e));
+		}
+		if (myName == null) {
+			failures.add(new EOModelVerificationFailure(myModel, myModel, "The entity file " + lazyLoad.entityURL + " defines an entity with no name.", false));
+		}
+		if (myModel != null && !ComparisonUtils.equals(shellName, myName)) {
+			myModel._lazyEntityNameChanged(shellName, this);
+		}
+		if (lazyLoad.resolve) {
+			resolve(failures);
+		}
+		if (lazyLoad.resolveFlattened) {
+			resolveFlattened(failures);
+		}
+		_lazyLoadFailures = failures;
+		EOModelGroup modelGroup = (myModel == null) ? null : myModel.getModelGroup();
+		if (modelGroup != null) {
+			modelGroup._entityMaterialized(this);
+		}
+	}
+
+	/**
+	 * LazyLoad is where the shell of a lazily loaded entity reads itself
+	 * from, and which resolves it has to catch up with.
+	 */
+	protected static class LazyLoad {
+		public final URL entityURL;
+
+		public final URL fetchSpecsURL;
+
+		public final EOModelSnapshot snapshot;
+
+		public boolean loading;
+
+		public boolean reading;
+
+		public boolean resolve;
+
+		public boolean resolveFlattened;
+
+		public LazyLoad(URL entityURL, URL fetchSpecsURL, EOModelSnapshot snapshot) {
+			this.entityURL = entityURL;
+			this.fetchSpecsURL = fetchSpecsURL;
+			this.snapshot = snapshot;
+		}
+	}
 	
 	public void setEntityDirty(boolean entityDirty) {
 		_entityDirty = entityDirty;
@@ -291,6 +432,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		for (EORelationship relationship : getRelationships()) {
 			relationship.pasted();
 		}
+		_referencesChanged();
 	}
 
 	public String _findUnusedRelationshipName(String _name, boolean _toMany) {
@@ -731,7 +873,8 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	protected void _propertyChanged(String _propertyName, Object _oldValue, Object _newValue) {
-		if (myModel != null) {
+		LazyLoad lazyLoad = _lazyLoad;
+		if (myModel != null && (lazyLoad == null || !lazyLoad.reading)) {
 			setEntityDirty(true);
 			if (EOEntity.FETCH_SPECIFICATIONS.equals(_propertyName)) {
 				setFetchSpecsDirty(true);
@@ -742,7 +885,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 
 	public boolean hasSharedObjects() {
 		boolean hasSharedObjects = false;
-		Iterator<EOFetchSpecification> fetchSpecsIter = myFetchSpecs.iterator();
+		Iterator<EOFetchSpecification> fetchSpecsIter = getFetchSpecs().iterator();
 		while (!hasSharedObjects && fetchSpecsIter.hasNext()) {
 			EOFetchSpecification fetchSpec = fetchSpecsIter.next();
 			hasSharedObjects = BooleanUtils.isTrue(fetchSpec.isSharesObjects());
@@ -751,7 +894,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void shareNoObjects() {
-		for (EOFetchSpecification fetchSpec : myFetchSpecs) {
+		for (EOFetchSpecification fetchSpec : getFetchSpecs()) {
 			fetchSpec.setSharesObjects(Boolean.FALSE);
 		}
 	}
@@ -759,7 +902,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	public boolean isSharesAllObjectsOnly() {
 		boolean sharesAllObjects = false;
 		int sharedFetchSpecCount = 0;
-		for (EOFetchSpecification fetchSpec : myFetchSpecs) {
+		for (EOFetchSpecification fetchSpec : getFetchSpecs()) {
 			if (BooleanUtils.isTrue(fetchSpec.isSharesObjects())) {
 				sharedFetchSpecCount++;
 				if (EOEntity.FETCH_ALL.equals(fetchSpec.getName())) {
@@ -805,20 +948,24 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public String getExternalQuery() {
+		_materialize();
 		return myExternalQuery;
 	}
 
 	public void setExternalQuery(String _externalQuery) {
+		_materialize();
 		String oldExternalQuery = myExternalQuery;
 		myExternalQuery = _externalQuery;
 		firePropertyChange(EOEntity.EXTERNAL_QUERY, oldExternalQuery, myExternalQuery);
 	}
 
 	public Integer getMaxNumberOfInstancesToBatchFetch() {
+		_materialize();
 		return myMaxNumberOfInstancesToBatchFetch;
 	}
 
 	public void setMaxNumberOfInstancesToBatchFetch(Integer _maxNumberOfInstancesToBatchFetch) {
+		_materialize();
 		Integer oldMaxNumberOfInstancesToBatchFetch = myMaxNumberOfInstancesToBatchFetch;
 		myMaxNumberOfInstancesToBatchFetch = _maxNumberOfInstancesToBatchFetch;
 		firePropertyChange(EOEntity.MAX_NUMBER_OF_INSTANCES_TO_BATCH_FETCH, oldMaxNumberOfInstancesToBatchFetch, myMaxNumberOfInstancesToBatchFetch);
@@ -829,10 +976,12 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public Boolean isReadOnly() {
+		_materialize();
 		return myReadOnly;
 	}
 
 	public void setReadOnly(Boolean _readOnly) {
+		_materialize();
 		Boolean oldReadOnly = myReadOnly;
 		myReadOnly = _readOnly;
 		firePropertyChange(EOEntity.READ_ONLY, oldReadOnly, myReadOnly);
@@ -843,10 +992,12 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public Boolean isRawRowsOnly() {
+		_materialize();
 		return myRawRowsOnly;
 	}
 
 	public void setRawRowsOnly(Boolean _rawRowsOnly) {
+		_materialize();
 		Boolean oldRawRowsOnly = myRawRowsOnly;
 		myRawRowsOnly = _rawRowsOnly;
 		firePropertyChange(EOEntity.RAW_ROWS_ONLY, oldRawRowsOnly, myRawRowsOnly);
@@ -873,6 +1024,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void setName(String _name, boolean _fireEvents) throws DuplicateEntityNameException {
+		_materialize();
 		if (_name == null) {
 			throw new NullPointerException(Messages.getString("EOEntity.noBlankEntityNames"));
 		}
@@ -905,6 +1057,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public String getOriginalName() {
+		_materialize();
 		return myOriginalName;
 	}
 
@@ -1065,30 +1218,35 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public String getClientClassName() {
+		_materialize();
 		return myClientClassName;
 	}
 
 	public void setClientClassName(String _clientClassName) {
+		_materialize();
 		String oldClientClassName = myClientClassName;
 		myClientClassName = _clientClassName;
 		firePropertyChange(EOEntity.CLIENT_CLASS_NAME, oldClientClassName, myClientClassName);
 	}
 
 	public boolean isParentClassNameSet() {
-		return myParentClassName != null;
+		return getParentClassName() != null;
 	}
 
 	public String getParentClassName() {
+		_materialize();
 		return myParentClassName;
 	}
 
 	public void setParentClassName(String _parentClassName) {
+		_materialize();
 		String oldParentClassName = myParentClassName;
 		myParentClassName = _parentClassName;
 		firePropertyChange(EOEntity.PARENT_CLASS_NAME, oldParentClassName, myParentClassName);
 	}
 
 	public String getExternalName() {
+		_materialize();
 		return myExternalName;
 	}
 
@@ -1101,6 +1259,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void setExternalName(String _externalName) {
+		_materialize();
 		String oldExternalName = myExternalName;
 		myExternalName = _externalName;
 		firePropertyChange(EOEntity.EXTERNAL_NAME, oldExternalName, myExternalName);
@@ -1186,37 +1345,43 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 	
 	public Set<EORelationship> getReferencingRelationships() {
-		Set<EORelationship> referencingRelationships = new HashSet<EORelationship>();
-		for (EOModel model : getModel().getModelGroup().getModels()) {
-			for (EOEntity entity : model.getEntities()) {
-				if (!entity.equals(this)) {
-					for (EORelationship relationship : entity.getRelationships()) {
-						if (relationship.isRelatedTo(this)) {
-							referencingRelationships.add(relationship);
-						}
-					}
-				}
-			}
-		}
-		return referencingRelationships;
+		return getModel().getModelGroup().getReferencingRelationships(this);
 	}
 
 	public Set<EOEntity> getChildrenEntities() {
 		Set<EOEntity> children = new PropertyListSet<EOEntity>();
 		if (myModel != null) {
-			for (EOModel model : getModel().getModelGroup().getModels()) {
-				for (EOEntity entity : model.getEntities()) {
-					if (entity.getParent() == this) {
-						children.add(entity);
-					}
-				}
-			}
+			children.addAll(getModel().getModelGroup().getChildrenEntities(this));
 		}
 		return children;
 	}
 
+	/**
+	 * Tells the model group that the parent of this entity, its relationships
+	 * or their destinations may have changed without a property change event.
+	 * While a lazily loaded entity is read nothing changes; _load tells the
+	 * model group once it's done.
+	 */
+	protected void _referencesChanged() {
+		EOModelGroup modelGroup = (myModel == null) ? null : myModel.getModelGroup();
+		if (modelGroup != null && !_isLoading()) {
+			modelGroup._entityReferencesChanged(this);
+		}
+	}
+
+	/**
+	 * Tells the model group that the destination of the given relationship of
+	 * this entity changed without a property change event.
+	 */
+	protected void _relationshipReferencesChanged(EORelationship relationship) {
+		EOModelGroup modelGroup = (myModel == null) ? null : myModel.getModelGroup();
+		if (modelGroup != null && !_isLoading()) {
+			modelGroup._relationshipReferencesChanged(relationship);
+		}
+	}
+
 	public boolean isParentSet() {
-		return myParent != null;
+		return getParent() != null;
 	}
 
 	public List<EOEntity> getAncestors() {
@@ -1229,10 +1394,12 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 	
 	public EOEntity getParent() {
+		_materialize();
 		return myParent;
 	}
 
 	public void setParent(EOEntity _parent) {
+		_materialize();
 		EOEntity oldParent = myParent;
 		myParent = _parent;
 		firePropertyChange(EOEntity.PARENT, oldParent, myParent);
@@ -1250,24 +1417,28 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public boolean isPartialEntitySet() {
-		return myPartialEntity != null;
+		return getPartialEntity() != null;
 	}
 
 	public EOEntity getPartialEntity() {
+		_materialize();
 		return myPartialEntity;
 	}
 
 	public void setPartialEntity(EOEntity partialEntity) {
+		_materialize();
 		EOEntity oldPartialEntity = myPartialEntity;
 		myPartialEntity = partialEntity;
 		firePropertyChange(EOEntity.PARTIAL_ENTITY, oldPartialEntity, myPartialEntity);
 	}
 
 	public boolean isGenerateSource() {
+		_materialize();
 		return myGenerateSource;
 	}
 
 	public void setGenerateSource(boolean generateSource) {
+		_materialize();
 		boolean oldGenerateSource = myGenerateSource;
 		myGenerateSource = generateSource;
 		firePropertyChange(EOEntity.GENERATE_SOURCE, oldGenerateSource, myGenerateSource);
@@ -1292,6 +1463,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public Boolean isAbstractEntity() {
+		_materialize();
 		return myAbstractEntity;
 	}
 
@@ -1321,6 +1493,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void setAbstractEntity(Boolean _abstractEntity) {
+		_materialize();
 		Boolean oldAbstractEntity = myAbstractEntity;
 		myAbstractEntity = _abstractEntity;
 		firePropertyChange(EOEntity.ABSTRACT_ENTITY, oldAbstractEntity, myAbstractEntity);
@@ -1331,20 +1504,24 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public Boolean isCachesObjects() {
+		_materialize();
 		return myCachesObjects;
 	}
 
 	public void setCachesObjects(Boolean _cachesObjects) {
+		_materialize();
 		Boolean oldCachesObjects = myCachesObjects;
 		myCachesObjects = _cachesObjects;
 		firePropertyChange(EOEntity.CACHES_OBJECTS, oldCachesObjects, myCachesObjects);
 	}
 
 	public String getRestrictingQualifier() {
+		_materialize();
 		return myRestrictingQualifier;
 	}
 
 	public void setRestrictingQualifier(String _restrictingQualifier) {
+		_materialize();
 		String oldRestrictingQualifier = myRestrictingQualifier;
 		myRestrictingQualifier = _restrictingQualifier;
 		firePropertyChange(EOEntity.RESTRICTING_QUALIFIER, oldRestrictingQualifier, myRestrictingQualifier);
@@ -1352,23 +1529,29 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 
 	public Set<String> getRestrictingQualifierKeys() {
 		Set<String> restrictingQualifierKeys;
-		if (myRestrictingQualifier == null) {
+		String restrictingQualifier = getRestrictingQualifier();
+		if (restrictingQualifier == null) {
 			restrictingQualifierKeys = new HashSet<String>();
 		} else {
-			restrictingQualifierKeys = EOQualifierFactory.getQualifierKeysFromQualifierString(myRestrictingQualifier);
+			restrictingQualifierKeys = EOQualifierFactory.getQualifierKeysFromQualifierString(restrictingQualifier);
 		}
 		return restrictingQualifierKeys;
 	}
 
 	public void clearCachedPrototypes(Set<EOModelVerificationFailure> _failures, boolean _reload) {
-		for (EOAttribute attribute : myAttributes) {
-			attribute.clearCachedPrototype(_failures, _reload);
+		// a shell has no attributes yet, so there is nothing to clear
+		if (!_isLazyShell()) {
+			for (EOAttribute attribute : myAttributes) {
+				attribute.clearCachedPrototype(_failures, _reload);
+			}
+			// attributes can take their names from their prototypes
+			_attributesIndex.invalidate();
 		}
 	}
 
 	public Set<EOAttribute> getPrimaryKeyAttributes() {
 		Set<EOAttribute> primaryKeyAttributes = new HashSet<EOAttribute>();
-		for (EOAttribute attribute : myAttributes) {
+		for (EOAttribute attribute : getAttributes()) {
 			Boolean primaryKey = attribute.isPrimaryKey();
 			if (BooleanUtils.isTrue(primaryKey)) {
 				primaryKeyAttributes.add(attribute);
@@ -1378,7 +1561,9 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void setAttributes(Set<EOAttribute> _attributes) {
+		_materialize();
 		myAttributes = _attributes;
+		_attributesIndex.invalidate();
 		firePropertyChange(EOEntity.ATTRIBUTES, null, null);
 	}
 
@@ -1445,11 +1630,12 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public Set<EOAttribute> getAttributes() {
+		_materialize();
 		return myAttributes;
 	}
 
 	public Set<EOAttribute> getSortedAttributes() {
-		return new PropertyListSet<EOAttribute>(myAttributes);
+		return new PropertyListSet<EOAttribute>(getAttributes());
 	}
 
 	public String[] getAttributeNames() {
@@ -1639,27 +1825,45 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public Set<EORelationship> getRelationships() {
+		_materialize();
 		return myRelationships;
 	}
 
 	public Set<EORelationship> getSortedRelationships() {
-		return new PropertyListSet<EORelationship>(myRelationships);
+		return new PropertyListSet<EORelationship>(getRelationships());
 	}
 
 	public Set<EOFetchSpecification> getFetchSpecs() {
+		_materialize();
 		return myFetchSpecs;
 	}
 
 	public Set<EOFetchSpecification> getSortedFetchSpecs() {
-		return new PropertyListSet<EOFetchSpecification>(myFetchSpecs);
+		return new PropertyListSet<EOFetchSpecification>(getFetchSpecs());
 	}
 
 	public Set<EOEntityIndex> getEntityIndexes() {
+		_materialize();
 		return myEntityIndexes;
 	}
 
 	public Set<EOEntityIndex> getSortedEntityIndexes() {
-		return new PropertyListSet<EOEntityIndex>(myEntityIndexes);
+		return new PropertyListSet<EOEntityIndex>(getEntityIndexes());
+	}
+
+	private EOModelObjectNameIndex<EOAttribute> _getAttributesIndex() {
+		_materialize();
+		return _attributesIndex;
+	}
+
+	private EOModelObjectNameIndex<EORelationship> _getRelationshipsIndex() {
+		_materialize();
+		return _relationshipsIndex;
+	}
+
+	private EOModelObjectNameIndex<EOFetchSpecification> _getFetchSpecsIndex() {
+		_materialize();
+		return _fetchSpecsIndex;
 	}
 
 	public String findUnusedAttributeName(String _newName) {
@@ -1697,27 +1901,30 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		_attribute.pasted();
 		Set<EOAttribute> oldAttributes = null;
 		if (_fireEvents) {
-			oldAttributes = myAttributes;
+			oldAttributes = getAttributes();
 			Set<EOAttribute> newAttributes = new HashSet<EOAttribute>();
-			newAttributes.addAll(myAttributes);
+			newAttributes.addAll(getAttributes());
 			newAttributes.add(_attribute);
 			myAttributes = newAttributes;
+			_getAttributesIndex().objectAdded(_attribute);
 			if (myModel != null) {
 				myModel.getModelEvents().addEvent(new EOAttributeAddedEvent(_attribute));
 			}
-			firePropertyChange(EOEntity.ATTRIBUTES, oldAttributes, myAttributes);
+			firePropertyChange(EOEntity.ATTRIBUTES, oldAttributes, getAttributes());
 		} else {
-			myAttributes.add(_attribute);
+			getAttributes().add(_attribute);
+			_getAttributesIndex().objectAdded(_attribute);
 		}
 	}
 
 	public void removeAttribute(EOAttribute _attribute, boolean _removeFromSubclasses) {
 		String attributeName = _attribute.getName();
-		Set<EOAttribute> oldAttributes = myAttributes;
+		Set<EOAttribute> oldAttributes = getAttributes();
 		Set<EOAttribute> newAttributes = new HashSet<EOAttribute>();
-		newAttributes.addAll(myAttributes);
+		newAttributes.addAll(getAttributes());
 		newAttributes.remove(_attribute);
 		myAttributes = newAttributes;
+		_getAttributesIndex().objectRemoved(_attribute);
 		if (myModel != null) {
 			myModel.getModelEvents().addEvent(new EOAttributeDeletedEvent(_attribute));
 		}
@@ -1734,15 +1941,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public EOAttribute getAttributeNamed(String _name) {
-		EOAttribute matchingAttribute = null;
-		Iterator<EOAttribute> attributesIter = myAttributes.iterator();
-		while (matchingAttribute == null && attributesIter.hasNext()) {
-			EOAttribute attribute = attributesIter.next();
-			if (ComparisonUtils.equals(attribute.getName(), _name)) {
-				matchingAttribute = attribute;
-			}
-		}
-		return matchingAttribute;
+		return _getAttributesIndex().getObjectNamed(_name, getAttributes());
 	}
 
 	public String findUnusedRelationshipName(String _newName) {
@@ -1762,8 +1961,29 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		}
 	}
 
-	@SuppressWarnings("unused")
+	/**
+	 * Called by attributes, relationships and fetch specs that are renamed
+	 * without firing events, so the names stay indexed.
+	 */
+	protected void _attributeNameChanged(EOAttribute _attribute, String _oldName) {
+		_getAttributesIndex().objectRenamed(_attribute, _oldName);
+	}
+
+	protected void _relationshipNameChanged(EORelationship _relationship, String _oldName) {
+		_getRelationshipsIndex().objectRenamed(_relationship, _oldName);
+	}
+
+	protected void _fetchSpecificationNameChanged(EOFetchSpecification _fetchSpecification, String _oldName) {
+		_getFetchSpecsIndex().objectRenamed(_fetchSpecification, _oldName);
+	}
+
 	protected void _attributeChanged(EOAttribute _attribute, String _propertyName, Object _oldValue, Object _newValue) {
+		if (AbstractEOArgument.NAME.equals(_propertyName)) {
+			_getAttributesIndex().objectRenamed(_attribute, (String) _oldValue);
+		} else if (EOAttribute.PROTOTYPE.equals(_propertyName)) {
+			// the name may come from the prototype
+			_getAttributesIndex().invalidate();
+		}
 		//myAttributes = new HashSet<EOAttribute>(myAttributes);
 		// firePropertyChange(EOEntity.ATTRIBUTE + "." + _propertyName, new
 		// ProxyChange(_attribute, _oldValue), new ProxyChange(_attribute,
@@ -1771,8 +1991,10 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		firePropertyChange(EOEntity.ATTRIBUTE, null, _attribute);
 	}
 
-	@SuppressWarnings("unused")
 	protected void _relationshipChanged(EORelationship _relationship, String _propertyName, Object _oldValue, Object _newValue) {
+		if (EORelationship.NAME.equals(_propertyName)) {
+			_getRelationshipsIndex().objectRenamed(_relationship, (String) _oldValue);
+		}
 		//myRelationships = new HashSet<EORelationship>(myRelationships);
 		// firePropertyChange(EOEntity.RELATIONSHIP + "." + _propertyName, new
 		// ProxyChange(_relationship, _oldValue), new ProxyChange(_relationship,
@@ -1780,8 +2002,10 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		firePropertyChange(EOEntity.RELATIONSHIP, null, _relationship);
 	}
 
-	@SuppressWarnings("unused")
 	protected void _fetchSpecificationChanged(EOFetchSpecification _fetchSpecification, String _propertyName, Object _oldValue, Object _newValue) {
+		if (EOFetchSpecification.NAME.equals(_propertyName)) {
+			_getFetchSpecsIndex().objectRenamed(_fetchSpecification, (String) _oldValue);
+		}
 		setFetchSpecsDirty(true);
 		//myFetchSpecs = new HashSet<EOFetchSpecification>(myFetchSpecs);
 		// firePropertyChange(EOEntity.FETCH_SPECIFICATION + "." +
@@ -1811,24 +2035,28 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		}
 		Set<EORelationship> oldRelationships = null;
 		if (fireEvents) {
-			oldRelationships = myRelationships;
+			oldRelationships = getRelationships();
 			Set<EORelationship> newRelationships = new HashSet<EORelationship>();
-			newRelationships.addAll(myRelationships);
+			newRelationships.addAll(getRelationships());
 			newRelationships.add(relationship);
 			myRelationships = newRelationships;
-			firePropertyChange(EOEntity.RELATIONSHIPS, oldRelationships, myRelationships);
+			_getRelationshipsIndex().objectAdded(relationship);
+			firePropertyChange(EOEntity.RELATIONSHIPS, oldRelationships, getRelationships());
 		} else {
-			myRelationships.add(relationship);
+			getRelationships().add(relationship);
+			_getRelationshipsIndex().objectAdded(relationship);
+			_referencesChanged();
 		}
 	}
 
 	public void removeRelationship(EORelationship _relationship, boolean _removeFromSubclasses) {
 		String relationshipName = _relationship.getName();
-		Set<EORelationship> oldRelationships = myRelationships;
+		Set<EORelationship> oldRelationships = getRelationships();
 		Set<EORelationship> newRelationships = new HashSet<EORelationship>();
-		newRelationships.addAll(myRelationships);
+		newRelationships.addAll(getRelationships());
 		newRelationships.remove(_relationship);
 		myRelationships = newRelationships;
+		_getRelationshipsIndex().objectRemoved(_relationship);
 		firePropertyChange(EOEntity.RELATIONSHIPS, oldRelationships, newRelationships);
 		if (_removeFromSubclasses) {
 			for (EOEntity childEntity : getChildrenEntities()) {
@@ -1842,27 +2070,11 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public EORelationship getRelationshipNamed(String _name) {
-		EORelationship matchingRelationship = null;
-		Iterator<EORelationship> relationshipsIter = myRelationships.iterator();
-		while (matchingRelationship == null && relationshipsIter.hasNext()) {
-			EORelationship relationship = relationshipsIter.next();
-			if (ComparisonUtils.equals(relationship.getName(), _name)) {
-				matchingRelationship = relationship;
-			}
-		}
-		return matchingRelationship;
+		return _getRelationshipsIndex().getObjectNamed(_name, getRelationships());
 	}
 
 	public EOFetchSpecification getFetchSpecNamed(String _name) {
-		EOFetchSpecification matchingFetchSpec = null;
-		Iterator<EOFetchSpecification> fetchSpecsIter = myFetchSpecs.iterator();
-		while (matchingFetchSpec == null && fetchSpecsIter.hasNext()) {
-			EOFetchSpecification fetchSpec = fetchSpecsIter.next();
-			if (ComparisonUtils.equals(fetchSpec.getName(), _name)) {
-				matchingFetchSpec = fetchSpec;
-			}
-		}
-		return matchingFetchSpec;
+		return _getFetchSpecsIndex().getObjectNamed(_name, getFetchSpecs());
 	}
 
 	public String findUnusedFetchSpecificationName(String _newName) {
@@ -1891,29 +2103,32 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		_checkForDuplicateFetchSpecName(_fetchSpecification, _fetchSpecification.getName(), _failures);
 		Set<EOFetchSpecification> oldFetchSpecs = null;
 		if (_fireEvents) {
-			oldFetchSpecs = myFetchSpecs;
+			oldFetchSpecs = getFetchSpecs();
 			Set<EOFetchSpecification> newFetchSpecs = new HashSet<EOFetchSpecification>();
-			newFetchSpecs.addAll(myFetchSpecs);
+			newFetchSpecs.addAll(getFetchSpecs());
 			newFetchSpecs.add(_fetchSpecification);
 			myFetchSpecs = newFetchSpecs;
-			firePropertyChange(EOEntity.FETCH_SPECIFICATIONS, oldFetchSpecs, myFetchSpecs);
+			_getFetchSpecsIndex().objectAdded(_fetchSpecification);
+			firePropertyChange(EOEntity.FETCH_SPECIFICATIONS, oldFetchSpecs, getFetchSpecs());
 		} else {
-			myFetchSpecs.add(_fetchSpecification);
+			getFetchSpecs().add(_fetchSpecification);
+			_getFetchSpecsIndex().objectAdded(_fetchSpecification);
 		}
 	}
 
 	public void removeFetchSpecification(EOFetchSpecification _fetchSpecification) {
-		Set<EOFetchSpecification> oldFetchSpecs = myFetchSpecs;
+		Set<EOFetchSpecification> oldFetchSpecs = getFetchSpecs();
 		Set<EOFetchSpecification> newFetchSpecs = new HashSet<EOFetchSpecification>();
-		newFetchSpecs.addAll(myFetchSpecs);
+		newFetchSpecs.addAll(getFetchSpecs());
 		newFetchSpecs.remove(_fetchSpecification);
 		myFetchSpecs = newFetchSpecs;
+		_getFetchSpecsIndex().objectRemoved(_fetchSpecification);
 		firePropertyChange(EOEntity.FETCH_SPECIFICATIONS, oldFetchSpecs, newFetchSpecs);
 	}
 
 	public EOEntityIndex getEntityIndexNamed(String _name) {
 		EOEntityIndex matchingEntityIndex = null;
-		Iterator<EOEntityIndex> entityIndexesIter = myEntityIndexes.iterator();
+		Iterator<EOEntityIndex> entityIndexesIter = getEntityIndexes().iterator();
 		while (matchingEntityIndex == null && entityIndexesIter.hasNext()) {
 			EOEntityIndex entityIndex = entityIndexesIter.next();
 			if (ComparisonUtils.equals(entityIndex.getName(), _name)) {
@@ -1972,73 +2187,83 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		_checkForDuplicateEntityIndexName(_entityIndex, _entityIndex.getName(), _failures);
 		Set<EOEntityIndex> oldEntityIndexes = null;
 		if (_fireEvents) {
-			oldEntityIndexes = myEntityIndexes;
+			oldEntityIndexes = getEntityIndexes();
 			Set<EOEntityIndex> newEntityIndexes = new HashSet<EOEntityIndex>();
-			newEntityIndexes.addAll(myEntityIndexes);
+			newEntityIndexes.addAll(getEntityIndexes());
 			newEntityIndexes.add(_entityIndex);
 			myEntityIndexes = newEntityIndexes;
-			firePropertyChange(EOEntity.ENTITY_INDEXES, oldEntityIndexes, myEntityIndexes);
+			firePropertyChange(EOEntity.ENTITY_INDEXES, oldEntityIndexes, getEntityIndexes());
 		} else {
-			myEntityIndexes.add(_entityIndex);
+			getEntityIndexes().add(_entityIndex);
 		}
 	}
 
 	public void removeEntityIndex(EOEntityIndex _entityIndex) {
-		Set<EOEntityIndex> oldEntityIndexes = myEntityIndexes;
+		Set<EOEntityIndex> oldEntityIndexes = getEntityIndexes();
 		Set<EOEntityIndex> newEntityIndexes = new HashSet<EOEntityIndex>();
-		newEntityIndexes.addAll(myEntityIndexes);
+		newEntityIndexes.addAll(getEntityIndexes());
 		newEntityIndexes.remove(_entityIndex);
 		myEntityIndexes = newEntityIndexes;
 		firePropertyChange(EOEntity.ENTITY_INDEXES, oldEntityIndexes, newEntityIndexes);
 	}
 
 	public void setDeleteProcedure(EOStoredProcedure _deleteProcedure) {
+		_materialize();
 		EOStoredProcedure oldDeleteProcedure = myDeleteProcedure;
 		myDeleteProcedure = _deleteProcedure;
 		firePropertyChange(EOEntity.DELETE_PROCEDURE, oldDeleteProcedure, myDeleteProcedure);
 	}
 
 	public EOStoredProcedure getDeleteProcedure() {
+		_materialize();
 		return myDeleteProcedure;
 	}
 
 	public void setFetchAllProcedure(EOStoredProcedure _fetchAllProcedure) {
+		_materialize();
 		EOStoredProcedure oldFetchAllProcedure = myFetchAllProcedure;
 		myFetchAllProcedure = _fetchAllProcedure;
 		firePropertyChange(EOEntity.FETCH_ALL_PROCEDURE, oldFetchAllProcedure, myFetchAllProcedure);
 	}
 
 	public EOStoredProcedure getFetchAllProcedure() {
+		_materialize();
 		return myFetchAllProcedure;
 	}
 
 	public void setFetchWithPrimaryKeyProcedure(EOStoredProcedure _fetchWithPrimaryKeyProcedure) {
+		_materialize();
 		EOStoredProcedure oldFetchWithPrimaryKeyProcedure = myFetchWithPrimaryKeyProcedure;
 		myFetchWithPrimaryKeyProcedure = _fetchWithPrimaryKeyProcedure;
 		firePropertyChange(EOEntity.FETCH_WITH_PRIMARY_KEY_PROCEDURE, oldFetchWithPrimaryKeyProcedure, myFetchWithPrimaryKeyProcedure);
 	}
 
 	public EOStoredProcedure getFetchWithPrimaryKeyProcedure() {
+		_materialize();
 		return myFetchWithPrimaryKeyProcedure;
 	}
 
 	public void setInsertProcedure(EOStoredProcedure _insertProcedure) {
+		_materialize();
 		EOStoredProcedure oldInsertProcedure = myInsertProcedure;
 		myInsertProcedure = _insertProcedure;
 		firePropertyChange(EOEntity.INSERT_PROCEDURE, oldInsertProcedure, myInsertProcedure);
 	}
 
 	public EOStoredProcedure getInsertProcedure() {
+		_materialize();
 		return myInsertProcedure;
 	}
 
 	public void setNextPrimaryKeyProcedure(EOStoredProcedure _nextPrimaryKeyProcedure) {
+		_materialize();
 		EOStoredProcedure oldNextPrimaryKeyProcedure = myNextPrimaryKeyProcedure;
 		myNextPrimaryKeyProcedure = _nextPrimaryKeyProcedure;
 		firePropertyChange(EOEntity.NEXT_PRIMARY_KEY_PROCEDURE, oldNextPrimaryKeyProcedure, myNextPrimaryKeyProcedure);
 	}
 
 	public EOStoredProcedure getNextPrimaryKeyProcedure() {
+		_materialize();
 		return myNextPrimaryKeyProcedure;
 	}
 
@@ -2149,6 +2374,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public EOModelMap toEntityMap() {
+		_materialize();
 		EOModelMap entityMap = myEntityMap.cloneModelMap();
 		entityMap.setString("name", myName, true);
 		entityMap.setString("externalName", myExternalName, true);
@@ -2307,6 +2533,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public EOModelMap toFetchSpecsMap() {
+		_materialize();
 		EOModelMap fetchSpecsMap = myFetchSpecsMap.cloneModelMap();
 		fetchSpecsMap.clear();
 		for (EOFetchSpecification fetchSpec : myFetchSpecs) {
@@ -2326,8 +2553,16 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void loadFromURL(URL entityURL, Set<EOModelVerificationFailure> failures) throws EOModelException {
+		loadFromURL(entityURL, failures, null);
+	}
+
+	/**
+	 * Loads the entity from the given URL, taking its property list from the
+	 * given model snapshot if it isn't null.
+	 */
+	public void loadFromURL(URL entityURL, Set<EOModelVerificationFailure> failures, EOModelSnapshot snapshot) throws EOModelException {
 		try {
-			EOModelMap entityMap = new EOModelMap((Map) WOLPropertyListSerialization.propertyListFromURL(entityURL, new EOModelParserDataStructureFactory()));
+			EOModelMap entityMap = new EOModelMap((Map) EOModelSnapshot.propertyListFromURL(snapshot, entityURL, new EOModelParserDataStructureFactory(true)));
 			loadFromMap(entityMap, failures);
 			setEntityDirty(false);
 			_lastModified = new EOLastModified(entityURL);
@@ -2337,8 +2572,16 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void loadFetchSpecsFromURL(URL fetchSpecURL, Set<EOModelVerificationFailure> failures) throws EOModelException {
+		loadFetchSpecsFromURL(fetchSpecURL, failures, null);
+	}
+
+	/**
+	 * Loads the fetch specifications from the given URL, taking their
+	 * property list from the given model snapshot if it isn't null.
+	 */
+	public void loadFetchSpecsFromURL(URL fetchSpecURL, Set<EOModelVerificationFailure> failures, EOModelSnapshot snapshot) throws EOModelException {
 		try {
-			EOModelMap fspecMap = new EOModelMap((Map) WOLPropertyListSerialization.propertyListFromURL(fetchSpecURL, new EOModelParserDataStructureFactory()));
+			EOModelMap fspecMap = new EOModelMap((Map) EOModelSnapshot.propertyListFromURL(snapshot, fetchSpecURL, new EOModelParserDataStructureFactory(true)));
 			loadFetchSpecsFromMap(fspecMap, failures);
 			setFetchSpecsDirty(false);
 			_fspecLastModified = new EOLastModified(fetchSpecURL);
@@ -2348,16 +2591,34 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void saveToFile(File entityFile, File fetchSpecsFile) throws PropertyListParserException, IOException {
-		EOModelMap entityMap = toEntityMap();
-		WOLPropertyListSerialization.propertyListToFile("Entity Modeler v" + EOModel.CURRENT_VERSION, entityFile, entityMap);
-
-		if (myFetchSpecs.size() == 0) {
-			fetchSpecsFile.delete();
-		} else if (getEntity().isFetchSpecsDirty()) {
-			EOModelMap fetchSpecMap = toFetchSpecsMap();
-			WOLPropertyListSerialization.propertyListToFile("Entity Modeler v" + EOModel.CURRENT_VERSION, fetchSpecsFile, fetchSpecMap);
-		}
-
+		List<EOModelFileSave> saves = _createFileSaves(entityFile, fetchSpecsFile);
+		EOModelFileSave.prepareAll(saves, 1);
+		EOModelFileSave.commitAll(saves);
+		_saved(entityFile, fetchSpecsFile);
+	}
+
+	/**
+	 * Returns the saves that write this entity and its fetch specs to the
+	 * given files.
+	 */
+	public List<EOModelFileSave> _createFileSaves(File entityFile, File fetchSpecsFile) {
+		List<EOModelFileSave> saves = new LinkedList<EOModelFileSave>();
+		saves.add(new EOModelFileSave(entityFile, toEntityMap()));
+		if (getFetchSpecs().size() == 0) {
+			saves.add(new EOModelFileSave(fetchSpecsFile, null));
+		} else if (getEntity().isFetchSpecsDirty() || !fetchSpecsFile.exists()) {
+			// a renamed entity's fetch specs go to a new file, even if they
+			// didn't change
+			saves.add(new EOModelFileSave(fetchSpecsFile, toFetchSpecsMap()));
+		}
+		return saves;
+	}
+
+	/**
+	 * Marks this entity as saved once the saves from _createFileSaves have
+	 * been committed.
+	 */
+	public void _saved(File entityFile, File fetchSpecsFile) {
 		myOriginalName = myName;
 		setEntityDirty(false);
 		_lastModified = new EOLastModified(entityFile);
@@ -2365,6 +2626,14 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void resolveFlattened(Set<EOModelVerificationFailure> _failures) {
+		if (_lazyLoad != null) {
+			synchronized (_getLoadLock()) {
+				if (_isLazyShell()) {
+					_lazyLoad.resolveFlattened = true;
+					return;
+				}
+			}
+		}
 		for (EOAttribute attribute : myAttributes) {
 			if (attribute.isFlattened()) {
 				attribute.resolve(_failures);
@@ -2376,9 +2645,18 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 				relationship.resolve(_failures);
 			}
 		}
+		_referencesChanged();
 	}
 
 	public void resolve(Set<EOModelVerificationFailure> _failures) {
+		if (_lazyLoad != null) {
+			synchronized (_getLoadLock()) {
+				if (_isLazyShell()) {
+					_lazyLoad.resolve = true;
+					return;
+				}
+			}
+		}
 		String parentName = myEntityMap.getString("parent", true);
 		if (parentName != null) {
 			if (myModel != null) {
@@ -2425,6 +2703,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		for (EOEntityIndex entityIndex : myEntityIndexes) {
 			entityIndex.resolve(_failures);
 		}
+		_referencesChanged();
 
 		Set<String> classProperties = myEntityMap.getSet("classProperties");
 		if (classProperties != null) {
@@ -2511,6 +2790,21 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	public void verify(Set<EOModelVerificationFailure> failures, VerificationContext verificationContext) {
+		verify(failures, verificationContext, true);
+	}
+
+	/**
+	 * Verifies the entity. Adding the attributes and relationships it is
+	 * missing from its parents changes the entity and its parents, so a
+	 * caller that verifies entities on several threads does that on its own
+	 * thread first and passes false for inheritParentAttributesAndRelationships.
+	 */
+	public void verify(Set<EOModelVerificationFailure> failures, VerificationContext verificationContext, boolean inheritParentAttributesAndRelationships) {
+		_materialize();
+		if (_lazyLoadFailures != null) {
+			failures.addAll(_lazyLoadFailures);
+			_lazyLoadFailures = null;
+		}
 		String name = getName();
 		if (name == null || name.trim().length() == 0) {
 			failures.add(new EOModelVerificationFailure(myModel, this, "The entity " + getName() + " has an empty name.", false));
@@ -2554,10 +2848,12 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 		if (parent != null && !BooleanUtils.isTrue(parent.isAbstractEntity()) && getRestrictingQualifier() == null && ComparisonUtils.equals(parent.getExternalName(), getExternalName())) {
 			failures.add(new EOModelVerificationFailure(myModel, this, "The entity " + getName() + " is a subclass of " + getParent().getName() + " but does not have a restricting qualifier.", false));
 		}
-		try {
-			inheritParentAttributesAndRelationships(failures, false);
-		} catch (DuplicateNameException e) {
-			failures.add(new EOModelVerificationFailure(myModel, "Failed to fix inherited attributes and relationships for " + getName() + ".", true));
+		if (inheritParentAttributesAndRelationships) {
+			try {
+				inheritParentAttributesAndRelationships(failures, false);
+			} catch (DuplicateNameException e) {
+				failures.add(new EOModelVerificationFailure(myModel, "Failed to fix inherited attributes and relationships for " + getName() + ".", true));
+			}
 		}
 
 		Set<EOAttribute> primaryKeyAttributes = getPrimaryKeyAttributes();
@@ -2581,6 +2877,7 @@ public class EOEntity extends UserInfoableEOModelObject<EOModel> implements IEOE
 	}
 
 	protected EOEntity _cloneJustEntity() {
+		_materialize();
 		EOEntity entity = new EOEntity(myName);
 		entity.myParent = myParent;
 		entity.myPartialEntity = myPartialEntity;
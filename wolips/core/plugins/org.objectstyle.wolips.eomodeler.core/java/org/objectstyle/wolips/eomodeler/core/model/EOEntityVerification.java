@@ -0,0 +1,242 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EOEntityVerification verifies one entity, either right away or on a
+ * verifier thread. Its failures are collected in a set of the verification's
+ * own and sorted, so the caller can add them in the same order no matter
+ * which entity was verified first.
+ * <p>
+ * Verifying an entity is read-only except for adding the attributes and
+ * relationships it is missing from its parents, which fires changes, so
+ * verifyAll does that for every entity on the calling thread before it hands
+ * the entities to the verifier threads, and the verifier threads skip it.
+ */
+public class EOEntityVerification implements Callable<Set<EOModelVerificationFailure>> {
+	private EOEntity _entity;
+
+	private VerificationContext _verificationContext;
+
+	private Set<EOModelVerificationFailure> _failures;
+
+	private Future<Set<EOModelVerificationFailure>> _future;
+
+	private boolean _inherited;
+
+	public EOEntityVerification(EOEntity entity, VerificationContext verificationContext) {
+		_entity = entity;
+		_verificationContext = verificationContext;
+		_failures = new LinkedHashSet<EOModelVerificationFailure>();
+	}
+
+	public EOEntity getEntity() {
+		return _entity;
+	}
+
+	public Set<EOModelVerificationFailure> call() {
+		_entity.verify(_failures, _verificationContext, !_inherited);
+		// the attributes and relationships of an entity are unordered, so the
+		// failures are sorted to come out the same every time
+		List<EOModelVerificationFailure> sortedFailures = new ArrayList<EOModelVerificationFailure>(_failures);
+		Collections.sort(sortedFailures, new FailureComparator());
+		_failures = new LinkedHashSet<EOModelVerificationFailure>(sortedFailures);
+		return _failures;
+	}
+
+	/**
+	 * Adds the failures of the entity to the given set, sorted by the fully
+	 * qualified names of the failed objects and then by their messages. If
+	 * the verification hasn't been submitted to an executor, it runs now.
+	 */
+	public void getFailures(Set<EOModelVerificationFailure> failures) {
+		try {
+			if (_future == null) {
+				call();
+			} else {
+				_future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while verifying " + _entity.getName() + ".", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException("Failed to verify " + _entity.getName() + ".", cause);
+		}
+		failures.addAll(_failures);
+	}
+
+	/**
+	 * Adds the attributes and relationships the entity is missing from its
+	 * parents, and the failures that reports, on the calling thread.
+	 */
+	protected void _inheritParentAttributesAndRelationships() {
+		_inherited = true;
+		try {
+			_entity.inheritParentAttributesAndRelationships(_failures, false);
+		} catch (DuplicateNameException e) {
+			_failures.add(new EOModelVerificationFailure(_entity.getModel(), "Failed to fix inherited attributes and relationships for " + _entity.getName() + ".", true));
+		}
+	}
+
+	protected void submit(ExecutorService executor) {
+		_future = executor.submit(this);
+	}
+
+	/**
+	 * Submits the given entities to a new pool of the given number of threads
+	 * and returns their verifications, sorted by the fully qualified names of
+	 * the entities. With fewer than two entities or threads nothing is
+	 * submitted, and every entity is verified when its failures are
+	 * requested.
+	 */
+	public static List<EOEntityVerification> verifyAll(Collection<EOEntity> entities, VerificationContext verificationContext, int threads) {
+		List<EOEntityVerification> verifications = new ArrayList<EOEntityVerification>(entities.size());
+		for (EOEntity entity : entities) {
+			verifications.add(new EOEntityVerification(entity, verificationContext));
+		}
+		Collections.sort(verifications, new EntityNameComparator());
+		if (threads > 1 && verifications.size() > 1) {
+			// parents go first, so their children inherit everything at once
+			List<EOEntityVerification> parentsFirst = new ArrayList<EOEntityVerification>(verifications);
+			Collections.sort(parentsFirst, new InheritanceDepthComparator());
+			for (EOEntityVerification verification : parentsFirst) {
+				verification._inheritParentAttributesAndRelationships();
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, verifications.size()), new VerifierThreadFactory());
+			for (EOEntityVerification verification : verifications) {
+				verification.submit(executor);
+			}
+			// the threads go away once the submitted verifications are done
+			executor.shutdown();
+		}
+		return verifications;
+	}
+
+	/**
+	 * Verifies the given entities on up to the given number of threads and
+	 * adds their failures to the given set, entity by entity in the order of
+	 * their fully qualified names.
+	 */
+	public static void verifyAll(Collection<EOEntity> entities, Set<EOModelVerificationFailure> failures, VerificationContext verificationContext, int threads) {
+		for (EOEntityVerification verification : EOEntityVerification.verifyAll(entities, verificationContext, threads)) {
+			verification.getFailures(failures);
+		}
+	}
+
+	protected static class EntityNameComparator implements Comparator<EOEntityVerification> {
+		public int compare(EOEntityVerification verification1, EOEntityVerification verification2) {
+			return verification1.getEntity().getFullyQualifiedName().compareTo(verification2.getEntity().getFullyQualifiedName());
+		}
+	}
+
+	protected static class FailureComparator implements Comparator<EOModelVerificationFailure> {
+		public int compare(EOModelVerificationFailure failure1, EOModelVerificationFailure failure2) {
+			int comparison = FailureComparator.failedObjectName(failure1).compareTo(FailureComparator.failedObjectName(failure2));
+			if (comparison == 0) {
+				comparison = String.valueOf(failure1.getMessage()).compareTo(String.valueOf(failure2.getMessage()));
+			}
+			return comparison;
+		}
+
+		protected static String failedObjectName(EOModelVerificationFailure failure) {
+			EOModelObject failedObject = failure.getFailedObject();
+			return failedObject == null ? "" : String.valueOf(failedObject.getFullyQualifiedName());
+		}
+	}
+
+	protected static class InheritanceDepthComparator implements Comparator<EOEntityVerification> {
+		public int compare(EOEntityVerification verification1, EOEntityVerification verification2) {
+			int depth1 = InheritanceDepthComparator.depth(verification1.getEntity());
+			int depth2 = InheritanceDepthComparator.depth(verification2.getEntity());
+			return depth1 < depth2 ? -1 : (depth1 == depth2 ? 0 : 1);
+		}
+
+		protected static int depth(EOEntity entity) {
+			Set<EOEntity> ancestors = new HashSet<EOEntity>();
+			for (EOEntity parent = entity.getParent(); parent != null && ancestors.add(parent);) {
+				parent = parent.getParent();
+			}
+			return ancestors.size();
+		}
+	}
+
+	protected static class VerifierThreadFactory implements ThreadFactory {
+		private static final AtomicInteger _threadNumber = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "EOModel verifier " + _threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
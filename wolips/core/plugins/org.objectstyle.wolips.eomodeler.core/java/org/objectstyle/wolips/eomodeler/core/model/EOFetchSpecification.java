@@ -223,6 +223,8 @@ public class EOFetchSpecification extends UserInfoableEOModelObject<EOEntity> im
 		myName = _name;
 		if (_fireEvents) {
 			firePropertyChange(EOFetchSpecification.NAME, oldName, myName);
+		} else if (myEntity != null) {
+			myEntity._fetchSpecificationNameChanged(this, oldName);
 		}
 	}
 
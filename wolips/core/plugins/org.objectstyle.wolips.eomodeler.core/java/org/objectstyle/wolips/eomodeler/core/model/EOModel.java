@@ -53,14 +53,17 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.objectstyle.woenvironment.plist.PropertyListParserException;
-import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
 import org.objectstyle.wolips.baseforplugins.util.ComparisonUtils;
 import org.objectstyle.wolips.baseforplugins.util.URLUtils;
 import org.objectstyle.wolips.eomodeler.core.model.history.EOEntityAddedEvent;
@@ -139,6 +142,64 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 	
 	private EOLastModified _lastModified;
 
+	private List<EODatabaseConfig> _databaseConfigsWithoutModelGroup;
+
+	private static volatile int _loadThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Returns the number of threads that read the entity and stored procedure
+	 * files of a model in loadFromURL.
+	 */
+	public static int getLoadThreads() {
+		return EOModel._loadThreads;
+	}
+
+	/**
+	 * Sets the number of threads that read the entity and stored procedure
+	 * files of a model in loadFromURL; 1 reads them one after another on the
+	 * calling thread.
+	 */
+	public static void setLoadThreads(int loadThreads) {
+		EOModel._loadThreads = loadThreads;
+	}
+
+	private static volatile int _saveThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Returns the number of threads that serialize and write the files of a
+	 * model in saveToFolder.
+	 */
+	public static int getSaveThreads() {
+		return EOModel._saveThreads;
+	}
+
+	/**
+	 * Sets the number of threads that serialize and write the files of a
+	 * model in saveToFolder; 1 writes them one after another on the calling
+	 * thread.
+	 */
+	public static void setSaveThreads(int saveThreads) {
+		EOModel._saveThreads = saveThreads;
+	}
+
+	private static volatile boolean _lazyLoading;
+
+	/**
+	 * Returns whether loadFromURL only reads index.eomodeld and leaves each
+	 * entity to read its files the first time it is used.
+	 */
+	public static boolean isLazyLoading() {
+		return EOModel._lazyLoading;
+	}
+
+	/**
+	 * Sets whether loadFromURL only reads index.eomodeld and leaves each
+	 * entity to read its files the first time it is used.
+	 */
+	public static void setLazyLoading(boolean lazyLoading) {
+		EOModel._lazyLoading = lazyLoading;
+	}
+
 	public EOModel(String _name) {
 		myName = _name;
 		myEntities = new HashSet<EOEntity>();
@@ -177,6 +238,19 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		myModelGroup = _modelGroup;
 	}
 
+	/**
+	 * Returns the lock the lazily loaded entities of the model are read
+	 * under: the model group's, because an entity that is being read
+	 * resolves against the other models of the group, or the model's own
+	 * while it isn't in a group yet. The prototype caches take it too,
+	 * because reading an entity looks up prototypes and looking up
+	 * prototypes can read an entity.
+	 */
+	public Object _getLoadLock() {
+		EOModelGroup modelGroup = myModelGroup;
+		return modelGroup == null ? this : modelGroup._getLoadLock();
+	}
+
 	public void setEntityNamingConvention(NamingConvention entityNamingConvention) {
 		NamingConvention oldEntityNamingConvention = _entityNamingConvention;
 		_entityNamingConvention = entityNamingConvention;
@@ -449,9 +523,38 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		}
 		defaultDatabaseConfig.setPrototype(_getPreferredPrototypeEntity(adaptorName, connectionDictionary));
 		defaultDatabaseConfig._setModel(this);
+		if (myModelGroup == null) {
+			// a model that is loaded outside of a model group can't see the
+			// prototype entities yet, see _resolveDatabaseConfigPrototypes
+			if (_databaseConfigsWithoutModelGroup == null) {
+				_databaseConfigsWithoutModelGroup = new LinkedList<EODatabaseConfig>();
+			}
+			_databaseConfigsWithoutModelGroup.add(defaultDatabaseConfig);
+		}
 		return defaultDatabaseConfig;
 	}
 
+	/**
+	 * Picks the prototypes of the database configs that _createDatabaseConfig
+	 * created while this model had no model group, now that it has one. The
+	 * model group calls this for models that were parsed before they were
+	 * added to it.
+	 */
+	public void _resolveDatabaseConfigPrototypes() {
+		if (_databaseConfigsWithoutModelGroup != null && myModelGroup != null) {
+			for (EODatabaseConfig databaseConfig : _databaseConfigsWithoutModelGroup) {
+				if (myDatabaseConfigs.contains(databaseConfig) && databaseConfig.getPrototype() == null) {
+					// just like in _createDatabaseConfig, the config doesn't
+					// report the change to this model
+					databaseConfig._setModel(null);
+					databaseConfig.setPrototype(_getPreferredPrototypeEntity(databaseConfig.getAdaptorName(), databaseConfig.getConnectionDictionary()));
+					databaseConfig._setModel(this);
+				}
+			}
+			_databaseConfigsWithoutModelGroup = null;
+		}
+	}
+
 	public Map<EOAttribute, Set<EORelationship>> _createReferencingRelationshipsCache() {
 		Map<EOAttribute, Set<EORelationship>> cache = new HashMap<EOAttribute, Set<EORelationship>>();
 		_createReferencingRelationshipsCache(cache);
@@ -619,6 +722,19 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		}
 	}
 
+	/**
+	 * Called when a lazily loaded entity turns out to have another name in
+	 * its file than in index.eomodeld.
+	 */
+	public void _lazyEntityNameChanged(String indexName, EOEntity entity) {
+		synchronized (_entitiesCache) {
+			if (_entitiesCache.get(indexName) == entity) {
+				_entitiesCache.remove(indexName);
+			}
+			_entitiesCache.put(entity.getName(), entity);
+		}
+	}
+
 	public boolean containsEntityNamed(String _entityName) {
 		return getEntityNamed(_entityName) != null;
 	}
@@ -638,8 +754,13 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		for (EOEntity entity : sourceModel.getEntities()) {
 			clonedEntities.add(entity._cloneModelObject());
 		}
-		addEntities(clonedEntities, failures);
-		guessPrototypes(clonedEntities);
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			addEntities(clonedEntities, failures);
+			guessPrototypes(clonedEntities);
+		} finally {
+			batch.end();
+		}
 		return clonedEntities;
 	}
 
@@ -648,19 +769,24 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 	}
 
 	public void guessPrototypes(Set<EOEntity> entities) {
-		for (EOEntity entity : entities) {
-			// clonedEntity.setName(StringUtils.toUppercaseFirstLetter(clonedEntity.getName().toLowerCase()));
-			for (EOAttribute attribute : entity.getAttributes()) {
-				attribute.guessPrototype(true);
-				// clonedAttribute.setName(clonedAttribute.getName().toLowerCase());
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			for (EOEntity entity : entities) {
+				// clonedEntity.setName(StringUtils.toUppercaseFirstLetter(clonedEntity.getName().toLowerCase()));
+				for (EOAttribute attribute : entity.getAttributes()) {
+					attribute.guessPrototype(true);
+					// clonedAttribute.setName(clonedAttribute.getName().toLowerCase());
+				}
+				// Iterator clonedRelationshipsIter =
+				// clonedEntity.getRelationships().iterator();
+				// while (clonedRelationshipsIter.hasNext()) {
+				// EORelationship clonedRelationship = (EORelationship)
+				// clonedRelationshipsIter.next();
+				// clonedRelationship.setName(clonedRelationship.getName().toLowerCase());
+				// }
 			}
-			// Iterator clonedRelationshipsIter =
-			// clonedEntity.getRelationships().iterator();
-			// while (clonedRelationshipsIter.hasNext()) {
-			// EORelationship clonedRelationship = (EORelationship)
-			// clonedRelationshipsIter.next();
-			// clonedRelationship.setName(clonedRelationship.getName().toLowerCase());
-			// }
+		} finally {
+			batch.end();
 		}
 	}
 
@@ -670,14 +796,19 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		Set<EOEntity> oldEntities = new HashSet<EOEntity>();
 		oldEntities.addAll(myEntities);
 
-		for (EOEntity entity : entities) {
-			addEntity(entity, false, false, failures);
-		}
-		for (EOEntity entity : entities) {
-			entity.pasted();
-		}
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			for (EOEntity entity : entities) {
+				addEntity(entity, false, false, failures);
+			}
+			for (EOEntity entity : entities) {
+				entity.pasted();
+			}
 
-		firePropertyChange(EOModel.ENTITIES, oldEntities, myEntities);
+			firePropertyChange(EOModel.ENTITIES, oldEntities, myEntities);
+		} finally {
+			batch.end();
+		}
 	}
 
 	public void addEntity(EOEntity _entity) throws DuplicateNameException {
@@ -706,6 +837,9 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 			firePropertyChange(EOModel.ENTITIES, oldEntities, myEntities);
 		} else {
 			myEntities.add(entity);
+			if (myModelGroup != null) {
+				myModelGroup._entitiesChanged();
+			}
 		}
 	}
 
@@ -833,15 +967,26 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 	}
 
 	public void loadFromURL(URL _modelFolder, Set<EOModelVerificationFailure> _failures) throws EOModelException, MalformedURLException {
+		loadFromURL(_modelFolder, _failures, EOModel.getLoadThreads());
+	}
+
+	/**
+	 * Loads the model from the given folder, reading its entity and stored
+	 * procedure files on the given number of threads.
+	 */
+	public void loadFromURL(URL _modelFolder, Set<EOModelVerificationFailure> _failures, int loadThreads) throws EOModelException, MalformedURLException {
 		// System.out.println("EOModel.loadFromURL: " + _modelFolder);
 		URL indexURL = new URL(_modelFolder, "index.eomodeld");
 		// if (!indexURL.exists()) {
 		// throw new EOModelException(indexURL + " does not exist.");
 		// }
 		myModelURL = _modelFolder;
+		// with a snapshot cache, unchanged files come from the snapshot
+		// instead of being parsed again
+		EOModelSnapshot snapshot = EOModelSnapshot.snapshotForModelURL(_modelFolder);
 		Map rawModelMap;
 		try {
-			rawModelMap = (Map) WOLPropertyListSerialization.propertyListFromURL(indexURL, new EOModelParserDataStructureFactory());
+			rawModelMap = (Map) EOModelSnapshot.propertyListFromURL(snapshot, indexURL, new EOModelParserDataStructureFactory(true));
 		} catch (Exception e) {
 			throw new EOModelException("index.eomodeld is corrupted.", e);
 		}
@@ -860,19 +1005,50 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		}
 		loadUserInfo(modelMap);
 
+		// the entity and stored procedure files are read and parsed on a pool
+		// of loader threads, but attached in the order of index.eomodeld
+		List<EOModelFileLoad<EOEntity>> entityLoads = new LinkedList<EOModelFileLoad<EOEntity>>();
 		Set<Map> entities = modelMap.getSet("entities");
 		if (entities != null) {
+			boolean lazyLoading = EOModel.isLazyLoading();
 			for (Map entitiesMap : entities) {
 				EOModelMap entityMap = new EOModelMap(entitiesMap);
 				String entityName = entityMap.getString("name", true);
-				EOEntity entity = new EOEntity();
 				URL entityURL = new URL(_modelFolder, entityName + ".plist");
-				if (URLUtils.exists(entityURL)) {
-					entity.loadFromURL(entityURL, _failures);
-					URL fspecURL = new URL(_modelFolder, entityName + ".fspec");
-					if (URLUtils.exists(fspecURL)) {
-						entity.loadFetchSpecsFromURL(fspecURL, _failures);
+				URL fetchSpecsURL = new URL(_modelFolder, entityName + ".fspec");
+				if (lazyLoading) {
+					// only the shell of the entity is created here, it reads
+					// its files when it is first used
+					if (URLUtils.exists(entityURL)) {
+						addEntity(EOEntity._createLazyEntity(entityName, entityMap.getString("className", true), entityURL, fetchSpecsURL, snapshot), false, false, _failures);
+						if (snapshot != null) {
+							snapshot.keep(entityURL);
+							snapshot.keep(fetchSpecsURL);
+						}
+					} else {
+						_failures.add(new EOModelVerificationFailure(this, this, "The entity file " + entityURL + " was missing.", false));
 					}
+				} else {
+					entityLoads.add(new EOModelFileLoad.EntityLoad(entityURL, fetchSpecsURL, snapshot));
+				}
+			}
+		}
+		List<EOModelFileLoad<EOStoredProcedure>> storedProcedureLoads = new LinkedList<EOModelFileLoad<EOStoredProcedure>>();
+		Set<String> storedProcedureNames = modelMap.getSet("storedProcedures");
+		if (storedProcedureNames != null) {
+			for (String storedProcedureName : storedProcedureNames) {
+				storedProcedureLoads.add(new EOModelFileLoad.StoredProcedureLoad(new URL(_modelFolder, storedProcedureName + ".storedProcedure"), snapshot));
+			}
+		}
+		List<EOModelFileLoad<?>> loads = new LinkedList<EOModelFileLoad<?>>();
+		loads.addAll(entityLoads);
+		loads.addAll(storedProcedureLoads);
+		ExecutorService loadExecutor = EOModelFileLoad.submitAll(loads, loadThreads);
+		try {
+			for (EOModelFileLoad<EOEntity> entityLoad : entityLoads) {
+				URL entityURL = entityLoad.getURL();
+				EOEntity entity = entityLoad.getResult(_failures);
+				if (entity != null) {
 					if (entity.getName() == null) {
 						_failures.add(new EOModelVerificationFailure(this, this, "The entity file " + entityURL + " defines an entity with no name.", false));
 					}
@@ -881,20 +1057,27 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 					_failures.add(new EOModelVerificationFailure(this, this, "The entity file " + entityURL + " was missing.", false));
 				}
 			}
-		}
 
-		Set<String> storedProcedureNames = modelMap.getSet("storedProcedures");
-		if (storedProcedureNames != null) {
-			for (String storedProcedureName : storedProcedureNames) {
-				EOStoredProcedure storedProcedure = new EOStoredProcedure();
-				URL storedProcedureURL = new URL(_modelFolder, storedProcedureName + ".storedProcedure");
-				if (URLUtils.exists(storedProcedureURL)) {
-					storedProcedure.loadFromURL(storedProcedureURL, _failures);
+			for (EOModelFileLoad<EOStoredProcedure> storedProcedureLoad : storedProcedureLoads) {
+				EOStoredProcedure storedProcedure = storedProcedureLoad.getResult(_failures);
+				if (storedProcedure != null) {
 					addStoredProcedure(storedProcedure, false, _failures);
 				} else {
-					_failures.add(new EOModelVerificationFailure(this, this, "The stored procedure file " + storedProcedureURL + " was missing.", false));
+					_failures.add(new EOModelVerificationFailure(this, this, "The stored procedure file " + storedProcedureLoad.getURL() + " was missing.", false));
 				}
 			}
+		} finally {
+			if (loadExecutor != null) {
+				loadExecutor.shutdownNow();
+			}
+		}
+		if (snapshot != null) {
+			try {
+				snapshot.saveIfNeeded();
+			} catch (IOException e) {
+				// a snapshot that can't be written just means the next load
+				// parses the model again
+			}
 		}
 
 		Map<Object, Object> internalInfoMap = modelMap.getMap("internalInfo");
@@ -1150,52 +1333,62 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 			}
 			myModelURL = modelFolder.toURL();
 			File indexFile = new File(modelFolder, "index.eomodeld");
-			EOModelMap modelMap = toMap();
-			WOLPropertyListSerialization.propertyListToFile("Entity Modeler v" + EOModel.CURRENT_VERSION, indexFile, modelMap);
-	
-			if (myDeletedEntityNames != null) {
-				for (String entityName : myDeletedEntityNames) {
-					if (getEntityNamed(entityName) == null) {
-						File entityFile = new File(modelFolder, entityName + ".plist");
-						if (entityFile.exists()) {
-							entityFile.delete();
-						}
-						File fspecFile = new File(modelFolder, entityName + ".fspec");
-						if (fspecFile.exists()) {
-							fspecFile.delete();
-						}
-					}
-				}
-			}
-	
+
+			// every file is prepared (and only written if it changed) before
+			// any of them is replaced, and the index goes last, so a failed
+			// save leaves the previous model behind; the files of deleted and
+			// renamed entities are deleted before the others are replaced
+			List<EOModelFileSave> saves = new LinkedList<EOModelFileSave>();
+			Map<EOEntity, File[]> savedEntities = new HashMap<EOEntity, File[]>();
 			for (EOEntity entity : myEntities) {
 				if (entity.isEntityDirty()) {
 					String entityName = entity.getName();
 					File entityFile = new File(modelFolder, entityName + ".plist");
 					File fspecFile = new File(modelFolder, entityName + ".fspec");
-					entity.saveToFile(entityFile, fspecFile);
+					saves.addAll(entity._createFileSaves(entityFile, fspecFile));
+					savedEntities.put(entity, new File[] { entityFile, fspecFile });
 				}
 			}
-	
-			if (myDeletedStoredProcedureNames != null) {
-				for (String storedProcedureName : myDeletedStoredProcedureNames) {
-					if (getStoredProcedureNamed(storedProcedureName) == null) {
-						File storedProcedureFile = new File(modelFolder, storedProcedureName + ".storedProcedure");
-						if (storedProcedureFile.exists()) {
-							storedProcedureFile.delete();
-						}
+
+			if (myDeletedEntityNames != null) {
+				for (String entityName : myDeletedEntityNames) {
+					if (getEntityNamed(entityName) == null) {
+						saves.add(new EOModelFileSave(new File(modelFolder, entityName + ".plist"), null));
+						saves.add(new EOModelFileSave(new File(modelFolder, entityName + ".fspec"), null));
 					}
 				}
 			}
-	
+
+			Map<EOStoredProcedure, File> savedStoredProcedures = new HashMap<EOStoredProcedure, File>();
 			for (EOStoredProcedure storedProcedure : myStoredProcedures) {
 				if (storedProcedure.isStoredProcedureDirty()) {
 					String storedProcedureName = storedProcedure.getName();
 					File storedProcedureFile = new File(modelFolder, storedProcedureName + ".storedProcedure");
-					storedProcedure.saveToFile(storedProcedureFile);
+					saves.add(new EOModelFileSave(storedProcedureFile, storedProcedure.toMap()));
+					savedStoredProcedures.put(storedProcedure, storedProcedureFile);
 				}
 			}
-	
+
+			if (myDeletedStoredProcedureNames != null) {
+				for (String storedProcedureName : myDeletedStoredProcedureNames) {
+					if (getStoredProcedureNamed(storedProcedureName) == null) {
+						saves.add(new EOModelFileSave(new File(modelFolder, storedProcedureName + ".storedProcedure"), null));
+					}
+				}
+			}
+
+			saves.add(new EOModelFileSave(indexFile, toMap()));
+			EOModelFileSave.prepareAll(saves, EOModel.getSaveThreads());
+			EOModelFileSave.commitAll(saves);
+
+			for (Map.Entry<EOEntity, File[]> savedEntity : savedEntities.entrySet()) {
+				File[] files = savedEntity.getValue();
+				savedEntity.getKey()._saved(files[0], files[1]);
+			}
+			for (Map.Entry<EOStoredProcedure, File> savedStoredProcedure : savedStoredProcedures.entrySet()) {
+				savedStoredProcedure.getKey()._saved(savedStoredProcedure.getValue());
+			}
+
 			setDirty(false);
 			_lastModified = new EOLastModified(indexFile);
 	
@@ -1226,15 +1419,20 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		} else {
 			verificationContext = new VerificationContext(modelGroup);
 		}
-		verify(_failures, verificationContext);
+		if (modelGroup != null && EOModelGroup.isIncrementalVerification()) {
+			modelGroup._verify(this, _failures, verificationContext);
+		} else {
+			verify(_failures, verificationContext);
+		}
+		if (EOModelGroup.isPerformanceLint()) {
+			new EOPerformanceLint().lint(Collections.singleton(this), _failures);
+		}
 	}
 
 	public void verify(Set<EOModelVerificationFailure> _failures, VerificationContext verificationContext) {
 		// TODO
 
-		for (EOEntity entity : myEntities) {
-			entity.verify(_failures, verificationContext);
-		}
+		EOEntityVerification.verifyAll(myEntities, _failures, verificationContext, EOModelGroup.getVerifyThreads());
 	}
 
 	public String getFullyQualifiedName() {
@@ -1278,19 +1476,23 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 	}
 
 	/** Begin Prototypes * */
-	public synchronized void clearCachedPrototypes(Set<EOModelVerificationFailure> _failures, boolean _reload) {
-		myPrototypeAttributeCache = null;
-		for (EOEntity entity : myEntities) {
-			entity.clearCachedPrototypes(_failures, _reload);
+	public void clearCachedPrototypes(Set<EOModelVerificationFailure> _failures, boolean _reload) {
+		synchronized (_getLoadLock()) {
+			myPrototypeAttributeCache = null;
+			for (EOEntity entity : myEntities) {
+				entity.clearCachedPrototypes(_failures, _reload);
+			}
 		}
 	}
 
-	public synchronized Set<String> getPrototypeAttributeNames() {
-		Set<String> prototypeAttributeNames = new PropertyListSet<String>();
-		for (EOAttribute attribute : getPrototypeAttributes()) {
-			prototypeAttributeNames.add(attribute.getName());
+	public Set<String> getPrototypeAttributeNames() {
+		synchronized (_getLoadLock()) {
+			Set<String> prototypeAttributeNames = new PropertyListSet<String>();
+			for (EOAttribute attribute : getPrototypeAttributes()) {
+				prototypeAttributeNames.add(attribute.getName());
+			}
+			return prototypeAttributeNames;
 		}
-		return prototypeAttributeNames;
 	}
 
 	public String _getDefaultPrototypeEntityName(String prefix, String name) {
@@ -1368,39 +1570,41 @@ public class EOModel extends UserInfoableEOModelObject<EOModelGroup> implements
 		return prototypeEntity;
 	}
 
-	public synchronized Set<EOAttribute> getPrototypeAttributes() {
-		if (myPrototypeAttributeCache == null) {
-			Map<String, EOAttribute> prototypeAttributeCache = new HashMap<String, EOAttribute>();
+	public Set<EOAttribute> getPrototypeAttributes() {
+		synchronized (_getLoadLock()) {
+			if (myPrototypeAttributeCache == null) {
+				Map<String, EOAttribute> prototypeAttributeCache = new HashMap<String, EOAttribute>();
 
-			Map connectionDictionary = null;
-			EODatabaseConfig activeDatabaseConfig = getActiveDatabaseConfig();
-			if (activeDatabaseConfig != null) {
-				connectionDictionary = activeDatabaseConfig.getConnectionDictionary();
-			}
-			addPrototypeAttributes(_getDefaultPrototypeEntityName(null, null), prototypeAttributeCache);
-			addPrototypeAttributes(_getAdaptorPrototypeEntityName(null, getAdaptorName(), null), prototypeAttributeCache);
-			addPrototypeAttributes(_getDriverPrototypeEntityName(null, connectionDictionary, null), prototypeAttributeCache);
-			
-			addPrototypeAttributes(_getDefaultPrototypeEntityName("Custom", null), prototypeAttributeCache);
-			addPrototypeAttributes(_getAdaptorPrototypeEntityName("Custom", getAdaptorName(), null), prototypeAttributeCache);
-			addPrototypeAttributes(_getDriverPrototypeEntityName("Custom", connectionDictionary, null), prototypeAttributeCache);
-			
-			addPrototypeAttributes(_getDefaultPrototypeEntityName(null, getName()), prototypeAttributeCache);
-			addPrototypeAttributes(_getAdaptorPrototypeEntityName(null, getAdaptorName(), getName()), prototypeAttributeCache);
-			addPrototypeAttributes(_getDriverPrototypeEntityName(null, connectionDictionary, getName()), prototypeAttributeCache);
-
-			if (activeDatabaseConfig != null) {
-				EOEntity prototypeEntity = activeDatabaseConfig.getPrototype();
-				if (prototypeEntity != null) {
-					addPrototypeAttributes(prototypeEntity.getName(), prototypeAttributeCache);
+				Map connectionDictionary = null;
+				EODatabaseConfig activeDatabaseConfig = getActiveDatabaseConfig();
+				if (activeDatabaseConfig != null) {
+					connectionDictionary = activeDatabaseConfig.getConnectionDictionary();
+				}
+				addPrototypeAttributes(_getDefaultPrototypeEntityName(null, null), prototypeAttributeCache);
+				addPrototypeAttributes(_getAdaptorPrototypeEntityName(null, getAdaptorName(), null), prototypeAttributeCache);
+				addPrototypeAttributes(_getDriverPrototypeEntityName(null, connectionDictionary, null), prototypeAttributeCache);
+				
+				addPrototypeAttributes(_getDefaultPrototypeEntityName("Custom", null), prototypeAttributeCache);
+				addPrototypeAttributes(_getAdaptorPrototypeEntityName("Custom", getAdaptorName(), null), prototypeAttributeCache);
+				addPrototypeAttributes(_getDriverPrototypeEntityName("Custom", connectionDictionary, null), prototypeAttributeCache);
+				
+				addPrototypeAttributes(_getDefaultPrototypeEntityName(null, getName()), prototypeAttributeCache);
+				addPrototypeAttributes(_getAdaptorPrototypeEntityName(null, getAdaptorName(), getName()), prototypeAttributeCache);
+				addPrototypeAttributes(_getDriverPrototypeEntityName(null, connectionDictionary, getName()), prototypeAttributeCache);
+
+				if (activeDatabaseConfig != null) {
+					EOEntity prototypeEntity = activeDatabaseConfig.getPrototype();
+					if (prototypeEntity != null) {
+						addPrototypeAttributes(prototypeEntity.getName(), prototypeAttributeCache);
+					}
 				}
-			}
 
-			// Do we need to support "EOPrototypesToHide" entity?
-			myPrototypeAttributeCache = new HashSet<EOAttribute>();
-			myPrototypeAttributeCache.addAll(prototypeAttributeCache.values());
+				// Do we need to support "EOPrototypesToHide" entity?
+				myPrototypeAttributeCache = new HashSet<EOAttribute>();
+				myPrototypeAttributeCache.addAll(prototypeAttributeCache.values());
+			}
+			return myPrototypeAttributeCache;
 		}
-		return myPrototypeAttributeCache;
 	}
 
 	protected void addPrototypeAttributes(String _prototypeEntityName, Map<String, EOAttribute> _prototypeAttributeCache) {
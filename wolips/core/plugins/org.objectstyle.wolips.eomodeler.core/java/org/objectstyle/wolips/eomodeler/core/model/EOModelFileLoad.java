@@ -0,0 +1,250 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectstyle.wolips.baseforplugins.util.URLUtils;
+
+/**
+ * EOModelFileLoad reads one file of a model (an entity, its fetch specs, a
+ * stored procedure) into a detached model object, either right away or on a
+ * loader thread. Failures are collected in a set of the load's own and only
+ * handed to the model when it asks for the result, so the model can attach the
+ * results in its own order no matter which file was parsed first.
+ */
+public abstract class EOModelFileLoad<T> implements Callable<T> {
+	private URL _url;
+
+	private Set<EOModelVerificationFailure> _failures;
+
+	private Future<T> _future;
+
+	public EOModelFileLoad(URL url) {
+		_url = url;
+		_failures = new LinkedHashSet<EOModelVerificationFailure>();
+	}
+
+	public URL getURL() {
+		return _url;
+	}
+
+	/**
+	 * Returns the object read from the given URL, which is known to exist.
+	 */
+	protected abstract T load(URL url, Set<EOModelVerificationFailure> failures) throws EOModelException;
+
+	public T call() throws EOModelException {
+		T object = null;
+		if (URLUtils.exists(_url)) {
+			object = load(_url, _failures);
+		}
+		return object;
+	}
+
+	/**
+	 * Returns the loaded object, or null if the file doesn't exist, and adds
+	 * the failures of the load to the given set. If the load hasn't been
+	 * submitted to an executor, it runs now.
+	 */
+	public T getResult(Set<EOModelVerificationFailure> failures) throws EOModelException {
+		try {
+			if (_future == null) {
+				return call();
+			}
+			return _future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EOModelException("Interrupted while loading '" + _url + "'.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof EOModelException) {
+				throw (EOModelException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new EOModelException("Failed to load '" + _url + "'.", cause);
+		} finally {
+			failures.addAll(_failures);
+			_failures.clear();
+		}
+	}
+
+	/**
+	 * Submits the given loads to a new pool of the given number of threads and
+	 * returns the pool, which the caller shuts down once it has all the
+	 * results. With fewer than two loads or threads nothing is submitted, null
+	 * is returned, and every load runs when its result is requested.
+	 */
+	public static ExecutorService submitAll(List<? extends EOModelFileLoad<?>> loads, int threads) {
+		ExecutorService executor = null;
+		if (threads > 1 && loads.size() > 1) {
+			executor = Executors.newFixedThreadPool(Math.min(threads, loads.size()), new LoaderThreadFactory());
+			for (EOModelFileLoad<?> load : loads) {
+				load.submit(executor);
+			}
+		}
+		return executor;
+	}
+
+	protected void submit(ExecutorService executor) {
+		_future = executor.submit(this);
+	}
+
+	protected static class LoaderThreadFactory implements ThreadFactory {
+		private static final AtomicInteger _threadNumber = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "EOModel loader " + _threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * EntityLoad reads an entity and, if there is one, its .fspec file, from
+	 * the given model snapshot if it isn't null.
+	 */
+	public static class EntityLoad extends EOModelFileLoad<EOEntity> {
+		private URL _fetchSpecsURL;
+
+		private EOModelSnapshot _snapshot;
+
+		public EntityLoad(URL entityURL, URL fetchSpecsURL) {
+			this(entityURL, fetchSpecsURL, null);
+		}
+
+		public EntityLoad(URL entityURL, URL fetchSpecsURL, EOModelSnapshot snapshot) {
+			super(entityURL);
+			_fetchSpecsURL = fetchSpecsURL;
+			_snapshot = snapshot;
+		}
+
+		@Override
+		protected EOEntity load(URL url, Set<EOModelVerificationFailure> failures) throws EOModelException {
+			EOEntity entity = new EOEntity();
+			entity.loadFromURL(url, failures, _snapshot);
+			if (URLUtils.exists(_fetchSpecsURL)) {
+				entity.loadFetchSpecsFromURL(_fetchSpecsURL, failures, _snapshot);
+			}
+			return entity;
+		}
+	}
+
+	/**
+	 * ModelLoad reads a whole model, which isn't in a model group yet, from its
+	 * index.eomodeld and the files next to it. The result is null if the
+	 * index.eomodeld doesn't exist.
+	 */
+	public static class ModelLoad extends EOModelFileLoad<EOModel> {
+		private EOModel _model;
+
+		private int _loadThreads;
+
+		public ModelLoad(EOModel model, int loadThreads) throws MalformedURLException {
+			super(model.getIndexURL());
+			_model = model;
+			_loadThreads = loadThreads;
+		}
+
+		public EOModel getModel() {
+			return _model;
+		}
+
+		@Override
+		protected EOModel load(URL url, Set<EOModelVerificationFailure> failures) throws EOModelException {
+			try {
+				_model.loadFromURL(_model.getModelURL(), failures, _loadThreads);
+			} catch (MalformedURLException e) {
+				throw new EOModelException("Failed to load '" + _model.getModelURL() + "'.", e);
+			}
+			return _model;
+		}
+	}
+
+	/**
+	 * StoredProcedureLoad reads a .storedProcedure file, from the given model
+	 * snapshot if it isn't null.
+	 */
+	public static class StoredProcedureLoad extends EOModelFileLoad<EOStoredProcedure> {
+		private EOModelSnapshot _snapshot;
+
+		public StoredProcedureLoad(URL storedProcedureURL) {
+			this(storedProcedureURL, null);
+		}
+
+		public StoredProcedureLoad(URL storedProcedureURL, EOModelSnapshot snapshot) {
+			super(storedProcedureURL);
+			_snapshot = snapshot;
+		}
+
+		@Override
+		protected EOStoredProcedure load(URL url, Set<EOModelVerificationFailure> failures) throws EOModelException {
+			EOStoredProcedure storedProcedure = new EOStoredProcedure();
+			storedProcedure.loadFromURL(url, failures, _snapshot);
+			return storedProcedure;
+		}
+	}
+}
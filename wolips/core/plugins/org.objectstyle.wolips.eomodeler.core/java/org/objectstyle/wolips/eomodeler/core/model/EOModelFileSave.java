@@ -0,0 +1,304 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectstyle.woenvironment.plist.PropertyListParserException;
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+
+/**
+ * EOModelFileSave writes one file of a model in two steps. prepare()
+ * serializes the property list, which may happen on a saver thread, compares
+ * it with what the file already holds and, only if it differs, writes it to a
+ * temporary file next to it. commit() then renames the temporary file over
+ * the real one, so a file is either completely old or completely new, and a
+ * model is only touched once all of its files could be prepared. A save with
+ * a null property list deletes the file when it is committed; deletions are
+ * committed before any file is replaced.
+ * <p>
+ * The property lists are built by the caller on its own thread, since the
+ * model objects aren't thread-safe; only the serializing, comparing and
+ * writing are handed to the saver threads.
+ */
+public class EOModelFileSave implements Callable<Boolean> {
+	private File _file;
+
+	private Object _propertyList;
+
+	private File _temporaryFile;
+
+	private boolean _rewrite;
+
+	private Future<Boolean> _future;
+
+	public EOModelFileSave(File file, Object propertyList) {
+		_file = file;
+		_propertyList = propertyList;
+	}
+
+	public File getFile() {
+		return _file;
+	}
+
+	/**
+	 * Writes the property list to a temporary file and returns true, or
+	 * returns false if the file is already up to date.
+	 */
+	public Boolean call() throws IOException, PropertyListParserException {
+		if (_propertyList == null) {
+			return Boolean.valueOf(_file.exists());
+		}
+		byte[] bytes = WOLPropertyListSerialization.bytesFromPropertyList(_propertyList);
+		if (!_rewrite && WOLPropertyListSerialization.fileContainsPropertyList(_file, _propertyList, bytes)) {
+			return Boolean.FALSE;
+		}
+		File temporaryFile = new File(_file.getParentFile(), "." + _file.getName() + ".saving");
+		OutputStream os = new FileOutputStream(temporaryFile);
+		// from here on a rollback removes the temporary file, also if the
+		// write fails halfway
+		_temporaryFile = temporaryFile;
+		try {
+			os.write(bytes);
+		} finally {
+			os.close();
+		}
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Waits for the save to be prepared, or prepares it now if it hasn't been
+	 * submitted to an executor, and returns whether the file will change.
+	 */
+	public boolean prepare() throws IOException {
+		try {
+			Boolean changed;
+			if (_future == null) {
+				changed = call();
+			} else {
+				changed = _future.get();
+			}
+			return changed.booleanValue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EOModelFileSaveException("Interrupted while saving '" + _file + "'.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new EOModelFileSaveException("Failed to save '" + _file + "'.", cause);
+		} catch (PropertyListParserException e) {
+			throw new EOModelFileSaveException("Failed to save '" + _file + "'.", e);
+		}
+	}
+
+	/**
+	 * Moves the prepared file into place, or deletes the file if there is no
+	 * property list.
+	 */
+	public void commit() throws IOException {
+		if (_propertyList == null) {
+			if (_file.exists() && !_file.delete()) {
+				throw new IOException("Failed to delete '" + _file + "'.");
+			}
+		} else if (_temporaryFile != null) {
+			// renameTo replaces the file atomically where the platform allows
+			// it; where it doesn't (Windows), the old file has to go first
+			if (!_temporaryFile.renameTo(_file) && !(_file.delete() && _temporaryFile.renameTo(_file))) {
+				throw new IOException("Failed to replace '" + _file + "' with '" + _temporaryFile + "'.");
+			}
+			_temporaryFile = null;
+		}
+	}
+
+	/**
+	 * Throws away the prepared file. The save must have been prepared (or
+	 * have failed) before it is rolled back.
+	 */
+	public void rollback() {
+		if (_temporaryFile != null) {
+			_temporaryFile.delete();
+			_temporaryFile = null;
+		}
+	}
+
+	/**
+	 * Prepares all of the given saves, on a new pool of the given number of
+	 * threads if there are at least two of each, and returns whether any file
+	 * will change. If any of them fails, all of them are rolled back before
+	 * the failure is thrown.
+	 */
+	public static boolean prepareAll(List<EOModelFileSave> saves, int threads) throws IOException {
+		// on a case-insensitive file system, renaming Useraccount to
+		// UserAccount deletes the file that is about to be written, so that
+		// file has to be written even if its contents didn't change
+		Set<File> deletedFiles = new HashSet<File>();
+		for (EOModelFileSave save : saves) {
+			if (save._propertyList == null && save._file.exists()) {
+				deletedFiles.add(save._file.getCanonicalFile());
+			}
+		}
+		if (!deletedFiles.isEmpty()) {
+			for (EOModelFileSave save : saves) {
+				save._rewrite = save._propertyList != null && save._file.exists() && deletedFiles.contains(save._file.getCanonicalFile());
+			}
+		}
+		ExecutorService executor = null;
+		if (threads > 1 && saves.size() > 1) {
+			executor = Executors.newFixedThreadPool(Math.min(threads, saves.size()), new SaverThreadFactory());
+			for (EOModelFileSave save : saves) {
+				save._future = executor.submit(save);
+			}
+		}
+		try {
+			boolean changed = false;
+			Throwable failure = null;
+			for (EOModelFileSave save : saves) {
+				try {
+					changed |= save.prepare();
+				} catch (IOException e) {
+					failure = failure == null ? e : failure;
+				} catch (RuntimeException e) {
+					failure = failure == null ? e : failure;
+				} catch (Error e) {
+					failure = failure == null ? e : failure;
+				}
+			}
+			if (failure != null) {
+				EOModelFileSave.rollbackAll(saves);
+				if (failure instanceof IOException) {
+					throw (IOException) failure;
+				}
+				if (failure instanceof RuntimeException) {
+					throw (RuntimeException) failure;
+				}
+				throw (Error) failure;
+			}
+			return changed;
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Commits the deletions among the given saves, then the other saves in
+	 * order. If one of them fails, the ones that weren't committed yet are
+	 * rolled back.
+	 */
+	public static void commitAll(List<EOModelFileSave> saves) throws IOException {
+		boolean committed = false;
+		try {
+			for (EOModelFileSave save : saves) {
+				if (save._propertyList == null) {
+					save.commit();
+				}
+			}
+			for (EOModelFileSave save : saves) {
+				if (save._propertyList != null) {
+					save.commit();
+				}
+			}
+			committed = true;
+		} finally {
+			if (!committed) {
+				EOModelFileSave.rollbackAll(saves);
+			}
+		}
+	}
+
+	public static void rollbackAll(List<EOModelFileSave> saves) {
+		for (EOModelFileSave save : saves) {
+			save.rollback();
+		}
+	}
+
+	protected static class SaverThreadFactory implements ThreadFactory {
+		private static final AtomicInteger _threadNumber = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "EOModel saver " + _threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * EOModelFileSaveException is the IOException a save fails with when the
+	 * cause isn't an IOException itself.
+	 */
+	public static class EOModelFileSaveException extends IOException {
+		public EOModelFileSaveException(String message, Throwable cause) {
+			super(message);
+			initCause(cause);
+		}
+	}
+}
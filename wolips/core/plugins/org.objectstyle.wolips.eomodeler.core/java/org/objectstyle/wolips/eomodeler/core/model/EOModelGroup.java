@@ -54,12 +54,17 @@ import java.io.IOException;
 import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 import java.util.jar.JarEntry;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -78,8 +83,80 @@ public class EOModelGroup extends EOModelObject<Object> {
 
 	private boolean _dirty;
 
+	private EOReferenceIndex _referenceIndex;
+
+	private final Object _loadLock = new Object();
+
+	private EOVerificationCache _verificationCache;
+
+	private static volatile boolean _incrementalVerification = true;
+
+	/**
+	 * Returns whether verify only verifies the entities that changed since the
+	 * last verification, and the entities that depend on them.
+	 */
+	public static boolean isIncrementalVerification() {
+		return EOModelGroup._incrementalVerification;
+	}
+
+	/**
+	 * Sets whether verify only verifies the entities that changed since the
+	 * last verification, and the entities that depend on them.
+	 */
+	public static void setIncrementalVerification(boolean incrementalVerification) {
+		EOModelGroup._incrementalVerification = incrementalVerification;
+	}
+
+	private static volatile boolean _performanceLint = false;
+
+	/**
+	 * Returns whether verify also runs the performance lint rules over the
+	 * models; see EOPerformanceLint. The lint is off unless it is turned on
+	 * (Entity Modeler does so with its Show Performance Lint Warnings
+	 * preference).
+	 */
+	public static boolean isPerformanceLint() {
+		return EOModelGroup._performanceLint;
+	}
+
+	/**
+	 * Sets whether verify also runs the performance lint rules over the
+	 * models.
+	 */
+	public static void setPerformanceLint(boolean performanceLint) {
+		EOModelGroup._performanceLint = performanceLint;
+	}
+
+	private static volatile int _verifyThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Returns the number of threads that verify the entities of a model or
+	 * model group.
+	 */
+	public static int getVerifyThreads() {
+		return EOModelGroup._verifyThreads;
+	}
+
+	/**
+	 * Sets the number of threads that verify the entities of a model or model
+	 * group; 1 verifies them one after another on the calling thread.
+	 */
+	public static void setVerifyThreads(int verifyThreads) {
+		EOModelGroup._verifyThreads = verifyThreads;
+	}
+
 	public EOModelGroup() {
 		_models = new HashSet<EOModel>();
+		_referenceIndex = new EOReferenceIndex(_models, _loadLock);
+		_verificationCache = new EOVerificationCache(_models);
+	}
+
+	/**
+	 * Returns the lock the lazily loaded entities of the models of the group
+	 * are read under, which also guards the reference index.
+	 */
+	public Object _getLoadLock() {
+		return _loadLock;
 	}
 
 	public boolean hasProjectWonder() {
@@ -109,13 +186,27 @@ public class EOModelGroup extends EOModelObject<Object> {
 		return dirty;
 	}
 
-	@SuppressWarnings("unused")
+	@SuppressWarnings("unchecked")
 	protected void _modelChanged(EOModel model, String propertyName, Object oldValue, Object newValue) {
-		if (EOModel.DIRTY.equals(propertyName)) {
+		if (EOModel.ENTITY.equals(propertyName) && newValue instanceof EOEntity) {
+			_referenceIndex.entityChanged((EOEntity) newValue);
+			_verificationCache.entityChanged((EOEntity) newValue);
+		} else if (EOModel.ENTITIES.equals(propertyName)) {
+			_referenceIndex.invalidate();
+			if (oldValue instanceof Set && newValue instanceof Set) {
+				_verificationCache.entitiesChanged((Set<EOEntity>) oldValue, (Set<EOEntity>) newValue);
+			} else {
+				_verificationCache.invalidate();
+			}
+		} else if (EOModel.DIRTY.equals(propertyName)) {
 			boolean oldDirty = _dirty;
 			boolean dirty = isDirty();
 			firePropertyChange(propertyName, Boolean.valueOf(oldDirty), Boolean.valueOf(dirty));
 			_dirty = dirty;
+		} else if (!EOModel.MODEL_SAVING.equals(propertyName) && !propertyName.startsWith(EOModel.ENTITY + ".") && !propertyName.equals(EOModel.STORED_PROCEDURE) && !propertyName.startsWith(EOModel.STORED_PROCEDURE + ".")) {
+			// the entities report their own changes, everything else about
+			// a model can change how its entities verify
+			_verificationCache.invalidate();
 		}
 	}
 
@@ -221,6 +312,8 @@ public class EOModelGroup extends EOModelObject<Object> {
 			_model._checkForDuplicateEntityName(entity, entity.getName(), _failures);
 		}
 		_models.add(_model);
+		_referenceIndex.invalidate();
+		_verificationCache.invalidate();
 		clearCachedPrototypes(_failures);
 		firePropertyChange(EOModelGroup.MODELS, oldModels, _models);
 	}
@@ -228,6 +321,8 @@ public class EOModelGroup extends EOModelObject<Object> {
 	public void removeModel(EOModel _model, Set<EOModelVerificationFailure> _failures) {
 		Set<EOModel> oldModels = new HashSet<EOModel>(_models);
 		_models.remove(_model);
+		_referenceIndex.invalidate();
+		_verificationCache.invalidate();
 		clearCachedPrototypes(_failures);
 		firePropertyChange(EOModelGroup.MODELS, oldModels, _models);
 		_model._setModelGroup(null);
@@ -251,6 +346,49 @@ public class EOModelGroup extends EOModelObject<Object> {
 		}
 	}
 
+	/**
+	 * Returns the relationships of the other entities of this model group
+	 * whose destination is the given entity.
+	 */
+	public Set<EORelationship> getReferencingRelationships(EOEntity entity) {
+		return _referenceIndex.getReferencingRelationships(entity);
+	}
+
+	/**
+	 * Returns the entities of this model group whose parent is the given
+	 * entity.
+	 */
+	public Set<EOEntity> getChildrenEntities(EOEntity entity) {
+		return _referenceIndex.getChildrenEntities(entity);
+	}
+
+	public void _entityReferencesChanged(EOEntity entity) {
+		_referenceIndex.entityChanged(entity);
+		_verificationCache.entityChanged(entity);
+	}
+
+	/**
+	 * Indexes the parent and the relationships of a lazily loaded entity that
+	 * was just read. Reading an entity doesn't change it, so its cached
+	 * verification and the ones that depend on it stay valid.
+	 */
+	public void _entityMaterialized(EOEntity entity) {
+		_referenceIndex.entityChanged(entity);
+	}
+
+	public void _relationshipReferencesChanged(EORelationship relationship) {
+		_referenceIndex.relationshipChanged(relationship);
+		EOEntity entity = relationship.getEntity();
+		if (entity != null) {
+			_verificationCache.entityChanged(entity);
+		}
+	}
+
+	public void _entitiesChanged() {
+		_referenceIndex.invalidate();
+		_verificationCache.invalidate();
+	}
+
 	public Map<EOAttribute, Set<EORelationship>> _createReferencingRelationshipsCache() {
 		Map<EOAttribute, Set<EORelationship>> cache = new HashMap<EOAttribute, Set<EORelationship>>();
 		for (EOModel model : getModels()) {
@@ -429,6 +567,15 @@ public class EOModelGroup extends EOModelObject<Object> {
 		return model;
 	}
 
+	public List<EOModel> loadModelsFromURLs(List<URL> modelURLs) throws IOException, EOModelException {
+		Set<EOModelVerificationFailure> failures = new HashSet<EOModelVerificationFailure>();
+		List<EOModel> models = loadModelsFromURLs(modelURLs, failures, true, new NullProgressMonitor());
+		if (failures.size() > 0) {
+			throw new EOModelException("Failed to load models from URLs " + modelURLs + ": " + failures);
+		}
+		return models;
+	}
+
 	public EOModel loadModelFromURL(URL url, Set<EOModelVerificationFailure> failures) throws IOException, EOModelException {
 		EOModel model = loadModelFromURL(url, failures, true, new NullProgressMonitor());
 		return model;
@@ -448,9 +595,24 @@ public class EOModelGroup extends EOModelObject<Object> {
 	}
 
 	public void loadModelsFromURL(URL url, int maxDepth, Set<EOModelVerificationFailure> failures, boolean skipOnDuplicates, IProgressMonitor progressMonitor) throws IOException, EOModelException {
+		loadModelsFromURLs(EOModelGroup.findModelURLs(url, maxDepth), failures, skipOnDuplicates, progressMonitor);
+	}
+
+	/**
+	 * Returns the .eomodeld folders in the given folder and its subfolders, down
+	 * to maxDepth levels (-1 for no limit), in the order they are found. If the
+	 * given folder is a .eomodeld folder, it is the only one returned.
+	 */
+	public static List<URL> findModelURLs(URL url, int maxDepth) throws IOException {
+		List<URL> modelURLs = new LinkedList<URL>();
+		EOModelGroup._findModelURLs(url, maxDepth, modelURLs);
+		return modelURLs;
+	}
+
+	protected static void _findModelURLs(URL url, int maxDepth, List<URL> modelURLs) throws IOException {
 		String path = url.getPath();
 		if (path.endsWith(".eomodeld") || path.endsWith(".eomodeld/")) {
-			loadModelFromURL(url, failures, skipOnDuplicates, progressMonitor);
+			modelURLs.add(url);
 		} else if (maxDepth != 0) {
 			for (URL childURL : URLUtils.getChildrenFolders(url)) {
 				if (URLUtils.isFolder(childURL)) {
@@ -463,7 +625,7 @@ public class EOModelGroup extends EOModelObject<Object> {
 					}
 					
 					if (processFolder) {
-						loadModelsFromURL(childURL, maxDepth - 1, failures, skipOnDuplicates, progressMonitor);
+						EOModelGroup._findModelURLs(childURL, maxDepth - 1, modelURLs);
 					}
 				}
 			}
@@ -471,61 +633,157 @@ public class EOModelGroup extends EOModelObject<Object> {
 	}
 
 	public EOModel loadModelFromURL(URL modelURL, Set<EOModelVerificationFailure> failures, boolean skipOnDuplicates, IProgressMonitor progressMonitor) throws IOException, EOModelException {
-		String modelName = EOModelGroup.getModelNameForURL(modelURL);
-		progressMonitor.setTaskName("Loading " + modelName + " ...");
-		EOModel model = getModelNamed(modelName);
-		if (model != null) {
-			if (skipOnDuplicates) {
-				// _failures.add(new EOModelVerificationFailure(model, "The
-				// model named '" + modelName + "' exists in " +
-				// model.getIndexURL() + " and " + _folder + ". Skipping " +
-				// _folder + ".", true));
-			} else {
-				failures.add(new EOModelVerificationFailure(model, model, "The model named '" + modelName + "' exists in " + model.getIndexURL() + " and " + modelURL + ".", true));
+		List<URL> modelURLs = new LinkedList<URL>();
+		modelURLs.add(modelURL);
+		return loadModelsFromURLs(modelURLs, failures, skipOnDuplicates, progressMonitor).get(0);
+	}
+
+	/**
+	 * Loads the models in the given .eomodeld folders. The models are parsed
+	 * on up to EOModel.getLoadThreads() threads before any of them is added to
+	 * this group, and are then added one after another in the order of the
+	 * URLs, so the resulting group and failures don't depend on which model
+	 * was parsed first. When a model declares an entity that a model of the
+	 * group already declares, that model is removed and the new one is added
+	 * again without being read a second time. Relationships, inheritance and
+	 * prototypes across the models are resolved by resolve.
+	 * 
+	 * @return for each URL, the model that was loaded from it or, if it was
+	 *         skipped, the model of the same name that is in the group
+	 */
+	public List<EOModel> loadModelsFromURLs(List<URL> modelURLs, Set<EOModelVerificationFailure> failures, boolean skipOnDuplicates, IProgressMonitor progressMonitor) throws IOException, EOModelException {
+		// only the first model of each name is read when duplicates are skipped
+		List<EOModel> newModels = new ArrayList<EOModel>(modelURLs.size());
+		Set<String> modelNames = new HashSet<String>();
+		int newModelCount = 0;
+		for (URL modelURL : modelURLs) {
+			String modelName = EOModelGroup.getModelNameForURL(modelURL);
+			EOModel newModel = null;
+			if (!skipOnDuplicates || (getModelNamed(modelName) == null && modelNames.add(modelName))) {
+				newModel = new EOModel(modelName);
+				newModel.setModelURL(modelURL);
+				newModelCount++;
+			}
+			newModels.add(newModel);
+		}
+
+		// several models are read in parallel, a single one reads its entities
+		// in parallel
+		int loadThreads = EOModel.getLoadThreads();
+		List<EOModelFileLoad.ModelLoad> modelLoads = new ArrayList<EOModelFileLoad.ModelLoad>(newModels.size());
+		List<EOModelFileLoad.ModelLoad> submittedModelLoads = new ArrayList<EOModelFileLoad.ModelLoad>(newModelCount);
+		for (EOModel newModel : newModels) {
+			EOModelFileLoad.ModelLoad modelLoad = null;
+			if (newModel != null) {
+				modelLoad = new EOModelFileLoad.ModelLoad(newModel, newModelCount > 1 ? 1 : loadThreads);
+				submittedModelLoads.add(modelLoad);
 			}
+			modelLoads.add(modelLoad);
 		}
-		if (!skipOnDuplicates || model == null) {
-			boolean reloadModel = true;
-			while (reloadModel) {
-				model = new EOModel(modelName);
-				model.setModelURL(modelURL);
-				URL indexURL = model.getIndexURL();
-				if (!URLUtils.exists(indexURL)) {
-					reloadModel = false;
-					failures.add(new EOModelVerificationFailure(model, model, "Skipping model because " + indexURL + " does not exist.", true));
+		ExecutorService loadExecutor = EOModelFileLoad.submitAll(submittedModelLoads, loadThreads);
+
+		List<EOModel> models = new ArrayList<EOModel>(modelURLs.size());
+		try {
+			Iterator<URL> modelURLsIter = modelURLs.iterator();
+			for (EOModelFileLoad.ModelLoad modelLoad : modelLoads) {
+				URL modelURL = modelURLsIter.next();
+				String modelName = EOModelGroup.getModelNameForURL(modelURL);
+				progressMonitor.setTaskName("Loading " + modelName + " ...");
+				EOModel existingModel = getModelNamed(modelName);
+				if (modelLoad == null) {
+					models.add(existingModel);
 				} else {
-					model._setModelGroup(this);
+					if (existingModel != null && !skipOnDuplicates) {
+						failures.add(new EOModelVerificationFailure(existingModel, existingModel, "The model named '" + modelName + "' exists in " + existingModel.getIndexURL() + " and " + modelURL + ".", true));
+					}
+					EOModel model = modelLoad.getModel();
+					models.add(model);
 					try {
-						model.loadFromURL(modelURL, failures);
-						addModel(model, failures);
-						reloadModel = false;
-					} catch (DuplicateEntityNameException e) {
-						e.printStackTrace();
-						if (!skipOnDuplicates) {
-							throw e;
+						if (modelLoad.getResult(failures) == null) {
+							failures.add(new EOModelVerificationFailure(model, model, "Skipping model because " + modelLoad.getURL() + " does not exist.", true));
+						} else {
+							_addLoadedModel(model, failures, skipOnDuplicates);
 						}
-						EOEntity existingEntity = e.getExistingEntity();
-						EOModel existingEntityModel = existingEntity.getModel();
-						failures.add(new EOModelVerificationFailure(model, model, existingEntityModel.getName() + " and " + model.getName() + " both declare an entity named " + existingEntity.getName() + ", so " + existingEntityModel.getName() + " is being removed. You can create an EOModelGroup file to resolve this.", true, e));
-						removeModel(existingEntityModel, failures);
+					} catch (DuplicateEntityNameException e) {
+						throw e;
 					} catch (Exception e) {
 						e.printStackTrace();
 						failures.add(new EOModelVerificationFailure(model, model, model.getName() + " failed to load.", true, e));
-						reloadModel = false;
 					}
 				}
 			}
+		} finally {
+			if (loadExecutor != null) {
+				loadExecutor.shutdownNow();
+			}
+		}
+		return models;
+	}
+
+	/**
+	 * Adds a model that has just been loaded. If it declares an entity that
+	 * another model of the group declares too, the other model is removed
+	 * (unless skipOnDuplicates is false, in which case the exception is
+	 * thrown).
+	 */
+	protected void _addLoadedModel(EOModel model, Set<EOModelVerificationFailure> failures, boolean skipOnDuplicates) throws DuplicateEntityNameException, DuplicateModelNameException {
+		// the model was parsed outside of this group, so the default database
+		// config it created has yet to pick its prototype from the models that
+		// were added before it
+		model._setModelGroup(this);
+		model._resolveDatabaseConfigPrototypes();
+		boolean addModel = true;
+		while (addModel) {
+			try {
+				addModel(model, failures);
+				addModel = false;
+			} catch (DuplicateEntityNameException e) {
+				e.printStackTrace();
+				if (!skipOnDuplicates) {
+					throw e;
+				}
+				EOEntity existingEntity = e.getExistingEntity();
+				EOModel existingEntityModel = existingEntity.getModel();
+				failures.add(new EOModelVerificationFailure(model, model, existingEntityModel.getName() + " and " + model.getName() + " both declare an entity named " + existingEntity.getName() + ", so " + existingEntityModel.getName() + " is being removed. You can create an EOModelGroup file to resolve this.", true, e));
+				removeModel(existingEntityModel, failures);
+			}
 		}
-		return model;
 	}
 
 	public void verify(Set<EOModelVerificationFailure> _failures) {
+		verify(_failures, EOModelGroup.isIncrementalVerification());
+	}
+
+	/**
+	 * Verifies the models of this group on up to getVerifyThreads() threads.
+	 * An incremental verification reuses the failures of the entities that
+	 * haven't changed since the last incremental verification, while a full
+	 * one verifies every entity. The performance lint failures follow the
+	 * failures of the entities.
+	 */
+	public void verify(Set<EOModelVerificationFailure> _failures, boolean incremental) {
 		VerificationContext verificationContext = new VerificationContext(this);
-		for (EOModel model : _models) {
-			model.verify(_failures, verificationContext);
+		if (incremental) {
+			_verificationCache.verify(_models, _failures, verificationContext);
+		} else {
+			EOEntityVerification.verifyAll(getEntities(), _failures, verificationContext, EOModelGroup.getVerifyThreads());
+		}
+		if (EOModelGroup.isPerformanceLint()) {
+			new EOPerformanceLint().lint(_models, _failures);
 		}
 	}
 
+	public EOVerificationCache _getVerificationCache() {
+		return _verificationCache;
+	}
+
+	/**
+	 * Verifies the given model of this group incrementally.
+	 */
+	public void _verify(EOModel model, Set<EOModelVerificationFailure> _failures, VerificationContext verificationContext) {
+		_verificationCache.verify(Collections.singleton(model), _failures, verificationContext);
+	}
+
 	public void resolve(Set<EOModelVerificationFailure> _failures) {
 		for (EOModel model : _models) {
 			model.resolve(_failures);
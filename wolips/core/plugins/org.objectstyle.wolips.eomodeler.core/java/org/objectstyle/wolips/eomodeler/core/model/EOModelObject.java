@@ -85,7 +85,12 @@ public abstract class EOModelObject<T> implements IAdaptable, IPropertyChangeSou
 
 	protected void firePropertyChange(String _propertyName, Object _oldValue, Object _newValue) {
 		if (_oldValue == null || _newValue == null || !_oldValue.equals(_newValue)) {
-			myPropertyChangeSupport.firePropertyChange(_propertyName, _oldValue, _newValue);
+			EOChangeBatch batch = EOChangeBatch.currentBatch();
+			if (batch == null) {
+				myPropertyChangeSupport.firePropertyChange(_propertyName, _oldValue, _newValue);
+			} else if (myPropertyChangeSupport.hasListeners(_propertyName)) {
+				batch._propertyChanged(this, myPropertyChangeSupport, _propertyName, _oldValue, _newValue);
+			}
 			_propertyChanged(_propertyName, _oldValue, _newValue);
 		}
 	}
@@ -0,0 +1,177 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectstyle.wolips.baseforplugins.util.ComparisonUtils;
+
+/**
+ * EOModelObjectNameIndex maps the names of a collection of model objects (the
+ * attributes of an entity, for instance) to the objects, so they can be looked
+ * up by name without scanning the collection. The owner of the collection
+ * tells the index about every object that it adds, removes or renames; for
+ * changes it can't follow one by one, it invalidates the index, which is then
+ * rebuilt from the collection by the next lookup. Names are only shared for a
+ * moment, while a duplicate is being renamed; until then either object may be
+ * returned, as with a scan of the (unordered) collection.
+ * <p>
+ * Names are read outside of the index's monitor: the name of an attribute can
+ * come from its prototype, which takes the load lock of the model group, and
+ * the thread that holds that lock to load an entity looks up the attributes
+ * of other entities.
+ */
+public class EOModelObjectNameIndex<T extends EOModelObject<?>> {
+	private Map<String, T> _objects;
+
+	private boolean _valid;
+
+	private boolean _duplicateNames;
+
+	private int _modificationCount;
+
+	public EOModelObjectNameIndex() {
+		_objects = new HashMap<String, T>();
+	}
+
+	/**
+	 * Returns the object with the given name in the given collection, which
+	 * must be the collection that the index follows.
+	 */
+	public T getObjectNamed(String name, Collection<T> objects) {
+		T object;
+		int modificationCount;
+		synchronized (this) {
+			object = _valid ? _objects.get(name) : null;
+			if (_valid && object == null) {
+				return null;
+			}
+			modificationCount = _modificationCount;
+		}
+		if (object != null && ComparisonUtils.equals(object.getName(), name)) {
+			return object;
+		}
+		// the index is invalid or the object was renamed behind our back
+		Map<String, T> namedObjects = new HashMap<String, T>();
+		boolean duplicateNames = false;
+		for (T namedObject : objects) {
+			duplicateNames |= EOModelObjectNameIndex._put(namedObjects, namedObject.getName(), namedObject);
+		}
+		object = namedObjects.get(name);
+		synchronized (this) {
+			// a change since we read the names would be lost
+			if (modificationCount == _modificationCount) {
+				_objects = namedObjects;
+				_duplicateNames = duplicateNames;
+				_valid = true;
+			}
+		}
+		return object;
+	}
+
+	public void objectAdded(T object) {
+		String name = object.getName();
+		synchronized (this) {
+			_modificationCount++;
+			if (_valid) {
+				_duplicateNames |= EOModelObjectNameIndex._put(_objects, name, object);
+			}
+		}
+	}
+
+	public void objectRemoved(T object) {
+		String name = object.getName();
+		synchronized (this) {
+			_modificationCount++;
+			_remove(name, object);
+		}
+	}
+
+	public void objectRenamed(T object, String oldName) {
+		String name = object.getName();
+		synchronized (this) {
+			_modificationCount++;
+			_remove(oldName, object);
+			if (_valid) {
+				_duplicateNames |= EOModelObjectNameIndex._put(_objects, name, object);
+			}
+		}
+	}
+
+	public synchronized void invalidate() {
+		_modificationCount++;
+		_valid = false;
+	}
+
+	/**
+	 * Maps the given name to the given object unless another object has it
+	 * already, and returns whether it had.
+	 */
+	protected static <T> boolean _put(Map<String, T> objects, String name, T object) {
+		T existingObject = objects.get(name);
+		if (existingObject == null) {
+			objects.put(name, object);
+		}
+		return existingObject != null && existingObject != object;
+	}
+
+	protected void _remove(String name, T object) {
+		if (_valid && _objects.get(name) == object) {
+			_objects.remove(name);
+			if (_duplicateNames) {
+				// another object may have the name, so we don't know which
+				// one comes first anymore
+				_valid = false;
+			}
+		}
+	}
+}
@@ -6,9 +6,33 @@ import java.util.LinkedList;
 import java.util.Map;
 
 import org.apache.commons.collections.set.ListOrderedSet;
+import org.objectstyle.woenvironment.plist.CompactMap;
+import org.objectstyle.woenvironment.plist.CompactParserDataStructureFactory;
 import org.objectstyle.woenvironment.plist.ParserDataStructureFactory;
 
 public class EOModelParserDataStructureFactory implements ParserDataStructureFactory {
+	private CompactParserDataStructureFactory _compactFactory;
+
+	public EOModelParserDataStructureFactory() {
+		this(false);
+	}
+
+	/**
+	 * @param memoryOptimized
+	 *            if true, maps are CompactMaps sorted like PropertyListMap,
+	 *            lists are ArrayLists, and keys and short values are shared
+	 *            through the shared StringCanonicalizer
+	 */
+	public EOModelParserDataStructureFactory(boolean memoryOptimized) {
+		if (memoryOptimized) {
+			_compactFactory = new CompactParserDataStructureFactory();
+		}
+	}
+
+	public boolean isMemoryOptimized() {
+		return _compactFactory != null;
+	}
+
 	public Collection<Object> createCollection(String _keyPath) {
 		boolean createSortedSet = false;
 		if ("root.attributes".equals(_keyPath)) {
@@ -50,6 +74,8 @@ public class EOModelParserDataStructureFactory implements ParserDataStructureFac
 		if (createSortedSet) {
 			//collection = new PropertyListSet<Object>();
 			collection = ListOrderedSet.decorate(new HashSet<Object>());
+		} else if (_compactFactory != null) {
+			collection = _compactFactory.createCollection(_keyPath);
 		} else {
 			collection = new LinkedList<Object>();
 		}
@@ -57,7 +83,13 @@ public class EOModelParserDataStructureFactory implements ParserDataStructureFac
 	}
 
 	public Map<Object, Object> createMap(String _keyPath) {
-		return new PropertyListMap<Object, Object>();
+		Map<Object, Object> map;
+		if (_compactFactory != null) {
+			map = new CompactMap<Object, Object>(PropertyListComparator.AscendingSensitivePropertyListComparator, _compactFactory.getCanonicalizer());
+		} else {
+			map = new PropertyListMap<Object, Object>();
+		}
+		return map;
 	}
 
 }
@@ -0,0 +1,399 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectstyle.woenvironment.plist.ParserDataStructureFactory;
+import org.objectstyle.woenvironment.plist.PropertyListParserException;
+import org.objectstyle.woenvironment.plist.WOLBinaryPropertyListSerialization;
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+import org.objectstyle.wolips.baseforplugins.util.URLUtils;
+
+/**
+ * EOModelSnapshot keeps the property lists of the files of a model folder
+ * (index.eomodeld, the entity, fetch spec and stored procedure plists) as
+ * binary property lists in one file of a cache folder, so the next load of the
+ * model doesn't have to parse the OpenStep text of the files it didn't change.
+ * <p>
+ * Every file is recorded with its size, modification date and an MD5 hash of
+ * its contents. A recorded file is used as long as its size and modification
+ * date are unchanged, which costs one stat. If only the date changed (or the
+ * file was recorded less than TIMESTAMP_GRANULARITY after it was modified),
+ * the file is read and its hash decides. Anything else -- a new, changed or
+ * unrecorded file, or a damaged or foreign snapshot -- is parsed from the
+ * model as usual and recorded for the next load.
+ * <p>
+ * Models aren't snapshotted unless a cache folder is set with
+ * setDefaultCacheFolder or named by the "eomodeler.snapshotCache" system
+ * property. Snapshots are never written into the model folders themselves.
+ */
+public class EOModelSnapshot {
+	public static final String CACHE_FOLDER_PROPERTY = "eomodeler.snapshotCache";
+
+	public static final long TIMESTAMP_GRANULARITY = 2000;
+
+	private static final int MAGIC = 0x454f4d53;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static volatile File _defaultCacheFolder;
+
+	private File _snapshotFile;
+
+	private File _modelFolder;
+
+	private Map<String, Entry> _entries;
+
+	private Set<String> _usedNames;
+
+	private boolean _changed;
+
+	/**
+	 * Returns the cache folder set with setDefaultCacheFolder or, if there is
+	 * none, the one named by the "eomodeler.snapshotCache" system property, or
+	 * null if models aren't snapshotted.
+	 */
+	public static File getDefaultCacheFolder() {
+		File cacheFolder = EOModelSnapshot._defaultCacheFolder;
+		if (cacheFolder == null) {
+			String cacheFolderName = System.getProperty(EOModelSnapshot.CACHE_FOLDER_PROPERTY);
+			if (cacheFolderName != null && cacheFolderName.length() > 0) {
+				cacheFolder = new File(cacheFolderName);
+			}
+		}
+		return cacheFolder;
+	}
+
+	/**
+	 * Sets the folder that keeps the snapshots of the models that are loaded,
+	 * or null to fall back to the "eomodeler.snapshotCache" system property.
+	 */
+	public static void setDefaultCacheFolder(File cacheFolder) {
+		EOModelSnapshot._defaultCacheFolder = cacheFolder;
+	}
+
+	/**
+	 * Returns the snapshot of the given model folder in the default cache
+	 * folder, or null if there is no cache folder or the model isn't a folder
+	 * on disk.
+	 */
+	public static EOModelSnapshot snapshotForModelURL(URL modelURL) {
+		EOModelSnapshot snapshot = null;
+		File cacheFolder = EOModelSnapshot.getDefaultCacheFolder();
+		if (cacheFolder != null && "file".equals(modelURL.getProtocol())) {
+			File modelFolder = URLUtils.cheatAndTurnIntoFile(modelURL).getAbsoluteFile();
+			if (modelFolder.isDirectory()) {
+				snapshot = new EOModelSnapshot(EOModelSnapshot.snapshotFileForModelFolder(cacheFolder, modelFolder), modelFolder);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the property list of the given URL from the given snapshot, or
+	 * parses the URL if the snapshot is null.
+	 */
+	public static Object propertyListFromURL(EOModelSnapshot snapshot, URL url, ParserDataStructureFactory factory) throws IOException, PropertyListParserException {
+		Object propertyList;
+		if (snapshot == null) {
+			propertyList = WOLPropertyListSerialization.propertyListFromURL(url, factory);
+		} else {
+			propertyList = snapshot.propertyListFromURL(url, factory);
+		}
+		return propertyList;
+	}
+
+	protected static File snapshotFileForModelFolder(File cacheFolder, File modelFolder) {
+		String folderName = modelFolder.getName();
+		StringBuilder fileName = new StringBuilder();
+		for (int i = 0; i < folderName.length(); i++) {
+			char ch = folderName.charAt(i);
+			fileName.append(Character.isLetterOrDigit(ch) ? ch : '_');
+		}
+		fileName.append('-');
+		fileName.append(Integer.toHexString(modelFolder.getPath().hashCode()));
+		fileName.append(".snapshot");
+		return new File(cacheFolder, fileName.toString());
+	}
+
+	/**
+	 * Constructs the snapshot of the given model folder and reads the given
+	 * snapshot file, if it exists.
+	 */
+	public EOModelSnapshot(File snapshotFile, File modelFolder) {
+		_snapshotFile = snapshotFile;
+		_modelFolder = modelFolder;
+		_entries = new HashMap<String, Entry>();
+		_usedNames = new HashSet<String>();
+		if (snapshotFile.exists()) {
+			try {
+				_read();
+			} catch (Throwable t) {
+				// a damaged snapshot is the same as no snapshot
+				_entries.clear();
+				_changed = true;
+			}
+		}
+	}
+
+	public File getSnapshotFile() {
+		return _snapshotFile;
+	}
+
+	public File getModelFolder() {
+		return _modelFolder;
+	}
+
+	/**
+	 * Returns the property list of the given URL, from the snapshot if the
+	 * file is recorded and unchanged, or else parsed from the file (and then
+	 * recorded). URLs outside of the model folder are just parsed.
+	 */
+	public Object propertyListFromURL(URL url, ParserDataStructureFactory factory) throws IOException, PropertyListParserException {
+		File file = "file".equals(url.getProtocol()) ? URLUtils.cheatAndTurnIntoFile(url).getAbsoluteFile() : null;
+		if (file == null || !_modelFolder.equals(file.getParentFile())) {
+			return WOLPropertyListSerialization.propertyListFromURL(url, factory);
+		}
+		String name = file.getName();
+		long size = file.length();
+		long lastModified = file.lastModified();
+		long recordedAt = System.currentTimeMillis();
+		Entry entry;
+		synchronized (this) {
+			_usedNames.add(name);
+			entry = _entries.get(name);
+		}
+
+		byte[] bytes = null;
+		String hash = null;
+		if (entry != null && entry.size == size) {
+			if (entry.lastModified == lastModified && entry.recordedAt - lastModified >= EOModelSnapshot.TIMESTAMP_GRANULARITY) {
+				return WOLBinaryPropertyListSerialization.propertyListFromBytes(entry.propertyList, factory);
+			}
+			bytes = WOLPropertyListSerialization.bytesFromFile(file);
+			hash = EOModelSnapshot.hash(bytes);
+			if (hash.equals(entry.hash)) {
+				synchronized (this) {
+					_entries.put(name, new Entry(size, lastModified, recordedAt, hash, entry.propertyList));
+					_changed = true;
+				}
+				return WOLBinaryPropertyListSerialization.propertyListFromBytes(entry.propertyList, factory);
+			}
+		}
+
+		if (bytes == null) {
+			bytes = WOLPropertyListSerialization.bytesFromFile(file);
+			hash = EOModelSnapshot.hash(bytes);
+		}
+		Object propertyList = WOLPropertyListSerialization._Utilities.propertyListFromBytes(bytes, factory);
+		if (propertyList != null) {
+			byte[] binaryPropertyList = WOLBinaryPropertyListSerialization.bytesFromPropertyList(propertyList);
+			synchronized (this) {
+				_entries.put(name, new Entry(size, lastModified, recordedAt, hash, binaryPropertyList));
+				_changed = true;
+			}
+		}
+		return propertyList;
+	}
+
+	/**
+	 * Keeps the snapshot of the given URL when the snapshot is saved even if
+	 * it wasn't asked for, because the file is going to be read later.
+	 */
+	public synchronized void keep(URL url) {
+		if ("file".equals(url.getProtocol())) {
+			File file = URLUtils.cheatAndTurnIntoFile(url).getAbsoluteFile();
+			if (_modelFolder.equals(file.getParentFile())) {
+				_usedNames.add(file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the snapshot has to be written to be current, i.e.
+	 * whether files were recorded or rechecked since it was read, or recorded
+	 * files weren't asked for.
+	 */
+	public synchronized boolean isChanged() {
+		return _changed || !_usedNames.containsAll(_entries.keySet());
+	}
+
+	/**
+	 * Writes the snapshot file if it changed, only keeping the files that
+	 * were asked for since it was read.
+	 */
+	public synchronized void saveIfNeeded() throws IOException {
+		if (isChanged()) {
+			Iterator<String> namesIter = _entries.keySet().iterator();
+			while (namesIter.hasNext()) {
+				if (!_usedNames.contains(namesIter.next())) {
+					namesIter.remove();
+				}
+			}
+
+			File cacheFolder = _snapshotFile.getParentFile();
+			if (!cacheFolder.exists() && !cacheFolder.mkdirs()) {
+				throw new IOException("Failed to create the model snapshot folder '" + cacheFolder + "'.");
+			}
+			File temporarySnapshotFile = new File(_snapshotFile.getPath() + ".tmp");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporarySnapshotFile)));
+			try {
+				out.writeInt(EOModelSnapshot.MAGIC);
+				out.writeInt(EOModelSnapshot.FORMAT_VERSION);
+				out.writeUTF(_modelFolder.getPath());
+				out.writeInt(_entries.size());
+				for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+					out.writeUTF(entry.getKey());
+					entry.getValue().write(out);
+				}
+			} finally {
+				out.close();
+			}
+			if (_snapshotFile.exists()) {
+				_snapshotFile.delete();
+			}
+			if (!temporarySnapshotFile.renameTo(_snapshotFile)) {
+				temporarySnapshotFile.delete();
+				throw new IOException("Failed to write the model snapshot '" + _snapshotFile + "'.");
+			}
+			_changed = false;
+		}
+	}
+
+	protected void _read() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_snapshotFile)));
+		try {
+			if (in.readInt() == EOModelSnapshot.MAGIC && in.readInt() == EOModelSnapshot.FORMAT_VERSION && _modelFolder.getPath().equals(in.readUTF())) {
+				int entryCount = in.readInt();
+				for (int entryNum = 0; entryNum < entryCount; entryNum++) {
+					String name = in.readUTF();
+					_entries.put(name, Entry.read(in));
+				}
+			} else {
+				_changed = true;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	protected static String hash(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(bytes);
+			StringBuilder hash = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hash.append(Character.forDigit((b >> 4) & 0x0F, 16));
+				hash.append(Character.forDigit(b & 0x0F, 16));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available.");
+		}
+	}
+
+	/**
+	 * Entry is what a snapshot knows about one file: its stamps and its
+	 * property list in the binary format.
+	 */
+	protected static class Entry {
+		public final long size;
+
+		public final long lastModified;
+
+		public final long recordedAt;
+
+		public final String hash;
+
+		public final byte[] propertyList;
+
+		public Entry(long size, long lastModified, long recordedAt, String hash, byte[] propertyList) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.recordedAt = recordedAt;
+			this.hash = hash;
+			this.propertyList = propertyList;
+		}
+
+		public void write(DataOutputStream out) throws IOException {
+			out.writeLong(size);
+			out.writeLong(lastModified);
+			out.writeLong(recordedAt);
+			out.writeUTF(hash);
+			out.writeInt(propertyList.length);
+			out.write(propertyList);
+		}
+
+		public static Entry read(DataInputStream in) throws IOException {
+			long size = in.readLong();
+			long lastModified = in.readLong();
+			long recordedAt = in.readLong();
+			String hash = in.readUTF();
+			byte[] propertyList = new byte[in.readInt()];
+			in.readFully(propertyList);
+			return new Entry(size, lastModified, recordedAt, hash, propertyList);
+		}
+	}
+}
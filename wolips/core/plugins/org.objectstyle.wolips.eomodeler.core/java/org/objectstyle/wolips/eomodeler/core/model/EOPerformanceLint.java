@@ -0,0 +1,282 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectstyle.wolips.eomodeler.core.utils.BooleanUtils;
+
+/**
+ * EOPerformanceLint runs performance lint rules over the entities of models
+ * and returns their failures ranked by severity. EOModel and EOModelGroup run
+ * it after they verify once it is turned on with
+ * EOModelGroup.setPerformanceLint.
+ * <p>
+ * A model configures the rules in its user info, under performanceLint:
+ * 
+ * <pre>
+ * performanceLint = {
+ *     enabled = N;                           // turns off every rule
+ *     rowCounts = { Project = 5000000; };    // the row count of each entity
+ *     ToManyBatchFetch = {                   // the settings of one rule
+ *         enabled = N;
+ *         severity = low;
+ *     };
+ * };
+ * </pre>
+ */
+public class EOPerformanceLint {
+	public static final String USER_INFO_KEY = "performanceLint";
+
+	public static final String ENABLED_KEY = "enabled";
+
+	public static final String SEVERITY_KEY = "severity";
+
+	public static final String ROW_COUNTS_KEY = "rowCounts";
+
+	private static List<IEOPerformanceLintRule> _defaultRules;
+
+	private List<IEOPerformanceLintRule> _rules;
+
+	/**
+	 * Constructs an EOPerformanceLint that runs the default rules.
+	 */
+	public EOPerformanceLint() {
+		this(EOPerformanceLint.getDefaultRules());
+	}
+
+	public EOPerformanceLint(List<IEOPerformanceLintRule> rules) {
+		_rules = rules;
+	}
+
+	/**
+	 * Returns the rules of EOPerformanceLintRules followed by the rules that
+	 * are contributed with the extension point.
+	 */
+	public static synchronized List<IEOPerformanceLintRule> getDefaultRules() {
+		if (_defaultRules == null) {
+			List<IEOPerformanceLintRule> defaultRules = new LinkedList<IEOPerformanceLintRule>();
+			defaultRules.addAll(EOPerformanceLintRules.getRules());
+			defaultRules.addAll(IEOPerformanceLintRule.Utility.performanceLintRules());
+			_defaultRules = Collections.unmodifiableList(defaultRules);
+		}
+		return _defaultRules;
+	}
+
+	public List<IEOPerformanceLintRule> getRules() {
+		return _rules;
+	}
+
+	/**
+	 * Runs the rules over the entities of the given models and adds their
+	 * failures to the given set, the most severe first. Only a set that keeps
+	 * the order its elements were added in, like a LinkedHashSet, keeps them
+	 * ranked; lint(Collection) returns the ranked list.
+	 */
+	public void lint(Collection<EOModel> models, Set<EOModelVerificationFailure> failures) {
+		failures.addAll(lint(models));
+	}
+
+	/**
+	 * Runs the rules over the entities of the given models and returns their
+	 * failures, sorted by severity, then by the fully qualified names of the
+	 * failed objects and then by their messages.
+	 */
+	public List<EOPerformanceLintFailure> lint(Collection<EOModel> models) {
+		List<EOPerformanceLintFailure> failures = new ArrayList<EOPerformanceLintFailure>();
+		for (EOModel model : models) {
+			Map<?, ?> settings = EOPerformanceLint.getSettings(model);
+			if (!EOPerformanceLint.isEnabled(settings)) {
+				continue;
+			}
+			Map<?, ?> rowCounts = EOPerformanceLint.getMap(settings, EOPerformanceLint.ROW_COUNTS_KEY);
+			for (IEOPerformanceLintRule rule : _rules) {
+				Map<?, ?> ruleSettings = EOPerformanceLint.getMap(settings, rule.getName());
+				if (EOPerformanceLint.isEnabled(ruleSettings)) {
+					EOPerformanceLint.RuleContext context = new EOPerformanceLint.RuleContext(model, rule, ruleSettings, rowCounts, failures);
+					for (EOEntity entity : model.getEntities()) {
+						if (!entity.isPrototype()) {
+							rule.lint(entity, context);
+						}
+					}
+				}
+			}
+		}
+		Collections.sort(failures, new Comparator<EOPerformanceLintFailure>() {
+			public int compare(EOPerformanceLintFailure failure1, EOPerformanceLintFailure failure2) {
+				int comparison = failure1.getSeverity().compareTo(failure2.getSeverity());
+				if (comparison == 0) {
+					comparison = EOEntityVerification.FailureComparator.failedObjectName(failure1).compareTo(EOEntityVerification.FailureComparator.failedObjectName(failure2));
+				}
+				if (comparison == 0) {
+					comparison = failure1.getMessage().compareTo(failure2.getMessage());
+				}
+				return comparison;
+			}
+		});
+		return failures;
+	}
+
+	/**
+	 * Returns the performanceLint user info of the model, or null.
+	 */
+	public static Map<?, ?> getSettings(EOModel model) {
+		Object settings = model.getUserInfo().get(EOPerformanceLint.USER_INFO_KEY);
+		return settings instanceof Map ? (Map<?, ?>) settings : null;
+	}
+
+	protected static Map<?, ?> getMap(Map<?, ?> settings, String key) {
+		Object value = settings == null ? null : settings.get(key);
+		return value instanceof Map ? (Map<?, ?>) value : null;
+	}
+
+	protected static boolean isEnabled(Map<?, ?> settings) {
+		Object enabled = settings == null ? null : settings.get(EOPerformanceLint.ENABLED_KEY);
+		if (enabled instanceof Boolean) {
+			return ((Boolean) enabled).booleanValue();
+		}
+		return enabled == null || !BooleanUtils.isFalse(enabled.toString()).booleanValue();
+	}
+
+	/**
+	 * RuleContext is what a rule sees of the model it checks: its settings,
+	 * the row counts of the entities, and the failures it reports.
+	 */
+	public static class RuleContext {
+		private EOModel _model;
+
+		private IEOPerformanceLintRule _rule;
+
+		private Map<?, ?> _settings;
+
+		private Map<?, ?> _rowCounts;
+
+		private EOPerformanceLintFailure.Severity _severity;
+
+		private List<EOPerformanceLintFailure> _failures;
+
+		public RuleContext(EOModel model, IEOPerformanceLintRule rule, Map<?, ?> settings, Map<?, ?> rowCounts, List<EOPerformanceLintFailure> failures) {
+			_model = model;
+			_rule = rule;
+			_settings = settings;
+			_rowCounts = rowCounts;
+			_failures = failures;
+			_severity = EOPerformanceLintFailure.Severity.getSeverityNamed(getString(EOPerformanceLint.SEVERITY_KEY));
+			if (_severity == null) {
+				_severity = rule.getDefaultSeverity();
+			}
+		}
+
+		public EOModel getModel() {
+			return _model;
+		}
+
+		public IEOPerformanceLintRule getRule() {
+			return _rule;
+		}
+
+		/**
+		 * Returns the severity of the rule in this model.
+		 */
+		public EOPerformanceLintFailure.Severity getSeverity() {
+			return _severity;
+		}
+
+		public String getString(String key) {
+			Object value = _settings == null ? null : _settings.get(key);
+			return value == null ? null : value.toString();
+		}
+
+		/**
+		 * Returns the setting of the rule with the given key, or the default
+		 * value if it isn't set or isn't a number.
+		 */
+		public int getInteger(String key, int defaultValue) {
+			return EOPerformanceLint.RuleContext.toInteger(_settings == null ? null : _settings.get(key), defaultValue);
+		}
+
+		/**
+		 * Returns the row count of the given entity from the rowCounts of the
+		 * model's settings, or -1 if it isn't known.
+		 */
+		public int getRowCount(EOEntity entity) {
+			return EOPerformanceLint.RuleContext.toInteger(_rowCounts == null ? null : _rowCounts.get(entity.getName()), -1);
+		}
+
+		public void addFailure(EOModelObject failedObject, String message) {
+			addFailure(failedObject, message, _severity);
+		}
+
+		public void addFailure(EOModelObject failedObject, String message, EOPerformanceLintFailure.Severity severity) {
+			_failures.add(new EOPerformanceLintFailure(_model, failedObject, message, _rule.getName(), severity));
+		}
+
+		protected static int toInteger(Object value, int defaultValue) {
+			int integerValue = defaultValue;
+			if (value instanceof Number) {
+				integerValue = ((Number) value).intValue();
+			} else if (value != null) {
+				try {
+					integerValue = Integer.parseInt(value.toString().trim());
+				} catch (NumberFormatException e) {
+					// use the default value
+				}
+			}
+			return integerValue;
+		}
+	}
+}
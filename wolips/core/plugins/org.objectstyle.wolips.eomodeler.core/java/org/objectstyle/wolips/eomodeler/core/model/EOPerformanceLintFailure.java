@@ -0,0 +1,107 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+/**
+ * EOPerformanceLintFailure is a finding of an IEOPerformanceLintRule: a model
+ * choice that is known to hurt runtime performance. It is always a warning,
+ * and its severity says how much it is likely to hurt.
+ */
+public class EOPerformanceLintFailure extends EOModelVerificationFailure {
+	public static enum Severity {
+		High("high"), Medium("medium"), Low("low");
+
+		private String _externalName;
+
+		private Severity(String externalName) {
+			_externalName = externalName;
+		}
+
+		public String getExternalName() {
+			return _externalName;
+		}
+
+		public static Severity getSeverityNamed(String externalName) {
+			Severity matchingSeverity = null;
+			for (Severity severity : Severity.values()) {
+				if (severity.getExternalName().equalsIgnoreCase(externalName)) {
+					matchingSeverity = severity;
+				}
+			}
+			return matchingSeverity;
+		}
+	}
+
+	private String _ruleName;
+
+	private EOPerformanceLintFailure.Severity _severity;
+
+	public EOPerformanceLintFailure(EOModel model, EOModelObject failedObject, String message, String ruleName, EOPerformanceLintFailure.Severity severity) {
+		super(model, failedObject, message + " (" + ruleName + ", " + severity.getExternalName() + ")", true);
+		_ruleName = ruleName;
+		_severity = severity;
+	}
+
+	/**
+	 * Returns the name of the rule that reported this failure, which is also
+	 * the key of its settings in the performanceLint user info of the model.
+	 */
+	public String getRuleName() {
+		return _ruleName;
+	}
+
+	public EOPerformanceLintFailure.Severity getSeverity() {
+		return _severity;
+	}
+
+	public String toString() {
+		return "[EOPerformanceLintFailure: " + getMessage() + "]";
+	}
+}
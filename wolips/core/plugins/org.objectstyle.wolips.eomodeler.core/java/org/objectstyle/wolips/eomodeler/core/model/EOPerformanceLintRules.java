@@ -0,0 +1,346 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.objectstyle.wolips.eomodeler.core.utils.BooleanUtils;
+
+/**
+ * EOPerformanceLintRules are the performance lint rules that EOPerformanceLint
+ * runs by default.
+ */
+public class EOPerformanceLintRules {
+	/**
+	 * External types whose values are usually too large to fetch with every
+	 * row.
+	 */
+	protected static final Set<String> LARGE_EXTERNAL_TYPES = new HashSet<String>();
+
+	static {
+		String[] largeExternalTypes = { "blob", "clob", "nclob", "text", "ntext", "mediumtext", "longtext", "mediumblob", "longblob", "bytea", "image", "longvarbinary", "long varbinary", "longvarchar", "long varchar", "long raw", "varbinary(max)", "varchar(max)", "nvarchar(max)" };
+		for (String largeExternalType : largeExternalTypes) {
+			EOPerformanceLintRules.LARGE_EXTERNAL_TYPES.add(largeExternalType);
+		}
+	}
+
+	/**
+	 * Returns new instances of the rules.
+	 */
+	public static List<IEOPerformanceLintRule> getRules() {
+		List<IEOPerformanceLintRule> rules = new LinkedList<IEOPerformanceLintRule>();
+		rules.add(new ToManyBatchFetch());
+		rules.add(new LargeAttribute());
+		rules.add(new LockingAttributes());
+		rules.add(new HiddenForeignKey());
+		rules.add(new CascadeDelete());
+		rules.add(new PrimaryKeyPrototype());
+		rules.add(new SingleTableInheritance());
+		return rules;
+	}
+
+	public static abstract class AbstractRule implements IEOPerformanceLintRule {
+		private String _name;
+
+		private EOPerformanceLintFailure.Severity _defaultSeverity;
+
+		public AbstractRule(String name, EOPerformanceLintFailure.Severity defaultSeverity) {
+			_name = name;
+			_defaultSeverity = defaultSeverity;
+		}
+
+		public String getName() {
+			return _name;
+		}
+
+		public EOPerformanceLintFailure.Severity getDefaultSeverity() {
+			return _defaultSeverity;
+		}
+
+		public String toString() {
+			return "[" + getClass().getName() + ": name = " + _name + "]";
+		}
+	}
+
+	/**
+	 * Reports to-many relationships without a batch fetch size: faulting the
+	 * relationship of n objects then takes n fetches instead of a few.
+	 */
+	public static class ToManyBatchFetch extends AbstractRule {
+		public ToManyBatchFetch() {
+			super("ToManyBatchFetch", EOPerformanceLintFailure.Severity.Medium);
+		}
+
+		public void lint(EOEntity entity, EOPerformanceLint.RuleContext context) {
+			for (EORelationship relationship : entity.getRelationships()) {
+				Integer batchSize = relationship.getNumberOfToManyFaultsToBatchFetch();
+				if (BooleanUtils.isTrue(relationship.isToMany()) && BooleanUtils.isTrue(relationship.isClassProperty()) && !relationship.isInherited() && (batchSize == null || batchSize.intValue() <= 0)) {
+					context.addFailure(relationship, entity.getName() + "." + relationship.getName() + " is a to-many relationship without a batch fetch size, so faulting it for n objects takes n fetches.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports large attributes, like blobs and long texts, that are fetched
+	 * with every row of an entity that has other attributes. The setting
+	 * maxWidth (4096 by default) is the widest attribute that isn't large.
+	 */
+	public static class LargeAttribute extends AbstractRule {
+		public LargeAttribute() {
+			super("LargeAttribute", EOPerformanceLintFailure.Severity.High);
+		}
+
+		public void lint(EOEntity entity, EOPerformanceLint.RuleContext context) {
+			int maxWidth = context.getInteger("maxWidth", 4096);
+			List<EOAttribute> largeAttributes = new LinkedList<EOAttribute>();
+			boolean otherAttributes = false;
+			for (EOAttribute attribute : EOPerformanceLintRules.columnAttributes(entity)) {
+				if (EOPerformanceLintRules.isLarge(attribute, maxWidth)) {
+					if (BooleanUtils.isTrue(attribute.isClassProperty()) && !attribute.isInherited()) {
+						largeAttributes.add(attribute);
+					}
+				} else if (!BooleanUtils.isTrue(attribute.isPrimaryKey()) && BooleanUtils.isTrue(attribute.isClassProperty())) {
+					otherAttributes = true;
+				}
+			}
+			// an entity that only holds large attributes is already fetched
+			// lazily through its relationships
+			if (otherAttributes) {
+				for (EOAttribute largeAttribute : largeAttributes) {
+					context.addFailure(largeAttribute, entity.getName() + "." + largeAttribute.getName() + " is a large attribute that is fetched with every " + entity.getName() + "; move it to an entity of its own behind a to-one relationship so it is only fetched when it's used.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports entities that lock on every column and large attributes that are
+	 * used for locking: every update compares the snapshot of each locking
+	 * attribute in its where clause. The setting minColumns (4 by default) is
+	 * the fewest columns an entity needs to be reported for locking on all of
+	 * them.
+	 */
+	public static class LockingAttributes extends AbstractRule {
+		public LockingAttributes() {
+			super("LockingAttributes", EOPerformanceLintFailure.Severity.Medium);
+		}
+
+		public void lint(EOEntity entity, EOPerformanceLint.RuleContext context) {
+			List<EOAttribute> columnAttributes = EOPerformanceLintRules.columnAttributes(entity);
+			int lockingCount = 0;
+			for (EOAttribute attribute : columnAttributes) {
+				if (BooleanUtils.isTrue(attribute.isUsedForLocking())) {
+					lockingCount++;
+					if (!attribute.isInherited() && EOPerformanceLintRules.isLarge(attribute, 4096)) {
+						context.addFailure(attribute, entity.getName() + "." + attribute.getName() + " is a large attribute that is used for locking, so every update of " + entity.getName() + " compares it.");
+					}
+				}
+			}
+			if (lockingCount == columnAttributes.size() && lockingCount >= context.getInteger("minColumns", 4)) {
+				context.addFailure(entity, "Every one of the " + lockingCount + " columns of " + entity.getName() + " is used for locking, so every update compares all of them; lock on a version or timestamp column instead.");
+			}
+		}
+	}
+
+	/**
+	 * Reports the foreign keys of to-one relationships that aren't class
+	 * properties: reading the key of the destination then faults it in.
+	 */
+	public static class HiddenForeignKey extends AbstractRule {
+		public HiddenForeignKey() {
+			super("HiddenForeignKey", EOPerformanceLintFailure.Severity.Low);
+		}
+
+		public void lint(EOEntity entity, EOPerformanceLint.RuleContext context) {
+			Set<EOAttribute> reportedAttributes = new HashSet<EOAttribute>();
+			for (EORelationship relationship : entity.getRelationships()) {
+				EOEntity destination = relationship.getDestination();
+				if (destination == null || relationship.isFlattened() || relationship.isInherited() || !BooleanUtils.isTrue(relationship.isToOne()) || !BooleanUtils.isTrue(relationship.isClassProperty())) {
+					continue;
+				}
+				for (EOJoin join : relationship.getJoins()) {
+					EOAttribute sourceAttribute = join.getSourceAttribute();
+					EOAttribute destinationAttribute = join.getDestinationAttribute();
+					if (sourceAttribute != null && destinationAttribute != null && BooleanUtils.isTrue(destinationAttribute.isPrimaryKey()) && !BooleanUtils.isTrue(sourceAttribute.isPrimaryKey()) && !BooleanUtils.isTrue(sourceAttribute.isClassProperty()) && reportedAttributes.add(sourceAttribute)) {
+						context.addFailure(sourceAttribute, entity.getName() + "." + sourceAttribute.getName() + ", the foreign key of " + entity.getName() + "." + relationship.getName() + ", isn't a class property, so reading the key of the " + destination.getName() + " faults it in.");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports to-many relationships that cascade deletes or own their
+	 * destination: deleting the source fetches every related row and deletes
+	 * them one at a time. Destinations with at least largeRowCount rows
+	 * (10000 by default) according to the rowCounts of the model are reported
+	 * with the rule's severity, and destinations without a row count with a
+	 * low severity.
+	 */
+	public static class CascadeDelete extends AbstractRule {
+		public CascadeDelete() {
+			super("CascadeDelete", EOPerformanceLintFailure.Severity.High);
+		}
+
+		public void lint(EOEntity entity, EOPerformanceLint.RuleContext context) {
+			int largeRowCount = context.getInteger("largeRowCount", 10000);
+			for (EORelationship relationship : entity.getRelationships()) {
+				EOEntity destination = relationship.getDestination();
+				if (destination == null || relationship.isInherited() || !BooleanUtils.isTrue(relationship.isToMany()) || (relationship.getDeleteRule() != EODeleteRule.CASCADE && !BooleanUtils.isTrue(relationship.isOwnsDestination()))) {
+					continue;
+				}
+				String message = "Deleting " + entity.getName() + " cascades through " + entity.getName() + "." + relationship.getName() + ", which fetches every related " + destination.getName() + " and deletes them one at a time";
+				int rowCount = context.getRowCount(destination);
+				if (rowCount >= largeRowCount) {
+					context.addFailure(relationship, message + " (" + destination.getName() + " has " + rowCount + " rows).");
+				} else if (rowCount < 0) {
+					context.addFailure(relationship, message + "; that's slow if " + destination.getName() + " has many rows.", EOPerformanceLintFailure.Severity.Low);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports primary keys that don't use a prototype: their type can drift
+	 * from the types of the foreign keys that refer to them, and the database
+	 * can't use an index to join columns of different types.
+	 */
+	public static class PrimaryKeyPrototype extends AbstractRule {
+		public PrimaryKeyPrototype() {
+			super("PrimaryKeyPrototype", EOPerformanceLintFailure.Severity.Medium);
+		}
+
+		public void lint(EOEntity entity, EOPerformanceLint.RuleContext context) {
+			for (EOAttribute attribute : entity.getAttributes()) {
+				if (BooleanUtils.isTrue(attribute.isPrimaryKey()) && !attribute.isInherited() && !attribute.isFlattened() && attribute.getPrototype() == null) {
+					context.addFailure(attribute, entity.getName() + "." + attribute.getName() + " is a primary key without a prototype, so its type can drift from the foreign keys that refer to it and joins on them can't use an index.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports single table inheritance hierarchies that map more than
+	 * maxColumns columns (50 by default) or more than maxEntities entities (10
+	 * by default) to one table: every fetch of any of them reads every column,
+	 * and most of the columns of each row are null.
+	 */
+	public static class SingleTableInheritance extends AbstractRule {
+		public SingleTableInheritance() {
+			super("SingleTableInheritance", EOPerformanceLintFailure.Severity.Medium);
+		}
+
+		public void lint(EOEntity entity, EOPerformanceLint.RuleContext context) {
+			String externalName = entity.getExternalName();
+			EOEntity parent = entity.getParent();
+			if (externalName == null || entity.getModel().getModelGroup() == null || (parent != null && externalName.equals(parent.getExternalName()))) {
+				// only the topmost entity of a table is checked
+				return;
+			}
+			Set<EOEntity> tableEntities = new HashSet<EOEntity>();
+			addTableEntities(entity, externalName, tableEntities);
+			if (tableEntities.size() < 2) {
+				return;
+			}
+			Set<String> columnNames = new HashSet<String>();
+			for (EOEntity tableEntity : tableEntities) {
+				for (EOAttribute attribute : EOPerformanceLintRules.columnAttributes(tableEntity)) {
+					columnNames.add(attribute.getColumnName());
+				}
+			}
+			int maxColumns = context.getInteger("maxColumns", 50);
+			int maxEntities = context.getInteger("maxEntities", 10);
+			if (columnNames.size() > maxColumns || tableEntities.size() > maxEntities) {
+				context.addFailure(entity, tableEntities.size() + " entities share the table " + externalName + " of " + entity.getName() + ", which has " + columnNames.size() + " columns, so every fetch of any of them reads every column and most of them are null; consider vertical or horizontal inheritance.");
+			}
+		}
+
+		protected void addTableEntities(EOEntity entity, String externalName, Set<EOEntity> tableEntities) {
+			if (tableEntities.add(entity)) {
+				for (EOEntity child : entity.getChildrenEntities()) {
+					if (externalName.equals(child.getExternalName())) {
+						addTableEntities(child, externalName, tableEntities);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the attributes of the entity that are mapped to a column.
+	 */
+	protected static List<EOAttribute> columnAttributes(EOEntity entity) {
+		List<EOAttribute> columnAttributes = new LinkedList<EOAttribute>();
+		for (EOAttribute attribute : entity.getAttributes()) {
+			if (!attribute.isFlattened() && attribute.getColumnName() != null) {
+				columnAttributes.add(attribute);
+			}
+		}
+		return columnAttributes;
+	}
+
+	/**
+	 * Returns whether the attribute is a blob or a long text that is wider
+	 * than maxWidth or has no width.
+	 */
+	protected static boolean isLarge(EOAttribute attribute, int maxWidth) {
+		String externalType = attribute.getExternalType();
+		boolean large = attribute.getDataType() == EODataType.DATA || (externalType != null && EOPerformanceLintRules.LARGE_EXTERNAL_TYPES.contains(externalType.toLowerCase()));
+		if (large) {
+			Integer width = attribute.getWidth();
+			large = width == null || width.intValue() <= 0 || width.intValue() > maxWidth;
+		}
+		return large;
+	}
+}
@@ -66,7 +66,7 @@ import org.objectstyle.wolips.eomodeler.core.model.qualifier.EONotQualifier;
 import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOOrQualifier;
 import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifier;
 import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierBinding;
-import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierParser;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierCache;
 import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierVariable;
 
 public class EOQualifierFactory {
@@ -120,7 +120,7 @@ public class EOQualifierFactory {
 
 	public static EOQualifier fromString(String qualifierString) {
 		try {
-			EOQualifier qualifier = new EOQualifierParser().parseQualifier(qualifierString);
+			EOQualifier qualifier = EOQualifierCache.sharedCache().parseQualifier(qualifierString);
 			return qualifier;
 		} catch (ParseException e) {
 			throw new RuntimeException("Failed to parse qualfier.", e);
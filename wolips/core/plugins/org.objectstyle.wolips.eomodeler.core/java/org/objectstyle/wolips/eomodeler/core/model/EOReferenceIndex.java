@@ -0,0 +1,269 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * EOReferenceIndex is the reverse index of the references between the entities
+ * of a model group: it maps every entity to the relationships whose
+ * destination it is and to its children entities, so neither has to be found
+ * by scanning every entity of every model. The index is built from the models
+ * on the first lookup and then kept up to date entity by entity: the model
+ * group reconciles an entity with the index whenever the entity reports a
+ * change (and whenever it changes its parent or the destinations of its
+ * relationships without reporting it), and it invalidates the index when
+ * models or entities come and go. Building the index reads lazily loaded
+ * entities, so the index is guarded by the lock the entities of the model
+ * group are read under.
+ */
+public class EOReferenceIndex {
+	private Collection<EOModel> _models;
+
+	private Object _lock;
+
+	private boolean _valid;
+
+	private Map<EOEntity, Set<EORelationship>> _referencingRelationships;
+
+	private Map<EORelationship, EOEntity> _destinations;
+
+	private Map<EOEntity, Set<EORelationship>> _relationships;
+
+	private Map<EOEntity, Set<EOEntity>> _childrenEntities;
+
+	private Map<EOEntity, EOEntity> _parents;
+
+	/**
+	 * Constructs a new EOReferenceIndex.
+	 * 
+	 * @param models
+	 *            the (live) collection of models to index
+	 * @param lock
+	 *            the lock the entities of the models are read under
+	 */
+	public EOReferenceIndex(Collection<EOModel> models, Object lock) {
+		_models = models;
+		_lock = lock;
+		_referencingRelationships = new HashMap<EOEntity, Set<EORelationship>>();
+		_destinations = new HashMap<EORelationship, EOEntity>();
+		_relationships = new HashMap<EOEntity, Set<EORelationship>>();
+		_childrenEntities = new HashMap<EOEntity, Set<EOEntity>>();
+		_parents = new HashMap<EOEntity, EOEntity>();
+	}
+
+	/**
+	 * Returns the relationships of the other entities whose destination is
+	 * the given entity.
+	 */
+	public Set<EORelationship> getReferencingRelationships(EOEntity destination) {
+		synchronized (_lock) {
+			_validate();
+			Set<EORelationship> referencingRelationships = new HashSet<EORelationship>();
+			Set<EORelationship> relationships = _referencingRelationships.get(destination);
+			if (relationships != null) {
+				for (EORelationship relationship : relationships) {
+					if (relationship.getEntity() != destination) {
+						referencingRelationships.add(relationship);
+					}
+				}
+			}
+			return referencingRelationships;
+		}
+	}
+
+	/**
+	 * Returns the entities whose parent is the given entity.
+	 */
+	public Set<EOEntity> getChildrenEntities(EOEntity parent) {
+		synchronized (_lock) {
+			_validate();
+			Set<EOEntity> childrenEntities = new HashSet<EOEntity>();
+			Set<EOEntity> children = _childrenEntities.get(parent);
+			if (children != null) {
+				childrenEntities.addAll(children);
+			}
+			return childrenEntities;
+		}
+	}
+
+	/**
+	 * Brings the parent, the relationships and the relationship destinations
+	 * of the given entity up to date in the index.
+	 */
+	public void entityChanged(EOEntity entity) {
+		synchronized (_lock) {
+			if (_valid) {
+				if (_models.contains(entity.getModel())) {
+					_indexEntity(entity);
+				} else {
+					_unindexEntity(entity);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Brings the destination of the given relationship up to date in the
+	 * index.
+	 */
+	public void relationshipChanged(EORelationship relationship) {
+		synchronized (_lock) {
+			if (_valid && _destinations.containsKey(relationship)) {
+				_indexRelationship(relationship);
+			}
+		}
+	}
+
+	/**
+	 * Discards the index, which is rebuilt by the next lookup.
+	 */
+	public void invalidate() {
+		synchronized (_lock) {
+			_valid = false;
+			_referencingRelationships.clear();
+			_destinations.clear();
+			_relationships.clear();
+			_childrenEntities.clear();
+			_parents.clear();
+		}
+	}
+
+	protected void _validate() {
+		if (!_valid) {
+			for (EOModel model : _models) {
+				for (EOEntity entity : model.getEntities()) {
+					_indexEntity(entity);
+				}
+			}
+			_valid = true;
+		}
+	}
+
+	protected void _indexEntity(EOEntity entity) {
+		EOEntity parent = entity.getParent();
+		EOEntity oldParent = _parents.get(entity);
+		if (parent != oldParent) {
+			_remove(_childrenEntities, oldParent, entity);
+			_add(_childrenEntities, parent, entity);
+			if (parent == null) {
+				_parents.remove(entity);
+			} else {
+				_parents.put(entity, parent);
+			}
+		}
+
+		Set<EORelationship> relationships = new HashSet<EORelationship>(entity.getRelationships());
+		Set<EORelationship> oldRelationships = _relationships.put(entity, relationships);
+		if (oldRelationships != null) {
+			for (EORelationship oldRelationship : oldRelationships) {
+				if (!relationships.contains(oldRelationship)) {
+					_unindexRelationship(oldRelationship);
+				}
+			}
+		}
+		for (EORelationship relationship : relationships) {
+			_indexRelationship(relationship);
+		}
+	}
+
+	protected void _unindexEntity(EOEntity entity) {
+		EOEntity oldParent = _parents.remove(entity);
+		_remove(_childrenEntities, oldParent, entity);
+		Set<EORelationship> oldRelationships = _relationships.remove(entity);
+		if (oldRelationships != null) {
+			for (EORelationship oldRelationship : oldRelationships) {
+				_unindexRelationship(oldRelationship);
+			}
+		}
+	}
+
+	protected void _indexRelationship(EORelationship relationship) {
+		EOEntity destination = relationship._getDestination();
+		EOEntity oldDestination = _destinations.get(relationship);
+		if (destination != oldDestination || !_destinations.containsKey(relationship)) {
+			_remove(_referencingRelationships, oldDestination, relationship);
+			_add(_referencingRelationships, destination, relationship);
+			_destinations.put(relationship, destination);
+		}
+	}
+
+	protected void _unindexRelationship(EORelationship relationship) {
+		EOEntity oldDestination = _destinations.remove(relationship);
+		_remove(_referencingRelationships, oldDestination, relationship);
+	}
+
+	protected <T> void _add(Map<EOEntity, Set<T>> map, EOEntity key, T value) {
+		if (key != null) {
+			Set<T> values = map.get(key);
+			if (values == null) {
+				values = new HashSet<T>();
+				map.put(key, values);
+			}
+			values.add(value);
+		}
+	}
+
+	protected <T> void _remove(Map<EOEntity, Set<T>> map, EOEntity key, T value) {
+		if (key != null) {
+			Set<T> values = map.get(key);
+			if (values != null) {
+				values.remove(value);
+				if (values.isEmpty()) {
+					map.remove(key);
+				}
+			}
+		}
+	}
+}
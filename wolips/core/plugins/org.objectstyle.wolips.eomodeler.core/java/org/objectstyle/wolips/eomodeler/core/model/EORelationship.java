@@ -484,6 +484,9 @@ public class EORelationship extends UserInfoableEOModelObject<EOEntity> implemen
 			myEntity._checkForDuplicateRelationshipName(this, _name, null);
 		}
 		myName = _name;
+		if (!_fireEvents && myEntity != null) {
+			myEntity._relationshipNameChanged(this, oldName);
+		}
 		if (myEntity != null && myEntity.getModel() != null) {
 			EOModelGroup modelGroup = myEntity.getModel().getModelGroup();
 			for (EOEntity entity : modelGroup.getEntities()) {
@@ -562,9 +565,20 @@ public class EORelationship extends UserInfoableEOModelObject<EOEntity> implemen
 		myDestination = _destination;
 		if (_fireEvents) {
 			firePropertyChange(EORelationship.DESTINATION, oldDestination, myDestination);
+		} else if (myEntity != null) {
+			myEntity._relationshipReferencesChanged(this);
 		}
 	}
 
+	/**
+	 * Returns the destination entity that is set on this relationship, which,
+	 * unlike getDestination, isn't looked up through the definition of a
+	 * flattened relationship.
+	 */
+	public EOEntity _getDestination() {
+		return myDestination;
+	}
+
 	public EOJoinSemantic getJoinSemantic() {
 		return myJoinSemantic;
 	}
@@ -324,9 +324,17 @@ public class EOStoredProcedure extends UserInfoableEOModelObject<EOModel> implem
 	}
 	
 	public void loadFromURL(URL storedProcedureURL, Set<EOModelVerificationFailure> failures) throws EOModelException {
+		loadFromURL(storedProcedureURL, failures, null);
+	}
+
+	/**
+	 * Loads the stored procedure from the given URL, taking its property list
+	 * from the given model snapshot if it isn't null.
+	 */
+	public void loadFromURL(URL storedProcedureURL, Set<EOModelVerificationFailure> failures, EOModelSnapshot snapshot) throws EOModelException {
 		try {
 			_lastModified = new EOLastModified(storedProcedureURL);
-			EOModelMap entityMap = new EOModelMap((Map) WOLPropertyListSerialization.propertyListFromURL(storedProcedureURL, new EOModelParserDataStructureFactory()));
+			EOModelMap entityMap = new EOModelMap((Map) EOModelSnapshot.propertyListFromURL(snapshot, storedProcedureURL, new EOModelParserDataStructureFactory(true)));
 			loadFromMap(entityMap, failures);
 			setStoredProcedureDirty(false);
 		} catch (Throwable e) {
@@ -337,6 +345,14 @@ public class EOStoredProcedure extends UserInfoableEOModelObject<EOModel> implem
 	public void saveToFile(File storedProcedureFile) throws PropertyListParserException, IOException {
 		EOModelMap storedProcedureMap = toMap();
 		WOLPropertyListSerialization.propertyListToFile("Entity Modeler v" + EOModel.CURRENT_VERSION, storedProcedureFile, storedProcedureMap);
+		_saved(storedProcedureFile);
+	}
+
+	/**
+	 * Marks this stored procedure as saved once it has been written to the
+	 * given file.
+	 */
+	public void _saved(File storedProcedureFile) {
 		setStoredProcedureDirty(false);
 		_lastModified = new EOLastModified(storedProcedureFile);
 	}
@@ -0,0 +1,321 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * EOVerificationCache keeps the failures the last verification found for
+ * each entity of a model group, so that the next verification only verifies
+ * the entities that changed since then and the entities whose verification
+ * looked at them: the subclasses, the entities whose relationships lead to
+ * them and the entities whose partial entity they are. Every other entity
+ * contributes its cached failures.
+ * <p>
+ * The dependencies of an entity are recorded when it is verified. The model
+ * group reports every entity that changes, and invalidates the cache whenever
+ * a change can affect entities that haven't recorded a dependency on it, like
+ * a change to a prototype entity, to a model, or to the models of the group.
+ */
+public class EOVerificationCache {
+	private Collection<EOModel> _models;
+
+	private Map<EOEntity, Set<EOModelVerificationFailure>> _failures;
+
+	private Map<EOEntity, Set<EOEntity>> _dependencies;
+
+	private Map<EOEntity, Set<EOEntity>> _dependents;
+
+	private Set<EOEntity> _staleEntities;
+
+	private Set<EOEntity> _prototypeEntities;
+
+	private int _generation;
+
+	private int _verifiedEntityCount;
+
+	public EOVerificationCache(Collection<EOModel> models) {
+		_models = models;
+		_failures = new HashMap<EOEntity, Set<EOModelVerificationFailure>>();
+		_dependencies = new HashMap<EOEntity, Set<EOEntity>>();
+		_dependents = new HashMap<EOEntity, Set<EOEntity>>();
+		_staleEntities = new HashSet<EOEntity>();
+	}
+
+	/**
+	 * Adds the failures of the entities of the given models, which are some or
+	 * all of the models of the model group, to the given set, verifying the
+	 * entities that aren't cached or are stale.
+	 */
+	public void verify(Collection<EOModel> models, Set<EOModelVerificationFailure> failures, VerificationContext verificationContext) {
+		List<EOEntity> entities = new LinkedList<EOEntity>();
+		for (EOModel model : models) {
+			entities.addAll(model.getEntities());
+		}
+
+		// entities are verified without holding the lock, because verifying
+		// them can load them and fire changes
+		List<EOEntity> staleEntities = new LinkedList<EOEntity>();
+		int generation;
+		synchronized (this) {
+			generation = _generation;
+			if (_prototypeEntities == null) {
+				_prototypeEntities = new HashSet<EOEntity>();
+				for (EOModel model : _models) {
+					for (EOEntity entity : model.getEntities()) {
+						if (entity.isPrototype()) {
+							_prototypeEntities.add(entity);
+						}
+					}
+				}
+			}
+			for (EOEntity entity : entities) {
+				if (_staleEntities.remove(entity) || !_failures.containsKey(entity)) {
+					staleEntities.add(entity);
+				}
+			}
+			_verifiedEntityCount = staleEntities.size();
+		}
+		for (EOEntityVerification verification : EOEntityVerification.verifyAll(staleEntities, verificationContext, EOModelGroup.getVerifyThreads())) {
+			EOEntity entity = verification.getEntity();
+			Set<EOModelVerificationFailure> entityFailures = new LinkedHashSet<EOModelVerificationFailure>();
+			verification.getFailures(entityFailures);
+			Set<EOEntity> dependencies = _dependencies(entity);
+			synchronized (this) {
+				if (generation == _generation) {
+					_setFailures(entity, entityFailures, dependencies);
+					for (EOEntity dependency : dependencies) {
+						// the changes of entities outside of the model group
+						// are never reported
+						if (!_models.contains(dependency.getModel())) {
+							_staleEntities.add(entity);
+							break;
+						}
+					}
+				}
+			}
+			failures.addAll(entityFailures);
+		}
+
+		Set<EOEntity> verifiedEntities = new HashSet<EOEntity>(staleEntities);
+		List<EOEntity> uncachedEntities = new LinkedList<EOEntity>();
+		synchronized (this) {
+			for (EOEntity entity : entities) {
+				if (!verifiedEntities.contains(entity)) {
+					Set<EOModelVerificationFailure> entityFailures = (generation == _generation) ? _failures.get(entity) : null;
+					if (entityFailures == null) {
+						uncachedEntities.add(entity);
+					} else {
+						failures.addAll(entityFailures);
+					}
+				}
+			}
+		}
+		// the cache was discarded or the entity was forgotten while the stale
+		// entities were verified, so the failures to reuse are gone
+		if (!uncachedEntities.isEmpty()) {
+			EOEntityVerification.verifyAll(uncachedEntities, failures, verificationContext, EOModelGroup.getVerifyThreads());
+		}
+	}
+
+	/**
+	 * Returns how many entities the last verification verified instead of
+	 * reusing their cached failures.
+	 */
+	public synchronized int getVerifiedEntityCount() {
+		return _verifiedEntityCount;
+	}
+
+	/**
+	 * Marks the given entity and the entities whose verification depended on
+	 * it as stale.
+	 */
+	public synchronized void entityChanged(EOEntity entity) {
+		if (_isPrototype(entity)) {
+			invalidate();
+		} else {
+			_staleEntities.add(entity);
+			Set<EOEntity> dependents = _dependents.get(entity);
+			if (dependents != null) {
+				_staleEntities.addAll(dependents);
+			}
+		}
+	}
+
+	/**
+	 * Forgets the entities that were removed from a model and marks the
+	 * entities that depended on them as stale. Entities that were added are
+	 * verified by the next verification anyway.
+	 */
+	public synchronized void entitiesChanged(Set<EOEntity> oldEntities, Set<EOEntity> newEntities) {
+		for (EOEntity entity : newEntities) {
+			if (!oldEntities.contains(entity) && _isPrototype(entity)) {
+				invalidate();
+				return;
+			}
+		}
+		for (EOEntity entity : oldEntities) {
+			if (!newEntities.contains(entity)) {
+				if (_isPrototype(entity)) {
+					invalidate();
+					return;
+				}
+				entityChanged(entity);
+				_setFailures(entity, null, null);
+				_staleEntities.remove(entity);
+			}
+		}
+	}
+
+	/**
+	 * Discards the cache, so the next verification verifies every entity.
+	 */
+	public synchronized void invalidate() {
+		_generation++;
+		_failures.clear();
+		_dependencies.clear();
+		_dependents.clear();
+		_staleEntities.clear();
+		_prototypeEntities = null;
+	}
+
+	/**
+	 * Returns whether the given entity is or was a prototype entity; the
+	 * attributes of every entity can depend on those.
+	 */
+	protected boolean _isPrototype(EOEntity entity) {
+		return entity.isPrototype() || (_prototypeEntities != null && _prototypeEntities.contains(entity));
+	}
+
+	protected void _setFailures(EOEntity entity, Set<EOModelVerificationFailure> failures, Set<EOEntity> dependencies) {
+		Set<EOEntity> oldDependencies = _dependencies.remove(entity);
+		if (oldDependencies != null) {
+			for (EOEntity oldDependency : oldDependencies) {
+				Set<EOEntity> dependents = _dependents.get(oldDependency);
+				if (dependents != null) {
+					dependents.remove(entity);
+					if (dependents.isEmpty()) {
+						_dependents.remove(oldDependency);
+					}
+				}
+			}
+		}
+		if (failures == null) {
+			_failures.remove(entity);
+		} else {
+			_failures.put(entity, failures);
+			_dependencies.put(entity, dependencies);
+			for (EOEntity dependency : dependencies) {
+				Set<EOEntity> dependents = _dependents.get(dependency);
+				if (dependents == null) {
+					dependents = new HashSet<EOEntity>();
+					_dependents.put(dependency, dependents);
+				}
+				dependents.add(entity);
+			}
+		}
+	}
+
+	/**
+	 * Returns the other entities that the verification of the given entity
+	 * looks at: its ancestors, its partial entity, the destinations of its
+	 * relationships, the entities of the attributes of their joins and the
+	 * entities along the definitions of its flattened relationships. Prototypes are not included, since changing them
+	 * invalidates the whole cache.
+	 */
+	protected Set<EOEntity> _dependencies(EOEntity entity) {
+		Set<EOEntity> dependencies = new HashSet<EOEntity>();
+		for (EOEntity parent = entity.getParent(); parent != null && dependencies.add(parent);) {
+			parent = parent.getParent();
+		}
+		EOEntity partialEntity = entity.getPartialEntity();
+		if (partialEntity != null) {
+			dependencies.add(partialEntity);
+		}
+		for (EORelationship relationship : entity.getRelationships()) {
+			if (relationship.isFlattened()) {
+				String definition = relationship.getDefinition();
+				EOEntity pathEntity = entity;
+				for (String relationshipName : definition.split("\\.")) {
+					EORelationship pathRelationship = pathEntity.getRelationshipNamed(relationshipName);
+					pathEntity = pathRelationship == null ? null : pathRelationship._getDestination();
+					if (pathEntity == null) {
+						break;
+					}
+					dependencies.add(pathEntity);
+				}
+			} else {
+				EOEntity destination = relationship._getDestination();
+				if (destination != null) {
+					dependencies.add(destination);
+				}
+			}
+			for (EOJoin join : relationship.getJoins()) {
+				_addEntity(join.getSourceAttribute(), dependencies);
+				_addEntity(join.getDestinationAttribute(), dependencies);
+			}
+		}
+		dependencies.remove(entity);
+		return dependencies;
+	}
+
+	protected void _addEntity(EOAttribute attribute, Set<EOEntity> entities) {
+		if (attribute != null && attribute.getEntity() != null) {
+			entities.add(attribute.getEntity());
+		}
+	}
+}
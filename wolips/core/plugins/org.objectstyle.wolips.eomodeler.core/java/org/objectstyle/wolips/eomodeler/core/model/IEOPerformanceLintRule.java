@@ -0,0 +1,107 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtension;
+import org.eclipse.core.runtime.IExtensionPoint;
+import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.Platform;
+import org.objectstyle.wolips.eomodeler.core.Activator;
+
+/**
+ * IEOPerformanceLintRule checks the entities of a model for a choice that is
+ * known to hurt runtime performance. Rules are contributed with the
+ * org.objectstyle.wolips.eomodeler.performanceLintRule extension point, in
+ * addition to the ones in EOPerformanceLintRules.
+ */
+public interface IEOPerformanceLintRule {
+	/**
+	 * Returns the name of the rule, which is the key of its settings in the
+	 * performanceLint user info of a model.
+	 */
+	public String getName();
+
+	public EOPerformanceLintFailure.Severity getDefaultSeverity();
+
+	/**
+	 * Checks the given entity and adds its failures to the context.
+	 */
+	public void lint(EOEntity entity, EOPerformanceLint.RuleContext context);
+
+	public class Utility {
+		public static List<IEOPerformanceLintRule> performanceLintRules() {
+			List<IEOPerformanceLintRule> performanceLintRules = new LinkedList<IEOPerformanceLintRule>();
+			IExtensionRegistry extensionRegistry = Platform.getExtensionRegistry();
+			// there is no registry when the models are used outside of Eclipse
+			IExtensionPoint extensionPoint = extensionRegistry == null ? null : extensionRegistry.getExtensionPoint("org.objectstyle.wolips.eomodeler.performanceLintRule");
+			if (extensionPoint != null) {
+				IExtension[] extensions = extensionPoint.getExtensions();
+				for (IExtension extension : extensions) {
+					IConfigurationElement[] configurationElements = extension.getConfigurationElements();
+					for (IConfigurationElement configurationElement : configurationElements) {
+						try {
+							IEOPerformanceLintRule performanceLintRule = (IEOPerformanceLintRule) configurationElement.createExecutableExtension("class");
+							performanceLintRules.add(performanceLintRule);
+						} catch (CoreException e) {
+							e.printStackTrace();
+							Activator.getDefault().log("Could not create performance lint rule from configuration element: " + configurationElement, e);
+						}
+					}
+				}
+			}
+			return performanceLintRules;
+		}
+	}
+}
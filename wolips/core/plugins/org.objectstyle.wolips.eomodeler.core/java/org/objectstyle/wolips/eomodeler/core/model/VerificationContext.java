@@ -3,19 +3,26 @@ package org.objectstyle.wolips.eomodeler.core.model;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * VerificationContext holds the caches that are shared by one verification of
+ * a model or model group. The caches are only built when they are first asked
+ * for, since most verifications never need them.
+ */
 public class VerificationContext {
+	private EOModelGroup _modelGroup;
+
+	private EOModel _model;
+
 	private Map<EOAttribute, Set<EORelationship>> _referencingRelationshipsCache;
 
 	private Map<EOEntity, Set<EOEntity>> _inheritanceCache;
 
 	public VerificationContext(EOModelGroup modelGroup) {
-		_referencingRelationshipsCache = modelGroup._createReferencingRelationshipsCache();
-		_inheritanceCache = modelGroup._createInheritanceCache();
+		_modelGroup = modelGroup;
 	}
 
 	public VerificationContext(EOModel model) {
-		_referencingRelationshipsCache = model._createReferencingRelationshipsCache();
-		_inheritanceCache = model._createInheritanceCache();
+		_model = model;
 	}
 
 	public VerificationContext(Map<EOAttribute, Set<EORelationship>> referencingRelationshipsCache, Map<EOEntity, Set<EOEntity>> inheritanceCache) {
@@ -23,15 +30,29 @@ public class VerificationContext {
 		_inheritanceCache = inheritanceCache;
 	}
 
-	public Map<EOAttribute, Set<EORelationship>> getReferencingRelationshipsCache() {
+	public synchronized Map<EOAttribute, Set<EORelationship>> getReferencingRelationshipsCache() {
+		if (_referencingRelationshipsCache == null) {
+			if (_modelGroup != null) {
+				_referencingRelationshipsCache = _modelGroup._createReferencingRelationshipsCache();
+			} else {
+				_referencingRelationshipsCache = _model._createReferencingRelationshipsCache();
+			}
+		}
 		return _referencingRelationshipsCache;
 	}
 
-	public void setInheritanceCache(Map<EOEntity, Set<EOEntity>> inheritanceCache) {
+	public synchronized void setInheritanceCache(Map<EOEntity, Set<EOEntity>> inheritanceCache) {
 		_inheritanceCache = inheritanceCache;
 	}
 
-	public Map<EOEntity, Set<EOEntity>> getInheritanceCache() {
+	public synchronized Map<EOEntity, Set<EOEntity>> getInheritanceCache() {
+		if (_inheritanceCache == null) {
+			if (_modelGroup != null) {
+				_inheritanceCache = _modelGroup._createInheritanceCache();
+			} else {
+				_inheritanceCache = _model._createInheritanceCache();
+			}
+		}
 		return _inheritanceCache;
 	}
 }
@@ -14,6 +14,19 @@ public class EONotQualifier extends EOQualifier {
 	public EOQualifier getQualifier() {
 		return _qualifier;
 	}
+
+	@Override
+	public EOQualifier immutableQualifier() {
+		EOQualifier qualifier = this;
+		if (_qualifier != null) {
+			EOQualifier immutableQualifier = _qualifier.immutableQualifier();
+			if (immutableQualifier != _qualifier) {
+				qualifier = new EONotQualifier(immutableQualifier);
+			}
+		}
+		return qualifier;
+	}
+
 	@Override
 	public String toString(int depth) {
 		StringBuffer sb = new StringBuffer();
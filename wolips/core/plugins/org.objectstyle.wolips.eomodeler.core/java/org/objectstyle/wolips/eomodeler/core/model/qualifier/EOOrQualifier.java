@@ -1,6 +1,8 @@
 package org.objectstyle.wolips.eomodeler.core.model.qualifier;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -41,16 +43,28 @@ public class EOOrQualifier extends EOAggregateQualifier {
 		return _qualifiers;
 	}
 
+	@Override
+	public EOQualifier immutableQualifier() {
+		EOOrQualifier qualifier = new EOOrQualifier();
+		List<EOQualifier> qualifiers = new ArrayList<EOQualifier>(_qualifiers.size());
+		for (EOQualifier childQualifier : _qualifiers) {
+			qualifiers.add(childQualifier == null ? null : childQualifier.immutableQualifier());
+		}
+		qualifier._qualifiers = Collections.unmodifiableList(qualifiers);
+		return qualifier;
+	}
+
 	public String toString(int depth) {
 		StringBuffer sb = new StringBuffer();
 		if (depth > 0) {
 			sb.append("(");
 		}
-		for (int i = 0; i < _qualifiers.size(); i++) {
-			EOQualifier qualifier = _qualifiers.get(i);
-			if (i > 0) {
+		boolean first = true;
+		for (EOQualifier qualifier : _qualifiers) {
+			if (!first) {
 				sb.append(" or ");
 			}
+			first = false;
 			if (qualifier != null) {
 				sb.append(qualifier.toString(depth + 1));
 			}
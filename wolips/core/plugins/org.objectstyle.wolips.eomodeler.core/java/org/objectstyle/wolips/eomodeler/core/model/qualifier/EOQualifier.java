@@ -37,6 +37,16 @@ public abstract class EOQualifier {
 		}
 	}
 
+	/**
+	 * Returns a version of this qualifier that can't be changed, so it can be
+	 * shared, e.g. by EOQualifierCache. Qualifiers that can't be changed in the
+	 * first place return themselves; aggregates return copies whose
+	 * getQualifiers() can't be modified.
+	 */
+	public EOQualifier immutableQualifier() {
+		return this;
+	}
+
 	public String toString() {
 		return toString(0);
 	}
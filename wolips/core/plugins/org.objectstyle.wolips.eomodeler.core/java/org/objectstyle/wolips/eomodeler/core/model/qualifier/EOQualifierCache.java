@@ -0,0 +1,116 @@
+package org.objectstyle.wolips.eomodeler.core.model.qualifier;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EOQualifierCache remembers the qualifiers it parsed, so the fetch specs,
+ * restricting qualifiers and editors that parse the same strings over and
+ * over only pay for it once. The cached qualifiers are immutable (see
+ * EOQualifier.immutableQualifier) and are shared by everyone who asks for the
+ * same string. The cache is bounded: once it holds maxEntries qualifiers, the
+ * one that was used least recently is dropped. Strings that don't parse are
+ * not cached. EOQualifierCache is thread-safe, and parsing happens outside of
+ * its lock.
+ */
+public class EOQualifierCache {
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	private static final EOQualifierCache _sharedCache = new EOQualifierCache(EOQualifierCache.DEFAULT_MAX_ENTRIES);
+
+	private EOQualifierParser _parser;
+
+	private Map<String, EOQualifier> _qualifiers;
+
+	private AtomicInteger _hitCount;
+
+	private AtomicInteger _missCount;
+
+	/**
+	 * Returns the cache that EOQualifierFactory.fromString uses.
+	 */
+	public static EOQualifierCache sharedCache() {
+		return _sharedCache;
+	}
+
+	/**
+	 * Constructs a new EOQualifierCache.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of qualifiers in the cache
+	 */
+	public EOQualifierCache(final int maxEntries) {
+		_parser = new EOQualifierParser();
+		_qualifiers = new LinkedHashMap<String, EOQualifier>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, EOQualifier> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		_hitCount = new AtomicInteger();
+		_missCount = new AtomicInteger();
+	}
+
+	/**
+	 * Returns the immutable qualifier for the given string, parsing it if it
+	 * isn't cached yet.
+	 */
+	public EOQualifier parseQualifier(String qualifierString) throws ParseException {
+		if (qualifierString == null) {
+			return _parser.parseQualifier(qualifierString);
+		}
+		EOQualifier qualifier;
+		synchronized (_qualifiers) {
+			qualifier = _qualifiers.get(qualifierString);
+		}
+		if (qualifier != null) {
+			_hitCount.incrementAndGet();
+		} else {
+			_missCount.incrementAndGet();
+			EOQualifier parsedQualifier = _parser.parseQualifier(qualifierString);
+			if (parsedQualifier == null) {
+				return null;
+			}
+			qualifier = parsedQualifier.immutableQualifier();
+			synchronized (_qualifiers) {
+				// another thread may have parsed it in the meantime, keep
+				// handing out the first one
+				EOQualifier cachedQualifier = _qualifiers.get(qualifierString);
+				if (cachedQualifier == null) {
+					_qualifiers.put(qualifierString, qualifier);
+				} else {
+					qualifier = cachedQualifier;
+				}
+			}
+		}
+		return qualifier;
+	}
+
+	public int getHitCount() {
+		return _hitCount.get();
+	}
+
+	public int getMissCount() {
+		return _missCount.get();
+	}
+
+	/**
+	 * Returns the number of qualifiers in the cache.
+	 */
+	public int size() {
+		synchronized (_qualifiers) {
+			return _qualifiers.size();
+		}
+	}
+
+	/**
+	 * Empties the cache.
+	 */
+	public void clear() {
+		synchronized (_qualifiers) {
+			_qualifiers.clear();
+		}
+	}
+}
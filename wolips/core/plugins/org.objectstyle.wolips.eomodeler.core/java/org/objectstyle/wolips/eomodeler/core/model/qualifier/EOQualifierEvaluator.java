@@ -0,0 +1,944 @@
+package org.objectstyle.wolips.eomodeler.core.model.qualifier;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.objectstyle.wolips.eomodeler.core.model.AbstractEOAttributePath;
+import org.objectstyle.wolips.eomodeler.core.model.EOAttributePath;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+
+/**
+ * EOQualifierEvaluator evaluates qualifiers in memory, without an EOF stack,
+ * so you can try a fetch spec's qualifier against sample data. A qualifier is
+ * compiled once into a RowPredicate, which can then be evaluated against any
+ * number of rows.
+ * <p>
+ * A row is a Map from the entity's attribute and relationship names to their
+ * values. A to-one relationship is a nested row, and a to-many relationship
+ * is a Collection of rows; a comparison on a keypath that goes through a
+ * to-many relationship matches if it matches any of the related rows.
+ * <p>
+ * When the evaluator has an entity, every keypath of the qualifier must
+ * resolve on it, and the values of the qualifier are converted to the types
+ * of the attributes they are compared with when the qualifier is compiled
+ * (e.g. 1 becomes Boolean.TRUE for a boolean attribute, and '2008-01-01'
+ * becomes a Date for a timestamp attribute). Without an entity, values are
+ * compared as they are.
+ * <p>
+ * Comparisons follow EOF: numbers are compared by value whatever their class,
+ * = and <> compare with null, and the other comparisons never match null.
+ * like and caseInsensitiveLike match * to any number of characters and ? to
+ * one character. Variables are replaced by their bindings; like EOF's
+ * qualifierWithBindings, qualifiers whose variables have no binding are left
+ * out, unless all variables are required.
+ */
+public class EOQualifierEvaluator {
+	protected static final int EQUAL = 0;
+
+	protected static final int NOT_EQUAL = 1;
+
+	protected static final int LESS_THAN = 2;
+
+	protected static final int GREATER_THAN = 3;
+
+	protected static final int LESS_THAN_OR_EQUAL = 4;
+
+	protected static final int GREATER_THAN_OR_EQUAL = 5;
+
+	protected static final int LIKE = 6;
+
+	protected static final int CASE_INSENSITIVE_LIKE = 7;
+
+	protected static final int CONTAINS = 8;
+
+	protected static final int OBJECT_TYPE = 0;
+
+	protected static final int STRING_TYPE = 1;
+
+	protected static final int LONG_TYPE = 2;
+
+	protected static final int DOUBLE_TYPE = 3;
+
+	protected static final int DECIMAL_TYPE = 4;
+
+	protected static final int BOOLEAN_TYPE = 5;
+
+	protected static final int DATE_TYPE = 6;
+
+	/**
+	 * The value of a keypath that goes through a to-many relationship: the
+	 * values of all of the related rows.
+	 */
+	protected static class ToManyValues extends ArrayList<Object> {
+		public ToManyValues() {
+			super(4);
+		}
+	}
+
+	private static final RowPredicate TRUE_PREDICATE = new TruePredicate();
+
+	private EOEntity _entity;
+
+	/**
+	 * Constructs a new EOQualifierEvaluator.
+	 *
+	 * @param entity
+	 *            the entity the rows belong to, or null to compare values
+	 *            without converting them
+	 */
+	public EOQualifierEvaluator(EOEntity entity) {
+		_entity = entity;
+	}
+
+	public EOEntity getEntity() {
+		return _entity;
+	}
+
+	/**
+	 * Parses (through the shared EOQualifierCache) and compiles the given
+	 * qualifier string. A null qualifier string matches every row.
+	 */
+	public RowPredicate compile(String qualifierString, Map<String, ?> bindings) throws ParseException {
+		EOQualifier qualifier = null;
+		if (qualifierString != null) {
+			qualifier = EOQualifierCache.sharedCache().parseQualifier(qualifierString);
+		}
+		return compile(qualifier, bindings, false);
+	}
+
+	public RowPredicate compile(EOQualifier qualifier) {
+		return compile(qualifier, null, false);
+	}
+
+	/**
+	 * Compiles the given qualifier. A null qualifier, or one that is left out
+	 * entirely for lack of bindings, matches every row.
+	 *
+	 * @param qualifier
+	 *            the qualifier to compile
+	 * @param bindings
+	 *            the values of the qualifier's variables, by name (can be
+	 *            null)
+	 * @param requiresAllVariables
+	 *            if true, a variable without a binding is an error rather than
+	 *            leaving its qualifier out
+	 * @throws IllegalArgumentException
+	 *             if a keypath doesn't resolve on the entity, a value can't be
+	 *             converted to the type of its attribute, or the qualifier
+	 *             uses an unknown operator
+	 */
+	public RowPredicate compile(EOQualifier qualifier, Map<String, ?> bindings, boolean requiresAllVariables) {
+		RowPredicate predicate = null;
+		if (qualifier != null) {
+			predicate = compileQualifier(qualifier, bindings, requiresAllVariables);
+		}
+		if (predicate == null) {
+			predicate = EOQualifierEvaluator.TRUE_PREDICATE;
+		}
+		return predicate;
+	}
+
+	/**
+	 * Returns the predicate for the given qualifier, or null if it is left out
+	 * because of missing bindings.
+	 */
+	protected RowPredicate compileQualifier(EOQualifier qualifier, Map<String, ?> bindings, boolean requiresAllVariables) {
+		RowPredicate predicate;
+		if (qualifier instanceof EOKeyValueQualifier) {
+			EOKeyValueQualifier keyValueQualifier = (EOKeyValueQualifier) qualifier;
+			Object value = keyValueQualifier.getValue();
+			boolean bound = true;
+			if (value instanceof EOQualifierVariable) {
+				String name = ((EOQualifierVariable) value).getName();
+				bound = bindings != null && bindings.containsKey(name);
+				if (bound) {
+					value = bindings.get(name);
+				} else if (requiresAllVariables) {
+					throw new IllegalArgumentException("There is no binding for the variable '" + name + "' of the qualifier '" + qualifier + "'.");
+				}
+			}
+			if (bound) {
+				predicate = compileKeyValue(keyValueQualifier.getKey(), keyValueQualifier.getComparison(), value);
+			} else {
+				predicate = null;
+			}
+		} else if (qualifier instanceof EOKeyComparisonQualifier) {
+			EOKeyComparisonQualifier keyComparisonQualifier = (EOKeyComparisonQualifier) qualifier;
+			KeyPath leftKeyPath = compileKeyPath(keyComparisonQualifier.getLeftKey());
+			KeyPath rightKeyPath = compileKeyPath(keyComparisonQualifier.getRightKey());
+			predicate = new KeyComparisonPredicate(leftKeyPath, EOQualifierEvaluator.operatorNamed(keyComparisonQualifier.getComparison()), rightKeyPath);
+		} else if (qualifier instanceof EOAggregateQualifier) {
+			List<RowPredicate> predicates = new ArrayList<RowPredicate>();
+			for (EOQualifier childQualifier : ((EOAggregateQualifier) qualifier).getQualifiers()) {
+				RowPredicate childPredicate = compileQualifier(childQualifier, bindings, requiresAllVariables);
+				if (childPredicate != null) {
+					predicates.add(childPredicate);
+				}
+			}
+			if (predicates.isEmpty()) {
+				predicate = null;
+			} else if (predicates.size() == 1) {
+				predicate = predicates.get(0);
+			} else if (qualifier instanceof EOOrQualifier) {
+				predicate = new OrPredicate(predicates.toArray(new RowPredicate[predicates.size()]));
+			} else {
+				predicate = new AndPredicate(predicates.toArray(new RowPredicate[predicates.size()]));
+			}
+		} else if (qualifier instanceof EONotQualifier) {
+			RowPredicate childPredicate = compileQualifier(((EONotQualifier) qualifier).getQualifier(), bindings, requiresAllVariables);
+			if (childPredicate == null) {
+				predicate = null;
+			} else {
+				predicate = new NotPredicate(childPredicate);
+			}
+		} else if (qualifier instanceof EOTruePredicate) {
+			predicate = EOQualifierEvaluator.TRUE_PREDICATE;
+		} else {
+			throw new IllegalArgumentException("Unknown qualifier '" + qualifier + "'.");
+		}
+		return predicate;
+	}
+
+	protected RowPredicate compileKeyValue(String key, EOQualifier.Comparison comparison, Object value) {
+		KeyPath keyPath = compileKeyPath(key);
+		int operator = EOQualifierEvaluator.operatorNamed(comparison);
+		RowPredicate predicate;
+		if (operator == EOQualifierEvaluator.LIKE || operator == EOQualifierEvaluator.CASE_INSENSITIVE_LIKE) {
+			if (value == null) {
+				predicate = new ComparisonPredicate(keyPath, EOQualifierEvaluator.EQUAL, null);
+			} else {
+				predicate = new LikePredicate(keyPath, String.valueOf(value), operator == EOQualifierEvaluator.CASE_INSENSITIVE_LIKE);
+			}
+		} else if (operator == EOQualifierEvaluator.CONTAINS) {
+			predicate = new ContainsPredicate(keyPath, value);
+		} else {
+			Object convertedValue = convertValue(key, value, keyPath.getType());
+			if (convertedValue instanceof Long) {
+				predicate = new LongComparisonPredicate(keyPath, operator, ((Long) convertedValue).longValue());
+			} else if (convertedValue instanceof Double) {
+				predicate = new DoubleComparisonPredicate(keyPath, operator, ((Double) convertedValue).doubleValue());
+			} else if (convertedValue instanceof String) {
+				predicate = new StringComparisonPredicate(keyPath, operator, (String) convertedValue);
+			} else {
+				predicate = new ComparisonPredicate(keyPath, operator, convertedValue);
+			}
+		}
+		return predicate;
+	}
+
+	/**
+	 * Returns the keypath for the given key, resolving it on the entity if
+	 * there is one.
+	 */
+	protected KeyPath compileKeyPath(String key) {
+		int type = EOQualifierEvaluator.OBJECT_TYPE;
+		if (_entity != null) {
+			AbstractEOAttributePath attributePath = _entity.resolveKeyPath(key);
+			if (attributePath == null || !attributePath.isValid()) {
+				throw new IllegalArgumentException("The keypath '" + key + "' could not be resolved on the entity '" + _entity.getName() + "'.");
+			}
+			if (attributePath instanceof EOAttributePath) {
+				type = EOQualifierEvaluator.typeNamed(((EOAttributePath) attributePath).getChildAttribute().getJavaClassName(false));
+			}
+		}
+		return new KeyPath(key, type);
+	}
+
+	protected static int typeNamed(String javaClassName) {
+		int type;
+		if ("java.lang.String".equals(javaClassName)) {
+			type = EOQualifierEvaluator.STRING_TYPE;
+		} else if ("java.lang.Integer".equals(javaClassName) || "java.lang.Long".equals(javaClassName) || "java.lang.Short".equals(javaClassName) || "java.lang.Byte".equals(javaClassName)) {
+			type = EOQualifierEvaluator.LONG_TYPE;
+		} else if ("java.lang.Double".equals(javaClassName) || "java.lang.Float".equals(javaClassName)) {
+			type = EOQualifierEvaluator.DOUBLE_TYPE;
+		} else if ("java.math.BigDecimal".equals(javaClassName)) {
+			type = EOQualifierEvaluator.DECIMAL_TYPE;
+		} else if ("java.lang.Boolean".equals(javaClassName)) {
+			type = EOQualifierEvaluator.BOOLEAN_TYPE;
+		} else if ("com.webobjects.foundation.NSTimestamp".equals(javaClassName) || "java.util.Date".equals(javaClassName) || "java.sql.Timestamp".equals(javaClassName) || "java.sql.Date".equals(javaClassName)) {
+			type = EOQualifierEvaluator.DATE_TYPE;
+		} else {
+			type = EOQualifierEvaluator.OBJECT_TYPE;
+		}
+		return type;
+	}
+
+	/**
+	 * Converts a value of the qualifier to the type of the attribute it is
+	 * compared with. Integral numbers become Longs and floating point numbers
+	 * become Doubles, so the comparisons can use primitives.
+	 */
+	protected Object convertValue(String key, Object value, int type) {
+		Object convertedValue = value;
+		try {
+			if (value == null) {
+				convertedValue = null;
+			} else if (type == EOQualifierEvaluator.LONG_TYPE) {
+				if (value instanceof String) {
+					convertedValue = Long.valueOf(Long.parseLong((String) value));
+				} else if (value instanceof BigDecimal) {
+					// 5.0 can use the long comparison, 5.5 has to stay a
+					// BigDecimal
+					BigDecimal decimalValue = (BigDecimal) value;
+					if (decimalValue.signum() == 0 || decimalValue.stripTrailingZeros().scale() <= 0) {
+						try {
+							convertedValue = Long.valueOf(decimalValue.longValueExact());
+						} catch (ArithmeticException e) {
+							convertedValue = decimalValue;
+						}
+					}
+				} else if (EOQualifierEvaluator.isIntegral(value)) {
+					convertedValue = Long.valueOf(((Number) value).longValue());
+				}
+			} else if (type == EOQualifierEvaluator.DOUBLE_TYPE) {
+				if (value instanceof String) {
+					convertedValue = Double.valueOf((String) value);
+				} else if (value instanceof Number) {
+					convertedValue = Double.valueOf(((Number) value).doubleValue());
+				}
+			} else if (type == EOQualifierEvaluator.DECIMAL_TYPE) {
+				if (value instanceof String || value instanceof Number) {
+					convertedValue = new BigDecimal(value.toString());
+				}
+			} else if (type == EOQualifierEvaluator.BOOLEAN_TYPE) {
+				if (value instanceof Number) {
+					convertedValue = Boolean.valueOf(((Number) value).intValue() != 0);
+				} else if (value instanceof String) {
+					String stringValue = (String) value;
+					convertedValue = Boolean.valueOf("true".equalsIgnoreCase(stringValue) || "yes".equalsIgnoreCase(stringValue) || "y".equalsIgnoreCase(stringValue) || "1".equals(stringValue));
+				}
+			} else if (type == EOQualifierEvaluator.DATE_TYPE) {
+				if (value instanceof String) {
+					String stringValue = ((String) value).trim();
+					if (stringValue.indexOf(' ') == -1) {
+						convertedValue = new Date(java.sql.Date.valueOf(stringValue).getTime());
+					} else {
+						convertedValue = new Date(java.sql.Timestamp.valueOf(stringValue).getTime());
+					}
+				}
+			} else if (EOQualifierEvaluator.isIntegral(value)) {
+				convertedValue = Long.valueOf(((Number) value).longValue());
+			} else if (value instanceof Double || value instanceof Float) {
+				convertedValue = Double.valueOf(((Number) value).doubleValue());
+			}
+		} catch (RuntimeException e) {
+			IllegalArgumentException conversionException = new IllegalArgumentException("The value '" + value + "' can't be compared with the keypath '" + key + "'.");
+			conversionException.initCause(e);
+			throw conversionException;
+		}
+		return convertedValue;
+	}
+
+	protected static int operatorNamed(EOQualifier.Comparison comparison) {
+		String name = comparison.getName();
+		int operator;
+		if ("=".equals(name) || "==".equals(name) || "isEqualTo".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.EQUAL;
+		} else if ("<>".equals(name) || "!=".equals(name) || "isNotEqualTo".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.NOT_EQUAL;
+		} else if ("<".equals(name) || "isLessThan".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.LESS_THAN;
+		} else if (">".equals(name) || "isGreaterThan".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.GREATER_THAN;
+		} else if ("<=".equals(name) || "isLessThanOrEqualTo".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.LESS_THAN_OR_EQUAL;
+		} else if (">=".equals(name) || "isGreaterThanOrEqualTo".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.GREATER_THAN_OR_EQUAL;
+		} else if ("like".equalsIgnoreCase(name) || "isLike".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.LIKE;
+		} else if ("caseInsensitiveLike".equalsIgnoreCase(name) || "isCaseInsensitiveLike".equalsIgnoreCase(name) || "likeIgnoreCase".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.CASE_INSENSITIVE_LIKE;
+		} else if ("contains".equalsIgnoreCase(name) || "doesContain".equalsIgnoreCase(name)) {
+			operator = EOQualifierEvaluator.CONTAINS;
+		} else {
+			throw new IllegalArgumentException("Unknown operator '" + name + "'.");
+		}
+		return operator;
+	}
+
+	protected static boolean isIntegral(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+	}
+
+	/**
+	 * Returns whether the result of a compareTo satisfies the operator.
+	 */
+	protected static boolean matches(int operator, int comparison) {
+		boolean matches;
+		switch (operator) {
+		case EQUAL:
+			matches = comparison == 0;
+			break;
+		case NOT_EQUAL:
+			matches = comparison != 0;
+			break;
+		case LESS_THAN:
+			matches = comparison < 0;
+			break;
+		case GREATER_THAN:
+			matches = comparison > 0;
+			break;
+		case LESS_THAN_OR_EQUAL:
+			matches = comparison <= 0;
+			break;
+		case GREATER_THAN_OR_EQUAL:
+			matches = comparison >= 0;
+			break;
+		default:
+			matches = false;
+			break;
+		}
+		return matches;
+	}
+
+	/**
+	 * Compares two values the way EOF does: null only equals null and can't be
+	 * ordered, numbers are compared by value, dates by time, and other values
+	 * with compareTo if they are of the same class and equals otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	protected static boolean compare(Object value, int operator, Object otherValue) {
+		boolean matches;
+		if (value == null || otherValue == null) {
+			if (operator == EOQualifierEvaluator.EQUAL) {
+				matches = value == otherValue;
+			} else if (operator == EOQualifierEvaluator.NOT_EQUAL) {
+				matches = value != otherValue;
+			} else {
+				matches = false;
+			}
+		} else if (value instanceof Number && otherValue instanceof Number) {
+			int comparison;
+			if (EOQualifierEvaluator.isIntegral(value) && EOQualifierEvaluator.isIntegral(otherValue)) {
+				long longValue = ((Number) value).longValue();
+				long otherLongValue = ((Number) otherValue).longValue();
+				comparison = longValue < otherLongValue ? -1 : (longValue == otherLongValue ? 0 : 1);
+			} else if (value instanceof BigDecimal || value instanceof BigInteger || otherValue instanceof BigDecimal || otherValue instanceof BigInteger) {
+				comparison = EOQualifierEvaluator.toBigDecimal((Number) value).compareTo(EOQualifierEvaluator.toBigDecimal((Number) otherValue));
+			} else {
+				comparison = Double.compare(((Number) value).doubleValue(), ((Number) otherValue).doubleValue());
+			}
+			matches = EOQualifierEvaluator.matches(operator, comparison);
+		} else if (value instanceof Date && otherValue instanceof Date) {
+			long time = ((Date) value).getTime();
+			long otherTime = ((Date) otherValue).getTime();
+			matches = EOQualifierEvaluator.matches(operator, time < otherTime ? -1 : (time == otherTime ? 0 : 1));
+		} else if (value instanceof Comparable && value.getClass() == otherValue.getClass()) {
+			matches = EOQualifierEvaluator.matches(operator, ((Comparable<Object>) value).compareTo(otherValue));
+		} else if (operator == EOQualifierEvaluator.EQUAL) {
+			matches = value.equals(otherValue);
+		} else if (operator == EOQualifierEvaluator.NOT_EQUAL) {
+			matches = !value.equals(otherValue);
+		} else {
+			matches = false;
+		}
+		return matches;
+	}
+
+	protected static BigDecimal toBigDecimal(Number value) {
+		BigDecimal decimalValue;
+		if (value instanceof BigDecimal) {
+			decimalValue = (BigDecimal) value;
+		} else if (value instanceof BigInteger) {
+			decimalValue = new BigDecimal((BigInteger) value);
+		} else if (EOQualifierEvaluator.isIntegral(value)) {
+			decimalValue = BigDecimal.valueOf(value.longValue());
+		} else {
+			decimalValue = new BigDecimal(value.doubleValue());
+		}
+		return decimalValue;
+	}
+
+	/**
+	 * RowPredicate is a compiled qualifier.
+	 */
+	public static abstract class RowPredicate {
+		/**
+		 * Returns whether the given row matches the qualifier.
+		 */
+		public abstract boolean evaluate(Map<String, Object> row);
+
+		/**
+		 * Returns the rows that match the qualifier, in order.
+		 */
+		public <T extends Map<String, Object>> List<T> filter(Collection<T> rows) {
+			List<T> matchingRows = new ArrayList<T>();
+			for (T row : rows) {
+				if (evaluate(row)) {
+					matchingRows.add(row);
+				}
+			}
+			return matchingRows;
+		}
+
+		/**
+		 * Returns the number of rows that match the qualifier.
+		 */
+		public int count(Collection<? extends Map<String, Object>> rows) {
+			int count = 0;
+			for (Map<String, Object> row : rows) {
+				if (evaluate(row)) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	protected static class TruePredicate extends RowPredicate {
+		@Override
+		public boolean evaluate(Map<String, Object> row) {
+			return true;
+		}
+	}
+
+	protected static class AndPredicate extends RowPredicate {
+		private RowPredicate[] _predicates;
+
+		public AndPredicate(RowPredicate[] predicates) {
+			_predicates = predicates;
+		}
+
+		@Override
+		public boolean evaluate(Map<String, Object> row) {
+			for (RowPredicate predicate : _predicates) {
+				if (!predicate.evaluate(row)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	protected static class OrPredicate extends RowPredicate {
+		private RowPredicate[] _predicates;
+
+		public OrPredicate(RowPredicate[] predicates) {
+			_predicates = predicates;
+		}
+
+		@Override
+		public boolean evaluate(Map<String, Object> row) {
+			for (RowPredicate predicate : _predicates) {
+				if (predicate.evaluate(row)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	protected static class NotPredicate extends RowPredicate {
+		private RowPredicate _predicate;
+
+		public NotPredicate(RowPredicate predicate) {
+			_predicate = predicate;
+		}
+
+		@Override
+		public boolean evaluate(Map<String, Object> row) {
+			return !_predicate.evaluate(row);
+		}
+	}
+
+	/**
+	 * KeyPath reads the value of a keypath out of a row.
+	 */
+	protected static class KeyPath {
+		private String _key;
+
+		private String[] _keys;
+
+		private int _type;
+
+		public KeyPath(String keyPath, int type) {
+			_key = keyPath;
+			_keys = keyPath.split("\\.");
+			_type = type;
+		}
+
+		public int getType() {
+			return _type;
+		}
+
+		/**
+		 * Returns the value of the keypath in the given row, or ToManyValues
+		 * if the keypath goes through a to-many relationship.
+		 */
+		public Object valueInRow(Map<String, Object> row) {
+			Object value;
+			if (_keys.length == 1) {
+				value = row.get(_key);
+			} else {
+				value = valueForKeys(row, 0);
+			}
+			return value;
+		}
+
+		@SuppressWarnings("unchecked")
+		protected Object valueForKeys(Object object, int keyNum) {
+			Object value = object;
+			for (int i = keyNum; value != null && i < _keys.length; i++) {
+				if (value instanceof Map) {
+					value = ((Map<String, Object>) value).get(_keys[i]);
+				} else if (value instanceof Collection) {
+					ToManyValues values = new ToManyValues();
+					for (Object relatedRow : (Collection<Object>) value) {
+						Object relatedValue = valueForKeys(relatedRow, i);
+						if (relatedValue instanceof ToManyValues) {
+							values.addAll((ToManyValues) relatedValue);
+						} else {
+							values.add(relatedValue);
+						}
+					}
+					return values;
+				} else {
+					value = null;
+				}
+			}
+			return value;
+		}
+
+		public String toString() {
+			return _key;
+		}
+	}
+
+	/**
+	 * KeyPathPredicate is a predicate on the value of one keypath, that
+	 * matches a to-many keypath if any of its values match.
+	 */
+	protected static abstract class KeyPathPredicate extends RowPredicate {
+		private KeyPath _keyPath;
+
+		public KeyPathPredicate(KeyPath keyPath) {
+			_keyPath = keyPath;
+		}
+
+		@Override
+		public boolean evaluate(Map<String, Object> row) {
+			Object value = _keyPath.valueInRow(row);
+			boolean matches;
+			if (value instanceof ToManyValues) {
+				matches = false;
+				for (Object relatedValue : (ToManyValues) value) {
+					if (matches(relatedValue)) {
+						matches = true;
+						break;
+					}
+				}
+			} else {
+				matches = matches(value);
+			}
+			return matches;
+		}
+
+		protected abstract boolean matches(Object value);
+	}
+
+	protected static class ComparisonPredicate extends KeyPathPredicate {
+		private int _operator;
+
+		private Object _value;
+
+		public ComparisonPredicate(KeyPath keyPath, int operator, Object value) {
+			super(keyPath);
+			_operator = operator;
+			_value = value;
+		}
+
+		@Override
+		protected boolean matches(Object value) {
+			return EOQualifierEvaluator.compare(value, _operator, _value);
+		}
+	}
+
+	protected static class LongComparisonPredicate extends KeyPathPredicate {
+		private int _operator;
+
+		private long _value;
+
+		private Long _boxedValue;
+
+		public LongComparisonPredicate(KeyPath keyPath, int operator, long value) {
+			super(keyPath);
+			_operator = operator;
+			_value = value;
+			_boxedValue = Long.valueOf(value);
+		}
+
+		@Override
+		protected boolean matches(Object value) {
+			boolean matches;
+			if (value instanceof Integer || value instanceof Long) {
+				long longValue = ((Number) value).longValue();
+				matches = EOQualifierEvaluator.matches(_operator, longValue < _value ? -1 : (longValue == _value ? 0 : 1));
+			} else {
+				matches = EOQualifierEvaluator.compare(value, _operator, _boxedValue);
+			}
+			return matches;
+		}
+	}
+
+	protected static class DoubleComparisonPredicate extends KeyPathPredicate {
+		private int _operator;
+
+		private double _value;
+
+		private Double _boxedValue;
+
+		public DoubleComparisonPredicate(KeyPath keyPath, int operator, double value) {
+			super(keyPath);
+			_operator = operator;
+			_value = value;
+			_boxedValue = Double.valueOf(value);
+		}
+
+		@Override
+		protected boolean matches(Object value) {
+			boolean matches;
+			if (value instanceof Double || value instanceof Float) {
+				matches = EOQualifierEvaluator.matches(_operator, Double.compare(((Number) value).doubleValue(), _value));
+			} else {
+				matches = EOQualifierEvaluator.compare(value, _operator, _boxedValue);
+			}
+			return matches;
+		}
+	}
+
+	protected static class StringComparisonPredicate extends KeyPathPredicate {
+		private int _operator;
+
+		private String _value;
+
+		public StringComparisonPredicate(KeyPath keyPath, int operator, String value) {
+			super(keyPath);
+			_operator = operator;
+			_value = value;
+		}
+
+		@Override
+		protected boolean matches(Object value) {
+			boolean matches;
+			if (value instanceof String) {
+				if (_operator == EOQualifierEvaluator.EQUAL) {
+					matches = _value.equals(value);
+				} else if (_operator == EOQualifierEvaluator.NOT_EQUAL) {
+					matches = !_value.equals(value);
+				} else {
+					matches = EOQualifierEvaluator.matches(_operator, ((String) value).compareTo(_value));
+				}
+			} else {
+				matches = EOQualifierEvaluator.compare(value, _operator, _value);
+			}
+			return matches;
+		}
+	}
+
+	/**
+	 * LikePredicate matches strings against a like pattern. Patterns that
+	 * only have * at their ends are matched without a regular expression.
+	 */
+	protected static class LikePredicate extends KeyPathPredicate {
+		private static final int EXACT = 0;
+
+		private static final int PREFIX = 1;
+
+		private static final int SUFFIX = 2;
+
+		private static final int INFIX = 3;
+
+		private static final int PATTERN = 4;
+
+		private boolean _caseInsensitive;
+
+		private int _kind;
+
+		private String _text;
+
+		private Pattern _pattern;
+
+		public LikePredicate(KeyPath keyPath, String pattern, boolean caseInsensitive) {
+			super(keyPath);
+			_caseInsensitive = caseInsensitive;
+			int length = pattern.length();
+			boolean leadingWildcard = length > 0 && pattern.charAt(0) == '*';
+			boolean trailingWildcard = length > (leadingWildcard ? 1 : 0) && pattern.charAt(length - 1) == '*';
+			String text = pattern.substring(leadingWildcard ? 1 : 0, trailingWildcard ? length - 1 : length);
+			if (text.indexOf('*') != -1 || text.indexOf('?') != -1) {
+				_kind = LikePredicate.PATTERN;
+				_pattern = LikePredicate.toPattern(pattern, caseInsensitive);
+			} else {
+				_text = text;
+				if (leadingWildcard && trailingWildcard) {
+					_kind = LikePredicate.INFIX;
+				} else if (leadingWildcard) {
+					_kind = LikePredicate.SUFFIX;
+				} else if (trailingWildcard) {
+					_kind = LikePredicate.PREFIX;
+				} else {
+					_kind = LikePredicate.EXACT;
+				}
+			}
+		}
+
+		protected static Pattern toPattern(String likePattern, boolean caseInsensitive) {
+			StringBuilder regex = new StringBuilder();
+			int literalStart = 0;
+			for (int i = 0; i < likePattern.length(); i++) {
+				char ch = likePattern.charAt(i);
+				if (ch == '*' || ch == '?') {
+					if (literalStart < i) {
+						regex.append(Pattern.quote(likePattern.substring(literalStart, i)));
+					}
+					regex.append(ch == '*' ? ".*" : ".");
+					literalStart = i + 1;
+				}
+			}
+			if (literalStart < likePattern.length()) {
+				regex.append(Pattern.quote(likePattern.substring(literalStart)));
+			}
+			int flags = Pattern.DOTALL;
+			if (caseInsensitive) {
+				flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+			}
+			return Pattern.compile(regex.toString(), flags);
+		}
+
+		@Override
+		protected boolean matches(Object value) {
+			if (value == null) {
+				return false;
+			}
+			String stringValue = value.toString();
+			boolean matches;
+			switch (_kind) {
+			case EXACT:
+				matches = _caseInsensitive ? stringValue.equalsIgnoreCase(_text) : stringValue.equals(_text);
+				break;
+			case PREFIX:
+				matches = stringValue.regionMatches(_caseInsensitive, 0, _text, 0, _text.length());
+				break;
+			case SUFFIX:
+				matches = stringValue.regionMatches(_caseInsensitive, stringValue.length() - _text.length(), _text, 0, _text.length());
+				break;
+			case INFIX:
+				if (_caseInsensitive) {
+					matches = false;
+					int textLength = _text.length();
+					for (int offset = stringValue.length() - textLength; !matches && offset >= 0; offset--) {
+						matches = stringValue.regionMatches(true, offset, _text, 0, textLength);
+					}
+				} else {
+					matches = stringValue.indexOf(_text) != -1;
+				}
+				break;
+			default:
+				matches = _pattern.matcher(stringValue).matches();
+				break;
+			}
+			return matches;
+		}
+	}
+
+	/**
+	 * ContainsPredicate matches collections that contain the value, and
+	 * strings that contain its string. The values of a to-many keypath are
+	 * treated as one collection.
+	 */
+	protected static class ContainsPredicate extends RowPredicate {
+		private KeyPath _keyPath;
+
+		private Object _value;
+
+		public ContainsPredicate(KeyPath keyPath, Object value) {
+			_keyPath = keyPath;
+			_value = value;
+		}
+
+		@Override
+		public boolean evaluate(Map<String, Object> row) {
+			Object value = _keyPath.valueInRow(row);
+			boolean matches;
+			if (value instanceof Collection) {
+				matches = false;
+				for (Object element : (Collection<?>) value) {
+					if (EOQualifierEvaluator.compare(element, EOQualifierEvaluator.EQUAL, _value)) {
+						matches = true;
+						break;
+					}
+				}
+			} else if (value instanceof String && _value != null) {
+				matches = ((String) value).indexOf(_value.toString()) != -1;
+			} else {
+				matches = false;
+			}
+			return matches;
+		}
+	}
+
+	/**
+	 * KeyComparisonPredicate compares the values of two keypaths of a row. If
+	 * either goes through a to-many relationship, any pair of values can
+	 * match.
+	 */
+	protected static class KeyComparisonPredicate extends RowPredicate {
+		private KeyPath _leftKeyPath;
+
+		private int _operator;
+
+		private KeyPath _rightKeyPath;
+
+		public KeyComparisonPredicate(KeyPath leftKeyPath, int operator, KeyPath rightKeyPath) {
+			if (operator == EOQualifierEvaluator.LIKE || operator == EOQualifierEvaluator.CASE_INSENSITIVE_LIKE || operator == EOQualifierEvaluator.CONTAINS) {
+				throw new IllegalArgumentException("The keypaths '" + leftKeyPath + "' and '" + rightKeyPath + "' can only be compared with =, <>, <, >, <= or >=.");
+			}
+			_leftKeyPath = leftKeyPath;
+			_operator = operator;
+			_rightKeyPath = rightKeyPath;
+		}
+
+		@Override
+		public boolean evaluate(Map<String, Object> row) {
+			Object leftValue = _leftKeyPath.valueInRow(row);
+			Object rightValue = _rightKeyPath.valueInRow(row);
+			boolean matches;
+			if (leftValue instanceof ToManyValues) {
+				matches = false;
+				for (Object relatedValue : (ToManyValues) leftValue) {
+					if (matches(relatedValue, rightValue)) {
+						matches = true;
+						break;
+					}
+				}
+			} else {
+				matches = matches(leftValue, rightValue);
+			}
+			return matches;
+		}
+
+		protected boolean matches(Object leftValue, Object rightValue) {
+			boolean matches;
+			if (rightValue instanceof ToManyValues) {
+				matches = false;
+				for (Object relatedValue : (ToManyValues) rightValue) {
+					if (EOQualifierEvaluator.compare(leftValue, _operator, relatedValue)) {
+						matches = true;
+						break;
+					}
+				}
+			} else {
+				matches = EOQualifierEvaluator.compare(leftValue, _operator, rightValue);
+			}
+			return matches;
+		}
+	}
+}
@@ -2,11 +2,19 @@ package org.objectstyle.wolips.eomodeler.core.model.qualifier;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * EOQualifierParser turns qualifier strings into EOQualifier trees. A parser
+ * keeps no state of its own between or during parses (each parse tokenizes
+ * into its own array), so one parser can be shared by any number of threads.
+ * Callers that parse the same strings over and over should go through
+ * EOQualifierCache instead.
+ */
 public class EOQualifierParser {
 	private static final int NONE = 0;
 
@@ -30,18 +38,6 @@ public class EOQualifierParser {
 
 	private static Set<String> SELECTORS;
 
-	private List<Token> _tokens;
-
-	private String _qualifierString;
-
-	private int _offset;
-
-	private int _tokenStartOffset;
-
-	private int _length;
-
-	private int _tokenNum;
-
 	static {
 		EOQualifierParser.OPERATORS = new HashSet<String>();
 		EOQualifierParser.OPERATORS.add("=");
@@ -85,32 +81,85 @@ public class EOQualifierParser {
 		return null;
 	}
 
-	public synchronized EOQualifier parseQualifier(String qualifierString) throws ParseException {
-		_tokens = new LinkedList<Token>();
-		_qualifierString = qualifierString;
-		_length = _qualifierString.length();
-		_offset = 0;
-		_tokenStartOffset = -1;
-		_tokenNum = 0;
+	public EOQualifier parseQualifier(String qualifierString) throws ParseException {
+		Tokenizer tokenizer = new Tokenizer(qualifierString);
+		tokenizer.tokenize(false);
+		EOQualifier qualifier = qualifierForTokens(tokenizer.getTokens(), 0, true);
+		return qualifier;
+	}
 
-		tokenize(false);
-		EOQualifier qualifier = qualifierForTokens(0, true);
+	protected EOQualifier qualifierForTokens(TokenStream tokens, int depth, boolean allowAggregateQualifiers) throws ParseException {
+		Token lvalue = tokens.popToken();
+		if (lvalue == null) {
+			return null;
+		}
+
+		// "a and b or c and d" means "a and (b or (c and d))"; the operands
+		// are collected in one pass and the aggregates are built from the
+		// right, instead of recursing once per operand
+		List<EOQualifier> operands = new ArrayList<EOQualifier>();
+		List<Token> operators = new ArrayList<Token>();
+		operands.add(qualifierForToken(lvalue, tokens, depth));
+		boolean done = false;
+		while (!done) {
+			Token nextToken = tokens.popToken();
+			if (nextToken == null) {
+				done = true;
+			} else if (nextToken instanceof CloseParenToken) {
+				if (depth > 0) {
+					done = true;
+				} else {
+					throw new ParseException("Invalid close paren at offset " + nextToken.getOffset() + ".", nextToken.getOffset());
+				}
+			} else if (!allowAggregateQualifiers && operators.isEmpty()) {
+				tokens.pushToken(nextToken);
+				done = true;
+			} else if (nextToken instanceof AndToken || nextToken instanceof OrToken) {
+				Token rvalue = tokens.popToken();
+				if (rvalue == null) {
+					throw new ParseException("'" + nextToken.getValue() + "' requires a second qualifier at offset " + nextToken.getOffset() + ".", nextToken.getOffset());
+				}
+				operators.add(nextToken);
+				operands.add(qualifierForToken(rvalue, tokens, depth));
+			} else {
+				throw new ParseException("Illegal token " + nextToken + " at offset " + nextToken.getOffset() + ".", nextToken.getOffset());
+			}
+		}
+
+		EOQualifier qualifier = operands.remove(operands.size() - 1);
+		while (!operators.isEmpty()) {
+			boolean and = operators.get(operators.size() - 1) instanceof AndToken;
+			LinkedList<EOQualifier> groupedQualifiers = new LinkedList<EOQualifier>();
+			groupedQualifiers.add(qualifier);
+			while (!operators.isEmpty() && (operators.get(operators.size() - 1) instanceof AndToken) == and) {
+				operators.remove(operators.size() - 1);
+				groupedQualifiers.addFirst(operands.remove(operands.size() - 1));
+			}
+			if (and) {
+				qualifier = new EOAndQualifier(groupedQualifiers);
+			} else {
+				qualifier = new EOOrQualifier(groupedQualifiers);
+			}
+		}
 		return qualifier;
 	}
 
-	protected EOQualifier qualifierForTokens(int depth, boolean allowAggregateQualifiers) throws ParseException {
-		EOQualifier lqualifier = null;
-		Token lvalue = popToken();
+	/**
+	 * Returns the qualifier that starts with the given token: a comparison, a
+	 * parenthesized group or a negation.
+	 */
+	protected EOQualifier qualifierForToken(Token lvalue, TokenStream tokens, int depth) throws ParseException {
+		EOQualifier lqualifier;
 		if (lvalue instanceof OpenParenToken) {
-			lqualifier = qualifierForTokens(depth + 1, true);
+			lqualifier = qualifierForTokens(tokens, depth + 1, true);
 		} else if (lvalue instanceof KeywordToken || lvalue instanceof KeypathToken) {
 			if ("TRUEPREDICATE".equalsIgnoreCase(lvalue.getValue())) {
 				lqualifier = new EOTruePredicate();
 			} else {
-				Token operator = popToken();
+				Token operator = tokens.popToken();
 				if (operator instanceof OperatorToken || operator instanceof KeywordToken) {
 					EOQualifier.Comparison selector = new EOQualifier.Comparison(operator.getValue());
-					Token rvalue = popToken();
+					Token rvalue = tokens.popToken();
 					if (rvalue instanceof NamedVariableToken) {
 						lqualifier = new EOKeyValueQualifier(lvalue.getValue(), selector, new EONamedQualifierVariable(rvalue.getValue()));
 					} else if (rvalue instanceof VariableToken || rvalue instanceof NamedVariableToken) {
@@ -120,7 +169,7 @@ public class EOQualifierParser {
 					} else if (rvalue instanceof LiteralToken) {
 						String value = rvalue.getValue();
 						if (value != null) {
-							value = value.replaceAll("\\\\(.)", "$1");
+							value = EOQualifierParser.unescape(value);
 						}
 						lqualifier = new EOKeyValueQualifier(lvalue.getValue(), selector, value);
 					} else if (rvalue instanceof KeywordToken || rvalue instanceof KeypathToken) {
@@ -137,249 +186,296 @@ public class EOQualifierParser {
 				}
 			}
 		} else if (lvalue instanceof NotToken) {
-			lqualifier = new EONotQualifier(qualifierForTokens(depth + 1, false));
-		} else if (lvalue != null) {
+			lqualifier = new EONotQualifier(qualifierForTokens(tokens, depth + 1, false));
+		} else {
 			throw new ParseException("Invalid token " + lvalue + " at offset " + lvalue.getOffset() + ".", lvalue.getOffset());
 		}
+		return lqualifier;
+	}
 
-		EOQualifier qualifier;
-		if (lvalue == null) {
-			qualifier = null;
-		} else {
-			Token nextToken = popToken();
-			if (nextToken == null) {
-				qualifier = lqualifier;
-			} else if (nextToken instanceof CloseParenToken) {
-				if (depth > 0) {
-					qualifier = lqualifier;
-				} else {
-					throw new ParseException("Invalid close paren at offset " + nextToken.getOffset() + ".", nextToken.getOffset());
-				}
-			} else if (!allowAggregateQualifiers) {
-				qualifier = lqualifier;
-				pushToken(nextToken);
-			} else if (nextToken instanceof AndToken) {
-				EOQualifier rqualifier = qualifierForTokens(depth, true);
-				if (rqualifier == null) {
-					throw new ParseException("'and' requires a second qualifier at offset " + nextToken.getOffset() + ".", nextToken.getOffset());
-				}
-				qualifier = new EOAndQualifier(lqualifier, rqualifier);
-			} else if (nextToken instanceof OrToken) {
-				EOQualifier rqualifier = qualifierForTokens(depth, true);
-				if (rqualifier == null) {
-					throw new ParseException("'or' requires a second qualifier at offset " + nextToken.getOffset() + ".", nextToken.getOffset());
-				}
-				qualifier = new EOOrQualifier(lqualifier, rqualifier);
-			} else {
-				throw new ParseException("Illegal token " + nextToken + " at offset " + nextToken.getOffset() + ".", nextToken.getOffset());
+	/**
+	 * Removes the backslashes from a quoted literal, keeping the characters
+	 * they escape (a backslash before a line break is kept as it is).
+	 */
+	protected static String unescape(String value) {
+		int backslashIndex = value.indexOf('\\');
+		if (backslashIndex == -1) {
+			return value;
+		}
+		int length = value.length();
+		StringBuilder unescapedValue = new StringBuilder(length);
+		unescapedValue.append(value, 0, backslashIndex);
+		for (int i = backslashIndex; i < length; i++) {
+			char ch = value.charAt(i);
+			if (ch == '\\' && i + 1 < length && !EOQualifierParser.isLineTerminator(value.charAt(i + 1))) {
+				ch = value.charAt(++i);
 			}
+			unescapedValue.append(ch);
 		}
-
-		return qualifier;
-
+		return unescapedValue.toString();
 	}
 
-	protected void pushToken(Token token) {
-		_tokens.add(0, token);
-		//_tokenNum--;
+	protected static boolean isLineTerminator(char ch) {
+		return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
 	}
 
-	protected Token popToken() {
-		Token token = null;
-		if (_tokenNum < _tokens.size()) {
-			token = _tokens.get(_tokenNum++);
+	/**
+	 * TokenStream reads the tokens of one parse back in order.
+	 */
+	protected static class TokenStream {
+		private Token[] _tokens;
+
+		private int _tokenCount;
+
+		private int _tokenNum;
+
+		public TokenStream(Token[] tokens, int tokenCount) {
+			_tokens = tokens;
+			_tokenCount = tokenCount;
+		}
+
+		public Token popToken() {
+			Token token = null;
+			if (_tokenNum < _tokenCount) {
+				token = _tokens[_tokenNum++];
+			}
+			return token;
+		}
+
+		/**
+		 * Puts back the token that was popped last.
+		 */
+		public void pushToken(Token token) {
+			_tokenNum--;
 		}
-		return token;
 	}
 
-	protected void tokenize(boolean parentInParen) throws ParseException {
-		int groupStartOffset = _offset;
-		boolean inParen = parentInParen;
-		int state = EOQualifierParser.NONE;
-		_tokenStartOffset = -1;
-		int previousState = EOQualifierParser.NONE;
-		while (_offset < _length) {
-			char ch = _qualifierString.charAt(_offset++);
-			if (state == EOQualifierParser.ESCAPED) {
-				state = previousState;
-			} else if (ch == '\\') {
-				if (state == EOQualifierParser.IN_DOUBLE_QUOTE || state == EOQualifierParser.IN_SINGLE_QUOTE) {
-					previousState = state;
-					state = EOQualifierParser.ESCAPED;
-				} else {
-					throw new ParseException("Backslash in invalid state " + state + " at offset " + _offset + ".", _offset);
-				}
-			} else if (ch == '"') {
-				if (state == EOQualifierParser.IN_DOUBLE_QUOTE) {
-					endPendingToken(state);
-					state = EOQualifierParser.NONE;
-				} else if (state == EOQualifierParser.IN_SINGLE_QUOTE) {
-					// ignore
-				} else {
-					endPendingToken(state);
-					_tokenStartOffset = _offset + 1;
-					state = EOQualifierParser.IN_DOUBLE_QUOTE;
-				}
-			} else if (ch == '\'') {
-				if (state == EOQualifierParser.IN_SINGLE_QUOTE) {
-					endPendingToken(state);
-					state = EOQualifierParser.NONE;
-				} else if (state == EOQualifierParser.IN_DOUBLE_QUOTE) {
-					// ignore
-				} else {
-					endPendingToken(state);
-					_tokenStartOffset = _offset + 1;
-					state = EOQualifierParser.IN_SINGLE_QUOTE;
-				}
-			} else if (state != EOQualifierParser.IN_SINGLE_QUOTE && state != EOQualifierParser.IN_DOUBLE_QUOTE) {
-				if (state == EOQualifierParser.IN_VARIABLE) {
-					if (ch == 's' || ch == 'd' || ch == 'f' || ch == 'f' || ch == '@' || ch == 'K' || ch == '%') {
-						_tokens.add(new VariableToken(_offset - 2, "%" + ch));
-						state = EOQualifierParser.NONE;
-						_tokenStartOffset = -1;
+	/**
+	 * Tokenizer splits one qualifier string into an array of tokens.
+	 */
+	protected class Tokenizer {
+		private String _qualifierString;
+
+		private int _offset;
+
+		private int _tokenStartOffset;
+
+		private int _length;
+
+		private Token[] _tokens;
+
+		private int _tokenCount;
+
+		public Tokenizer(String qualifierString) {
+			_qualifierString = qualifierString;
+			_length = _qualifierString.length();
+			_offset = 0;
+			_tokenStartOffset = -1;
+			_tokens = new Token[Math.max(8, _length / 4)];
+		}
+
+		public TokenStream getTokens() {
+			return new TokenStream(_tokens, _tokenCount);
+		}
+
+		protected void addToken(Token token) {
+			if (_tokenCount == _tokens.length) {
+				Token[] tokens = new Token[_tokens.length * 2];
+				System.arraycopy(_tokens, 0, tokens, 0, _tokenCount);
+				_tokens = tokens;
+			}
+			_tokens[_tokenCount++] = token;
+		}
+
+		protected void tokenize(boolean parentInParen) throws ParseException {
+			int groupStartOffset = _offset;
+			boolean inParen = parentInParen;
+			int state = EOQualifierParser.NONE;
+			_tokenStartOffset = -1;
+			int previousState = EOQualifierParser.NONE;
+			while (_offset < _length) {
+				char ch = _qualifierString.charAt(_offset++);
+				if (state == EOQualifierParser.ESCAPED) {
+					state = previousState;
+				} else if (ch == '\\') {
+					if (state == EOQualifierParser.IN_DOUBLE_QUOTE || state == EOQualifierParser.IN_SINGLE_QUOTE) {
+						previousState = state;
+						state = EOQualifierParser.ESCAPED;
 					} else {
-						throw new ParseException("Unknown variable %" + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
-					}
-				} else if (ch == '%') {
-					endPendingToken(state);
-					_tokenStartOffset = _offset;
-					state = EOQualifierParser.IN_VARIABLE;
-				} else if (ch == '$') {
-					endPendingToken(state);
-					_tokenStartOffset = _offset;
-					state = EOQualifierParser.IN_BINDING_KEY;
-				} else if (ch == '(') {
-					endPendingToken(state);
-					_tokens.add(new OpenParenToken(_offset - 1));
-					tokenize(true);
-				} else if (ch == ')') {
-					if (!inParen) {
-						throw new ParseException("Close paren without open paren at offset " + (_offset - 1) + ".", (_offset - 1));
+						throw new ParseException("Backslash in invalid state " + state + " at offset " + _offset + ".", _offset);
 					}
-					endPendingToken(state);
-					_tokens.add(new CloseParenToken(_offset - 1));
-					state = EOQualifierParser.NONE;
-					inParen = false;
-					break;
-				} else if (Character.isWhitespace(ch)) {
-					endPendingToken(state);
-					state = EOQualifierParser.NONE;
-					// _tokens.add(new Whitespace(ch));
-				} else if (ch == '<' || ch == '>' || ch == '=') {
-					if (state != EOQualifierParser.IN_OPERATOR) {
+				} else if (ch == '"') {
+					if (state == EOQualifierParser.IN_DOUBLE_QUOTE) {
 						endPendingToken(state);
-						_tokenStartOffset = _offset;
-						state = EOQualifierParser.IN_OPERATOR;
+						state = EOQualifierParser.NONE;
+					} else if (state == EOQualifierParser.IN_SINGLE_QUOTE) {
+						// ignore
+					} else {
+						endPendingToken(state);
+						_tokenStartOffset = _offset + 1;
+						state = EOQualifierParser.IN_DOUBLE_QUOTE;
 					}
-				} else if (Character.isJavaIdentifierStart(ch)) {
-					if (state == EOQualifierParser.IN_NUMBER) {
-						throw new ParseException("Unexpected character " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
-					} else if (state == EOQualifierParser.IN_KEYWORD) {
-						// IGNORE
-					} else if (state == EOQualifierParser.IN_BINDING_KEY) {
-						// IGNORE
-					} else if (state == EOQualifierParser.IN_OPERATOR) {
+				} else if (ch == '\'') {
+					if (state == EOQualifierParser.IN_SINGLE_QUOTE) {
 						endPendingToken(state);
-						state = EOQualifierParser.IN_KEYWORD;
-						_tokenStartOffset = _offset;
-					} else if (state == EOQualifierParser.NONE) {
-						state = EOQualifierParser.IN_KEYWORD;
-						_tokenStartOffset = _offset;
+						state = EOQualifierParser.NONE;
+					} else if (state == EOQualifierParser.IN_DOUBLE_QUOTE) {
+						// ignore
 					} else {
-						throw new ParseException("Unexpected character " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
+						endPendingToken(state);
+						_tokenStartOffset = _offset + 1;
+						state = EOQualifierParser.IN_SINGLE_QUOTE;
 					}
-				} else if ((Character.isJavaIdentifierPart(ch) || ch == '.') && (state == EOQualifierParser.IN_KEYWORD || state == EOQualifierParser.IN_BINDING_KEY)) {
-					// OK
-				} else if (Character.isDigit(ch) || ch == '.' || ch == '-' || ch == ':') {
-					if (state == EOQualifierParser.IN_NUMBER) {
-						// IGNORE
-					} else if (state == EOQualifierParser.IN_KEYWORD) {
-						// IGNORE
-					} else if (state == EOQualifierParser.IN_BINDING_KEY) {
-						// IGNORE
-					} else if (state == EOQualifierParser.IN_OPERATOR) {
+				} else if (state != EOQualifierParser.IN_SINGLE_QUOTE && state != EOQualifierParser.IN_DOUBLE_QUOTE) {
+					if (state == EOQualifierParser.IN_VARIABLE) {
+						if (ch == 's' || ch == 'd' || ch == 'f' || ch == 'f' || ch == '@' || ch == 'K' || ch == '%') {
+							addToken(new VariableToken(_offset - 2, "%" + ch));
+							state = EOQualifierParser.NONE;
+							_tokenStartOffset = -1;
+						} else {
+							throw new ParseException("Unknown variable %" + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
+						}
+					} else if (ch == '%') {
 						endPendingToken(state);
-						state = EOQualifierParser.IN_NUMBER;
 						_tokenStartOffset = _offset;
-					} else if (state == EOQualifierParser.NONE) {
-						state = EOQualifierParser.IN_NUMBER;
+						state = EOQualifierParser.IN_VARIABLE;
+					} else if (ch == '$') {
+						endPendingToken(state);
 						_tokenStartOffset = _offset;
+						state = EOQualifierParser.IN_BINDING_KEY;
+					} else if (ch == '(') {
+						endPendingToken(state);
+						addToken(new OpenParenToken(_offset - 1));
+						tokenize(true);
+					} else if (ch == ')') {
+						if (!inParen) {
+							throw new ParseException("Close paren without open paren at offset " + (_offset - 1) + ".", (_offset - 1));
+						}
+						endPendingToken(state);
+						addToken(new CloseParenToken(_offset - 1));
+						state = EOQualifierParser.NONE;
+						inParen = false;
+						break;
+					} else if (Character.isWhitespace(ch)) {
+						endPendingToken(state);
+						state = EOQualifierParser.NONE;
+						// addToken(new Whitespace(ch));
+					} else if (ch == '<' || ch == '>' || ch == '=') {
+						if (state != EOQualifierParser.IN_OPERATOR) {
+							endPendingToken(state);
+							_tokenStartOffset = _offset;
+							state = EOQualifierParser.IN_OPERATOR;
+						}
+					} else if (Character.isJavaIdentifierStart(ch)) {
+						if (state == EOQualifierParser.IN_NUMBER) {
+							throw new ParseException("Unexpected character " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
+						} else if (state == EOQualifierParser.IN_KEYWORD) {
+							// IGNORE
+						} else if (state == EOQualifierParser.IN_BINDING_KEY) {
+							// IGNORE
+						} else if (state == EOQualifierParser.IN_OPERATOR) {
+							endPendingToken(state);
+							state = EOQualifierParser.IN_KEYWORD;
+							_tokenStartOffset = _offset;
+						} else if (state == EOQualifierParser.NONE) {
+							state = EOQualifierParser.IN_KEYWORD;
+							_tokenStartOffset = _offset;
+						} else {
+							throw new ParseException("Unexpected character " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
+						}
+					} else if ((Character.isJavaIdentifierPart(ch) || ch == '.') && (state == EOQualifierParser.IN_KEYWORD || state == EOQualifierParser.IN_BINDING_KEY)) {
+						// OK
+					} else if (Character.isDigit(ch) || ch == '.' || ch == '-' || ch == ':') {
+						if (state == EOQualifierParser.IN_NUMBER) {
+							// IGNORE
+						} else if (state == EOQualifierParser.IN_KEYWORD) {
+							// IGNORE
+						} else if (state == EOQualifierParser.IN_BINDING_KEY) {
+							// IGNORE
+						} else if (state == EOQualifierParser.IN_OPERATOR) {
+							endPendingToken(state);
+							state = EOQualifierParser.IN_NUMBER;
+							_tokenStartOffset = _offset;
+						} else if (state == EOQualifierParser.NONE) {
+							state = EOQualifierParser.IN_NUMBER;
+							_tokenStartOffset = _offset;
+						} else {
+							throw new ParseException("Unexpected number " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
+						}
 					} else {
-						throw new ParseException("Unexpected number " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
+						throw new ParseException("Unexpected character " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
 					}
-				} else {
-					throw new ParseException("Unexpected character " + ch + " at offset " + (_offset - 1) + ".", (_offset - 1));
 				}
 			}
-		}
 
-		if (state == EOQualifierParser.IN_SINGLE_QUOTE) {
-			throw new ParseException("Missing closing ' starting at offset " + _tokenStartOffset + ".", _tokenStartOffset);
-		} else if (state == EOQualifierParser.IN_DOUBLE_QUOTE) {
-			throw new ParseException("Missing closing \" starting at offset " + _tokenStartOffset + ".", _tokenStartOffset);
-		} else if (state == EOQualifierParser.ESCAPED) {
-			throw new ParseException("Backslash found without escaped character at offset " + (_offset - 1) + ".", (_offset - 1));
-		} else if (state == EOQualifierParser.IN_VARIABLE) {
-			throw new ParseException("Percent found without variable character at offset " + (_offset - 1) + ".", (_offset - 1));
-		} else if (inParen) {
-			throw new ParseException("Missing closing paren starting at offset " + groupStartOffset + ".", groupStartOffset);
-		}
+			if (state == EOQualifierParser.IN_SINGLE_QUOTE) {
+				throw new ParseException("Missing closing ' starting at offset " + _tokenStartOffset + ".", _tokenStartOffset);
+			} else if (state == EOQualifierParser.IN_DOUBLE_QUOTE) {
+				throw new ParseException("Missing closing \" starting at offset " + _tokenStartOffset + ".", _tokenStartOffset);
+			} else if (state == EOQualifierParser.ESCAPED) {
+				throw new ParseException("Backslash found without escaped character at offset " + (_offset - 1) + ".", (_offset - 1));
+			} else if (state == EOQualifierParser.IN_VARIABLE) {
+				throw new ParseException("Percent found without variable character at offset " + (_offset - 1) + ".", (_offset - 1));
+			} else if (inParen) {
+				throw new ParseException("Missing closing paren starting at offset " + groupStartOffset + ".", groupStartOffset);
+			}
 
-		if (state == EOQualifierParser.IN_KEYWORD || state == EOQualifierParser.IN_NUMBER || state == EOQualifierParser.IN_BINDING_KEY) {
-			_offset++;
-		}
+			if (state == EOQualifierParser.IN_KEYWORD || state == EOQualifierParser.IN_NUMBER || state == EOQualifierParser.IN_BINDING_KEY) {
+				_offset++;
+			}
 
-		endPendingToken(state);
-	}
+			endPendingToken(state);
+		}
 
-	protected void endPendingToken(int state) throws ParseException {
-		if (_tokenStartOffset != -1) {
-			int startOffset = _tokenStartOffset - 1;
-			String value = _qualifierString.substring(startOffset, _offset - 1);
-			Token token;
-			if (state == EOQualifierParser.IN_DOUBLE_QUOTE || state == EOQualifierParser.IN_SINGLE_QUOTE) {
-				token = new LiteralToken(_tokenStartOffset - 1, value);
-			} else if (state == EOQualifierParser.IN_OPERATOR) {
-				String operator = caseCorrectedOperatorName(value);
-				if (operator != null) {
-					token = new OperatorToken(startOffset, value);
-				} else {
-					throw new ParseException("Unknown operator " + value + " at offset " + (_tokenStartOffset - 1) + ".", _tokenStartOffset - 1);
-				}
-			} else if (state == EOQualifierParser.IN_NUMBER) {
-				token = new NumberToken(startOffset, value);
-			} else if (state == EOQualifierParser.IN_BINDING_KEY) {
-				if (value == null || value.length() == 0) {
-					throw new ParseException("A variable has no name at offset " + (_tokenStartOffset - 1) + ".", _tokenStartOffset - 1);
-				}
-				token = new NamedVariableToken(startOffset, value.substring(1));
-			} else if (state == EOQualifierParser.IN_KEYWORD) {
-				String operator = caseCorrectedOperatorName(value);
-				String selector = caseCorrectedSelectorName(value);
-				if (operator != null) {
-					token = new OperatorToken(startOffset, operator);
-				} else if (selector != null) {
-					token = new SelectorToken(startOffset, selector);
-				} else if (EOQualifierParser.OPERATORS.contains(value.toLowerCase())) {
-					token = new OperatorToken(startOffset, value);
-				} else if (value.equalsIgnoreCase("and")) {
-					token = new AndToken(startOffset);
-				} else if (value.equalsIgnoreCase("or")) {
-					token = new OrToken(startOffset);
-				} else if (value.equalsIgnoreCase("not")) {
-					token = new NotToken(startOffset);
-				} else if (value.equalsIgnoreCase("null") || value.equalsIgnoreCase("nil")) {
-					token = new LiteralToken(startOffset, null);
-				} else if (value.contains(".")) {
-					token = new KeypathToken(startOffset, value);
+		protected void endPendingToken(int state) throws ParseException {
+			if (_tokenStartOffset != -1) {
+				int startOffset = _tokenStartOffset - 1;
+				String value = _qualifierString.substring(startOffset, _offset - 1);
+				Token token;
+				if (state == EOQualifierParser.IN_DOUBLE_QUOTE || state == EOQualifierParser.IN_SINGLE_QUOTE) {
+					token = new LiteralToken(_tokenStartOffset - 1, value);
+				} else if (state == EOQualifierParser.IN_OPERATOR) {
+					String operator = caseCorrectedOperatorName(value);
+					if (operator != null) {
+						token = new OperatorToken(startOffset, value);
+					} else {
+						throw new ParseException("Unknown operator " + value + " at offset " + (_tokenStartOffset - 1) + ".", _tokenStartOffset - 1);
+					}
+				} else if (state == EOQualifierParser.IN_NUMBER) {
+					token = new NumberToken(startOffset, value);
+				} else if (state == EOQualifierParser.IN_BINDING_KEY) {
+					if (value == null || value.length() == 0) {
+						throw new ParseException("A variable has no name at offset " + (_tokenStartOffset - 1) + ".", _tokenStartOffset - 1);
+					}
+					token = new NamedVariableToken(startOffset, value.substring(1));
+				} else if (state == EOQualifierParser.IN_KEYWORD) {
+					String operator = caseCorrectedOperatorName(value);
+					String selector = caseCorrectedSelectorName(value);
+					if (operator != null) {
+						token = new OperatorToken(startOffset, operator);
+					} else if (selector != null) {
+						token = new SelectorToken(startOffset, selector);
+					} else if (EOQualifierParser.OPERATORS.contains(value.toLowerCase())) {
+						token = new OperatorToken(startOffset, value);
+					} else if (value.equalsIgnoreCase("and")) {
+						token = new AndToken(startOffset);
+					} else if (value.equalsIgnoreCase("or")) {
+						token = new OrToken(startOffset);
+					} else if (value.equalsIgnoreCase("not")) {
+						token = new NotToken(startOffset);
+					} else if (value.equalsIgnoreCase("null") || value.equalsIgnoreCase("nil")) {
+						token = new LiteralToken(startOffset, null);
+					} else if (value.contains(".")) {
+						token = new KeypathToken(startOffset, value);
+					} else {
+						token = new KeywordToken(startOffset, value);
+					}
 				} else {
-					token = new KeywordToken(startOffset, value);
+					token = new Token(startOffset, value);
 				}
-			} else {
-				token = new Token(startOffset, value);
+				addToken(token);
+				_tokenStartOffset = -1;
 			}
-			_tokens.add(token);
-			_tokenStartOffset = -1;
 		}
 	}
 
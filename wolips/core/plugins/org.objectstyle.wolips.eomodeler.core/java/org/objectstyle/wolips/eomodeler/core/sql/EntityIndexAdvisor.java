@@ -0,0 +1,474 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+import org.objectstyle.wolips.eomodeler.core.model.AbstractEOAttributePath;
+import org.objectstyle.wolips.eomodeler.core.model.DuplicateEntityIndexNameException;
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EOAttributePath;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntityIndex;
+import org.objectstyle.wolips.eomodeler.core.model.EOJoin;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
+import org.objectstyle.wolips.eomodeler.core.model.EORelationship;
+import org.objectstyle.wolips.eomodeler.core.model.EORelationshipPath;
+
+/**
+ * EntityIndexAdvisor finds the join columns of a model group that no index
+ * covers, so that fetching through a relationship doesn't scan the
+ * destination table, and the entity indexes that are redundant. Both sides of
+ * the joins of every relationship are checked against the primary key and the
+ * entity indexes of their table; flattened attributes and relationships add
+ * themselves to the reasons of the joins they go through.
+ * <p>
+ * The model doesn't record the order of the columns of an index, so an index
+ * is taken to cover any subset of its columns, like FetchSpecCostAnalyzer
+ * does. When the joins of two relationships need indexes on columns of which
+ * one is a subset of the other, a single index is proposed that lists the
+ * smaller set first.
+ * <p>
+ * Run main with the paths of the models (or of folders that contain models)
+ * to print the report as a property list, and with -create to add the
+ * missing indexes to the models and save them.
+ */
+public class EntityIndexAdvisor {
+	/**
+	 * Returns the missing and redundant indexes of the model group.
+	 */
+	public EntityIndexReport advise(EOModelGroup modelGroup) {
+		List<EOEntity> entities = new LinkedList<EOEntity>();
+		for (EOModel model : modelGroup.getSortedModels()) {
+			for (EOEntity entity : model.getSortedEntities()) {
+				if (!entity.isPrototype() && entity.getExternalName() != null && entity.getExternalName().length() > 0) {
+					entities.add(entity);
+				}
+			}
+		}
+
+		Map<EOEntity, List<EOEntityIndex>> tableEntityIndexes = new HashMap<EOEntity, List<EOEntityIndex>>();
+		for (EOEntity entity : entities) {
+			EOEntity tableEntity = tableEntity(entity);
+			List<EOEntityIndex> entityIndexes = tableEntityIndexes.get(tableEntity);
+			if (entityIndexes == null) {
+				entityIndexes = new LinkedList<EOEntityIndex>();
+				tableEntityIndexes.put(tableEntity, entityIndexes);
+			}
+			entityIndexes.addAll(entity.getSortedEntityIndexes());
+		}
+
+		Map<String, EntityIndexReport.MissingIndex> missingIndexes = new LinkedHashMap<String, EntityIndexReport.MissingIndex>();
+		Map<EORelationship, List<EntityIndexReport.MissingIndex>> relationshipMissingIndexes = new HashMap<EORelationship, List<EntityIndexReport.MissingIndex>>();
+		for (EOEntity entity : entities) {
+			for (EORelationship relationship : entity.getSortedRelationships()) {
+				EOEntity destination = relationship.getDestination();
+				List<EOJoin> joins = relationship.getJoins();
+				if (relationship.isFlattened() || destination == null || destination.isPrototype() || joins.isEmpty()) {
+					continue;
+				}
+				List<EOAttribute> sourceAttributes = new LinkedList<EOAttribute>();
+				List<EOAttribute> destinationAttributes = new LinkedList<EOAttribute>();
+				for (EOJoin join : joins) {
+					sourceAttributes.add(join.getSourceAttribute());
+					destinationAttributes.add(join.getDestinationAttribute());
+				}
+				String relationshipName = entity.getName() + "." + relationship.getName();
+				List<EntityIndexReport.MissingIndex> joinMissingIndexes = new LinkedList<EntityIndexReport.MissingIndex>();
+				addMissingIndex(entity, sourceAttributes, relationshipName + " joins " + destination.getName() + " on it", tableEntityIndexes, missingIndexes, joinMissingIndexes);
+				addMissingIndex(destination, destinationAttributes, relationshipName + " fetches " + destination.getName() + " by it", tableEntityIndexes, missingIndexes, joinMissingIndexes);
+				relationshipMissingIndexes.put(relationship, joinMissingIndexes);
+			}
+		}
+
+		for (EOEntity entity : entities) {
+			for (EOAttribute attribute : entity.getSortedAttributes()) {
+				if (attribute.isFlattened()) {
+					addFlattenedReason(entity.getName() + "." + attribute.getName(), attribute.getDefinitionPath(), relationshipMissingIndexes);
+				}
+			}
+			for (EORelationship relationship : entity.getSortedRelationships()) {
+				if (relationship.isFlattened()) {
+					addFlattenedReason(entity.getName() + "." + relationship.getName(), relationship.getDefinitionPath(), relationshipMissingIndexes);
+				}
+			}
+		}
+
+		EntityIndexReport report = new EntityIndexReport();
+		for (EntityIndexReport.MissingIndex missingIndex : mergeMissingIndexes(missingIndexes.values())) {
+			report.addMissingIndex(missingIndex);
+		}
+		for (Map.Entry<EOEntity, List<EOEntityIndex>> tableEntityIndexesEntry : tableEntityIndexes.entrySet()) {
+			addRedundantIndexes(tableEntityIndexesEntry.getKey(), tableEntityIndexesEntry.getValue(), report);
+		}
+		Collections.sort(report.getRedundantIndexes(), new Comparator<EntityIndexReport.RedundantIndex>() {
+			public int compare(EntityIndexReport.RedundantIndex redundantIndex1, EntityIndexReport.RedundantIndex redundantIndex2) {
+				int comparison = EntityIndexAdvisor.entityKey(redundantIndex1.getEntity()).compareTo(EntityIndexAdvisor.entityKey(redundantIndex2.getEntity()));
+				if (comparison == 0) {
+					comparison = redundantIndex1.getEntityIndex().getName().compareTo(redundantIndex2.getEntityIndex().getName());
+				}
+				return comparison;
+			}
+		});
+		return report;
+	}
+
+	/**
+	 * Adds the missing indexes of the report to their entities and returns
+	 * the new entity indexes. Possibly missing indexes are left to the
+	 * modeler.
+	 */
+	public List<EOEntityIndex> createMissingIndexes(EntityIndexReport report) throws DuplicateEntityIndexNameException {
+		List<EOEntityIndex> entityIndexes = new LinkedList<EOEntityIndex>();
+		for (EntityIndexReport.MissingIndex missingIndex : report.getMissingIndexes()) {
+			if (!missingIndex.isPossible()) {
+				entityIndexes.add(missingIndex.getEntity().addEntityIndex(missingIndex.getAttributes()));
+			}
+		}
+		return entityIndexes;
+	}
+
+	protected void addMissingIndex(EOEntity entity, List<EOAttribute> attributes, String reason, Map<EOEntity, List<EOEntityIndex>> tableEntityIndexes, Map<String, EntityIndexReport.MissingIndex> missingIndexes, List<EntityIndexReport.MissingIndex> joinMissingIndexes) {
+		Set<String> columnNames = EntityIndexReport.columnNames(new LinkedHashSet<EOAttribute>(attributes));
+		if (columnNames == null || entity.getExternalName() == null || entity.getExternalName().length() == 0) {
+			// a join of a derived or missing attribute, or of an entity
+			// without a table, can't be indexed
+			return;
+		}
+		EOEntity tableEntity = tableEntity(entity);
+		List<EOAttribute> tableAttributes = new LinkedList<EOAttribute>();
+		for (EOAttribute attribute : attributes) {
+			EOAttribute tableAttribute = tableEntity.getAttributeNamed(attribute.getName());
+			if (tableAttribute == null || !attribute.getColumnName().equals(tableAttribute.getColumnName())) {
+				// the attribute is only declared by the subentity
+				tableEntity = entity;
+				tableAttributes = attributes;
+				break;
+			}
+			tableAttributes.add(tableAttribute);
+		}
+		List<EOEntityIndex> entityIndexes = tableEntityIndexes.get(tableEntity(entity));
+		if (isCovered(columnNames, tableEntity, entityIndexes)) {
+			return;
+		}
+		String key = EntityIndexAdvisor.entityKey(tableEntity) + ":" + columnNames;
+		EntityIndexReport.MissingIndex missingIndex = missingIndexes.get(key);
+		if (missingIndex == null) {
+			missingIndex = new EntityIndexReport.MissingIndex(tableEntity, tableAttributes, possiblyCoveringIndexName(columnNames, tableEntity, entityIndexes));
+			missingIndexes.put(key, missingIndex);
+		}
+		missingIndex.addReason(reason);
+		if (!joinMissingIndexes.contains(missingIndex)) {
+			joinMissingIndexes.add(missingIndex);
+		}
+	}
+
+	/**
+	 * Returns whether the primary key or one of the entity indexes of the
+	 * table has exactly the columns. The order of the columns of an index
+	 * isn't recorded, so an index with more columns doesn't count, see
+	 * possiblyCoveringIndexName.
+	 */
+	protected boolean isCovered(Set<String> columnNames, EOEntity tableEntity, List<EOEntityIndex> entityIndexes) {
+		Set<String> primaryKeyColumnNames = EntityIndexReport.columnNames(tableEntity.getPrimaryKeyAttributes());
+		if (primaryKeyColumnNames != null && primaryKeyColumnNames.equals(columnNames)) {
+			return true;
+		}
+		if (entityIndexes != null) {
+			for (EOEntityIndex entityIndex : entityIndexes) {
+				Set<String> indexColumnNames = EntityIndexAdvisor.indexColumnNames(entityIndex);
+				if (indexColumnNames != null && indexColumnNames.equals(columnNames)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the name of the entity index (or "primary key") of the table
+	 * that has the columns among others, and so covers them if it lists them
+	 * first, or null if there is none. A hashed index only covers its own
+	 * columns.
+	 */
+	protected String possiblyCoveringIndexName(Set<String> columnNames, EOEntity tableEntity, List<EOEntityIndex> entityIndexes) {
+		Set<String> primaryKeyColumnNames = EntityIndexReport.columnNames(tableEntity.getPrimaryKeyAttributes());
+		if (primaryKeyColumnNames != null && primaryKeyColumnNames.containsAll(columnNames)) {
+			return "primary key";
+		}
+		if (entityIndexes != null) {
+			for (EOEntityIndex entityIndex : entityIndexes) {
+				Set<String> indexColumnNames = EntityIndexAdvisor.indexColumnNames(entityIndex);
+				if (indexColumnNames != null && indexColumnNames.containsAll(columnNames) && entityIndex.getIndexType() != EOEntityIndex.IndexType.Hashed) {
+					return entityIndex.getName();
+				}
+			}
+		}
+		return null;
+	}
+
+	protected void addFlattenedReason(String propertyName, AbstractEOAttributePath definitionPath, Map<EORelationship, List<EntityIndexReport.MissingIndex>> relationshipMissingIndexes) {
+		List<EORelationship> relationships = new LinkedList<EORelationship>();
+		if (definitionPath != null && addRelationships(relationships, definitionPath, 0)) {
+			for (EORelationship relationship : relationships) {
+				List<EntityIndexReport.MissingIndex> joinMissingIndexes = relationshipMissingIndexes.get(relationship);
+				if (joinMissingIndexes != null) {
+					for (EntityIndexReport.MissingIndex missingIndex : joinMissingIndexes) {
+						missingIndex.addReason(propertyName + " goes through " + relationship.getEntity().getName() + "." + relationship.getName());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the relationships that the definition path joins through to the
+	 * list, expanding flattened relationships and attributes along the way.
+	 */
+	protected boolean addRelationships(List<EORelationship> relationships, AbstractEOAttributePath definitionPath, int depth) {
+		if (depth > 16) {
+			return false;
+		}
+		for (AbstractEOAttributePath pathElement : definitionPath.getPathElements()) {
+			if (pathElement instanceof EORelationshipPath) {
+				EORelationship relationship = ((EORelationshipPath) pathElement).getChildRelationship();
+				if (relationship == null) {
+					return false;
+				}
+				if (relationship.isFlattened()) {
+					EORelationshipPath relationshipDefinitionPath = relationship.getDefinitionPath();
+					if (relationshipDefinitionPath == null || !addRelationships(relationships, relationshipDefinitionPath, depth + 1)) {
+						return false;
+					}
+				} else {
+					relationships.add(relationship);
+				}
+			} else {
+				EOAttribute attribute = ((EOAttributePath) pathElement).getChildAttribute();
+				if (attribute != null && attribute.isFlattened()) {
+					EOAttributePath attributeDefinitionPath = attribute.getDefinitionPath();
+					if (attributeDefinitionPath == null || !addRelationships(relationships, attributeDefinitionPath, depth + 1)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Folds each missing index into a wider missing index of the same table
+	 * that can list its columns first, and returns the remaining ones sorted
+	 * by entity and columns.
+	 */
+	protected List<EntityIndexReport.MissingIndex> mergeMissingIndexes(Collection<EntityIndexReport.MissingIndex> missingIndexes) {
+		List<EntityIndexReport.MissingIndex> sortedMissingIndexes = new ArrayList<EntityIndexReport.MissingIndex>(missingIndexes);
+		Collections.sort(sortedMissingIndexes, new Comparator<EntityIndexReport.MissingIndex>() {
+			public int compare(EntityIndexReport.MissingIndex missingIndex1, EntityIndexReport.MissingIndex missingIndex2) {
+				int comparison = EntityIndexAdvisor.entityKey(missingIndex1.getEntity()).compareTo(EntityIndexAdvisor.entityKey(missingIndex2.getEntity()));
+				if (comparison == 0) {
+					comparison = missingIndex2.getAttributes().size() - missingIndex1.getAttributes().size();
+				}
+				if (comparison == 0) {
+					comparison = missingIndex1.getColumnNames().toString().compareTo(missingIndex2.getColumnNames().toString());
+				}
+				return comparison;
+			}
+		});
+		// the wider indexes come first, and the columns of the ones that are
+		// folded into them are moved to the front
+		Map<EntityIndexReport.MissingIndex, Integer> fixedColumnCounts = new HashMap<EntityIndexReport.MissingIndex, Integer>();
+		List<EntityIndexReport.MissingIndex> mergedMissingIndexes = new LinkedList<EntityIndexReport.MissingIndex>();
+		for (EntityIndexReport.MissingIndex missingIndex : sortedMissingIndexes) {
+			List<EOAttribute> attributes = missingIndex.getAttributes();
+			EntityIndexReport.MissingIndex widerMissingIndex = null;
+			for (EntityIndexReport.MissingIndex mergedMissingIndex : mergedMissingIndexes) {
+				List<EOAttribute> mergedAttributes = mergedMissingIndex.getAttributes();
+				Integer fixedColumnCount = fixedColumnCounts.get(mergedMissingIndex);
+				int fixedCount = fixedColumnCount == null ? 0 : fixedColumnCount.intValue();
+				// a missing index isn't folded into one that is only possibly
+				// missing, which may never be created
+				if (mergedMissingIndex.getEntity() == missingIndex.getEntity() && mergedAttributes.size() > attributes.size() && mergedAttributes.containsAll(attributes) && (!mergedMissingIndex.isPossible() || missingIndex.isPossible())) {
+					// it can be folded in if it starts with the columns that are
+					// already in front, or if those start with its columns
+					boolean foldable;
+					if (fixedCount <= attributes.size()) {
+						foldable = attributes.containsAll(mergedAttributes.subList(0, fixedCount));
+					} else {
+						foldable = new HashSet<EOAttribute>(mergedAttributes.subList(0, attributes.size())).equals(new HashSet<EOAttribute>(attributes));
+					}
+					if (foldable) {
+						widerMissingIndex = mergedMissingIndex;
+						if (fixedCount < attributes.size()) {
+							List<EOAttribute> reorderedAttributes = new ArrayList<EOAttribute>(mergedAttributes.subList(0, fixedCount));
+							for (EOAttribute attribute : attributes) {
+								if (!reorderedAttributes.contains(attribute)) {
+									reorderedAttributes.add(attribute);
+								}
+							}
+							for (EOAttribute mergedAttribute : mergedAttributes) {
+								if (!reorderedAttributes.contains(mergedAttribute)) {
+									reorderedAttributes.add(mergedAttribute);
+								}
+							}
+							mergedMissingIndex.setAttributes(reorderedAttributes);
+							fixedColumnCounts.put(mergedMissingIndex, Integer.valueOf(attributes.size()));
+						}
+						break;
+					}
+				}
+			}
+			if (widerMissingIndex == null) {
+				mergedMissingIndexes.add(missingIndex);
+			} else {
+				for (String reason : missingIndex.getReasons()) {
+					widerMissingIndex.addReason(reason);
+				}
+			}
+		}
+		return mergedMissingIndexes;
+	}
+
+	/**
+	 * Adds the entity indexes of the table that another entity index or the
+	 * primary key covers. Full text and spatial indexes are left alone, and a
+	 * distinct index is only covered by a distinct index or primary key with
+	 * the same columns, because it enforces uniqueness. An index whose
+	 * columns are a subset of another's is only possibly redundant.
+	 */
+	protected void addRedundantIndexes(EOEntity tableEntity, List<EOEntityIndex> entityIndexes, EntityIndexReport report) {
+		Set<String> primaryKeyColumnNames = EntityIndexReport.columnNames(tableEntity.getPrimaryKeyAttributes());
+		if (primaryKeyColumnNames != null && primaryKeyColumnNames.isEmpty()) {
+			primaryKeyColumnNames = null;
+		}
+		for (EOEntityIndex entityIndex : entityIndexes) {
+			Set<String> columnNames = EntityIndexAdvisor.indexColumnNames(entityIndex);
+			if (columnNames == null) {
+				continue;
+			}
+			boolean distinct = entityIndex.getConstraint() == EOEntityIndex.Constraint.Distinct;
+			boolean hashed = entityIndex.getIndexType() == EOEntityIndex.IndexType.Hashed;
+			EntityIndexReport.RedundantIndex redundantIndex = null;
+			if (primaryKeyColumnNames != null && primaryKeyColumnNames.containsAll(columnNames) && (!distinct || primaryKeyColumnNames.size() == columnNames.size())) {
+				redundantIndex = new EntityIndexReport.RedundantIndex(entityIndex.getEntity(), entityIndex, null, primaryKeyColumnNames.size() == columnNames.size());
+			}
+			for (EOEntityIndex otherEntityIndex : entityIndexes) {
+				if (redundantIndex != null && redundantIndex.isDuplicate()) {
+					break;
+				}
+				Set<String> otherColumnNames = EntityIndexAdvisor.indexColumnNames(otherEntityIndex);
+				if (otherEntityIndex == entityIndex || otherColumnNames == null || !otherColumnNames.containsAll(columnNames)) {
+					continue;
+				}
+				boolean otherDistinct = otherEntityIndex.getConstraint() == EOEntityIndex.Constraint.Distinct;
+				boolean otherHashed = otherEntityIndex.getIndexType() == EOEntityIndex.IndexType.Hashed;
+				boolean duplicate = otherColumnNames.size() == columnNames.size();
+				boolean covered;
+				if (duplicate) {
+					// of two identical indexes, the later one is redundant
+					covered = (otherDistinct || !distinct) && (!otherHashed || hashed);
+					if (covered && otherDistinct == distinct && otherHashed == hashed) {
+						covered = entityIndexes.indexOf(otherEntityIndex) < entityIndexes.indexOf(entityIndex);
+					}
+				} else {
+					covered = !distinct && !otherHashed;
+				}
+				// a duplicate is reported rather than a wider index
+				if (covered && (redundantIndex == null || duplicate)) {
+					redundantIndex = new EntityIndexReport.RedundantIndex(entityIndex.getEntity(), entityIndex, otherEntityIndex, duplicate);
+				}
+			}
+			if (redundantIndex != null) {
+				report.addRedundantIndex(redundantIndex);
+			}
+		}
+	}
+
+	/**
+	 * Returns the entity whose table the entity is mapped to: its topmost
+	 * superentity with the same external name.
+	 */
+	protected EOEntity tableEntity(EOEntity entity) {
+		EOEntity tableEntity = entity;
+		EOEntity parent = entity.getParent();
+		for (int depth = 0; parent != null && depth < 16 && entity.getExternalName().equals(parent.getExternalName()); depth++) {
+			tableEntity = parent;
+			parent = parent.getParent();
+		}
+		return tableEntity;
+	}
+
+	/**
+	 * Returns the columns of an index that can be used to find rows, or null
+	 * for full text and spatial indexes and indexes of derived attributes.
+	 */
+	protected static Set<String> indexColumnNames(EOEntityIndex entityIndex) {
+		EOEntityIndex.Constraint constraint = entityIndex.getConstraint();
+		if (constraint == EOEntityIndex.Constraint.FullText || constraint == EOEntityIndex.Constraint.Spatial || entityIndex.getAttributes().isEmpty()) {
+			return null;
+		}
+		return EntityIndexReport.columnNames(entityIndex.getAttributes());
+	}
+
+	protected static String entityKey(EOEntity entity) {
+		return (entity.getModel() == null ? "" : entity.getModel().getName()) + "." + entity.getName();
+	}
+
+	public static void main(String[] args) throws Exception {
+		boolean create = false;
+		List<String> paths = new LinkedList<String>();
+		for (String arg : args) {
+			if ("-create".equals(arg)) {
+				create = true;
+			} else {
+				paths.add(arg);
+			}
+		}
+		if (paths.isEmpty()) {
+			System.err.println("usage: EntityIndexAdvisor [-create] <eomodeld or folder> ...");
+			System.exit(1);
+		}
+
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModelGroup modelGroup = new EOModelGroup();
+		for (String path : paths) {
+			File file = new File(path);
+			if (file.getName().endsWith(".eomodeld")) {
+				modelGroup.loadModelFromURL(file.toURL(), failures, true, new NullProgressMonitor());
+			} else {
+				modelGroup.loadModelsFromURL(file.toURL(), -1, failures, true, new NullProgressMonitor());
+			}
+		}
+		modelGroup.resolve(failures);
+		for (EOModelVerificationFailure failure : failures) {
+			System.err.println(failure.getMessage());
+		}
+
+		EntityIndexAdvisor advisor = new EntityIndexAdvisor();
+		EntityIndexReport report = advisor.advise(modelGroup);
+		System.out.println(WOLPropertyListSerialization.stringFromPropertyList(report.toPropertyList()));
+		if (create) {
+			Set<EOModel> changedModels = new LinkedHashSet<EOModel>();
+			for (EOEntityIndex entityIndex : advisor.createMissingIndexes(report)) {
+				changedModels.add(entityIndex.getEntity().getModel());
+			}
+			for (EOModel model : changedModels) {
+				System.err.println("Saving " + model.save() + ".");
+			}
+		}
+	}
+}
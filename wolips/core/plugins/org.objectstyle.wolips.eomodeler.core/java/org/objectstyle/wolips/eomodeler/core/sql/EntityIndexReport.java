@@ -0,0 +1,280 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntityIndex;
+
+/**
+ * EntityIndexReport is what EntityIndexAdvisor found out about the indexes of
+ * a model group: the join columns that no index covers, and the entity
+ * indexes that another index or the primary key makes redundant. The model
+ * doesn't record the order of the columns of an index, so an index with more
+ * columns only possibly covers the columns of another.
+ * toPropertyList() turns it into a property list for tools that read it.
+ */
+public class EntityIndexReport {
+	/**
+	 * MissingIndex is an index that the joins of one or more relationships
+	 * need but that the entity doesn't declare. It is possibly missing if an
+	 * index or the primary key has its columns among others, which only
+	 * covers them if it lists them first.
+	 */
+	public static class MissingIndex {
+		private EOEntity _entity;
+
+		private List<EOAttribute> _attributes;
+
+		private Set<String> _reasons;
+
+		private String _possiblyCoveringIndexName;
+
+		public MissingIndex(EOEntity entity, List<EOAttribute> attributes) {
+			this(entity, attributes, null);
+		}
+
+		public MissingIndex(EOEntity entity, List<EOAttribute> attributes, String possiblyCoveringIndexName) {
+			_entity = entity;
+			_attributes = new ArrayList<EOAttribute>(attributes);
+			_reasons = new TreeSet<String>();
+			_possiblyCoveringIndexName = possiblyCoveringIndexName;
+		}
+
+		public EOEntity getEntity() {
+			return _entity;
+		}
+
+		/**
+		 * Returns the attributes of the index, in the order they should be
+		 * indexed in.
+		 */
+		public List<EOAttribute> getAttributes() {
+			return _attributes;
+		}
+
+		public void setAttributes(List<EOAttribute> attributes) {
+			_attributes = new ArrayList<EOAttribute>(attributes);
+		}
+
+		public List<String> getColumnNames() {
+			List<String> columnNames = new LinkedList<String>();
+			for (EOAttribute attribute : _attributes) {
+				columnNames.add(attribute.getColumnName());
+			}
+			return columnNames;
+		}
+
+		/**
+		 * Returns the name of the index (or "primary key") that covers the
+		 * columns if it lists them first, or null if no index has them.
+		 */
+		public String getPossiblyCoveringIndexName() {
+			return _possiblyCoveringIndexName;
+		}
+
+		public boolean isPossible() {
+			return _possiblyCoveringIndexName != null;
+		}
+
+		public void addReason(String reason) {
+			_reasons.add(reason);
+		}
+
+		/**
+		 * Returns the relationships and flattened properties that need the
+		 * index.
+		 */
+		public Set<String> getReasons() {
+			return _reasons;
+		}
+
+		public Map<String, Object> toPropertyList() {
+			Map<String, Object> missingIndexMap = new LinkedHashMap<String, Object>();
+			missingIndexMap.put("model", _entity.getModel() == null ? null : _entity.getModel().getName());
+			missingIndexMap.put("entity", _entity.getName());
+			missingIndexMap.put("table", _entity.getExternalName());
+			List<String> attributeNames = new LinkedList<String>();
+			for (EOAttribute attribute : _attributes) {
+				attributeNames.add(attribute.getName());
+			}
+			missingIndexMap.put("attributes", attributeNames);
+			missingIndexMap.put("columns", getColumnNames());
+			missingIndexMap.put("reasons", new LinkedList<String>(_reasons));
+			missingIndexMap.put("kind", isPossible() ? "possible" : "missing");
+			if (isPossible()) {
+				missingIndexMap.put("possiblyCoveredBy", _possiblyCoveringIndexName);
+			}
+			return missingIndexMap;
+		}
+
+		@Override
+		public String toString() {
+			StringBuffer sb = new StringBuffer();
+			sb.append(isPossible() ? "possibly missing index on " : "missing index on ").append(_entity.getExternalName()).append(" ").append(getColumnNames());
+			sb.append(" (").append(_entity.getName()).append("): ").append(_reasons);
+			if (isPossible()) {
+				sb.append(", unless ").append(_possiblyCoveringIndexName).append(" lists these columns first");
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * RedundantIndex is an entity index that another entity index or the
+	 * primary key already covers. It is a duplicate if both index the same
+	 * columns; otherwise it is only possibly redundant, because its columns
+	 * are a subset of the other index, which only covers them if it lists
+	 * them first. That's for the modeler to check.
+	 */
+	public static class RedundantIndex {
+		private EOEntity _entity;
+
+		private EOEntityIndex _entityIndex;
+
+		private EOEntityIndex _coveringEntityIndex;
+
+		private boolean _duplicate;
+
+		public RedundantIndex(EOEntity entity, EOEntityIndex entityIndex, EOEntityIndex coveringEntityIndex, boolean duplicate) {
+			_entity = entity;
+			_entityIndex = entityIndex;
+			_coveringEntityIndex = coveringEntityIndex;
+			_duplicate = duplicate;
+		}
+
+		public EOEntity getEntity() {
+			return _entity;
+		}
+
+		public EOEntityIndex getEntityIndex() {
+			return _entityIndex;
+		}
+
+		/**
+		 * Returns the entity index that covers this one, or null if the
+		 * primary key does.
+		 */
+		public EOEntityIndex getCoveringEntityIndex() {
+			return _coveringEntityIndex;
+		}
+
+		public String getCoveringIndexName() {
+			return _coveringEntityIndex == null ? "primary key" : _coveringEntityIndex.getName();
+		}
+
+		public boolean isDuplicate() {
+			return _duplicate;
+		}
+
+		public boolean isPossible() {
+			return !_duplicate;
+		}
+
+		public Set<String> getColumnNames() {
+			return EntityIndexReport.columnNames(_entityIndex.getAttributes());
+		}
+
+		public Map<String, Object> toPropertyList() {
+			Map<String, Object> redundantIndexMap = new LinkedHashMap<String, Object>();
+			redundantIndexMap.put("model", _entity.getModel() == null ? null : _entity.getModel().getName());
+			redundantIndexMap.put("entity", _entity.getName());
+			redundantIndexMap.put("table", _entity.getExternalName());
+			redundantIndexMap.put("index", _entityIndex.getName());
+			redundantIndexMap.put("columns", new LinkedList<String>(getColumnNames()));
+			redundantIndexMap.put("coveredBy", getCoveringIndexName());
+			redundantIndexMap.put("kind", _duplicate ? "duplicate" : "possible");
+			return redundantIndexMap;
+		}
+
+		@Override
+		public String toString() {
+			StringBuffer sb = new StringBuffer();
+			sb.append(_duplicate ? "redundant index " : "possibly redundant index ").append(_entityIndex.getName()).append(" on ").append(_entity.getExternalName()).append(" ").append(getColumnNames());
+			sb.append(" (").append(_entity.getName()).append("): ");
+			if (_duplicate) {
+				sb.append("duplicates ").append(getCoveringIndexName());
+			} else {
+				sb.append("covered by ").append(getCoveringIndexName()).append(" if it lists these columns first");
+			}
+			return sb.toString();
+		}
+	}
+
+	private List<EntityIndexReport.MissingIndex> _missingIndexes;
+
+	private List<EntityIndexReport.RedundantIndex> _redundantIndexes;
+
+	public EntityIndexReport() {
+		_missingIndexes = new LinkedList<EntityIndexReport.MissingIndex>();
+		_redundantIndexes = new LinkedList<EntityIndexReport.RedundantIndex>();
+	}
+
+	public void addMissingIndex(EntityIndexReport.MissingIndex missingIndex) {
+		_missingIndexes.add(missingIndex);
+	}
+
+	public List<EntityIndexReport.MissingIndex> getMissingIndexes() {
+		return _missingIndexes;
+	}
+
+	public void addRedundantIndex(EntityIndexReport.RedundantIndex redundantIndex) {
+		_redundantIndexes.add(redundantIndex);
+	}
+
+	public List<EntityIndexReport.RedundantIndex> getRedundantIndexes() {
+		return _redundantIndexes;
+	}
+
+	public boolean isEmpty() {
+		return _missingIndexes.isEmpty() && _redundantIndexes.isEmpty();
+	}
+
+	/**
+	 * Returns the report as a property list with a "missingIndexes" and a
+	 * "redundantIndexes" array of dictionaries.
+	 */
+	public Map<String, Object> toPropertyList() {
+		List<Map<String, Object>> missingIndexes = new LinkedList<Map<String, Object>>();
+		for (EntityIndexReport.MissingIndex missingIndex : _missingIndexes) {
+			missingIndexes.add(missingIndex.toPropertyList());
+		}
+		List<Map<String, Object>> redundantIndexes = new LinkedList<Map<String, Object>>();
+		for (EntityIndexReport.RedundantIndex redundantIndex : _redundantIndexes) {
+			redundantIndexes.add(redundantIndex.toPropertyList());
+		}
+		Map<String, Object> reportMap = new LinkedHashMap<String, Object>();
+		reportMap.put("missingIndexes", missingIndexes);
+		reportMap.put("redundantIndexes", redundantIndexes);
+		return reportMap;
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		for (EntityIndexReport.MissingIndex missingIndex : _missingIndexes) {
+			sb.append(missingIndex).append("\n");
+		}
+		for (EntityIndexReport.RedundantIndex redundantIndex : _redundantIndexes) {
+			sb.append(redundantIndex).append("\n");
+		}
+		return sb.toString();
+	}
+
+	protected static Set<String> columnNames(Set<EOAttribute> attributes) {
+		Set<String> columnNames = new TreeSet<String>();
+		for (EOAttribute attribute : attributes) {
+			if (attribute == null || attribute.getColumnName() == null) {
+				return null;
+			}
+			columnNames.add(attribute.getColumnName());
+		}
+		return columnNames;
+	}
+}
@@ -0,0 +1,966 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectstyle.wolips.eomodeler.core.model.AbstractEOAttributePath;
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EOAttributePath;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntityIndex;
+import org.objectstyle.wolips.eomodeler.core.model.EOFetchSpecification;
+import org.objectstyle.wolips.eomodeler.core.model.EOJoin;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOQualifierFactory;
+import org.objectstyle.wolips.eomodeler.core.model.EORelationship;
+import org.objectstyle.wolips.eomodeler.core.model.EORelationshipPath;
+import org.objectstyle.wolips.eomodeler.core.model.EOSortOrdering;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOAggregateQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOAndQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOKeyComparisonQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOKeyValueQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EONotQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOOrQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifier;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOQualifierVariable;
+import org.objectstyle.wolips.eomodeler.core.model.qualifier.EOTruePredicate;
+import org.objectstyle.wolips.eomodeler.core.utils.BooleanUtils;
+
+/**
+ * FetchSpecCostAnalyzer estimates what fetch specs cost the database, so that
+ * expensive ones show up while modeling rather than under production load.
+ * For each fetch spec it generates the SQL of the fetch and of each of its
+ * prefetches, decides how every table is read (through the primary key, an
+ * entity index, or a full scan) and whether the rows have to be sorted, and
+ * estimates the rows read and returned from the row count of each entity.
+ * <p>
+ * The model has no statistics about the data, so the estimates use the usual
+ * default selectivities: an equality matches a tenth of the rows (one row if
+ * the column is unique), a range or a prefix like a third or a tenth, and so
+ * on. They are meant to rank fetch specs and point out missing indexes, not
+ * to predict a particular database's plan.
+ */
+public class FetchSpecCostAnalyzer {
+	public static final int DEFAULT_ROW_COUNT = 10000;
+
+	/**
+	 * Fetches that return more rows than this without a fetch limit get a
+	 * warning.
+	 */
+	public static final int LARGE_RESULT_ROW_COUNT = 10000;
+
+	protected static final double EQUALITY_SELECTIVITY = 0.1;
+
+	protected static final double RANGE_SELECTIVITY = 1.0 / 3.0;
+
+	protected static final double PATTERN_SELECTIVITY = 0.25;
+
+	private Map<String, Integer> _rowCounts;
+
+	private int _defaultRowCount;
+
+	/**
+	 * Constructs a new FetchSpecCostAnalyzer.
+	 *
+	 * @param rowCounts
+	 *            the number of rows of each entity, by entity name (can be
+	 *            null)
+	 * @param defaultRowCount
+	 *            the number of rows of the entities that aren't in rowCounts
+	 */
+	public FetchSpecCostAnalyzer(Map<String, Integer> rowCounts, int defaultRowCount) {
+		_rowCounts = rowCounts;
+		_defaultRowCount = defaultRowCount;
+	}
+
+	public long getRowCount(EOEntity entity) {
+		Integer rowCount = null;
+		if (_rowCounts != null && entity != null) {
+			rowCount = _rowCounts.get(entity.getName());
+		}
+		return rowCount == null ? _defaultRowCount : rowCount.intValue();
+	}
+
+	/**
+	 * Analyzes every fetch spec of the model and returns the reports, the
+	 * fetch specs that read the most rows first.
+	 */
+	public List<FetchSpecCostReport> analyze(EOModel model) {
+		List<FetchSpecCostReport> reports = new ArrayList<FetchSpecCostReport>();
+		for (EOEntity entity : model.getEntities()) {
+			if (!entity.isPrototype()) {
+				for (EOFetchSpecification fetchSpec : entity.getFetchSpecs()) {
+					reports.add(analyze(fetchSpec));
+				}
+			}
+		}
+		Collections.sort(reports, new Comparator<FetchSpecCostReport>() {
+			public int compare(FetchSpecCostReport report1, FetchSpecCostReport report2) {
+				long rowsRead1 = report1.getRowsRead();
+				long rowsRead2 = report2.getRowsRead();
+				return rowsRead1 > rowsRead2 ? -1 : (rowsRead1 == rowsRead2 ? 0 : 1);
+			}
+		});
+		return reports;
+	}
+
+	public FetchSpecCostReport analyze(EOFetchSpecification fetchSpec) {
+		EOEntity entity = fetchSpec.getEntity();
+		long rowCount = getRowCount(entity);
+		FetchSpecCostReport report = new FetchSpecCostReport(fetchSpec, entity, rowCount);
+		if (entity == null) {
+			report.addWarning("The fetch spec has no entity.");
+		} else if (fetchSpec.isUsingCustomQuery()) {
+			report.addWarning("The fetch spec uses a custom query expression, which isn't analyzed.");
+		} else {
+			analyzeFetch(fetchSpec, entity, rowCount, report);
+		}
+		return report;
+	}
+
+	protected void analyzeFetch(EOFetchSpecification fetchSpec, EOEntity entity, long rowCount, FetchSpecCostReport report) {
+		EOQualifier qualifier = fetchSpec.getQualifier();
+		String restrictingQualifierString = entity.getRestrictingQualifier();
+		if (restrictingQualifierString != null && restrictingQualifierString.trim().length() > 0) {
+			try {
+				EOQualifier restrictingQualifier = EOQualifierFactory.fromString(restrictingQualifierString);
+				qualifier = qualifier == null ? restrictingQualifier : new EOAndQualifier(qualifier, restrictingQualifier);
+			} catch (RuntimeException e) {
+				report.addWarning("The restricting qualifier of " + entity.getName() + " doesn't parse: " + e.getMessage());
+			}
+		}
+
+		Query query = new Query(entity, report);
+		List<String> selectedColumns = new LinkedList<String>();
+		if (fetchSpec.isFetchSpecificAttributesAsRawRows() && !fetchSpec.getRawRowKeyPaths().isEmpty()) {
+			for (String rawRowKeyPath : fetchSpec.getRawRowKeyPaths()) {
+				selectedColumns.add(query.sqlForKeyPath(rawRowKeyPath));
+			}
+		} else {
+			for (EOAttribute attribute : entity.getAttributes()) {
+				String columnName = attribute.getColumnName();
+				if (!attribute.isFlattened() && columnName != null && columnName.length() > 0) {
+					selectedColumns.add(query.getRootAlias() + "." + columnName);
+				}
+			}
+		}
+		String whereClause = null;
+		if (qualifier != null) {
+			whereClause = query.sqlForQualifier(qualifier);
+		}
+		List<String> orderByColumns = new LinkedList<String>();
+		List<EOSortOrdering> sortOrderings = fetchSpec.getSortOrderings();
+		if (sortOrderings != null) {
+			for (EOSortOrdering sortOrdering : sortOrderings) {
+				String column = query.sqlForKeyPath(sortOrdering.getKey());
+				if (sortOrdering.isCaseInsensitive()) {
+					column = "UPPER(" + column + ")";
+				}
+				orderByColumns.add(sortOrdering.isAscending() ? column : column + " DESC");
+			}
+		}
+
+		StringBuffer sql = new StringBuffer();
+		sql.append("SELECT ");
+		if (BooleanUtils.isTrue(fetchSpec.isUsesDistinct())) {
+			sql.append("DISTINCT ");
+		}
+		FetchSpecCostAnalyzer.append(sql, selectedColumns, ", ");
+		sql.append(" FROM ").append(entity.getExternalName()).append(" ").append(query.getRootAlias());
+		for (Join join : query.getJoins()) {
+			sql.append(" INNER JOIN ").append(join.getEntity().getExternalName()).append(" ").append(join.getAlias()).append(" ON ").append(join.getCondition());
+		}
+		if (whereClause != null) {
+			sql.append(" WHERE ").append(whereClause);
+		}
+		if (!orderByColumns.isEmpty()) {
+			sql.append(" ORDER BY ");
+			FetchSpecCostAnalyzer.append(sql, orderByColumns, ", ");
+		}
+		report.addStatement(sql.toString());
+
+		// how the root table is read
+		double selectivity = qualifier == null ? 1.0 : selectivity(entity, qualifier, rowCount);
+		long matchingRowCount = FetchSpecCostAnalyzer.rows(rowCount * selectivity);
+		Integer fetchLimit = fetchSpec.getFetchLimit();
+		boolean limited = fetchLimit != null && fetchLimit.intValue() > 0;
+		long rowsReturned = limited ? Math.min(matchingRowCount, fetchLimit.intValue()) : matchingRowCount;
+
+		IndexedRestriction restriction = null;
+		if (qualifier != null) {
+			for (EOQualifier conjunct : FetchSpecCostAnalyzer.conjuncts(qualifier)) {
+				IndexedRestriction conjunctRestriction = indexedRestriction(entity, conjunct, rowCount, report);
+				if (conjunctRestriction != null && (restriction == null || conjunctRestriction.getRowsRead() < restriction.getRowsRead())) {
+					restriction = conjunctRestriction;
+				}
+			}
+		}
+
+		IndexMatch sortIndex = null;
+		boolean sorted = false;
+		if (sortOrderings != null && !sortOrderings.isEmpty()) {
+			EOSortOrdering firstSortOrdering = sortOrderings.get(0);
+			ResolvedKeyPath sortKeyPath = resolveKeyPath(entity, firstSortOrdering.getKey());
+			if (sortOrderings.size() == 1 && !firstSortOrdering.isCaseInsensitive() && sortKeyPath != null && sortKeyPath.isColumnOfRoot()) {
+				sortIndex = indexFor(entity, sortKeyPath.getAttribute(), false);
+			}
+			if (sortIndex == null || (restriction != null && !restriction.getIndexMatch().equals(sortIndex))) {
+				sortIndex = null;
+				sorted = true;
+			}
+		}
+
+		FetchSpecCostReport.TableAccess rootAccess;
+		String rootTableName = entity.getExternalName();
+		if (restriction != null) {
+			rootAccess = new FetchSpecCostReport.TableAccess(rootTableName, query.getRootAlias(), restriction.getIndexMatch().getAccessType(), restriction.getIndexMatch().getIndexName(), restriction.getRowsRead(), restriction.getDescription());
+		} else if (sortIndex != null) {
+			long rowsRead = rowCount;
+			String description = "walks the index in the order of the sort orderings";
+			if (limited) {
+				rowsRead = Math.min(rowCount, FetchSpecCostAnalyzer.rows(fetchLimit.intValue() / Math.max(selectivity, 1.0 / Math.max(rowCount, 1))));
+				description += " and stops after the fetch limit";
+			}
+			rootAccess = new FetchSpecCostReport.TableAccess(rootTableName, query.getRootAlias(), sortIndex.getAccessType(), sortIndex.getIndexName(), rowsRead, description);
+		} else {
+			long rowsRead = rowCount;
+			String description = null;
+			if (limited && !sorted) {
+				rowsRead = Math.min(rowCount, FetchSpecCostAnalyzer.rows(fetchLimit.intValue() / Math.max(selectivity, 1.0 / Math.max(rowCount, 1))));
+				description = "stops after the fetch limit";
+			}
+			Set<String> unindexedColumns = unindexedRootColumns(entity, qualifier);
+			if (!unindexedColumns.isEmpty()) {
+				String columns = FetchSpecCostAnalyzer.append(new StringBuffer(), unindexedColumns, ", ").toString();
+				description = (description == null ? "" : description + ", ") + "no index on " + columns;
+			}
+			rootAccess = new FetchSpecCostReport.TableAccess(rootTableName, query.getRootAlias(), FetchSpecCostReport.AccessType.Scan, null, rowsRead, description);
+		}
+		report.addTableAccess(rootAccess);
+
+		// the joins of the qualifier and the sort orderings
+		for (Join join : query.getJoins()) {
+			long outerRowCount = join.getSourceAlias().equals(query.getRootAlias()) ? rootAccess.getRowsRead() : query.getJoinRowCount(join.getSourceAlias());
+			long joinRowCount = addRelationshipAccess(join.getRelationship(), join.getAlias(), outerRowCount, report);
+			query.setJoinRowCount(join.getAlias(), joinRowCount);
+			if (BooleanUtils.isTrue(join.getRelationship().isToMany())) {
+				report.addWarning("The qualifier follows the to-many relationship " + join.getRelationship().getName() + ", so the same " + entity.getName() + " can be fetched more than once.");
+			}
+		}
+
+		if (sorted) {
+			report.setSortedRowCount(matchingRowCount);
+		}
+		report.setRowsReturned(rowsReturned);
+		if (!limited && rowsReturned > FetchSpecCostAnalyzer.LARGE_RESULT_ROW_COUNT) {
+			report.addWarning("The fetch returns about " + rowsReturned + " rows and has no fetch limit.");
+		}
+
+		// the prefetches
+		Collection<String> prefetchingKeyPaths = fetchSpec.getPrefetchingRelationshipKeyPaths();
+		if (prefetchingKeyPaths != null) {
+			for (String prefetchingKeyPath : prefetchingKeyPaths) {
+				analyzePrefetch(entity, prefetchingKeyPath, rowsReturned, report);
+			}
+		}
+	}
+
+	/**
+	 * Adds the statements and table accesses of one prefetching keypath: one
+	 * query per relationship, restricted to the rows of the previous one.
+	 */
+	protected void analyzePrefetch(EOEntity entity, String prefetchingKeyPath, long rowsReturned, FetchSpecCostReport report) {
+		List<EORelationship> relationships = new LinkedList<EORelationship>();
+		EOEntity currentEntity = entity;
+		for (String relationshipName : prefetchingKeyPath.split("\\.")) {
+			EORelationship relationship = currentEntity == null ? null : currentEntity.getRelationshipNamed(relationshipName);
+			if (relationship == null) {
+				report.addWarning("The prefetching keypath " + prefetchingKeyPath + " doesn't resolve on " + entity.getName() + ".");
+				return;
+			}
+			addRelationships(relationships, relationship, 0);
+			currentEntity = relationship.getDestination();
+		}
+		long parentRowCount = rowsReturned;
+		for (EORelationship relationship : relationships) {
+			EOEntity destination = relationship.getDestination();
+			if (destination == null) {
+				report.addWarning("The relationship " + relationship.getName() + " of the prefetching keypath " + prefetchingKeyPath + " has no destination.");
+				return;
+			}
+			List<String> conditions = new LinkedList<String>();
+			for (EOJoin join : relationship.getJoins()) {
+				EOAttribute destinationAttribute = join.getDestinationAttribute();
+				if (destinationAttribute != null) {
+					conditions.add("t0." + destinationAttribute.getColumnName() + " IN (?)");
+				}
+			}
+			StringBuffer sql = new StringBuffer();
+			sql.append("SELECT t0.* FROM ").append(destination.getExternalName()).append(" t0 WHERE ");
+			FetchSpecCostAnalyzer.append(sql, conditions, " AND ");
+			report.addStatement(sql.toString());
+			parentRowCount = addRelationshipAccess(relationship, "t0", parentRowCount, report);
+		}
+	}
+
+	/**
+	 * Adds how the destination of the relationship is read for the given
+	 * number of source rows, and returns the number of destination rows.
+	 */
+	protected long addRelationshipAccess(EORelationship relationship, String alias, long sourceRowCount, FetchSpecCostReport report) {
+		EOEntity source = relationship.getEntity();
+		EOEntity destination = relationship.getDestination();
+		long destinationRowCount = getRowCount(destination);
+		long relatedRowCount;
+		if (BooleanUtils.isTrue(relationship.isToMany())) {
+			double rowsPerSource = Math.max(1.0, (double) destinationRowCount / Math.max(1, getRowCount(source)));
+			relatedRowCount = Math.min(destinationRowCount, FetchSpecCostAnalyzer.rows(sourceRowCount * rowsPerSource));
+		} else {
+			relatedRowCount = Math.min(destinationRowCount, sourceRowCount);
+		}
+		Set<EOAttribute> destinationAttributes = new LinkedHashSet<EOAttribute>();
+		List<String> destinationColumns = new LinkedList<String>();
+		for (EOJoin join : relationship.getJoins()) {
+			EOAttribute destinationAttribute = join.getDestinationAttribute();
+			if (destinationAttribute != null) {
+				destinationAttributes.add(destinationAttribute);
+				destinationColumns.add(destinationAttribute.getColumnName());
+			}
+		}
+		IndexMatch indexMatch = destinationAttributes.isEmpty() ? null : indexFor(destination, destinationAttributes, true);
+		FetchSpecCostReport.TableAccess tableAccess;
+		if (indexMatch != null) {
+			tableAccess = new FetchSpecCostReport.TableAccess(destination.getExternalName(), alias, indexMatch.getAccessType(), indexMatch.getIndexName(), relatedRowCount, "for " + relationship.getName());
+		} else {
+			String description = "for " + relationship.getName();
+			if (!destinationColumns.isEmpty()) {
+				description += ", no index on " + FetchSpecCostAnalyzer.append(new StringBuffer(), destinationColumns, ", ");
+				String widerIndexName = widerIndexFor(destination, destinationAttributes);
+				if (widerIndexName != null) {
+					description += " unless " + widerIndexName + " lists these columns first";
+				}
+			}
+			tableAccess = new FetchSpecCostReport.TableAccess(destination.getExternalName(), alias, FetchSpecCostReport.AccessType.Scan, null, destinationRowCount, description);
+		}
+		report.addTableAccess(tableAccess);
+		return relatedRowCount;
+	}
+
+	/**
+	 * Returns the fraction of the rows of the entity that match the
+	 * qualifier.
+	 */
+	protected double selectivity(EOEntity entity, EOQualifier qualifier, long rowCount) {
+		double selectivity;
+		if (qualifier instanceof EOKeyValueQualifier) {
+			EOKeyValueQualifier keyValueQualifier = (EOKeyValueQualifier) qualifier;
+			String operator = keyValueQualifier.getComparison().getName();
+			if (FetchSpecCostAnalyzer.isEquality(operator)) {
+				selectivity = FetchSpecCostAnalyzer.EQUALITY_SELECTIVITY;
+				ResolvedKeyPath keyPath = resolveKeyPath(entity, keyValueQualifier.getKey());
+				if (keyValueQualifier.getValue() != null && keyPath != null && keyPath.isColumnOfRoot()) {
+					IndexMatch indexMatch = indexFor(entity, keyPath.getAttribute(), true);
+					if (indexMatch != null && indexMatch.isUnique()) {
+						selectivity = 1.0 / Math.max(rowCount, 1);
+					}
+				}
+			} else if (FetchSpecCostAnalyzer.isInequality(operator)) {
+				selectivity = 1.0 - FetchSpecCostAnalyzer.EQUALITY_SELECTIVITY;
+			} else if (FetchSpecCostAnalyzer.isRange(operator)) {
+				selectivity = FetchSpecCostAnalyzer.RANGE_SELECTIVITY;
+			} else if (FetchSpecCostAnalyzer.isLike(operator) && keyValueQualifier.getValue() instanceof String && ((String) keyValueQualifier.getValue()).indexOf('*') == -1 && ((String) keyValueQualifier.getValue()).indexOf('?') == -1) {
+				selectivity = FetchSpecCostAnalyzer.EQUALITY_SELECTIVITY;
+			} else {
+				selectivity = FetchSpecCostAnalyzer.PATTERN_SELECTIVITY;
+			}
+		} else if (qualifier instanceof EOKeyComparisonQualifier) {
+			String operator = ((EOKeyComparisonQualifier) qualifier).getComparison().getName();
+			if (FetchSpecCostAnalyzer.isEquality(operator)) {
+				selectivity = FetchSpecCostAnalyzer.EQUALITY_SELECTIVITY;
+			} else if (FetchSpecCostAnalyzer.isInequality(operator)) {
+				selectivity = 1.0 - FetchSpecCostAnalyzer.EQUALITY_SELECTIVITY;
+			} else {
+				selectivity = FetchSpecCostAnalyzer.RANGE_SELECTIVITY;
+			}
+		} else if (qualifier instanceof EOOrQualifier) {
+			double nonSelectivity = 1.0;
+			for (EOQualifier childQualifier : ((EOOrQualifier) qualifier).getQualifiers()) {
+				nonSelectivity *= 1.0 - selectivity(entity, childQualifier, rowCount);
+			}
+			selectivity = 1.0 - nonSelectivity;
+		} else if (qualifier instanceof EOAggregateQualifier) {
+			selectivity = 1.0;
+			for (EOQualifier childQualifier : ((EOAggregateQualifier) qualifier).getQualifiers()) {
+				selectivity *= selectivity(entity, childQualifier, rowCount);
+			}
+		} else if (qualifier instanceof EONotQualifier) {
+			selectivity = 1.0 - selectivity(entity, ((EONotQualifier) qualifier).getQualifier(), rowCount);
+		} else {
+			selectivity = 1.0;
+		}
+		return selectivity;
+	}
+
+	/**
+	 * Returns how the given conjunct of the qualifier narrows down the rows of
+	 * the entity through an index, or null if it can't use one.
+	 */
+	protected IndexedRestriction indexedRestriction(EOEntity entity, EOQualifier conjunct, long rowCount, FetchSpecCostReport report) {
+		if (!(conjunct instanceof EOKeyValueQualifier)) {
+			return null;
+		}
+		EOKeyValueQualifier keyValueQualifier = (EOKeyValueQualifier) conjunct;
+		ResolvedKeyPath keyPath = resolveKeyPath(entity, keyValueQualifier.getKey());
+		if (keyPath == null || !keyPath.isColumnOfRoot() || keyValueQualifier.getValue() == null) {
+			return null;
+		}
+		String operator = keyValueQualifier.getComparison().getName();
+		String columnName = keyPath.getAttribute().getColumnName();
+		boolean equality = FetchSpecCostAnalyzer.isEquality(operator);
+		IndexMatch indexMatch = indexFor(entity, keyPath.getAttribute(), equality);
+		if (indexMatch == null) {
+			return null;
+		}
+		IndexedRestriction restriction = null;
+		if (equality) {
+			if (indexMatch.isUnique()) {
+				restriction = new IndexedRestriction(indexMatch, 1, columnName + " is unique");
+			} else {
+				restriction = new IndexedRestriction(indexMatch, FetchSpecCostAnalyzer.rows(rowCount * FetchSpecCostAnalyzer.EQUALITY_SELECTIVITY), columnName + " " + operator + " value");
+			}
+		} else if (FetchSpecCostAnalyzer.isRange(operator)) {
+			restriction = new IndexedRestriction(indexMatch, FetchSpecCostAnalyzer.rows(rowCount * FetchSpecCostAnalyzer.RANGE_SELECTIVITY), "range of " + columnName);
+		} else if (FetchSpecCostAnalyzer.isLike(operator)) {
+			Object value = keyValueQualifier.getValue();
+			String pattern = value instanceof String ? (String) value : null;
+			if ("caseInsensitiveLike".equalsIgnoreCase(operator) || "isCaseInsensitiveLike".equalsIgnoreCase(operator) || "likeIgnoreCase".equalsIgnoreCase(operator)) {
+				report.addWarning(keyValueQualifier.getKey() + " caseInsensitiveLike compares UPPER(" + columnName + "), which can't use the index on " + columnName + ".");
+			} else if (pattern == null || pattern.startsWith("*") || pattern.startsWith("?")) {
+				report.addWarning(keyValueQualifier.getKey() + " like '" + pattern + "' starts with a wildcard, which can't use the index on " + columnName + ".");
+			} else {
+				restriction = new IndexedRestriction(indexMatch, FetchSpecCostAnalyzer.rows(rowCount * FetchSpecCostAnalyzer.EQUALITY_SELECTIVITY), "prefix of " + columnName);
+			}
+		}
+		return restriction;
+	}
+
+	/**
+	 * Returns the columns of the entity's own table that the qualifier
+	 * compares and that have no index.
+	 */
+	protected Set<String> unindexedRootColumns(EOEntity entity, EOQualifier qualifier) {
+		Set<String> columns = new TreeSet<String>();
+		if (qualifier != null) {
+			for (EOQualifier conjunct : FetchSpecCostAnalyzer.conjuncts(qualifier)) {
+				if (conjunct instanceof EOKeyValueQualifier) {
+					EOKeyValueQualifier keyValueQualifier = (EOKeyValueQualifier) conjunct;
+					ResolvedKeyPath keyPath = resolveKeyPath(entity, keyValueQualifier.getKey());
+					String operator = keyValueQualifier.getComparison().getName();
+					if (keyPath != null && keyPath.isColumnOfRoot() && (FetchSpecCostAnalyzer.isEquality(operator) || FetchSpecCostAnalyzer.isRange(operator)) && indexFor(entity, keyPath.getAttribute(), FetchSpecCostAnalyzer.isEquality(operator)) == null) {
+						columns.add(keyPath.getAttribute().getColumnName());
+					}
+				}
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Returns the index that can find rows by the given attribute: the primary
+	 * key or an entity index on just that column. Hashed indexes are only
+	 * returned for equalities.
+	 */
+	protected IndexMatch indexFor(EOEntity entity, EOAttribute attribute, boolean equality) {
+		return indexFor(entity, Collections.singleton(attribute), equality);
+	}
+
+	/**
+	 * Returns the index that can find rows by the given attributes together:
+	 * the primary key or an entity index with exactly their columns. The
+	 * order of an index's columns isn't in the model, so an index with more
+	 * columns only helps if it happens to list these first, and doesn't count.
+	 * Hashed indexes are only returned for equalities.
+	 */
+	protected IndexMatch indexFor(EOEntity entity, Set<EOAttribute> attributes, boolean equality) {
+		if (entity.getPrimaryKeyAttributes().equals(attributes)) {
+			return new IndexMatch(FetchSpecCostReport.AccessType.PrimaryKey, null, true);
+		}
+		IndexMatch indexMatch = null;
+		for (EOEntityIndex entityIndex : entity.getEntityIndexes()) {
+			EOEntityIndex.Constraint constraint = entityIndex.getConstraint();
+			if (entityIndex.getAttributes().equals(attributes) && constraint != EOEntityIndex.Constraint.FullText && constraint != EOEntityIndex.Constraint.Spatial && (equality || entityIndex.getIndexType() != EOEntityIndex.IndexType.Hashed)) {
+				boolean unique = constraint == EOEntityIndex.Constraint.Distinct;
+				if (indexMatch == null || (unique && !indexMatch.isUnique())) {
+					indexMatch = new IndexMatch(FetchSpecCostReport.AccessType.Index, entityIndex.getName(), unique);
+				}
+			}
+		}
+		return indexMatch;
+	}
+
+	/**
+	 * Returns the name of the primary key ("primary key") or entity index that
+	 * contains the given attributes among more columns, or null if there is
+	 * none. Whether the database can use it depends on the order of its
+	 * columns.
+	 */
+	protected String widerIndexFor(EOEntity entity, Set<EOAttribute> attributes) {
+		Set<EOAttribute> primaryKeyAttributes = entity.getPrimaryKeyAttributes();
+		if (primaryKeyAttributes.size() > attributes.size() && primaryKeyAttributes.containsAll(attributes)) {
+			return "primary key";
+		}
+		for (EOEntityIndex entityIndex : entity.getEntityIndexes()) {
+			Set<EOAttribute> indexAttributes = entityIndex.getAttributes();
+			if (indexAttributes.size() > attributes.size() && indexAttributes.containsAll(attributes) && entityIndex.getConstraint() != EOEntityIndex.Constraint.FullText && entityIndex.getConstraint() != EOEntityIndex.Constraint.Spatial && entityIndex.getIndexType() != EOEntityIndex.IndexType.Hashed) {
+				return entityIndex.getName();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Resolves a keypath of the entity into the relationships it joins
+	 * through and the attribute or relationship it ends with, expanding
+	 * flattened attributes and relationships. Returns null if the keypath
+	 * doesn't resolve.
+	 */
+	protected ResolvedKeyPath resolveKeyPath(EOEntity entity, String keyPath) {
+		AbstractEOAttributePath attributePath = keyPath == null ? null : entity.resolveKeyPath(keyPath);
+		if (attributePath == null || !attributePath.isValid()) {
+			return null;
+		}
+		ResolvedKeyPath resolvedKeyPath = new ResolvedKeyPath();
+		if (!addAttributePath(resolvedKeyPath, attributePath, 0)) {
+			return null;
+		}
+		return resolvedKeyPath;
+	}
+
+	protected boolean addAttributePath(ResolvedKeyPath resolvedKeyPath, AbstractEOAttributePath attributePath, int depth) {
+		if (depth > 16) {
+			return false;
+		}
+		List<AbstractEOAttributePath> pathElements = attributePath.getPathElements();
+		for (int i = 0; i < pathElements.size(); i++) {
+			AbstractEOAttributePath pathElement = pathElements.get(i);
+			if (pathElement instanceof EORelationshipPath) {
+				EORelationship relationship = ((EORelationshipPath) pathElement).getChildRelationship();
+				if (relationship == null || !addRelationships(resolvedKeyPath.getRelationships(), relationship, depth + 1)) {
+					return false;
+				}
+				if (i == pathElements.size() - 1) {
+					// the keypath ends with a relationship, which is compared
+					// with the source attributes of its joins
+					List<EORelationship> relationships = resolvedKeyPath.getRelationships();
+					resolvedKeyPath.setEndRelationship(relationships.remove(relationships.size() - 1));
+				}
+			} else {
+				EOAttribute attribute = ((EOAttributePath) pathElement).getChildAttribute();
+				if (attribute == null) {
+					return false;
+				}
+				if (attribute.isFlattened()) {
+					EOAttributePath definitionPath = attribute.getDefinitionPath();
+					if (definitionPath == null || !addAttributePath(resolvedKeyPath, definitionPath, depth + 1)) {
+						return false;
+					}
+				} else {
+					resolvedKeyPath.setAttribute(attribute);
+				}
+			}
+		}
+		return true;
+	}
+
+	protected boolean addRelationships(List<EORelationship> relationships, EORelationship relationship, int depth) {
+		if (depth > 16) {
+			return false;
+		}
+		if (relationship.isFlattened()) {
+			EORelationshipPath definitionPath = relationship.getDefinitionPath();
+			if (definitionPath == null) {
+				return false;
+			}
+			for (AbstractEOAttributePath pathElement : definitionPath.getPathElements()) {
+				EORelationship definitionRelationship = ((EORelationshipPath) pathElement).getChildRelationship();
+				if (definitionRelationship == null || !addRelationships(relationships, definitionRelationship, depth + 1)) {
+					return false;
+				}
+			}
+		} else {
+			relationships.add(relationship);
+		}
+		return true;
+	}
+
+	protected static List<EOQualifier> conjuncts(EOQualifier qualifier) {
+		List<EOQualifier> conjuncts = new LinkedList<EOQualifier>();
+		if (qualifier instanceof EOAndQualifier) {
+			for (EOQualifier childQualifier : ((EOAndQualifier) qualifier).getQualifiers()) {
+				conjuncts.addAll(FetchSpecCostAnalyzer.conjuncts(childQualifier));
+			}
+		} else if (qualifier != null) {
+			conjuncts.add(qualifier);
+		}
+		return conjuncts;
+	}
+
+	protected static boolean isEquality(String operator) {
+		return "=".equals(operator) || "==".equals(operator) || "isEqualTo".equalsIgnoreCase(operator);
+	}
+
+	protected static boolean isInequality(String operator) {
+		return "<>".equals(operator) || "!=".equals(operator) || "isNotEqualTo".equalsIgnoreCase(operator);
+	}
+
+	protected static boolean isRange(String operator) {
+		return "<".equals(operator) || ">".equals(operator) || "<=".equals(operator) || ">=".equals(operator) || "isLessThan".equalsIgnoreCase(operator) || "isGreaterThan".equalsIgnoreCase(operator) || "isLessThanOrEqualTo".equalsIgnoreCase(operator) || "isGreaterThanOrEqualTo".equalsIgnoreCase(operator);
+	}
+
+	protected static boolean isLike(String operator) {
+		return "like".equalsIgnoreCase(operator) || "isLike".equalsIgnoreCase(operator) || "caseInsensitiveLike".equalsIgnoreCase(operator) || "isCaseInsensitiveLike".equalsIgnoreCase(operator) || "likeIgnoreCase".equalsIgnoreCase(operator);
+	}
+
+	protected static long rows(double rowCount) {
+		return (long) Math.ceil(rowCount);
+	}
+
+	protected static StringBuffer append(StringBuffer sb, Iterable<String> strs, String separator) {
+		boolean first = true;
+		for (String str : strs) {
+			if (!first) {
+				sb.append(separator);
+			}
+			sb.append(str);
+			first = false;
+		}
+		return sb;
+	}
+
+	/**
+	 * ResolvedKeyPath is a keypath broken down into the relationships it joins
+	 * through and the attribute (or relationship) it ends with.
+	 */
+	protected static class ResolvedKeyPath {
+		private List<EORelationship> _relationships = new ArrayList<EORelationship>();
+
+		private EOAttribute _attribute;
+
+		private EORelationship _endRelationship;
+
+		public List<EORelationship> getRelationships() {
+			return _relationships;
+		}
+
+		public EOAttribute getAttribute() {
+			return _attribute;
+		}
+
+		public void setAttribute(EOAttribute attribute) {
+			_attribute = attribute;
+		}
+
+		public EORelationship getEndRelationship() {
+			return _endRelationship;
+		}
+
+		public void setEndRelationship(EORelationship endRelationship) {
+			_endRelationship = endRelationship;
+		}
+
+		/**
+		 * Returns whether the keypath is a column of the entity's own table.
+		 */
+		public boolean isColumnOfRoot() {
+			return _relationships.isEmpty() && _attribute != null && _attribute.getColumnName() != null && _attribute.getColumnName().length() > 0;
+		}
+	}
+
+	/**
+	 * IndexMatch is an index that can be used to find rows.
+	 */
+	protected static class IndexMatch {
+		private FetchSpecCostReport.AccessType _accessType;
+
+		private String _indexName;
+
+		private boolean _unique;
+
+		public IndexMatch(FetchSpecCostReport.AccessType accessType, String indexName, boolean unique) {
+			_accessType = accessType;
+			_indexName = indexName;
+			_unique = unique;
+		}
+
+		public FetchSpecCostReport.AccessType getAccessType() {
+			return _accessType;
+		}
+
+		public String getIndexName() {
+			return _indexName;
+		}
+
+		public boolean isUnique() {
+			return _unique;
+		}
+
+		@Override
+		public int hashCode() {
+			return _accessType.hashCode() * 31 + (_indexName == null ? 0 : _indexName.hashCode());
+		}
+
+		public boolean equals(Object obj) {
+			return obj instanceof IndexMatch && ((IndexMatch) obj)._accessType == _accessType && (_indexName == null ? ((IndexMatch) obj)._indexName == null : _indexName.equals(((IndexMatch) obj)._indexName));
+		}
+	}
+
+	/**
+	 * IndexedRestriction is a conjunct of the qualifier that narrows the rows
+	 * down through an index.
+	 */
+	protected static class IndexedRestriction {
+		private IndexMatch _indexMatch;
+
+		private long _rowsRead;
+
+		private String _description;
+
+		public IndexedRestriction(IndexMatch indexMatch, long rowsRead, String description) {
+			_indexMatch = indexMatch;
+			_rowsRead = rowsRead;
+			_description = description;
+		}
+
+		public IndexMatch getIndexMatch() {
+			return _indexMatch;
+		}
+
+		public long getRowsRead() {
+			return _rowsRead;
+		}
+
+		public String getDescription() {
+			return _description;
+		}
+	}
+
+	/**
+	 * Join is a table that a statement joins in for a relationship.
+	 */
+	protected static class Join {
+		private String _sourceAlias;
+
+		private EORelationship _relationship;
+
+		private String _alias;
+
+		public Join(String sourceAlias, EORelationship relationship, String alias) {
+			_sourceAlias = sourceAlias;
+			_relationship = relationship;
+			_alias = alias;
+		}
+
+		public String getSourceAlias() {
+			return _sourceAlias;
+		}
+
+		public EORelationship getRelationship() {
+			return _relationship;
+		}
+
+		public EOEntity getEntity() {
+			return _relationship.getDestination();
+		}
+
+		public String getAlias() {
+			return _alias;
+		}
+
+		public String getCondition() {
+			List<String> conditions = new LinkedList<String>();
+			for (EOJoin join : _relationship.getJoins()) {
+				EOAttribute sourceAttribute = join.getSourceAttribute();
+				EOAttribute destinationAttribute = join.getDestinationAttribute();
+				if (sourceAttribute != null && destinationAttribute != null) {
+					conditions.add(_sourceAlias + "." + sourceAttribute.getColumnName() + " = " + _alias + "." + destinationAttribute.getColumnName());
+				}
+			}
+			return FetchSpecCostAnalyzer.append(new StringBuffer(), conditions, " AND ").toString();
+		}
+	}
+
+	/**
+	 * Query generates the SQL of one fetch, and keeps track of the tables it
+	 * has to join in for the keypaths of the qualifier and sort orderings.
+	 */
+	protected class Query {
+		private EOEntity _entity;
+
+		private FetchSpecCostReport _report;
+
+		private Map<String, Join> _joins;
+
+		private Map<String, Long> _joinRowCounts;
+
+		public Query(EOEntity entity, FetchSpecCostReport report) {
+			_entity = entity;
+			_report = report;
+			_joins = new LinkedHashMap<String, Join>();
+			_joinRowCounts = new LinkedHashMap<String, Long>();
+		}
+
+		public String getRootAlias() {
+			return "t0";
+		}
+
+		public List<Join> getJoins() {
+			return new ArrayList<Join>(_joins.values());
+		}
+
+		public long getJoinRowCount(String alias) {
+			Long rowCount = _joinRowCounts.get(alias);
+			return rowCount == null ? 0 : rowCount.longValue();
+		}
+
+		public void setJoinRowCount(String alias, long rowCount) {
+			_joinRowCounts.put(alias, Long.valueOf(rowCount));
+		}
+
+		/**
+		 * Returns the alias of the table at the end of the relationships,
+		 * joining in the tables that aren't joined yet.
+		 */
+		protected String aliasFor(List<EORelationship> relationships) {
+			String alias = getRootAlias();
+			StringBuffer joinPath = new StringBuffer();
+			for (EORelationship relationship : relationships) {
+				joinPath.append(".").append(relationship.getName());
+				Join join = _joins.get(joinPath.toString());
+				if (join == null) {
+					join = new Join(alias, relationship, "t" + (_joins.size() + 1));
+					_joins.put(joinPath.toString(), join);
+				}
+				alias = join.getAlias();
+			}
+			return alias;
+		}
+
+		public String sqlForKeyPath(String keyPath) {
+			ResolvedKeyPath resolvedKeyPath = resolveKeyPath(_entity, keyPath);
+			String sql;
+			if (resolvedKeyPath == null) {
+				_report.addWarning("The keypath " + keyPath + " doesn't resolve on " + _entity.getName() + ".");
+				sql = keyPath;
+			} else {
+				String alias = aliasFor(resolvedKeyPath.getRelationships());
+				EOAttribute attribute = resolvedKeyPath.getAttribute();
+				EORelationship endRelationship = resolvedKeyPath.getEndRelationship();
+				if (endRelationship != null) {
+					List<EOJoin> joins = endRelationship.getJoins();
+					EOAttribute sourceAttribute = joins.isEmpty() ? null : joins.get(0).getSourceAttribute();
+					sql = sourceAttribute == null ? keyPath : alias + "." + sourceAttribute.getColumnName();
+				} else if (attribute.getColumnName() != null && attribute.getColumnName().length() > 0) {
+					sql = alias + "." + attribute.getColumnName();
+				} else {
+					sql = attribute.getDefinition();
+				}
+			}
+			return sql;
+		}
+
+		public String sqlForQualifier(EOQualifier qualifier) {
+			String sql;
+			if (qualifier instanceof EOKeyValueQualifier) {
+				EOKeyValueQualifier keyValueQualifier = (EOKeyValueQualifier) qualifier;
+				String column = sqlForKeyPath(keyValueQualifier.getKey());
+				String operator = keyValueQualifier.getComparison().getName();
+				Object value = keyValueQualifier.getValue();
+				if (value == null && FetchSpecCostAnalyzer.isEquality(operator)) {
+					sql = column + " IS NULL";
+				} else if (value == null && FetchSpecCostAnalyzer.isInequality(operator)) {
+					sql = column + " IS NOT NULL";
+				} else if (FetchSpecCostAnalyzer.isLike(operator)) {
+					String pattern = FetchSpecCostAnalyzer.sqlForValue(value instanceof String ? ((String) value).replace('*', '%').replace('?', '_') : value);
+					if ("like".equalsIgnoreCase(operator) || "isLike".equalsIgnoreCase(operator)) {
+						sql = column + " LIKE " + pattern;
+					} else {
+						sql = "UPPER(" + column + ") LIKE UPPER(" + pattern + ")";
+					}
+				} else if ("contains".equalsIgnoreCase(operator) || "doesContain".equalsIgnoreCase(operator)) {
+					sql = column + " LIKE " + FetchSpecCostAnalyzer.sqlForValue(value instanceof String ? "%" + value + "%" : value);
+				} else {
+					sql = column + " " + FetchSpecCostAnalyzer.sqlForOperator(operator) + " " + FetchSpecCostAnalyzer.sqlForValue(value);
+				}
+			} else if (qualifier instanceof EOKeyComparisonQualifier) {
+				EOKeyComparisonQualifier keyComparisonQualifier = (EOKeyComparisonQualifier) qualifier;
+				sql = sqlForKeyPath(keyComparisonQualifier.getLeftKey()) + " " + FetchSpecCostAnalyzer.sqlForOperator(keyComparisonQualifier.getComparison().getName()) + " " + sqlForKeyPath(keyComparisonQualifier.getRightKey());
+			} else if (qualifier instanceof EOAggregateQualifier) {
+				List<String> sqls = new LinkedList<String>();
+				for (EOQualifier childQualifier : ((EOAggregateQualifier) qualifier).getQualifiers()) {
+					sqls.add(sqlForQualifier(childQualifier));
+				}
+				StringBuffer sb = new StringBuffer();
+				sb.append("(");
+				FetchSpecCostAnalyzer.append(sb, sqls, qualifier instanceof EOOrQualifier ? " OR " : " AND ");
+				sb.append(")");
+				sql = sb.toString();
+			} else if (qualifier instanceof EONotQualifier) {
+				sql = "NOT (" + sqlForQualifier(((EONotQualifier) qualifier).getQualifier()) + ")";
+			} else if (qualifier instanceof EOTruePredicate) {
+				sql = "1 = 1";
+			} else {
+				throw new IllegalArgumentException("Unknown qualifier '" + qualifier + "'.");
+			}
+			return sql;
+		}
+	}
+
+	protected static String sqlForOperator(String operator) {
+		String sqlOperator;
+		if (FetchSpecCostAnalyzer.isEquality(operator)) {
+			sqlOperator = "=";
+		} else if (FetchSpecCostAnalyzer.isInequality(operator)) {
+			sqlOperator = "<>";
+		} else if ("isLessThan".equalsIgnoreCase(operator)) {
+			sqlOperator = "<";
+		} else if ("isGreaterThan".equalsIgnoreCase(operator)) {
+			sqlOperator = ">";
+		} else if ("isLessThanOrEqualTo".equalsIgnoreCase(operator)) {
+			sqlOperator = "<=";
+		} else if ("isGreaterThanOrEqualTo".equalsIgnoreCase(operator)) {
+			sqlOperator = ">=";
+		} else {
+			sqlOperator = operator;
+		}
+		return sqlOperator;
+	}
+
+	protected static String sqlForValue(Object value) {
+		String sql;
+		if (value == null) {
+			sql = "NULL";
+		} else if (value instanceof EOQualifierVariable) {
+			sql = "?";
+		} else if (value instanceof Number) {
+			sql = value.toString();
+		} else if (value instanceof Boolean) {
+			sql = ((Boolean) value).booleanValue() ? "1" : "0";
+		} else if (value instanceof Date) {
+			sql = "'" + new Timestamp(((Date) value).getTime()) + "'";
+		} else {
+			sql = "'" + value.toString().replace("'", "''") + "'";
+		}
+		return sql;
+	}
+}
@@ -0,0 +1,531 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EODataType;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntityIndex;
+import org.objectstyle.wolips.eomodeler.core.model.EOJoin;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EORelationship;
+import org.objectstyle.wolips.eomodeler.core.utils.BooleanUtils;
+
+/**
+ * FetchSpecCostDatabase runs the statements of FetchSpecCostAnalyzer against
+ * an in-memory H2 database that has the tables, primary keys and entity
+ * indexes of the model, so that the reports show the plan a real optimizer
+ * picks and how long the statements take, next to the estimates.
+ * <p>
+ * The tables are filled with synthetic rows, as many as the analyzer's row
+ * count of each entity up to maxRowCount. Primary keys count up from 1,
+ * foreign keys point at existing rows, and every other column takes one of
+ * ten values, so that an equality matches about a tenth of the rows like the
+ * analyzer assumes. Qualifier variables are bound to the value 1 (or the
+ * matching date). The timings compare fetch specs on the same data; they
+ * don't predict production latency.
+ */
+public class FetchSpecCostDatabase {
+	public static final int DEFAULT_MAX_ROW_COUNT = 10000;
+
+	public static final int DEFAULT_EXECUTION_COUNT = 5;
+
+	protected static final String DRIVER_CLASS_NAME = "org.h2.Driver";
+
+	protected static final int BATCH_SIZE = 1000;
+
+	protected static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+	private static final AtomicInteger _databaseCount = new AtomicInteger();
+
+	private FetchSpecCostAnalyzer _analyzer;
+
+	private int _maxRowCount;
+
+	private int _executionCount;
+
+	private Connection _connection;
+
+	private Map<String, Long> _tableRowCounts;
+
+	private Map<String, String> _tableWarnings;
+
+	/**
+	 * Constructs a new FetchSpecCostDatabase.
+	 *
+	 * @param analyzer
+	 *            the analyzer whose row counts size the tables
+	 * @param maxRowCount
+	 *            the most rows that are inserted into one table
+	 * @param executionCount
+	 *            how many times each statement is executed to time it
+	 */
+	public FetchSpecCostDatabase(FetchSpecCostAnalyzer analyzer, int maxRowCount, int executionCount) {
+		_analyzer = analyzer;
+		_maxRowCount = maxRowCount;
+		_executionCount = Math.max(1, executionCount);
+		_tableRowCounts = new HashMap<String, Long>();
+		_tableWarnings = new HashMap<String, String>();
+	}
+
+	public FetchSpecCostAnalyzer getAnalyzer() {
+		return _analyzer;
+	}
+
+	/**
+	 * Opens a new, empty in-memory database.
+	 */
+	public void open() throws SQLException {
+		if (_connection != null) {
+			throw new IllegalStateException("The database is already open.");
+		}
+		try {
+			Class.forName(FetchSpecCostDatabase.DRIVER_CLASS_NAME);
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("The H2 driver " + FetchSpecCostDatabase.DRIVER_CLASS_NAME + " isn't available.");
+		}
+		_connection = DriverManager.getConnection("jdbc:h2:mem:fetchSpecCost" + _databaseCount.incrementAndGet(), "sa", "");
+	}
+
+	/**
+	 * Closes the database, which drops everything in it.
+	 */
+	public void close() {
+		if (_connection != null) {
+			try {
+				_connection.close();
+			} catch (SQLException e) {
+				// the in-memory database is gone either way
+			}
+			_connection = null;
+			_tableRowCounts.clear();
+			_tableWarnings.clear();
+		}
+	}
+
+	/**
+	 * Analyzes every fetch spec of the model like FetchSpecCostAnalyzer does,
+	 * and executes the statements of the reports in a database with the
+	 * tables of the model's group. The database is opened and closed around
+	 * the analysis.
+	 */
+	public List<FetchSpecCostReport> analyze(EOModel model) throws SQLException {
+		List<FetchSpecCostReport> reports = _analyzer.analyze(model);
+		open();
+		try {
+			Collection<EOEntity> entities = model.getModelGroup() == null ? model.getEntities() : model.getModelGroup().getEntities();
+			createTables(entities);
+			for (FetchSpecCostReport report : reports) {
+				execute(report);
+			}
+		} finally {
+			close();
+		}
+		return reports;
+	}
+
+	/**
+	 * Creates and fills a table for every external name of the entities. The
+	 * entities that share a table (single table inheritance) add their
+	 * columns and indexes to it. A table that H2 can't create is left out,
+	 * and the statements that read it get a warning.
+	 */
+	public void createTables(Collection<EOEntity> entities) throws SQLException {
+		Map<String, List<EOEntity>> tableEntities = new LinkedHashMap<String, List<EOEntity>>();
+		for (EOEntity entity : entities) {
+			String externalName = entity.getExternalName();
+			if (!entity.isPrototype() && externalName != null && externalName.length() > 0) {
+				String tableName = externalName.toUpperCase();
+				List<EOEntity> sameTableEntities = tableEntities.get(tableName);
+				if (sameTableEntities == null) {
+					sameTableEntities = new LinkedList<EOEntity>();
+					tableEntities.put(tableName, sameTableEntities);
+				}
+				sameTableEntities.add(entity);
+			}
+		}
+		for (Map.Entry<String, List<EOEntity>> entry : tableEntities.entrySet()) {
+			long rowCount = 0;
+			for (EOEntity entity : entry.getValue()) {
+				rowCount = Math.max(rowCount, Math.min(_analyzer.getRowCount(entity), _maxRowCount));
+			}
+			_tableRowCounts.put(entry.getKey(), Long.valueOf(rowCount));
+		}
+		Set<String> indexNames = new HashSet<String>();
+		for (Map.Entry<String, List<EOEntity>> entry : tableEntities.entrySet()) {
+			try {
+				createTable(entry.getKey(), entry.getValue(), indexNames);
+			} catch (SQLException e) {
+				_tableWarnings.put(entry.getKey(), e.getMessage());
+			}
+		}
+	}
+
+	protected void createTable(String tableName, List<EOEntity> entities, Set<String> indexNames) throws SQLException {
+		Map<String, Column> columns = new LinkedHashMap<String, Column>();
+		Set<String> primaryKeyColumnNames = new HashSet<String>();
+		for (EOEntity entity : entities) {
+			for (EOAttribute attribute : entity.getAttributes()) {
+				String columnName = attribute.getColumnName();
+				if (!attribute.isFlattened() && columnName != null && columnName.length() > 0 && !columns.containsKey(columnName.toUpperCase())) {
+					columns.put(columnName.toUpperCase(), new Column(columnName, attribute));
+				}
+			}
+			for (EOAttribute attribute : entity.getPrimaryKeyAttributes()) {
+				if (attribute.getColumnName() != null) {
+					primaryKeyColumnNames.add(attribute.getColumnName().toUpperCase());
+				}
+			}
+			for (EORelationship relationship : entity.getRelationships()) {
+				EOEntity destination = relationship.getDestination();
+				if (!BooleanUtils.isTrue(relationship.isToMany()) && !relationship.isFlattened() && destination != null && destination.getExternalName() != null) {
+					Long destinationRowCount = _tableRowCounts.get(destination.getExternalName().toUpperCase());
+					for (EOJoin join : relationship.getJoins()) {
+						EOAttribute sourceAttribute = join.getSourceAttribute();
+						Column column = sourceAttribute == null || sourceAttribute.getColumnName() == null ? null : columns.get(sourceAttribute.getColumnName().toUpperCase());
+						if (column != null && destinationRowCount != null) {
+							column.setForeignKeyRowCount(destinationRowCount.longValue());
+						}
+					}
+				}
+			}
+		}
+		if (columns.isEmpty()) {
+			throw new SQLException("The table " + tableName + " has no columns.");
+		}
+
+		StringBuffer createTable = new StringBuffer();
+		createTable.append("CREATE TABLE ").append(tableName).append(" (");
+		List<String> columnDefinitions = new LinkedList<String>();
+		List<String> primaryKeyColumns = new LinkedList<String>();
+		for (Column column : columns.values()) {
+			String columnDefinition = column.getName() + " " + column.getSQLTypeName();
+			if (primaryKeyColumnNames.contains(column.getName().toUpperCase())) {
+				column.setPrimaryKey(true);
+				primaryKeyColumns.add(column.getName());
+				columnDefinition += " NOT NULL";
+			}
+			columnDefinitions.add(columnDefinition);
+		}
+		if (!primaryKeyColumns.isEmpty()) {
+			columnDefinitions.add("PRIMARY KEY (" + FetchSpecCostAnalyzer.append(new StringBuffer(), primaryKeyColumns, ", ") + ")");
+		}
+		FetchSpecCostAnalyzer.append(createTable, columnDefinitions, ", ");
+		createTable.append(")");
+
+		Statement statement = _connection.createStatement();
+		try {
+			statement.execute(createTable.toString());
+			for (EOEntity entity : entities) {
+				for (EOEntityIndex entityIndex : entity.getEntityIndexes()) {
+					String createIndex = createIndexSQL(tableName, entityIndex, indexNames);
+					if (createIndex != null) {
+						statement.execute(createIndex);
+					}
+				}
+			}
+			insertRows(tableName, columns.values());
+			statement.execute("ANALYZE TABLE " + tableName);
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Returns the SQL that creates the entity index, or null if H2 can't
+	 * create it. Index names are unique across the database in H2, so a name
+	 * that is already used gets a number.
+	 */
+	protected String createIndexSQL(String tableName, EOEntityIndex entityIndex, Set<String> indexNames) {
+		EOEntityIndex.Constraint constraint = entityIndex.getConstraint();
+		if (constraint == EOEntityIndex.Constraint.FullText || constraint == EOEntityIndex.Constraint.Spatial || entityIndex.getAttributes().isEmpty()) {
+			return null;
+		}
+		List<String> columnNames = new LinkedList<String>();
+		for (EOAttribute attribute : entityIndex.getAttributes()) {
+			if (attribute.getColumnName() == null || attribute.getColumnName().length() == 0) {
+				return null;
+			}
+			columnNames.add(attribute.getColumnName());
+		}
+		String indexName = entityIndex.getName() == null ? tableName + "_INDEX" : entityIndex.getName();
+		String uniqueIndexName = indexName;
+		for (int i = 2; !indexNames.add(uniqueIndexName.toUpperCase()); i++) {
+			uniqueIndexName = indexName + "_" + i;
+		}
+		StringBuffer sql = new StringBuffer();
+		sql.append("CREATE ");
+		if (constraint == EOEntityIndex.Constraint.Distinct) {
+			sql.append("UNIQUE ");
+		} else if (entityIndex.getIndexType() == EOEntityIndex.IndexType.Hashed) {
+			sql.append("HASH ");
+		}
+		sql.append("INDEX \"").append(uniqueIndexName.replace("\"", "")).append("\" ON ").append(tableName).append(" (");
+		FetchSpecCostAnalyzer.append(sql, columnNames, ", ");
+		sql.append(")");
+		return sql.toString();
+	}
+
+	protected void insertRows(String tableName, Collection<Column> columns) throws SQLException {
+		long rowCount = getTableRowCount(tableName);
+		List<String> columnNames = new LinkedList<String>();
+		List<String> parameters = new LinkedList<String>();
+		for (Column column : columns) {
+			columnNames.add(column.getName());
+			parameters.add("?");
+		}
+		StringBuffer sql = new StringBuffer();
+		sql.append("INSERT INTO ").append(tableName).append(" (");
+		FetchSpecCostAnalyzer.append(sql, columnNames, ", ");
+		sql.append(") VALUES (");
+		FetchSpecCostAnalyzer.append(sql, parameters, ", ");
+		sql.append(")");
+		PreparedStatement insert = _connection.prepareStatement(sql.toString());
+		try {
+			for (long row = 0; row < rowCount; row++) {
+				int parameterIndex = 1;
+				for (Column column : columns) {
+					FetchSpecCostDatabase.setValue(insert, parameterIndex++, column.getSQLType(), column.getValue(row), column.getWidth());
+				}
+				insert.addBatch();
+				if ((row + 1) % FetchSpecCostDatabase.BATCH_SIZE == 0) {
+					insert.executeBatch();
+				}
+			}
+			insert.executeBatch();
+		} finally {
+			insert.close();
+		}
+	}
+
+	/**
+	 * Returns the number of synthetic rows in the table, or 0 if it doesn't
+	 * exist.
+	 */
+	public long getTableRowCount(String tableName) {
+		Long rowCount = tableName == null ? null : _tableRowCounts.get(tableName.toUpperCase());
+		return rowCount == null ? 0 : rowCount.longValue();
+	}
+
+	/**
+	 * Explains and times each statement of the report, and adds the results
+	 * to it. A statement that H2 doesn't run gets a warning instead.
+	 */
+	public void execute(FetchSpecCostReport report) {
+		if (_connection == null) {
+			throw new IllegalStateException("The database isn't open.");
+		}
+		for (FetchSpecCostReport.TableAccess tableAccess : report.getTableAccesses()) {
+			String tableWarning = tableAccess.getTableName() == null ? null : _tableWarnings.get(tableAccess.getTableName().toUpperCase());
+			if (tableWarning != null) {
+				report.addWarning("The table " + tableAccess.getTableName() + " couldn't be created in H2: " + tableWarning);
+			}
+		}
+		for (String statement : report.getStatements()) {
+			try {
+				report.addExecution(execute(statement));
+			} catch (SQLException e) {
+				report.addWarning("H2 couldn't run " + statement + ": " + e.getMessage());
+			}
+		}
+	}
+
+	protected FetchSpecCostReport.Execution execute(String sql) throws SQLException {
+		String plan;
+		PreparedStatement explain = _connection.prepareStatement("EXPLAIN " + sql);
+		try {
+			FetchSpecCostDatabase.bindParameters(explain);
+			ResultSet planResultSet = explain.executeQuery();
+			try {
+				StringBuffer planBuffer = new StringBuffer();
+				while (planResultSet.next()) {
+					planBuffer.append(planResultSet.getString(1));
+				}
+				plan = planBuffer.toString().replaceAll("\\s*\n\\s*", " ").trim();
+			} finally {
+				planResultSet.close();
+			}
+		} finally {
+			explain.close();
+		}
+
+		long rowsReturned = 0;
+		long totalNanos = 0;
+		PreparedStatement query = _connection.prepareStatement(sql);
+		try {
+			FetchSpecCostDatabase.bindParameters(query);
+			// the first execution warms up the caches and isn't timed
+			for (int execution = 0; execution <= _executionCount; execution++) {
+				long startNanos = System.nanoTime();
+				ResultSet resultSet = query.executeQuery();
+				try {
+					rowsReturned = 0;
+					while (resultSet.next()) {
+						rowsReturned++;
+					}
+				} finally {
+					resultSet.close();
+				}
+				if (execution > 0) {
+					totalNanos += System.nanoTime() - startNanos;
+				}
+			}
+		} finally {
+			query.close();
+		}
+		return new FetchSpecCostReport.Execution(sql, plan, rowsReturned, totalNanos / _executionCount);
+	}
+
+	protected static void bindParameters(PreparedStatement statement) throws SQLException {
+		ParameterMetaData parameterMetaData = statement.getParameterMetaData();
+		for (int parameterIndex = 1; parameterIndex <= parameterMetaData.getParameterCount(); parameterIndex++) {
+			FetchSpecCostDatabase.setValue(statement, parameterIndex, parameterMetaData.getParameterType(parameterIndex), 1, 0);
+		}
+	}
+
+	/**
+	 * Binds the synthetic value for the given number to a parameter of the
+	 * given JDBC type.
+	 */
+	protected static void setValue(PreparedStatement statement, int parameterIndex, int sqlType, long value, int width) throws SQLException {
+		switch (sqlType) {
+		case Types.BIGINT:
+		case Types.INTEGER:
+		case Types.SMALLINT:
+		case Types.TINYINT:
+		case Types.BOOLEAN:
+		case Types.BIT:
+			statement.setLong(parameterIndex, value);
+			break;
+		case Types.DOUBLE:
+		case Types.FLOAT:
+		case Types.REAL:
+			statement.setDouble(parameterIndex, value);
+			break;
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			statement.setBigDecimal(parameterIndex, BigDecimal.valueOf(value));
+			break;
+		case Types.TIMESTAMP:
+		case Types.DATE:
+		case Types.TIME:
+			statement.setTimestamp(parameterIndex, new Timestamp(value * FetchSpecCostDatabase.DAY_MILLIS));
+			break;
+		case Types.VARBINARY:
+		case Types.BINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			statement.setNull(parameterIndex, sqlType);
+			break;
+		default:
+			String str = String.valueOf(value);
+			statement.setString(parameterIndex, width > 0 && str.length() > width ? str.substring(0, width) : str);
+			break;
+		}
+	}
+
+	/**
+	 * Column is a column of one of the tables, with the synthetic values that
+	 * are inserted into it.
+	 */
+	protected static class Column {
+		private String _name;
+
+		private int _sqlType;
+
+		private String _sqlTypeName;
+
+		private int _width;
+
+		private boolean _primaryKey;
+
+		private long _foreignKeyRowCount;
+
+		public Column(String name, EOAttribute attribute) {
+			_name = name;
+			EODataType dataType = attribute.getDataType();
+			String valueClass = dataType == null ? null : dataType.getValueClass();
+			String javaValueClass = dataType == null ? null : dataType.getJavaValueClass();
+			Integer width = attribute.getWidth();
+			if ("NSNumber".equals(valueClass) && (Float.class.getName().equals(javaValueClass) || Double.class.getName().equals(javaValueClass))) {
+				_sqlType = Types.DOUBLE;
+				_sqlTypeName = "DOUBLE";
+			} else if ("NSNumber".equals(valueClass)) {
+				_sqlType = Types.BIGINT;
+				_sqlTypeName = "BIGINT";
+			} else if ("NSDecimalNumber".equals(valueClass)) {
+				Integer precision = attribute.getPrecision();
+				Integer scale = attribute.getScale();
+				_sqlType = Types.DECIMAL;
+				_sqlTypeName = "DECIMAL(" + (precision == null || precision.intValue() <= 0 ? 38 : precision.intValue()) + ", " + (scale == null || scale.intValue() < 0 ? 0 : scale.intValue()) + ")";
+			} else if ("NSCalendarDate".equals(valueClass)) {
+				_sqlType = Types.TIMESTAMP;
+				_sqlTypeName = "TIMESTAMP";
+			} else if ("NSData".equals(valueClass)) {
+				_sqlType = Types.VARBINARY;
+				_sqlTypeName = "VARBINARY";
+			} else {
+				_width = width == null || width.intValue() <= 0 ? 255 : width.intValue();
+				_sqlType = Types.VARCHAR;
+				_sqlTypeName = "VARCHAR(" + _width + ")";
+			}
+		}
+
+		public String getName() {
+			return _name;
+		}
+
+		public int getSQLType() {
+			return _sqlType;
+		}
+
+		public String getSQLTypeName() {
+			return _sqlTypeName;
+		}
+
+		public int getWidth() {
+			return _width;
+		}
+
+		public void setPrimaryKey(boolean primaryKey) {
+			_primaryKey = primaryKey;
+		}
+
+		public void setForeignKeyRowCount(long foreignKeyRowCount) {
+			_foreignKeyRowCount = foreignKeyRowCount;
+		}
+
+		/**
+		 * Returns the number the value of the given row is made from.
+		 */
+		public long getValue(long row) {
+			long value;
+			if (_primaryKey) {
+				value = row + 1;
+			} else if (_foreignKeyRowCount > 0) {
+				value = row % _foreignKeyRowCount + 1;
+			} else {
+				value = row % 10;
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOFetchSpecification;
+
+/**
+ * FetchSpecCostReport is what FetchSpecCostAnalyzer found out about one fetch
+ * spec: the SQL it turns into, how each table is read, whether the rows have
+ * to be sorted, and roughly how many rows are read and returned. If the
+ * statements were run by a FetchSpecCostDatabase, it also has their plans
+ * and timings.
+ */
+public class FetchSpecCostReport {
+	public static enum AccessType {
+		/** Every row of the table is read. */
+		Scan("SCAN"),
+		/** The rows are found through an entity index. */
+		Index("INDEX"),
+		/** The rows are found through the primary key. */
+		PrimaryKey("PRIMARY KEY");
+
+		private String _displayName;
+
+		private AccessType(String displayName) {
+			_displayName = displayName;
+		}
+
+		public String getDisplayName() {
+			return _displayName;
+		}
+	}
+
+	/**
+	 * TableAccess is how one table of one of the statements is read.
+	 */
+	public static class TableAccess {
+		private String _tableName;
+
+		private String _alias;
+
+		private FetchSpecCostReport.AccessType _accessType;
+
+		private String _indexName;
+
+		private long _rowsRead;
+
+		private String _description;
+
+		public TableAccess(String tableName, String alias, FetchSpecCostReport.AccessType accessType, String indexName, long rowsRead, String description) {
+			_tableName = tableName;
+			_alias = alias;
+			_accessType = accessType;
+			_indexName = indexName;
+			_rowsRead = rowsRead;
+			_description = description;
+		}
+
+		public String getTableName() {
+			return _tableName;
+		}
+
+		public String getAlias() {
+			return _alias;
+		}
+
+		public FetchSpecCostReport.AccessType getAccessType() {
+			return _accessType;
+		}
+
+		/**
+		 * Returns the name of the entity index that is used, or null.
+		 */
+		public String getIndexName() {
+			return _indexName;
+		}
+
+		public long getRowsRead() {
+			return _rowsRead;
+		}
+
+		/**
+		 * Returns why the table is read the way it is.
+		 */
+		public String getDescription() {
+			return _description;
+		}
+
+		public String toString() {
+			StringBuffer sb = new StringBuffer();
+			sb.append(_accessType.getDisplayName());
+			if (_indexName != null) {
+				sb.append(" ").append(_indexName);
+			}
+			sb.append(" ").append(_tableName);
+			if (_alias != null) {
+				sb.append(" ").append(_alias);
+			}
+			sb.append(": ").append(_rowsRead).append(" rows read");
+			if (_description != null) {
+				sb.append(" (").append(_description).append(")");
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Execution is how one of the statements ran in a FetchSpecCostDatabase.
+	 */
+	public static class Execution {
+		private String _statement;
+
+		private String _plan;
+
+		private long _rowsReturned;
+
+		private long _nanos;
+
+		public Execution(String statement, String plan, long rowsReturned, long nanos) {
+			_statement = statement;
+			_plan = plan;
+			_rowsReturned = rowsReturned;
+			_nanos = nanos;
+		}
+
+		public String getStatement() {
+			return _statement;
+		}
+
+		/**
+		 * Returns the plan H2 explains for the statement.
+		 */
+		public String getPlan() {
+			return _plan;
+		}
+
+		public long getRowsReturned() {
+			return _rowsReturned;
+		}
+
+		/**
+		 * Returns the average time of an execution, in nanoseconds.
+		 */
+		public long getNanos() {
+			return _nanos;
+		}
+
+		public String toString() {
+			return "EXECUTED: " + _rowsReturned + " rows in " + (_nanos / 1000) / 1000.0 + " ms, PLAN: " + _plan;
+		}
+	}
+
+	private EOFetchSpecification _fetchSpec;
+
+	private EOEntity _entity;
+
+	private long _entityRowCount;
+
+	private List<String> _statements;
+
+	private List<FetchSpecCostReport.TableAccess> _tableAccesses;
+
+	private long _sortedRowCount;
+
+	private long _rowsReturned;
+
+	private List<FetchSpecCostReport.Execution> _executions;
+
+	private List<String> _warnings;
+
+	public FetchSpecCostReport(EOFetchSpecification fetchSpec, EOEntity entity, long entityRowCount) {
+		_fetchSpec = fetchSpec;
+		_entity = entity;
+		_entityRowCount = entityRowCount;
+		_statements = new LinkedList<String>();
+		_tableAccesses = new LinkedList<FetchSpecCostReport.TableAccess>();
+		_executions = new LinkedList<FetchSpecCostReport.Execution>();
+		_warnings = new LinkedList<String>();
+		_sortedRowCount = -1;
+	}
+
+	public EOFetchSpecification getFetchSpecification() {
+		return _fetchSpec;
+	}
+
+	public EOEntity getEntity() {
+		return _entity;
+	}
+
+	/**
+	 * Returns the number of rows of the fetch spec's entity that the estimates
+	 * are based on.
+	 */
+	public long getEntityRowCount() {
+		return _entityRowCount;
+	}
+
+	public void addStatement(String statement) {
+		_statements.add(statement);
+	}
+
+	/**
+	 * Returns the SQL of the fetch, followed by one statement per prefetched
+	 * relationship.
+	 */
+	public List<String> getStatements() {
+		return _statements;
+	}
+
+	public void addTableAccess(FetchSpecCostReport.TableAccess tableAccess) {
+		_tableAccesses.add(tableAccess);
+	}
+
+	public List<FetchSpecCostReport.TableAccess> getTableAccesses() {
+		return _tableAccesses;
+	}
+
+	/**
+	 * Returns the tables that are read in full.
+	 */
+	public List<FetchSpecCostReport.TableAccess> getScans() {
+		List<FetchSpecCostReport.TableAccess> scans = new LinkedList<FetchSpecCostReport.TableAccess>();
+		for (FetchSpecCostReport.TableAccess tableAccess : _tableAccesses) {
+			if (tableAccess.getAccessType() == FetchSpecCostReport.AccessType.Scan) {
+				scans.add(tableAccess);
+			}
+		}
+		return scans;
+	}
+
+	public void setSortedRowCount(long sortedRowCount) {
+		_sortedRowCount = sortedRowCount;
+	}
+
+	/**
+	 * Returns the number of rows the database has to sort because no index
+	 * gives it the sort orderings, or -1 if it doesn't have to sort.
+	 */
+	public long getSortedRowCount() {
+		return _sortedRowCount;
+	}
+
+	public boolean isSorted() {
+		return _sortedRowCount >= 0;
+	}
+
+	public void setRowsReturned(long rowsReturned) {
+		_rowsReturned = rowsReturned;
+	}
+
+	/**
+	 * Returns the estimated number of rows of the fetch spec's entity that the
+	 * fetch returns.
+	 */
+	public long getRowsReturned() {
+		return _rowsReturned;
+	}
+
+	/**
+	 * Returns the estimated number of rows that are read from all of the
+	 * tables, which is what the fetch specs are ranked by.
+	 */
+	public long getRowsRead() {
+		long rowsRead = 0;
+		for (FetchSpecCostReport.TableAccess tableAccess : _tableAccesses) {
+			rowsRead += tableAccess.getRowsRead();
+		}
+		return rowsRead;
+	}
+
+	public void addExecution(FetchSpecCostReport.Execution execution) {
+		_executions.add(execution);
+	}
+
+	/**
+	 * Returns how the statements ran in a FetchSpecCostDatabase, in the order
+	 * of the statements, or an empty list if they weren't run.
+	 */
+	public List<FetchSpecCostReport.Execution> getExecutions() {
+		return _executions;
+	}
+
+	public void addWarning(String warning) {
+		_warnings.add(warning);
+	}
+
+	public List<String> getWarnings() {
+		return _warnings;
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(_entity == null ? null : _entity.getName()).append(".").append(_fetchSpec.getName());
+		sb.append(" (").append(_entityRowCount).append(" rows)\n");
+		for (String statement : _statements) {
+			sb.append("  ").append(statement).append("\n");
+		}
+		for (FetchSpecCostReport.TableAccess tableAccess : _tableAccesses) {
+			sb.append("  ").append(tableAccess).append("\n");
+		}
+		if (isSorted()) {
+			sb.append("  SORT: ").append(_sortedRowCount).append(" rows\n");
+		}
+		for (FetchSpecCostReport.Execution execution : _executions) {
+			sb.append("  ").append(execution).append("\n");
+		}
+		sb.append("  about ").append(_rowsReturned).append(" rows returned, ").append(getRowsRead()).append(" rows read\n");
+		for (String warning : _warnings) {
+			sb.append("  warning: ").append(warning).append("\n");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+public class EOChangeBatchTest extends TestCase {
+	private File _folder;
+
+	private File _modelFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_folder = EOModelFixtures.temporaryFolder("EOChangeBatchTest");
+		_modelFolder = new File(_folder, "ChangeBatch.eomodeld");
+		EOModelFixtures.writeModel(_modelFolder, 20);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testBatchedEditAnnouncesTheSameChanges() throws Exception {
+		CountingListener unbatchedListener = new CountingListener();
+		EOModel unbatchedModel = loadModel(unbatchedListener);
+		EOModelFixtures.bulkEdit(unbatchedModel);
+
+		CountingListener batchedListener = new CountingListener();
+		EOModel batchedModel = loadModel(batchedListener);
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			EOModelFixtures.bulkEdit(batchedModel);
+			assertTrue(batch.getChangeCount() > 0);
+			assertEquals("notifications delivered while the batch was open", 0, batchedListener.getCount());
+		} finally {
+			batch.end();
+		}
+
+		assertEquals(describe(unbatchedModel), describe(batchedModel));
+		assertEquals(unbatchedListener.getChangedProperties(), batchedListener.getChangedProperties());
+		assertTrue(batchedListener.getCount() < unbatchedListener.getCount());
+	}
+
+	/**
+	 * Loads the model and registers the listener with the model and all of its
+	 * entities, attributes and relationships.
+	 */
+	protected EOModel loadModel(CountingListener listener) throws Exception {
+		EOModel model = EOModelFixtures.loadModelGroup(_modelFolder).getModels().iterator().next();
+		EOModelFixtures.addPropertyChangeListener(model, listener);
+		return model;
+	}
+
+	protected String describe(EOModel model) {
+		Set<String> lines = new TreeSet<String>();
+		for (EOEntity entity : model.getEntities()) {
+			for (EOAttribute attribute : entity.getAttributes()) {
+				lines.add(attribute.getFullyQualifiedName() + "=" + attribute.getColumnName());
+			}
+			lines.add(entity.getFullyQualifiedName() + ".userInfo=" + entity.getUserInfo());
+		}
+		return lines.toString();
+	}
+
+	/**
+	 * CountingListener counts the notifications it hears and remembers which
+	 * properties of which objects they were about.
+	 */
+	protected static class CountingListener implements PropertyChangeListener {
+		private int _count;
+
+		private Map<Object, Set<String>> _changedProperties = new IdentityHashMap<Object, Set<String>>();
+
+		public void propertyChange(PropertyChangeEvent event) {
+			_count++;
+			Set<String> changedProperties = _changedProperties.get(event.getSource());
+			if (changedProperties == null) {
+				changedProperties = new LinkedHashSet<String>();
+				_changedProperties.put(event.getSource(), changedProperties);
+			}
+			changedProperties.add(event.getPropertyName());
+		}
+
+		public int getCount() {
+			return _count;
+		}
+
+		/**
+		 * Returns "fully qualified name#property" for every property that
+		 * changed, with the names the objects have now.
+		 */
+		public Set<String> getChangedProperties() {
+			Set<String> changedProperties = new TreeSet<String>();
+			for (Map.Entry<Object, Set<String>> entry : _changedProperties.entrySet()) {
+				String name = ((EOModelObject) entry.getKey()).getFullyQualifiedName();
+				for (String propertyName : entry.getValue()) {
+					changedProperties.add(name + "#" + propertyName);
+				}
+			}
+			return changedProperties;
+		}
+	}
+}
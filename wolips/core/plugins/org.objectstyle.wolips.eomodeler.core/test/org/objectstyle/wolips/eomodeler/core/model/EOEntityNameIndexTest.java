@@ -0,0 +1,193 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.wolips.baseforplugins.util.ComparisonUtils;
+
+public class EOEntityNameIndexTest extends TestCase {
+	public void testLookupsMatchScans() throws Exception {
+		Random random = new Random(42);
+		EOModelGroup modelGroup = new EOModelGroup();
+		EOModel model = new EOModel("Mutations");
+		modelGroup.addModel(model);
+		EOEntity entity = new EOEntity("Mutated");
+		model.addEntity(entity);
+		for (int mutation = 0; mutation < 5000; mutation++) {
+			String name = "name" + random.nextInt(60);
+			boolean fireEvents = random.nextBoolean();
+			try {
+				switch (random.nextInt(10)) {
+				case 0:
+					entity.addAttribute(new EOAttribute(name), fireEvents, null);
+					break;
+				case 1:
+					entity.addRelationship(new EORelationship(name), true, null, fireEvents);
+					break;
+				case 2:
+					entity.addFetchSpecification(new EOFetchSpecification(name), fireEvents, null);
+					break;
+				case 3:
+					if (!entity.getAttributes().isEmpty()) {
+						entity.removeAttribute(EOModelFixtures.pick(entity.getAttributes(), random), false);
+					}
+					break;
+				case 4:
+					if (!entity.getRelationships().isEmpty()) {
+						entity.removeRelationship(EOModelFixtures.pick(entity.getRelationships(), random), false);
+					}
+					break;
+				case 5:
+					if (!entity.getFetchSpecs().isEmpty()) {
+						entity.removeFetchSpecification(EOModelFixtures.pick(entity.getFetchSpecs(), random));
+					}
+					break;
+				case 6:
+					if (!entity.getAttributes().isEmpty()) {
+						EOModelFixtures.pick(entity.getAttributes(), random).setName(name, fireEvents);
+					}
+					break;
+				case 7:
+					if (!entity.getRelationships().isEmpty()) {
+						EOModelFixtures.pick(entity.getRelationships(), random).setName(name, fireEvents);
+					}
+					break;
+				case 8:
+					if (!entity.getFetchSpecs().isEmpty()) {
+						EOModelFixtures.pick(entity.getFetchSpecs(), random).setName(name, fireEvents);
+					}
+					break;
+				default:
+					Set<EOAttribute> attributes = new HashSet<EOAttribute>();
+					for (EOAttribute attribute : entity.getAttributes()) {
+						if (random.nextBoolean()) {
+							attributes.add(attribute);
+						}
+					}
+					entity.setAttributes(attributes);
+					break;
+				}
+			} catch (DuplicateNameException e) {
+				// the entity refused the name, which is fine
+			}
+			for (int nameNum = 0; nameNum < 60; nameNum++) {
+				String lookupName = "name" + nameNum;
+				assertLookup(mutation, lookupName, entity.getAttributeNamed(lookupName), entity.getAttributes());
+				assertLookup(mutation, lookupName, entity.getRelationshipNamed(lookupName), entity.getRelationships());
+				assertLookup(mutation, lookupName, entity.getFetchSpecNamed(lookupName), entity.getFetchSpecs());
+			}
+		}
+	}
+
+	protected <T extends EOModelObject<?>> void assertLookup(int mutation, String name, T object, Set<T> objects) {
+		T scannedObject = null;
+		for (T candidate : objects) {
+			if (ComparisonUtils.equals(candidate.getName(), name)) {
+				scannedObject = candidate;
+			}
+		}
+		assertSame("lookup of '" + name + "' after mutation " + mutation, scannedObject, object);
+	}
+
+	/**
+	 * The name of a prototyped attribute comes from its prototype, which
+	 * takes the load lock of the model group, so the index must not hold its
+	 * monitor while it reads names.
+	 */
+	public void testNamesAreReadOutsideTheIndex() throws Exception {
+		final EOModelObjectNameIndex<EOAttribute> index = new EOModelObjectNameIndex<EOAttribute>();
+		Set<EOAttribute> attributes = new HashSet<EOAttribute>();
+		for (int attributeNum = 0; attributeNum < 10; attributeNum++) {
+			attributes.add(new EOAttribute("attribute" + attributeNum) {
+				@Override
+				public String getName() {
+					assertFalse("the name was read inside the index", Thread.holdsLock(index));
+					return super.getName();
+				}
+			});
+		}
+		EOAttribute attribute = index.getObjectNamed("attribute3", attributes);
+		assertEquals("attribute3", attribute.getName());
+		attribute.setName("renamed", false);
+		assertNull(index.getObjectNamed("attribute3", attributes));
+		assertSame(attribute, index.getObjectNamed("renamed", attributes));
+		index.objectRemoved(attribute);
+		attributes.remove(attribute);
+		EOAttribute addedAttribute = new EOAttribute("added");
+		attributes.add(addedAttribute);
+		index.objectAdded(addedAttribute);
+		assertSame(addedAttribute, index.getObjectNamed("added", attributes));
+		assertNull(index.getObjectNamed("renamed", attributes));
+	}
+
+	public void testWideEntity() throws Exception {
+		File folder = EOModelFixtures.temporaryFolder("EOEntityNameIndexTest");
+		try {
+			File modelFolder = new File(folder, "Wide.eomodeld");
+			EOModelFixtures.writeWideModel(modelFolder, 300);
+			EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(modelFolder);
+			EOEntity entity = modelGroup.getEntityNamed("Wide");
+			assertEquals(331, entity.getAttributes().size());
+			assertEquals(30, entity.getRelationships().size());
+			assertNotNull(entity.getAttributeNamed("attribute299"));
+			assertSame(modelGroup.getEntityNamed("Target"), entity.getRelationshipNamed("target29").getDestination());
+			modelGroup.verify(new LinkedHashSet<EOModelVerificationFailure>());
+		} finally {
+			EOModelFixtures.delete(folder);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class EOIncrementalVerificationTest extends TestCase {
+	private File _folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_folder = EOModelFixtures.temporaryFolder("EOIncrementalVerificationTest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testSingleAttributeChanges() throws Exception {
+		File modelFolder = new File(_folder, "Verification.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, 100);
+		EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(modelFolder);
+		modelGroup.verify(new LinkedHashSet<EOModelVerificationFailure>(), true);
+		Random random = new Random(42);
+		for (int change = 0; change < 20; change++) {
+			EOAttribute attribute = EOModelFixtures.pick(EOModelFixtures.pick(modelGroup.getEntities(), random).getAttributes(), random);
+			attribute.setAllowsNull(Boolean.valueOf(!Boolean.TRUE.equals(attribute.isAllowsNull())));
+			Set<EOModelVerificationFailure> fullFailures = new LinkedHashSet<EOModelVerificationFailure>();
+			modelGroup.verify(fullFailures, false);
+			Set<EOModelVerificationFailure> incrementalFailures = new LinkedHashSet<EOModelVerificationFailure>();
+			modelGroup.verify(incrementalFailures, true);
+			assertEquals("after change " + change, describe(fullFailures), describe(incrementalFailures));
+		}
+	}
+
+	public void testLazyLoadingIsNotAChange() throws Exception {
+		File modelFolder = new File(_folder, "Lazy.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, 50);
+		boolean lazyLoading = EOModel.isLazyLoading();
+		EOModel.setLazyLoading(true);
+		try {
+			EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(modelFolder);
+			Set<EOModelVerificationFailure> firstFailures = new LinkedHashSet<EOModelVerificationFailure>();
+			modelGroup.verify(firstFailures, true);
+			assertEquals(modelGroup.getEntities().size(), modelGroup._getVerificationCache().getVerifiedEntityCount());
+			Set<EOModelVerificationFailure> secondFailures = new LinkedHashSet<EOModelVerificationFailure>();
+			modelGroup.verify(secondFailures, true);
+			assertEquals(0, modelGroup._getVerificationCache().getVerifiedEntityCount());
+			assertEquals(describe(firstFailures), describe(secondFailures));
+		} finally {
+			EOModel.setLazyLoading(lazyLoading);
+		}
+	}
+
+	public void testInvalidateWhileVerifying() throws Exception {
+		File modelFolder = new File(_folder, "Invalidated.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, 20);
+		EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(modelFolder);
+		Set<EOModelVerificationFailure> fullFailures = new LinkedHashSet<EOModelVerificationFailure>();
+		modelGroup.verify(fullFailures, false);
+		final boolean[] invalidating = new boolean[1];
+		EOVerificationCache verificationCache = new EOVerificationCache(modelGroup.getModels()) {
+			@Override
+			protected Set<EOEntity> _dependencies(EOEntity entity) {
+				// the stale entities are verified outside of the lock, where
+				// the model group can discard the cache at any time
+				if (invalidating[0]) {
+					invalidate();
+				}
+				return super._dependencies(entity);
+			}
+		};
+		verificationCache.verify(modelGroup.getModels(), new LinkedHashSet<EOModelVerificationFailure>(), new VerificationContext(modelGroup));
+		verificationCache.entityChanged(modelGroup.getEntityNamed("Entity5"));
+		invalidating[0] = true;
+		Set<EOModelVerificationFailure> incrementalFailures = new LinkedHashSet<EOModelVerificationFailure>();
+		verificationCache.verify(modelGroup.getModels(), incrementalFailures, new VerificationContext(modelGroup));
+		assertEquals(describe(fullFailures), describe(incrementalFailures));
+	}
+
+	public void testRandomMutations() throws Exception {
+		File modelFolder = new File(_folder, "Small.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, 20);
+		EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(modelFolder);
+		Random random = new Random(42);
+		EOModel model = modelGroup.getModels().iterator().next();
+		int nameNum = 0;
+		for (int mutation = 0; mutation < 1000; mutation++) {
+			if (model.getEntities().size() < 4) {
+				model.addEntity(new EOEntity("Entity" + nameNum++));
+			}
+			EOEntity entity = EOModelFixtures.pick(model.getEntities(), random);
+			EOEntity otherEntity = EOModelFixtures.pick(model.getEntities(), random);
+			EOAttribute attribute = entity.getAttributes().isEmpty() ? null : EOModelFixtures.pick(entity.getAttributes(), random);
+			EORelationship relationship = entity.getRelationships().isEmpty() ? null : EOModelFixtures.pick(entity.getRelationships(), random);
+			try {
+				switch (random.nextInt(13)) {
+				case 0:
+					if (attribute != null) {
+						attribute.setName((random.nextBoolean() ? "attribute" : "Attribute") + nameNum++);
+					}
+					break;
+				case 1:
+					entity.setName((random.nextBoolean() ? "Entity" : "entity") + nameNum++);
+					break;
+				case 2:
+					if (relationship != null) {
+						relationship.setDestination(random.nextInt(4) == 0 ? null : otherEntity);
+					}
+					break;
+				case 3:
+					boolean cycle = false;
+					for (EOEntity parent = otherEntity; !cycle && parent != null; parent = parent.getParent()) {
+						cycle = parent == entity;
+					}
+					entity.setParent(cycle || random.nextInt(3) == 0 ? null : otherEntity);
+					break;
+				case 4:
+					entity.setPartialEntity(random.nextInt(3) == 0 || otherEntity == entity ? null : otherEntity);
+					break;
+				case 5:
+					String[] externalNames = { null, "TABLE", "SOME TABLE", otherEntity.getExternalName() };
+					entity.setExternalName(externalNames[random.nextInt(externalNames.length)]);
+					break;
+				case 6:
+					if (attribute != null) {
+						EOAttribute otherAttribute = EOModelFixtures.pick(entity.getAttributes(), random);
+						attribute.setColumnName(random.nextBoolean() ? otherAttribute.getColumnName() : "COLUMN" + nameNum++);
+					}
+					break;
+				case 7:
+					if (attribute != null) {
+						attribute.setAllowsNull(Boolean.valueOf(random.nextBoolean()));
+					}
+					if (relationship != null) {
+						relationship.setMandatory(Boolean.valueOf(random.nextBoolean()));
+					}
+					break;
+				case 8:
+					if (relationship != null) {
+						relationship.setToMany(Boolean.valueOf(random.nextBoolean()));
+						relationship.setPropagatesPrimaryKey(Boolean.valueOf(random.nextBoolean()));
+					}
+					break;
+				case 9:
+					if (random.nextBoolean()) {
+						model.removeEntity(entity);
+					} else {
+						model.addEntity(new EOEntity("Entity" + nameNum++));
+					}
+					break;
+				case 10:
+					if (relationship != null && relationship.getDestination() != null && !relationship.getDestination().getRelationships().isEmpty()) {
+						EORelationship flattenedRelationship = new EORelationship("flattened" + nameNum++);
+						flattenedRelationship.setDefinition(relationship.getName() + "." + EOModelFixtures.pick(relationship.getDestination().getRelationships(), random).getName());
+						entity.addRelationship(flattenedRelationship);
+					}
+					break;
+				case 11:
+					if (relationship != null) {
+						relationship.setName((random.nextBoolean() ? "relationship" : "Relationship") + nameNum++);
+					}
+					break;
+				default:
+					if (relationship != null) {
+						entity.removeRelationship(relationship, false);
+					}
+					break;
+				}
+			} catch (DuplicateNameException e) {
+				// renaming an attribute or relationship renames it in the
+				// subclasses too, where the name can be taken
+			}
+
+			// verifying adds the inherited attributes and relationships that
+			// are missing, and reports them once, so the model is settled first
+			modelGroup.verify(new LinkedHashSet<EOModelVerificationFailure>(), false);
+			Set<EOModelVerificationFailure> incrementalFailures = new LinkedHashSet<EOModelVerificationFailure>();
+			modelGroup.verify(incrementalFailures, true);
+			Set<EOModelVerificationFailure> fullFailures = new LinkedHashSet<EOModelVerificationFailure>();
+			modelGroup.verify(fullFailures, false);
+			assertEquals("after mutation " + mutation, describe(fullFailures), describe(incrementalFailures));
+		}
+	}
+
+	protected String describe(Set<EOModelVerificationFailure> failures) {
+		List<String> lines = new ArrayList<String>();
+		for (EOModelVerificationFailure failure : failures) {
+			EOModelObject failedObject = failure.getFailedObject();
+			lines.add((failedObject == null ? "" : failedObject.getFullyQualifiedName()) + ": " + failure.getMessage() + (failure.isWarning() ? " (warning)" : ""));
+		}
+		Collections.sort(lines);
+		StringBuilder description = new StringBuilder();
+		for (String line : lines) {
+			description.append(line).append('\n');
+		}
+		return description.toString();
+	}
+}
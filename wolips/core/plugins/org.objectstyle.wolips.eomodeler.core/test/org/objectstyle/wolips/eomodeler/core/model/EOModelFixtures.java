@@ -0,0 +1,467 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.objectstyle.wolips.eomodeler.core.utils.BooleanUtils;
+
+/**
+ * EOModelFixtures builds the models that the tests of Entity Modeler and its
+ * JMH benchmarks work on, in memory or as synthetic .eomodeld folders on
+ * disk. The same arguments always produce the same models.
+ */
+public class EOModelFixtures {
+	/**
+	 * Returns a model of a Company with a name and a country, a Person with a
+	 * name (indexed as PersonName), an age and a to-one company, and the
+	 * to-many Company.people and Person.projects.
+	 */
+	public static EOModel createCompanyModel() throws Exception {
+		EOModel model = new EOModel("Company");
+		EOEntity company = EOModelFixtures.addEntity(model, "Company", "COMPANY");
+		EOAttribute companyID = EOModelFixtures.addPrimaryKey(company, null);
+		EOModelFixtures.addAttribute(company, "name", "NAME", EODataType.STRING);
+		EOModelFixtures.addAttribute(company, "country", "COUNTRY", EODataType.STRING);
+
+		EOEntity person = EOModelFixtures.addEntity(model, "Person", "PERSON");
+		EOAttribute personID = EOModelFixtures.addPrimaryKey(person, null);
+		EOAttribute personName = EOModelFixtures.addAttribute(person, "name", "NAME", EODataType.STRING);
+		EOModelFixtures.addAttribute(person, "age", "AGE", EODataType.INTEGER);
+		EOAttribute personCompanyID = EOModelFixtures.addAttribute(person, "companyID", "COMPANY_ID", EODataType.INTEGER);
+		EOModelFixtures.addEntityIndex(person, "PersonName", EOEntityIndex.Constraint.None, personName);
+
+		EOEntity project = EOModelFixtures.addEntity(model, "Project", "PROJECT");
+		EOModelFixtures.addPrimaryKey(project, null);
+		EOAttribute projectPersonID = EOModelFixtures.addAttribute(project, "personID", "PERSON_ID", EODataType.INTEGER);
+
+		EOModelFixtures.addRelationship(person, "company", company, false, personCompanyID, companyID);
+		EOModelFixtures.addRelationship(company, "people", person, true, companyID, personCompanyID);
+		EOModelFixtures.addRelationship(person, "projects", project, true, personID, projectPersonID);
+		return model;
+	}
+
+	public static EOEntity addEntity(EOModel model, String name, String externalName) throws Exception {
+		EOEntity entity = new EOEntity(name);
+		entity.setExternalName(externalName);
+		model.addEntity(entity);
+		return entity;
+	}
+
+	public static EOAttribute addAttribute(EOEntity entity, String name, String columnName, EODataType dataType) throws Exception {
+		EOAttribute attribute = new EOAttribute(name);
+		entity.addAttribute(attribute);
+		attribute.setDataType(dataType);
+		attribute.setColumnName(columnName);
+		return attribute;
+	}
+
+	public static EOAttribute addAttribute(EOEntity entity, String name, String columnName, EODataType dataType, boolean classProperty) throws Exception {
+		EOAttribute attribute = EOModelFixtures.addAttribute(entity, name, columnName, dataType);
+		attribute.setClassProperty(Boolean.valueOf(classProperty));
+		return attribute;
+	}
+
+	/**
+	 * Adds an integer primary key "id" in the column ID, which isn't a class
+	 * property and uses the given prototype if there is one.
+	 */
+	public static EOAttribute addPrimaryKey(EOEntity entity, EOAttribute prototype) throws Exception {
+		EOAttribute attribute = EOModelFixtures.addAttribute(entity, "id", "ID", EODataType.INTEGER, false);
+		if (prototype != null) {
+			attribute.setPrototype(prototype);
+		}
+		attribute.setPrimaryKey(Boolean.TRUE);
+		return attribute;
+	}
+
+	/**
+	 * Adds a class property relationship without joins.
+	 */
+	public static EORelationship addRelationship(EOEntity entity, String name, EOEntity destination, boolean toMany) throws Exception {
+		EORelationship relationship = new EORelationship(name);
+		entity.addRelationship(relationship);
+		relationship.setDestination(destination);
+		relationship.setToMany(Boolean.valueOf(toMany));
+		relationship.setClassProperty(Boolean.TRUE);
+		return relationship;
+	}
+
+	/**
+	 * Adds a class property relationship with one join.
+	 */
+	public static EORelationship addRelationship(EOEntity entity, String name, EOEntity destination, boolean toMany, EOAttribute sourceAttribute, EOAttribute destinationAttribute) throws Exception {
+		EORelationship relationship = EOModelFixtures.addRelationship(entity, name, destination, toMany);
+		EOJoin join = new EOJoin();
+		join.setSourceAttribute(sourceAttribute);
+		join.setDestinationAttribute(destinationAttribute);
+		relationship.addJoin(join);
+		return relationship;
+	}
+
+	public static EOEntityIndex addEntityIndex(EOEntity entity, String name, EOEntityIndex.Constraint constraint, EOAttribute... attributes) throws Exception {
+		EOEntityIndex entityIndex = new EOEntityIndex();
+		entityIndex.setName(name);
+		entityIndex.setConstraint(constraint);
+		for (EOAttribute attribute : attributes) {
+			entityIndex.addAttribute(attribute);
+		}
+		entity.addEntityIndex(entityIndex);
+		return entityIndex;
+	}
+
+	/**
+	 * Adds a fetch spec with an optional qualifier, ascending sort ordering,
+	 * fetch limit and prefetching key path.
+	 */
+	public static EOFetchSpecification addFetchSpec(EOEntity entity, String name, String qualifierString, String sortKey, boolean caseInsensitiveSort, Integer fetchLimit, String prefetchingKeyPath) throws Exception {
+		EOFetchSpecification fetchSpec = new EOFetchSpecification(name);
+		entity.addFetchSpecification(fetchSpec);
+		if (qualifierString != null) {
+			fetchSpec.setQualifier(EOQualifierFactory.fromString(qualifierString));
+		}
+		if (sortKey != null) {
+			EOSortOrdering sortOrdering = new EOSortOrdering(sortKey, EOSortOrdering.SELECTOR_ASCENDING);
+			sortOrdering.setCaseInsensitive(caseInsensitiveSort);
+			fetchSpec.addSortOrdering(sortOrdering, false);
+		}
+		fetchSpec.setFetchLimit(fetchLimit);
+		if (prefetchingKeyPath != null) {
+			fetchSpec.addPrefetchingRelationshipKeyPath(prefetchingKeyPath, false);
+		}
+		return fetchSpec;
+	}
+
+	/**
+	 * Returns a new temporary folder name; the folder itself isn't created.
+	 */
+	public static File temporaryFolder(String prefix) throws IOException {
+		File folder = File.createTempFile(prefix, "");
+		folder.delete();
+		return folder;
+	}
+
+	/**
+	 * Writes a model whose entities are named Entity0, Entity1 ...
+	 */
+	public static void writeModel(File modelFolder, int entityCount) throws IOException {
+		EOModelFixtures.writeModel(modelFolder, "Entity", entityCount);
+	}
+
+	/**
+	 * Writes a model whose entities are named entityPrefix0, entityPrefix1 ...
+	 * Each entity has a primary key, 20 attributes and 3 to-one relationships
+	 * to the entities that follow it; every fourth entity has a fetch spec.
+	 */
+	public static void writeModel(File modelFolder, String entityPrefix, int entityCount) throws IOException {
+		modelFolder.mkdirs();
+		StringBuilder index = new StringBuilder();
+		index.append("{\n    EOModelVersion = \"2.1\";\n    adaptorName = JDBC;\n    connectionDictionary = {URL = \"jdbc:h2:mem:fixture\"; };\n    entities = (\n");
+		for (int entityNum = 0; entityNum < entityCount; entityNum++) {
+			String entityName = entityPrefix + entityNum;
+			index.append("        {className = EOGenericRecord; name = ").append(entityName).append("; }");
+			index.append(entityNum < entityCount - 1 ? ",\n" : "\n");
+			EOModelFixtures.writeFile(new File(modelFolder, entityName + ".plist"), EOModelFixtures.entityPlist(entityPrefix, entityNum, entityCount));
+			if (entityNum % 4 == 0) {
+				EOModelFixtures.writeFile(new File(modelFolder, entityName + ".fspec"), EOModelFixtures.fetchSpecsPlist(entityName));
+			}
+		}
+		index.append("    );\n}\n");
+		EOModelFixtures.writeFile(new File(modelFolder, "index.eomodeld"), index.toString());
+	}
+
+	/**
+	 * Writes a model of a Wide entity with a primary key, the given number of
+	 * attributes that are all used for locking, and a to-one relationship to
+	 * a Target entity for every tenth of them.
+	 */
+	public static void writeWideModel(File modelFolder, int attributeCount) throws IOException {
+		modelFolder.mkdirs();
+		EOModelFixtures.writeFile(new File(modelFolder, "index.eomodeld"), "{\n    EOModelVersion = \"2.1\";\n    adaptorName = JDBC;\n    connectionDictionary = {URL = \"jdbc:h2:mem:fixture\"; };\n    entities = ({className = EOGenericRecord; name = Wide; }, {className = EOGenericRecord; name = Target; });\n}\n");
+		EOModelFixtures.writeFile(new File(modelFolder, "Target.plist"), "{\n    attributes = ({allowsNull = N; columnName = ID; externalType = integer; name = id; valueClassName = NSNumber; valueType = i; });\n    className = EOGenericRecord;\n    classProperties = ();\n    externalName = TARGET;\n    name = Target;\n    primaryKeyAttributes = (id);\n}\n");
+		int relationshipCount = attributeCount / 10;
+		StringBuilder plist = new StringBuilder();
+		plist.append("{\n    attributes = (\n        {allowsNull = N; columnName = ID; externalType = integer; name = id; valueClassName = NSNumber; valueType = i; }");
+		for (int attributeNum = 0; attributeNum < attributeCount; attributeNum++) {
+			plist.append(",\n        {allowsNull = Y; columnName = ATTRIBUTE").append(attributeNum).append("; externalType = varchar; name = attribute").append(attributeNum).append("; valueClassName = NSString; width = 255; }");
+		}
+		for (int relationshipNum = 0; relationshipNum < relationshipCount; relationshipNum++) {
+			plist.append(",\n        {allowsNull = Y; columnName = TARGET").append(relationshipNum).append("_ID; externalType = integer; name = target").append(relationshipNum).append("ID; valueClassName = NSNumber; valueType = i; }");
+		}
+		plist.append("\n    );\n    attributesUsedForLocking = (id");
+		for (int attributeNum = 0; attributeNum < attributeCount; attributeNum++) {
+			plist.append(", attribute").append(attributeNum);
+		}
+		plist.append(");\n    className = EOGenericRecord;\n    classProperties = (");
+		for (int attributeNum = 0; attributeNum < attributeCount; attributeNum++) {
+			plist.append("attribute").append(attributeNum).append(", ");
+		}
+		for (int relationshipNum = 0; relationshipNum < relationshipCount; relationshipNum++) {
+			plist.append("target").append(relationshipNum).append(", ");
+		}
+		plist.append("id);\n    externalName = WIDE;\n    name = Wide;\n    primaryKeyAttributes = (id);\n    relationships = (\n");
+		for (int relationshipNum = 0; relationshipNum < relationshipCount; relationshipNum++) {
+			plist.append("        {destination = Target; isToMany = N; joinSemantic = EOInnerJoin; joins = ({destinationAttribute = id; sourceAttribute = target").append(relationshipNum).append("ID; }); name = target").append(relationshipNum).append("; }");
+			plist.append(relationshipNum < relationshipCount - 1 ? ",\n" : "\n");
+		}
+		plist.append("    );\n}\n");
+		EOModelFixtures.writeFile(new File(modelFolder, "Wide.plist"), plist.toString());
+	}
+
+	/**
+	 * Writes a folder of projects named Project0, Project1 ..., each with a
+	 * model named Model0, Model1 ... in its Resources folder, whose entities
+	 * are named M0Entity0, M0Entity1 ...
+	 */
+	public static void writeProjects(File folder, int modelCount, int entityCount) throws IOException {
+		for (int modelNum = 0; modelNum < modelCount; modelNum++) {
+			EOModelFixtures.writeModel(EOModelFixtures.projectModelFolder(folder, "Project" + modelNum, "Model" + modelNum), "M" + modelNum + "Entity", entityCount);
+		}
+	}
+
+	public static File projectModelFolder(File folder, String projectName, String modelName) {
+		return new File(new File(new File(folder, projectName), "Resources"), modelName + ".eomodeld");
+	}
+
+	public static String entityPlist(String entityPrefix, int entityNum, int entityCount) {
+		String entityName = entityPrefix + entityNum;
+		StringBuilder plist = new StringBuilder();
+		plist.append("{\n    attributes = (\n");
+		plist.append("        {allowsNull = N; columnName = ID; externalType = integer; name = id; valueClassName = NSNumber; valueType = i; }");
+		for (int attributeNum = 0; attributeNum < 20; attributeNum++) {
+			plist.append(",\n        {allowsNull = Y; columnName = ATTRIBUTE").append(attributeNum).append("; externalType = varchar; name = attribute").append(attributeNum).append("; valueClassName = NSString; width = 255; }");
+		}
+		List<Integer> destinations = new LinkedList<Integer>();
+		for (int relationshipNum = 1; relationshipNum <= 3; relationshipNum++) {
+			destinations.add(Integer.valueOf((entityNum + relationshipNum) % entityCount));
+		}
+		for (Integer destination : destinations) {
+			plist.append(",\n        {allowsNull = Y; columnName = ENTITY").append(destination).append("_ID; externalType = integer; name = entity").append(destination).append("ID; valueClassName = NSNumber; valueType = i; }");
+		}
+		plist.append("\n    );\n    className = EOGenericRecord;\n    classProperties = (");
+		for (int attributeNum = 0; attributeNum < 20; attributeNum++) {
+			plist.append("attribute").append(attributeNum).append(", ");
+		}
+		plist.append("id);\n    externalName = ").append(entityName.toUpperCase()).append(";\n    name = ").append(entityName).append(";\n    primaryKeyAttributes = (id);\n    relationships = (\n");
+		for (Integer destination : destinations) {
+			plist.append("        {destination = ").append(entityPrefix).append(destination).append("; isToMany = N; joinSemantic = EOInnerJoin; joins = ({destinationAttribute = id; sourceAttribute = entity").append(destination).append("ID; }); name = entity").append(destination).append("; }");
+			plist.append(destination.equals(destinations.get(destinations.size() - 1)) ? "\n" : ",\n");
+		}
+		plist.append("    );\n}\n");
+		return plist.toString();
+	}
+
+	public static String fetchSpecsPlist(String entityName) {
+		return "{\n    FetchByName = {\n        class = EOFetchSpecification;\n        entityName = " + entityName + ";\n        fetchLimit = 0;\n        qualifier = {class = EOKeyValueQualifier; key = attribute0; selectorName = \"isEqualTo:\"; value = {\"_key\" = name; class = EOQualifierVariable; }; };\n    };\n}\n";
+	}
+
+	/**
+	 * Loads the model in the given folder into a new model group and resolves
+	 * it.
+	 */
+	public static EOModelGroup loadModelGroup(File modelFolder) throws Exception {
+		EOModelGroup modelGroup = new EOModelGroup();
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		modelGroup.loadModelFromURL(modelFolder.toURL(), failures, true, new NullProgressMonitor());
+		modelGroup.resolve(failures);
+		return modelGroup;
+	}
+
+	/**
+	 * Marks the model and all of its entities dirty, so the next save writes
+	 * every file of the model.
+	 */
+	public static void markAllDirty(EOModel model) {
+		model.setDirty(true);
+		for (EOEntity entity : model.getEntities()) {
+			entity.setEntityDirty(true);
+		}
+	}
+
+	/**
+	 * Returns one of the given objects, picked with the given random.
+	 */
+	public static <T> T pick(Set<T> objects, Random random) {
+		List<T> list = new ArrayList<T>(objects);
+		return list.get(random.nextInt(list.size()));
+	}
+
+	/**
+	 * Finds the referencing relationships of the given entity the way
+	 * EOEntity did before the index.
+	 */
+	public static Set<EORelationship> scanReferencingRelationships(EOEntity destination) {
+		Set<EORelationship> referencingRelationships = new HashSet<EORelationship>();
+		for (EOModel model : destination.getModel().getModelGroup().getModels()) {
+			for (EOEntity entity : model.getEntities()) {
+				if (entity != destination) {
+					for (EORelationship relationship : entity.getRelationships()) {
+						if (relationship._getDestination() == destination) {
+							referencingRelationships.add(relationship);
+						}
+					}
+				}
+			}
+		}
+		return referencingRelationships;
+	}
+
+	/**
+	 * Finds the children entities of the given entity the way EOEntity did
+	 * before the index.
+	 */
+	public static Set<EOEntity> scanChildrenEntities(EOEntity parent) {
+		Set<EOEntity> childrenEntities = new HashSet<EOEntity>();
+		for (EOModel model : parent.getModel().getModelGroup().getModels()) {
+			for (EOEntity entity : model.getEntities()) {
+				if (entity.getParent() == parent) {
+					childrenEntities.add(entity);
+				}
+			}
+		}
+		return childrenEntities;
+	}
+
+	/**
+	 * Registers the listener with the model and all of its entities,
+	 * attributes and relationships, the way the editors do.
+	 */
+	public static void addPropertyChangeListener(EOModel model, PropertyChangeListener listener) {
+		model.addPropertyChangeListener(listener);
+		for (EOEntity entity : model.getEntities()) {
+			entity.addPropertyChangeListener(listener);
+			for (EOAttribute attribute : entity.getAttributes()) {
+				attribute.addPropertyChangeListener(listener);
+			}
+			for (EORelationship relationship : entity.getRelationships()) {
+				relationship.addPropertyChangeListener(listener);
+			}
+		}
+	}
+
+	/**
+	 * Makes a bulk edit of a model written by writeModel: pastes the
+	 * attributes of Entity1 and Entity2 into Entity0, renames every attribute
+	 * and its column and sets user info on every entity.
+	 */
+	public static void bulkEdit(EOModel model) throws Exception {
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOEntity pasteEntity = model.getEntityNamed("Entity0");
+		for (int entityNum = 1; entityNum <= 2; entityNum++) {
+			for (EOAttribute attribute : model.getEntityNamed("Entity" + entityNum).getSortedAttributes()) {
+				attribute._cloneModelObject()._addToModelParent(pasteEntity, true, failures);
+			}
+		}
+		for (int entityNum = 0; entityNum < model.getEntities().size(); entityNum++) {
+			EOEntity entity = model.getEntityNamed("Entity" + entityNum);
+			for (EOAttribute attribute : entity.getSortedAttributes()) {
+				if (!BooleanUtils.isTrue(attribute.isPrimaryKey())) {
+					attribute.setName("renamed" + attribute.getName());
+					attribute.setColumnName("RENAMED_" + attribute.getColumnName());
+				}
+			}
+			entity.getUserInfo().put("batched", "no");
+			entity.getUserInfo().put("batched", "yes");
+		}
+	}
+
+	/**
+	 * Returns a description of the entities of the model and of the given
+	 * failures, so the results of two loads can be compared.
+	 */
+	public static String describe(EOModel model, Set<EOModelVerificationFailure> failures) {
+		List<String> lines = new LinkedList<String>();
+		for (EOEntity entity : model.getEntities()) {
+			lines.add(entity.getName() + ":" + entity.getAttributes().size() + ":" + entity.getRelationships().size() + ":" + entity.getFetchSpecs().size());
+		}
+		for (EOModelVerificationFailure failure : failures) {
+			lines.add(failure.getMessage());
+		}
+		// the entities of a model are a set, so only compare their contents
+		Collections.sort(lines);
+		StringBuilder description = new StringBuilder();
+		for (String line : lines) {
+			description.append(line).append('\n');
+		}
+		return description.toString();
+	}
+
+	public static void writeFile(File file, String contents) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			os.write(contents.getBytes("UTF-8"));
+		} finally {
+			os.close();
+		}
+	}
+
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				EOModelFixtures.delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+public class EOModelGroupLoadTest extends TestCase {
+	private int _originalLoadThreads;
+
+	private File _folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_originalLoadThreads = EOModel.getLoadThreads();
+		_folder = EOModelFixtures.temporaryFolder("EOModelGroupLoadTest");
+		EOModelFixtures.writeProjects(_folder, 4, 30);
+		// a model with the name of the first model, which must be skipped, and
+		// one that declares an entity of the second model
+		EOModelFixtures.writeModel(EOModelFixtures.projectModelFolder(_folder, "Duplicate", "Model0"), "D", 4);
+		EOModelFixtures.writeModel(EOModelFixtures.projectModelFolder(_folder, "Override", "Override"), "M1Entity", 4);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModel.setLoadThreads(_originalLoadThreads);
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testParallelLoadMatchesSequentialLoad() throws Exception {
+		assertEquals(loadModelGroup(1), loadModelGroup(4));
+	}
+
+	public void testDuplicatesAreReported() throws Exception {
+		String description = loadModelGroup(4);
+		assertTrue(description, description.contains("both declare an entity named M1Entity,"));
+		// only one of the two models named Model0 is loaded
+		assertTrue(description, description.contains("\nModel0:file:"));
+		assertEquals(description, description.indexOf("\nModel0:file:"), description.lastIndexOf("\nModel0:file:"));
+	}
+
+	public void testDefaultDatabaseConfigUsesPrototypesOfEarlierModel() throws Exception {
+		File prototypesFolder = EOModelFixtures.projectModelFolder(_folder, "Prototypes", "Prototypes");
+		prototypesFolder.mkdirs();
+		EOModelFixtures.writeFile(new File(prototypesFolder, "index.eomodeld"), "{\n    EOModelVersion = \"2.1\";\n    adaptorName = JDBC;\n    connectionDictionary = {};\n    entities = ({className = EOGenericRecord; name = EOJDBCPrototypes; });\n}\n");
+		EOModelFixtures.writeFile(new File(prototypesFolder, "EOJDBCPrototypes.plist"), "{\n    attributes = ({columnName = \"\"; externalType = integer; name = id; valueClassName = NSNumber; valueType = i; });\n    className = EOGenericRecord;\n    name = EOJDBCPrototypes;\n}\n");
+		List<URL> modelURLs = new LinkedList<URL>();
+		modelURLs.add(prototypesFolder.toURL());
+		modelURLs.add(EOModelFixtures.projectModelFolder(_folder, "Project1", "Model1").toURL());
+
+		EOModel.setLoadThreads(4);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModelGroup modelGroup = new EOModelGroup();
+		modelGroup.loadModelsFromURLs(modelURLs, failures, true, new NullProgressMonitor());
+		EODatabaseConfig databaseConfig = modelGroup.getModelNamed("Model1").getActiveDatabaseConfig();
+		assertNotNull(databaseConfig.getPrototype());
+		assertEquals("EOJDBCPrototypes", databaseConfig.getPrototype().getName());
+		assertFalse(modelGroup.getModelNamed("Model1").isDirty());
+	}
+
+	/**
+	 * Loads and resolves the models in the folder and returns a description
+	 * of the models, their entities and the failures, so the results of two
+	 * loads can be compared.
+	 */
+	protected String loadModelGroup(int loadThreads) throws Exception {
+		EOModel.setLoadThreads(loadThreads);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModelGroup modelGroup = new EOModelGroup();
+		modelGroup.loadModelsFromURL(_folder.toURL(), -1, failures, true, new NullProgressMonitor());
+		modelGroup.resolve(failures);
+		List<String> lines = new LinkedList<String>();
+		for (EOModel model : modelGroup.getModels()) {
+			lines.add(model.getName() + ":" + model.getModelURL() + ":" + model.getEntities().size());
+		}
+		for (EOEntity entity : modelGroup.getEntities()) {
+			lines.add(entity.getModel().getName() + "." + entity.getName() + ":" + entity.getAttributes().size() + ":" + entity.getRelationships().size());
+		}
+		for (EOModelVerificationFailure failure : failures) {
+			// which of the duplicate entities is reported depends on the
+			// iteration order of the entities of the model
+			lines.add(failure.getMessage().replaceAll("named '?M1Entity\\d+'?", "named M1Entity").trim());
+		}
+		// the models and entities of a group are sets, so only compare their
+		// contents
+		Collections.sort(lines);
+		StringBuilder description = new StringBuilder();
+		for (String line : lines) {
+			description.append(line).append('\n');
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+
+public class EOModelLazyLoadTest extends TestCase {
+	private boolean _lazyLoading;
+
+	private File _folder;
+
+	private File _modelFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_lazyLoading = EOModel.isLazyLoading();
+		_folder = EOModelFixtures.temporaryFolder("EOModelLazyLoadTest");
+		_modelFolder = new File(_folder, "LazyLoad.eomodeld");
+		EOModelFixtures.writeModel(_modelFolder, 100);
+		breakEntities();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModel.setLazyLoading(_lazyLoading);
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testLazyLoadMatchesEagerLoad() throws Exception {
+		EOModel.setLazyLoading(false);
+		String eagerDescription = loadModel(new File(_folder, "Eager"), 0);
+		EOModel.setLazyLoading(true);
+		assertEquals(eagerDescription, loadModel(new File(_folder, "Lazy"), 0));
+		assertSameFiles(new File(_folder, "Eager"), new File(_folder, "Lazy"));
+	}
+
+	public void testConcurrentFirstUseMatchesEagerLoad() throws Exception {
+		EOModel.setLazyLoading(false);
+		String eagerDescription = loadModel(new File(_folder, "Eager"), 0);
+		EOModel.setLazyLoading(true);
+		assertEquals(eagerDescription, loadModel(new File(_folder, "Concurrent"), 4));
+		assertSameFiles(new File(_folder, "Eager"), new File(_folder, "Concurrent"));
+	}
+
+	/**
+	 * Gives Entity1 a relationship to a missing entity and Entity2 a missing
+	 * parent, and removes the file of Entity3.
+	 */
+	protected void breakEntities() throws Exception {
+		EOModelFixtures.writeFile(new File(_modelFolder, "Entity1.plist"), EOModelFixtures.entityPlist("Entity", 1, 4).replace("destination = Entity2;", "destination = Missing;"));
+		EOModelFixtures.writeFile(new File(_modelFolder, "Entity2.plist"), EOModelFixtures.entityPlist("Entity", 2, 4).replace("name = Entity2;", "name = Entity2;\n    parent = Missing;"));
+		new File(_modelFolder, "Entity3.plist").delete();
+	}
+
+	/**
+	 * Loads, resolves and verifies the model, saves it twice into the given
+	 * folder (as it is, then with every entity dirty) and returns a
+	 * description of its entities and failures. With threads &gt; 0, the
+	 * entities are first used from that many threads at once.
+	 */
+	protected String loadModel(File saveFolder, int threads) throws Exception {
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModelGroup modelGroup = new EOModelGroup();
+		final EOModel model = new EOModel("Benchmark");
+		modelGroup.addModel(model);
+		model.loadFromURL(_modelFolder.toURL(), failures);
+		modelGroup.resolve(failures);
+		if (EOModel.isLazyLoading()) {
+			modelGroup.getEntityNames();
+			for (EOEntity entity : model.getEntities()) {
+				assertFalse(entity.getName() + " was loaded before it was used", entity.isLoaded());
+			}
+		}
+		if (threads > 0) {
+			final List<String> entityNames = new LinkedList<String>(modelGroup.getEntityNames());
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Object>> futures = new LinkedList<Future<Object>>();
+				for (int threadNum = 0; threadNum < threads; threadNum++) {
+					final Random random = new Random(threadNum);
+					futures.add(executor.submit(new Callable<Object>() {
+						public Object call() throws Exception {
+							List<String> shuffledEntityNames = new LinkedList<String>(entityNames);
+							Collections.shuffle(shuffledEntityNames, random);
+							for (String entityName : shuffledEntityNames) {
+								EOEntity entity = model.getEntityNamed(entityName);
+								for (EORelationship relationship : entity.getRelationships()) {
+									relationship.getDestination();
+								}
+								entity.getReferencingRelationships();
+							}
+							return null;
+						}
+					}));
+				}
+				for (Future<Object> future : futures) {
+					future.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+		modelGroup.verify(failures);
+
+		model.saveToFolder(new File(saveFolder, "Clean"));
+		EOModelFixtures.markAllDirty(model);
+		model.saveToFolder(new File(saveFolder, "Dirty"));
+
+		List<String> lines = new LinkedList<String>();
+		for (EOEntity entity : model.getEntities()) {
+			lines.add(entity.getName() + ":" + entity.getClassName() + ":" + entity.getAttributes().size() + ":" + entity.getRelationships().size() + ":" + entity.getFetchSpecs().size() + ":" + entity.getReferencingRelationships().size() + ":" + entity.isEntityDirty());
+		}
+		for (EOModelVerificationFailure failure : failures) {
+			lines.add(failure.getMessage());
+		}
+		Collections.sort(lines);
+		StringBuilder description = new StringBuilder();
+		for (String line : lines) {
+			description.append(line).append('\n');
+		}
+		return description.toString();
+	}
+
+	protected void assertSameFiles(File expectedFolder, File folder) throws Exception {
+		File[] expectedFiles = expectedFolder.listFiles();
+		File[] files = folder.listFiles();
+		assertNotNull(expectedFiles);
+		assertNotNull(files);
+		assertEquals(folder.toString(), expectedFiles.length, files.length);
+		for (File expectedFile : expectedFiles) {
+			File file = new File(folder, expectedFile.getName());
+			if (expectedFile.isDirectory()) {
+				assertSameFiles(expectedFile, file);
+			} else {
+				assertTrue(file.toString(), file.exists());
+				assertTrue(file.toString(), Arrays.equals(WOLPropertyListSerialization.bytesFromFile(expectedFile), WOLPropertyListSerialization.bytesFromFile(file)));
+			}
+		}
+	}
+}
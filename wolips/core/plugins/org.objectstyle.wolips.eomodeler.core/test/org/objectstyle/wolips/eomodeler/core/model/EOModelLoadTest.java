@@ -0,0 +1,98 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class EOModelLoadTest extends TestCase {
+	private File _folder;
+
+	private File _modelFolder;
+
+	private int _originalLoadThreads;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_originalLoadThreads = EOModel.getLoadThreads();
+		_folder = EOModelFixtures.temporaryFolder("EOModelLoadTest");
+		_modelFolder = new File(_folder, "Load.eomodeld");
+		EOModelFixtures.writeModel(_modelFolder, 200);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModel.setLoadThreads(_originalLoadThreads);
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testParallelLoadMatchesSequentialLoad() throws Exception {
+		assertEquals(loadModel(1), loadModel(4));
+	}
+
+	public void testMissingEntityFileIsReported() throws Exception {
+		new File(_modelFolder, "Entity7.plist").delete();
+		String sequentialDescription = loadModel(1);
+		assertTrue(sequentialDescription, sequentialDescription.contains("Entity7.plist was missing."));
+		assertEquals(sequentialDescription, loadModel(4));
+	}
+
+	protected String loadModel(int loadThreads) throws Exception {
+		EOModel.setLoadThreads(loadThreads);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModel model = new EOModel(_modelFolder.toURL(), failures);
+		return EOModelFixtures.describe(model, failures);
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+
+public class EOModelSaveTest extends TestCase {
+	private int _saveThreads;
+
+	private File _folder;
+
+	private File _modelFolder;
+
+	private EOModel _model;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_saveThreads = EOModel.getSaveThreads();
+		_folder = EOModelFixtures.temporaryFolder("EOModelSaveTest");
+		_modelFolder = new File(_folder, "Save.eomodeld");
+		EOModelFixtures.writeModel(_modelFolder, 50);
+		_model = EOModelFixtures.loadModelGroup(_modelFolder).getModels().iterator().next();
+		// normalize the files to what the model writes, so the tests only see
+		// the changes they make
+		EOModelFixtures.markAllDirty(_model);
+		_model.saveToFolder(_folder);
+		resetLastModified();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModel.setSaveThreads(_saveThreads);
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testUnchangedEntitiesAreNotRewritten() throws Exception {
+		EOModelFixtures.markAllDirty(_model);
+		_model.getEntityNamed("Entity1").setExternalName("CHANGED_ENTITY1");
+		_model.saveToFolder(_folder);
+		assertEquals(Collections.singleton("Entity1.plist"), changedFiles().keySet());
+	}
+
+	public void testFailedSaveChangesNothing() throws Exception {
+		_model.getEntityNamed("Entity2").setExternalName("CHANGED_ENTITY2");
+		_model.getEntityNamed("Entity3").setExternalName("CHANGED_ENTITY3");
+		_model.setVersion("2.2");
+		File blockingFile = new File(_modelFolder, ".Entity3.plist.saving");
+		blockingFile.mkdirs();
+		try {
+			_model.saveToFolder(_folder);
+			fail("The save didn't fail even though Entity3.plist couldn't be written.");
+		} catch (IOException e) {
+			// expected
+		} finally {
+			blockingFile.delete();
+		}
+		assertEquals(Collections.emptyMap(), changedFiles());
+
+		_model.saveToFolder(_folder);
+		assertEquals(new TreeSet<String>(Arrays.asList(new String[] { "Entity2.plist", "Entity3.plist", "index.eomodeld" })), changedFiles().keySet());
+	}
+
+	public void testParallelSaveWritesTheSameFiles() throws Exception {
+		EOModel.setSaveThreads(1);
+		EOModelFixtures.markAllDirty(_model);
+		File sequentialModelFolder = _model.saveToFolder(new File(_folder, "Sequential"));
+		EOModel.setSaveThreads(4);
+		EOModelFixtures.markAllDirty(_model);
+		File parallelModelFolder = _model.saveToFolder(new File(_folder, "Parallel"));
+		assertEquals(contents(sequentialModelFolder), contents(parallelModelFolder));
+	}
+
+	public void testRenamedEntityFilesAreReplaced() throws Exception {
+		_model.getEntityNamed("Entity4").setName("RenamedEntity4");
+		_model.saveToFolder(_folder);
+		assertFalse(new File(_modelFolder, "Entity4.plist").exists());
+		assertFalse(new File(_modelFolder, "Entity4.fspec").exists());
+		assertTrue(new File(_modelFolder, "RenamedEntity4.plist").exists());
+		assertTrue(new File(_modelFolder, "RenamedEntity4.fspec").exists());
+	}
+
+	public void testDeletingAFileThatIsWrittenKeepsIt() throws Exception {
+		// ./Entity8.fspec stands in for the file a rename by case only
+		// deletes on a case-insensitive file system
+		File fspecFile = new File(_modelFolder, "Entity8.fspec");
+		Object fspecs = WOLPropertyListSerialization.propertyListFromURL(fspecFile.toURL(), new EOModelParserDataStructureFactory(true));
+		List<EOModelFileSave> saves = new LinkedList<EOModelFileSave>();
+		saves.add(new EOModelFileSave(fspecFile, fspecs));
+		saves.add(new EOModelFileSave(new File(new File(_modelFolder, "."), "Entity8.fspec"), null));
+		assertTrue(EOModelFileSave.prepareAll(saves, 1));
+		EOModelFileSave.commitAll(saves);
+		assertTrue(fspecFile.exists());
+		assertEquals(fspecs, WOLPropertyListSerialization.propertyListFromURL(fspecFile.toURL(), new EOModelParserDataStructureFactory(true)));
+	}
+
+	protected void resetLastModified() {
+		for (File file : _modelFolder.listFiles()) {
+			file.setLastModified(0);
+		}
+	}
+
+	/**
+	 * Returns the files of the model folder that were written since
+	 * resetLastModified.
+	 */
+	protected Map<String, Long> changedFiles() {
+		Map<String, Long> changedFiles = new TreeMap<String, Long>();
+		for (File file : _modelFolder.listFiles()) {
+			if (file.lastModified() != 0) {
+				changedFiles.put(file.getName(), Long.valueOf(file.lastModified()));
+			}
+		}
+		return changedFiles;
+	}
+
+	protected Map<String, String> contents(File modelFolder) throws IOException {
+		Map<String, String> contents = new TreeMap<String, String>();
+		for (File file : modelFolder.listFiles()) {
+			contents.put(file.getName(), WOLPropertyListSerialization.stringFromFile(file));
+		}
+		return contents;
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+
+public class EOModelSnapshotTest extends TestCase {
+	private File _originalCacheFolder;
+
+	private File _folder;
+
+	private File _modelFolder;
+
+	private File _cacheFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_originalCacheFolder = EOModelSnapshot.getDefaultCacheFolder();
+		_folder = EOModelFixtures.temporaryFolder("EOModelSnapshotTest");
+		_modelFolder = new File(_folder, "Snapshot.eomodeld");
+		_cacheFolder = new File(_folder, "Snapshots");
+		EOModelFixtures.writeModel(_modelFolder, 100);
+		// files that were just written are always hashed, so age them
+		for (File file : _modelFolder.listFiles()) {
+			file.setLastModified(System.currentTimeMillis() - 60000);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModelSnapshot.setDefaultCacheFolder(_originalCacheFolder);
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testSnapshotMatchesParsedModel() throws Exception {
+		EOModelSnapshot.setDefaultCacheFolder(null);
+		String parsedDescription = loadModel();
+		EOModelSnapshot.setDefaultCacheFolder(_cacheFolder);
+		assertEquals(parsedDescription, loadModel());
+		assertEquals(parsedDescription, loadModel());
+	}
+
+	public void testSnapshotPropertyLists() throws Exception {
+		EOModelSnapshot.setDefaultCacheFolder(_cacheFolder);
+		loadModel();
+		EOModelSnapshot snapshot = EOModelSnapshot.snapshotForModelURL(_modelFolder.toURL());
+		for (File file : _modelFolder.listFiles()) {
+			Object parsedPropertyList = WOLPropertyListSerialization.propertyListFromURL(file.toURL(), new EOModelParserDataStructureFactory(true));
+			Object snapshotPropertyList = snapshot.propertyListFromURL(file.toURL(), new EOModelParserDataStructureFactory(true));
+			assertEquals(file.getName(), parsedPropertyList, snapshotPropertyList);
+		}
+		assertFalse(snapshot.isChanged());
+	}
+
+	public void testChangedFilesAreParsedAgain() throws Exception {
+		EOModelSnapshot.setDefaultCacheFolder(_cacheFolder);
+		loadModel();
+		File entityFile = new File(_modelFolder, "Entity0.plist");
+		long lastModified = entityFile.lastModified();
+
+		// same size, newer date
+		String plist = EOModelFixtures.entityPlist("Entity", 0, 4).replace("attribute19", "attributeXY");
+		EOModelFixtures.writeFile(entityFile, plist);
+		assertAttribute("attributeXY");
+
+		// different size, same date
+		EOModelFixtures.writeFile(entityFile, plist.replace("attributeXY", "attributeXYZ"));
+		entityFile.setLastModified(lastModified);
+		assertAttribute("attributeXYZ");
+
+		// same contents, newer date
+		entityFile.setLastModified(System.currentTimeMillis());
+		assertAttribute("attributeXYZ");
+
+		EOModelFixtures.writeFile(entityFile, EOModelFixtures.entityPlist("Entity", 0, 4));
+		entityFile.setLastModified(lastModified - 1000);
+		assertAttribute("attribute19");
+	}
+
+	public void testEscapedModelURL() throws Exception {
+		EOModelSnapshot.setDefaultCacheFolder(_cacheFolder);
+		File modelFolder = new File(new File(_folder, "My Models"), "Snapshot.eomodeld");
+		EOModelFixtures.writeModel(modelFolder, 10);
+		for (File file : modelFolder.listFiles()) {
+			file.setLastModified(System.currentTimeMillis() - 60000);
+		}
+		URL modelURL = modelFolder.toURI().toURL();
+		assertTrue(modelURL.toString(), modelURL.toString().contains("My%20Models"));
+		new EOModel(modelURL, new LinkedHashSet<EOModelVerificationFailure>());
+
+		EOModelSnapshot snapshot = EOModelSnapshot.snapshotForModelURL(modelURL);
+		assertNotNull(snapshot);
+		for (File file : modelFolder.listFiles()) {
+			snapshot.propertyListFromURL(file.toURI().toURL(), new EOModelParserDataStructureFactory(true));
+		}
+		assertFalse(snapshot.isChanged());
+	}
+
+	protected String loadModel() throws Exception {
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModel model = new EOModel(_modelFolder.toURL(), failures);
+		return EOModelFixtures.describe(model, failures);
+	}
+
+	protected void assertAttribute(String attributeName) throws Exception {
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		EOModel model = new EOModel(_modelFolder.toURL(), failures);
+		assertNotNull(attributeName, model.getEntityNamed("Entity0").getAttributeNamed(attributeName));
+	}
+}
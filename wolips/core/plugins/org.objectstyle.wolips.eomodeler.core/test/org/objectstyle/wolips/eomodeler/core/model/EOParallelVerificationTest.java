@@ -0,0 +1,144 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class EOParallelVerificationTest extends TestCase {
+	private int _verifyThreads;
+
+	private File _folder;
+
+	private File _modelFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_verifyThreads = EOModelGroup.getVerifyThreads();
+		_folder = EOModelFixtures.temporaryFolder("EOParallelVerificationTest");
+		_modelFolder = new File(_folder, "Verification.eomodeld");
+		EOModelFixtures.writeModel(_modelFolder, 300);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModelGroup.setVerifyThreads(_verifyThreads);
+		EOModelFixtures.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testParallelVerificationFindsTheSameFailures() throws Exception {
+		List<String> sequentialFailures = verifyBrokenModel(1);
+		List<String> parallelFailures = verifyBrokenModel(4);
+		assertFalse(sequentialFailures.isEmpty());
+		Collections.sort(sequentialFailures);
+		Collections.sort(parallelFailures);
+		assertEquals(sequentialFailures, parallelFailures);
+	}
+
+	public void testParallelVerificationIsOrdered() throws Exception {
+		assertEquals(verifyBrokenModel(4), verifyBrokenModel(4));
+	}
+
+	public void testVerifierThreadsDontInherit() throws Exception {
+		EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(_modelFolder);
+		EOModel model = modelGroup.getModels().iterator().next();
+		EOEntity parent = model.getEntityNamed("Entity0");
+		EOEntity child = model.getEntityNamed("Entity1");
+		child.setParent(parent);
+		EOModelFixtures.addAttribute(parent, "inherited", "INHERITED", EODataType.STRING);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		child.verify(failures, new VerificationContext(modelGroup), false);
+		assertNull(child.getAttributeNamed("inherited"));
+		child.verify(failures, new VerificationContext(modelGroup), true);
+		assertNotNull(child.getAttributeNamed("inherited"));
+	}
+
+	/**
+	 * Loads the model, breaks some of its entities and returns the failures a
+	 * full verification on the given number of threads finds, in order.
+	 */
+	protected List<String> verifyBrokenModel(int threads) throws Exception {
+		EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(_modelFolder);
+		EOModel model = modelGroup.getModels().iterator().next();
+		int entityCount = model.getEntities().size();
+		for (int entityNum = 0; entityNum < entityCount; entityNum++) {
+			EOEntity entity = model.getEntityNamed("Entity" + entityNum);
+			if (entityNum % 10 == 1) {
+				// a chain of three, so the grandchildren inherit from
+				// parents that inherit themselves
+				entity.setParent(model.getEntityNamed("Entity" + (entityNum - 1)));
+				model.getEntityNamed("Entity" + (entityNum + 1)).setParent(entity);
+			} else if (entityNum % 10 == 5) {
+				entity.setExternalName("SOME TABLE");
+			} else if (entityNum % 10 == 7) {
+				for (EORelationship relationship : entity.getRelationships()) {
+					relationship._setMandatory(Boolean.TRUE);
+				}
+			}
+		}
+		EOModelGroup.setVerifyThreads(threads);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		modelGroup.verify(failures, false);
+		List<String> lines = new ArrayList<String>();
+		for (EOModelVerificationFailure failure : failures) {
+			EOModelObject failedObject = failure.getFailedObject();
+			lines.add((failedObject == null ? "" : failedObject.getFullyQualifiedName()) + ": " + failure.getMessage());
+		}
+		return lines;
+	}
+}
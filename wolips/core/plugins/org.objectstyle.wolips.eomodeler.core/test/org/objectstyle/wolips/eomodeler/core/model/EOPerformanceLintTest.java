@@ -0,0 +1,233 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+public class EOPerformanceLintTest extends TestCase {
+	private EOModelGroup _modelGroup;
+
+	private boolean _originalPerformanceLint;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_originalPerformanceLint = EOModelGroup.isPerformanceLint();
+		_modelGroup = new EOModelGroup();
+		EOModel model = new EOModel("Lint");
+		_modelGroup.addModel(model);
+		EOEntity prototypes = EOModelFixtures.addEntity(model, "EOPrototypes", null);
+		EOAttribute idPrototype = EOModelFixtures.addAttribute(prototypes, "id", null, EODataType.INTEGER, false);
+		Map<Object, Object> settings = new HashMap<Object, Object>();
+		settings.put("rowCounts", map("Person", "1000000"));
+		settings.put("HiddenForeignKey", map("severity", "medium"));
+		settings.put("SingleTableInheritance", map("maxColumns", "5"));
+		model.getUserInfo().put(EOPerformanceLint.USER_INFO_KEY, settings);
+
+		EOEntity company = EOModelFixtures.addEntity(model, "Company", "COMPANY");
+		EOAttribute companyID = EOModelFixtures.addPrimaryKey(company, idPrototype);
+		EOModelFixtures.addAttribute(company, "name", "NAME", EODataType.STRING, true);
+		EOModelFixtures.addAttribute(company, "logo", "LOGO", EODataType.DATA, true);
+
+		// an entity of its own for a blob is what LargeAttribute asks for
+		EOEntity photo = EOModelFixtures.addEntity(model, "Photo", "PHOTO");
+		EOModelFixtures.addPrimaryKey(photo, idPrototype);
+		EOModelFixtures.addAttribute(photo, "data", "DATA", EODataType.DATA, true);
+
+		EOEntity person = EOModelFixtures.addEntity(model, "Person", "PERSON");
+		EOAttribute personID = EOModelFixtures.addPrimaryKey(person, idPrototype);
+		EOModelFixtures.addAttribute(person, "name", "NAME", EODataType.STRING, true);
+		EOAttribute personCompanyID = EOModelFixtures.addAttribute(person, "companyID", "COMPANY_ID", EODataType.INTEGER, false);
+		EOModelFixtures.addRelationship(person, "company", company, false, personCompanyID, companyID);
+		EORelationship companyEmployees = EOModelFixtures.addRelationship(company, "employees", person, true, companyID, personCompanyID);
+		companyEmployees.setDeleteRule(EODeleteRule.CASCADE);
+
+		EOEntity project = EOModelFixtures.addEntity(model, "Project", "PROJECT");
+		EOModelFixtures.addPrimaryKey(project, null);
+		EOAttribute projectPersonID = EOModelFixtures.addAttribute(project, "personID", "PERSON_ID", EODataType.INTEGER, false);
+		EOModelFixtures.addAttribute(project, "name", "NAME", EODataType.STRING, true);
+		EOModelFixtures.addAttribute(project, "budget", "BUDGET", EODataType.BIGDECIMAL, true);
+		for (EOAttribute attribute : project.getAttributes()) {
+			attribute.setUsedForLocking(Boolean.TRUE);
+		}
+		EORelationship personProjects = EOModelFixtures.addRelationship(person, "projects", project, true, personID, projectPersonID);
+		personProjects.setNumberOfToManyFaultsToBatchFetch(Integer.valueOf(10));
+		personProjects.setOwnsDestination(Boolean.TRUE);
+
+		EOEntity vehicle = EOModelFixtures.addEntity(model, "Vehicle", "VEHICLE");
+		EOModelFixtures.addPrimaryKey(vehicle, idPrototype);
+		EOModelFixtures.addAttribute(vehicle, "type", "TYPE", EODataType.STRING, true);
+		String[][] subentities = { { "Car", "doors", "DOORS" }, { "Truck", "payload", "PAYLOAD" }, { "Bike", "gears", "GEARS" } };
+		for (String[] subentity : subentities) {
+			EOEntity child = EOModelFixtures.addEntity(model, subentity[0], "VEHICLE");
+			child.setParent(vehicle);
+			EOModelFixtures.addPrimaryKey(child, idPrototype);
+			EOModelFixtures.addAttribute(child, "type", "TYPE", EODataType.STRING, true);
+			EOModelFixtures.addAttribute(child, "wheels", "WHEELS", EODataType.INTEGER, true);
+			EOModelFixtures.addAttribute(child, subentity[1], subentity[2], EODataType.INTEGER, true);
+		}
+
+		EOModel legacyModel = new EOModel("Legacy");
+		_modelGroup.addModel(legacyModel);
+		legacyModel.getUserInfo().put(EOPerformanceLint.USER_INFO_KEY, map("ToManyBatchFetch", map("enabled", "N")));
+		EOEntity thing = EOModelFixtures.addEntity(legacyModel, "Thing", "THING");
+		EOAttribute thingID = EOModelFixtures.addPrimaryKey(thing, null);
+		EOAttribute thingParentID = EOModelFixtures.addAttribute(thing, "parentID", "PARENT_ID", EODataType.INTEGER, false);
+		EOModelFixtures.addRelationship(thing, "children", thing, true, thingID, thingParentID);
+
+		EOModel ignoredModel = new EOModel("Ignored");
+		_modelGroup.addModel(ignoredModel);
+		ignoredModel.getUserInfo().put(EOPerformanceLint.USER_INFO_KEY, map("enabled", "N"));
+		EOEntity ignored = EOModelFixtures.addEntity(ignoredModel, "Ignored", "IGNORED");
+		EOModelFixtures.addPrimaryKey(ignored, null);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		EOModelGroup.setPerformanceLint(_originalPerformanceLint);
+		super.tearDown();
+	}
+
+	public void testFailures() {
+		Set<String> expectedFailures = new TreeSet<String>();
+		expectedFailures.add("CascadeDelete high Lint/Company/rel: employees");
+		expectedFailures.add("LargeAttribute high Lint/Company/attr: logo");
+		expectedFailures.add("ToManyBatchFetch medium Lint/Company/rel: employees");
+		// the severity is set in the user info of the model
+		expectedFailures.add("HiddenForeignKey medium Lint/Person/attr: companyID");
+		// the row count of Project isn't known
+		expectedFailures.add("CascadeDelete low Lint/Person/rel: projects");
+		expectedFailures.add("PrimaryKeyPrototype medium Lint/Project/attr: id");
+		expectedFailures.add("LockingAttributes medium Lint/Project");
+		// maxColumns is set in the user info of the model
+		expectedFailures.add("SingleTableInheritance medium Lint/Vehicle");
+		// ToManyBatchFetch is turned off in Legacy, and every rule in Ignored
+		expectedFailures.add("PrimaryKeyPrototype medium Legacy/Thing/attr: id");
+		assertEquals(expectedFailures, describe(new EOPerformanceLint().lint(_modelGroup.getModels())));
+	}
+
+	public void testFailuresAreRankedBySeverity() {
+		List<EOPerformanceLintFailure> failures = new EOPerformanceLint().lint(_modelGroup.getModels());
+		for (int failureNum = 1; failureNum < failures.size(); failureNum++) {
+			assertTrue(failures.toString(), failures.get(failureNum - 1).getSeverity().compareTo(failures.get(failureNum).getSeverity()) <= 0);
+		}
+	}
+
+	public void testRulesCanBeReplaced() {
+		List<IEOPerformanceLintRule> rules = new ArrayList<IEOPerformanceLintRule>();
+		for (IEOPerformanceLintRule rule : EOPerformanceLint.getDefaultRules()) {
+			if ("PrimaryKeyPrototype".equals(rule.getName())) {
+				rules.add(rule);
+			}
+		}
+		Set<String> expectedFailures = new TreeSet<String>(Arrays.asList("PrimaryKeyPrototype medium Lint/Project/attr: id", "PrimaryKeyPrototype medium Legacy/Thing/attr: id"));
+		assertEquals(expectedFailures, describe(new EOPerformanceLint(rules).lint(_modelGroup.getModels())));
+	}
+
+	public void testModelGroupVerificationLints() {
+		EOModelGroup.setPerformanceLint(true);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		_modelGroup.verify(failures);
+		assertEquals(describe(new EOPerformanceLint().lint(_modelGroup.getModels())), describe(lintFailures(failures)));
+		// a set that keeps the order the failures were added in keeps them
+		// ranked by severity
+		List<EOPerformanceLintFailure> lintFailures = lintFailures(failures);
+		for (int failureNum = 1; failureNum < lintFailures.size(); failureNum++) {
+			assertTrue(lintFailures.get(failureNum - 1).getSeverity().compareTo(lintFailures.get(failureNum).getSeverity()) <= 0);
+		}
+	}
+
+	public void testModelVerificationLints() {
+		EOModelGroup.setPerformanceLint(true);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		_modelGroup.getModelNamed("Legacy").verify(failures);
+		assertEquals(new TreeSet<String>(Arrays.asList("PrimaryKeyPrototype medium Legacy/Thing/attr: id")), describe(lintFailures(failures)));
+	}
+
+	public void testVerificationWithoutLint() {
+		EOModelGroup.setPerformanceLint(false);
+		Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
+		_modelGroup.verify(failures);
+		assertTrue(lintFailures(failures).isEmpty());
+	}
+
+	protected static Map<Object, Object> map(String key, Object value) {
+		Map<Object, Object> map = new HashMap<Object, Object>();
+		map.put(key, value);
+		return map;
+	}
+
+	protected static List<EOPerformanceLintFailure> lintFailures(Set<EOModelVerificationFailure> failures) {
+		List<EOPerformanceLintFailure> lintFailures = new ArrayList<EOPerformanceLintFailure>();
+		for (EOModelVerificationFailure failure : failures) {
+			if (failure instanceof EOPerformanceLintFailure) {
+				lintFailures.add((EOPerformanceLintFailure) failure);
+			}
+		}
+		return lintFailures;
+	}
+
+	protected static Set<String> describe(List<EOPerformanceLintFailure> failures) {
+		Set<String> descriptions = new TreeSet<String>();
+		for (EOPerformanceLintFailure failure : failures) {
+			descriptions.add(failure.getRuleName() + " " + failure.getSeverity().getExternalName() + " " + failure.getFailedObject().getFullyQualifiedName());
+		}
+		return descriptions;
+	}
+}
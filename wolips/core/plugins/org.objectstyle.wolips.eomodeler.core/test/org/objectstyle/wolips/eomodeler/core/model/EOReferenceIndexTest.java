@@ -0,0 +1,150 @@
+/*
+ * ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0
+ * 
+ * Copyright (c) 2006 The ObjectStyle Group and individual authors of the
+ * software. All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * 3. The end-user documentation included with the redistribution, if any, must
+ * include the following acknowlegement: "This product includes software
+ * developed by the ObjectStyle Group (http://objectstyle.org/)." Alternately,
+ * this acknowlegement may appear in the software itself, if and wherever such
+ * third-party acknowlegements normally appear.
+ * 
+ * 4. The names "ObjectStyle Group" and "Cayenne" must not be used to endorse or
+ * promote products derived from this software without prior written permission.
+ * For written permission, please contact andrus@objectstyle.org.
+ * 
+ * 5. Products derived from this software may not be called "ObjectStyle" nor
+ * may "ObjectStyle" appear in their names without prior written permission of
+ * the ObjectStyle Group.
+ * 
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * OBJECTSTYLE GROUP OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * ====================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on
+ * behalf of the ObjectStyle Group. For more information on the ObjectStyle
+ * Group, please see <http://objectstyle.org/>.
+ *  
+ */
+package org.objectstyle.wolips.eomodeler.core.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class EOReferenceIndexTest extends TestCase {
+	public void testReferencesMatchScans() throws Exception {
+		Random random = new Random(42);
+		EOModelGroup modelGroup = new EOModelGroup();
+		List<EOModel> models = new ArrayList<EOModel>();
+		for (int modelNum = 0; modelNum < 3; modelNum++) {
+			EOModel model = new EOModel("Model" + modelNum);
+			for (int entityNum = 0; entityNum < 8; entityNum++) {
+				model.addEntity(new EOEntity("Model" + modelNum + "Entity" + entityNum));
+			}
+			modelGroup.addModel(model);
+			models.add(model);
+		}
+		int nameNum = 0;
+		for (int mutation = 0; mutation < 3000; mutation++) {
+			boolean fireEvents = random.nextBoolean();
+			EOModel model = models.get(random.nextInt(models.size()));
+			if (model.getEntities().isEmpty()) {
+				model.addEntity(new EOEntity("Entity" + nameNum++));
+			}
+			EOEntity entity = EOModelFixtures.pick(model.getEntities(), random);
+			EOEntity otherEntity = pickEntity(models, random);
+			switch (random.nextInt(9)) {
+			case 0:
+			case 1:
+				entity.setParent(otherEntity);
+				break;
+			case 2:
+				EORelationship relationship = new EORelationship("relationship" + nameNum++);
+				relationship.setDestination(otherEntity, false);
+				entity.addRelationship(relationship, true, null, fireEvents);
+				break;
+			case 3:
+			case 4:
+				if (!entity.getRelationships().isEmpty()) {
+					EOModelFixtures.pick(entity.getRelationships(), random).setDestination(otherEntity, fireEvents);
+				}
+				break;
+			case 5:
+				if (!entity.getRelationships().isEmpty()) {
+					entity.removeRelationship(EOModelFixtures.pick(entity.getRelationships(), random), false);
+				}
+				break;
+			case 6:
+				if (random.nextBoolean()) {
+					model.removeEntity(entity);
+				} else {
+					model.addEntity(new EOEntity("Entity" + nameNum++), true, fireEvents, null);
+				}
+				break;
+			case 7:
+				if (modelGroup.getModels().contains(model)) {
+					modelGroup.removeModel(model, null);
+				} else {
+					modelGroup.addModel(model);
+				}
+				break;
+			default:
+				entity.setParent(null);
+				break;
+			}
+			for (EOModel checkedModel : modelGroup.getModels()) {
+				for (EOEntity checkedEntity : checkedModel.getEntities()) {
+					assertEquals("referencing relationships of " + checkedEntity.getName() + " after mutation " + mutation, EOModelFixtures.scanReferencingRelationships(checkedEntity), checkedEntity.getReferencingRelationships());
+					assertEquals("children of " + checkedEntity.getName() + " after mutation " + mutation, EOModelFixtures.scanChildrenEntities(checkedEntity), checkedEntity.getChildrenEntities());
+				}
+			}
+		}
+	}
+
+	protected EOEntity pickEntity(List<EOModel> models, Random random) {
+		EOModel model = models.get(random.nextInt(models.size()));
+		return model.getEntities().isEmpty() || random.nextInt(8) == 0 ? null : EOModelFixtures.pick(model.getEntities(), random);
+	}
+
+	public void testLoadedModelReferencesMatchScans() throws Exception {
+		File folder = EOModelFixtures.temporaryFolder("EOReferenceIndexTest");
+		try {
+			File modelFolder = new File(folder, "References.eomodeld");
+			EOModelFixtures.writeModel(modelFolder, 100);
+			EOModelGroup modelGroup = EOModelFixtures.loadModelGroup(modelFolder);
+			for (EOEntity entity : modelGroup.getEntities()) {
+				assertEquals(entity.getName(), EOModelFixtures.scanReferencingRelationships(entity), entity.getReferencingRelationships());
+				assertEquals(entity.getName(), EOModelFixtures.scanChildrenEntities(entity), entity.getChildrenEntities());
+			}
+			modelGroup.verify(new LinkedHashSet<EOModelVerificationFailure>());
+		} finally {
+			EOModelFixtures.delete(folder);
+		}
+	}
+}
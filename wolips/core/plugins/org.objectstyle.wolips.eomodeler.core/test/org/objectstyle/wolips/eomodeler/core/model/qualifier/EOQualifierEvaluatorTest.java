@@ -0,0 +1,154 @@
+package org.objectstyle.wolips.eomodeler.core.model.qualifier;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOQualifierFactory;
+
+public class EOQualifierEvaluatorTest extends TestCase {
+	private EOQualifierEvaluator _evaluator;
+
+	private List<Map<String, Object>> _rows;
+
+	private Map<String, Object> _bindings;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_evaluator = new EOQualifierEvaluator(EOQualifierFixtures.createPersonEntity());
+		_rows = EOQualifierFixtures.createPersonRows(20000);
+		_bindings = new HashMap<String, Object>();
+		_bindings.put("name", "Mike");
+		_bindings.put("minimumAge", Integer.valueOf(40));
+	}
+
+	public void testComparison() throws Exception {
+		this.check(_evaluator, "age > 30", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				return ((Integer) row.get("age")).intValue() > 30;
+			}
+		});
+	}
+
+	public void testQuotedStringEquality() throws Exception {
+		this.check(_evaluator, "name = 'Anna' or name = \"O\\'Neil\"", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				return "Anna".equals(row.get("name")) || "O'Neil".equals(row.get("name"));
+			}
+		});
+	}
+
+	public void testLike() throws Exception {
+		this.check(_evaluator, "name like 'An*'", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				return ((String) row.get("name")).startsWith("An");
+			}
+		});
+	}
+
+	public void testCaseInsensitiveLike() throws Exception {
+		this.check(_evaluator, "name caseInsensitiveLike '*CHRIS*'", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				return ((String) row.get("name")).toLowerCase().contains("chris");
+			}
+		});
+	}
+
+	public void testSingleCharacterWildcard() throws Exception {
+		this.check(_evaluator, "name caseInsensitiveLike 'an?ie' or name like '*e'", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				String name = (String) row.get("name");
+				return name.equalsIgnoreCase("Annie") || name.endsWith("e");
+			}
+		});
+	}
+
+	public void testDecimalAndBoolean() throws Exception {
+		this.check(_evaluator, "salary >= 50000.5 and active = 1", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				return ((BigDecimal) row.get("salary")).compareTo(new BigDecimal("50000.5")) >= 0 && ((Boolean) row.get("active")).booleanValue();
+			}
+		});
+	}
+
+	public void testDateAndNil() throws Exception {
+		this.check(_evaluator, "birthDate < '1980-01-01' and rating <> nil", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				return ((Date) row.get("birthDate")).getTime() < java.sql.Date.valueOf("1980-01-01").getTime() && row.get("rating") != null;
+			}
+		});
+	}
+
+	public void testToOneKeyPathAndNot() throws Exception {
+		this.check(_evaluator, "company.country = 'CH' or not (rating <= 2.5)", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			@SuppressWarnings("unchecked")
+			public boolean evaluate(Map<String, Object> row) {
+				Double rating = (Double) row.get("rating");
+				return "CH".equals(((Map<String, Object>) row.get("company")).get("country")) || rating == null || rating.doubleValue() > 2.5;
+			}
+		});
+	}
+
+	public void testToManyKeyPathAndKeyComparison() throws Exception {
+		this.check(_evaluator, "projects.name = 'Apollo' and age >= rating", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			@SuppressWarnings("unchecked")
+			public boolean evaluate(Map<String, Object> row) {
+				boolean apollo = false;
+				for (Map<String, Object> project : (List<Map<String, Object>>) row.get("projects")) {
+					apollo |= "Apollo".equals(project.get("name"));
+				}
+				Double rating = (Double) row.get("rating");
+				return apollo && rating != null && ((Integer) row.get("age")).intValue() >= rating.doubleValue();
+			}
+		});
+	}
+
+	public void testBindingsDropMissingVariables() throws Exception {
+		this.check(_evaluator, "name = $name or (age >= $minimumAge and company.name like $missing)", _bindings, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				return "Mike".equals(row.get("name")) || ((Integer) row.get("age")).intValue() >= 40;
+			}
+		});
+	}
+
+	public void testWithoutEntity() throws Exception {
+		this.check(new EOQualifierEvaluator(null), "age = 30.0 or rating = 3", null, _rows, new EOQualifierEvaluator.RowPredicate() {
+			public boolean evaluate(Map<String, Object> row) {
+				Double rating = (Double) row.get("rating");
+				return ((Integer) row.get("age")).intValue() == 30 || (rating != null && rating.doubleValue() == 3.0);
+			}
+		});
+	}
+
+	public void testUnknownKeyPathFails() throws Exception {
+		assertCompileFails("address.city = 'Zurich'", null, false);
+	}
+
+	public void testMismatchedValueTypeFails() throws Exception {
+		assertCompileFails("age > 'old'", null, false);
+	}
+
+	public void testMissingRequiredVariableFails() throws Exception {
+		assertCompileFails("name = $name and age > $age", _bindings, true);
+	}
+
+	protected void check(EOQualifierEvaluator evaluator, String qualifierString, Map<String, Object> bindings, List<Map<String, Object>> rows, EOQualifierEvaluator.RowPredicate referencePredicate) throws Exception {
+		List<Map<String, Object>> expectedRows = referencePredicate.filter(rows);
+		assertFalse("'" + qualifierString + "' doesn't tell the rows apart", expectedRows.isEmpty() || expectedRows.size() == rows.size());
+		assertEquals(qualifierString, expectedRows, evaluator.compile(qualifierString, bindings).filter(rows));
+	}
+
+	protected void assertCompileFails(String qualifierString, Map<String, Object> bindings, boolean requiresAllVariables) throws Exception {
+		try {
+			_evaluator.compile(EOQualifierFactory.fromString(qualifierString), bindings, requiresAllVariables);
+			fail("'" + qualifierString + "' compiled.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package org.objectstyle.wolips.eomodeler.core.model.qualifier;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.objectstyle.wolips.eomodeler.core.model.EODataType;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+
+/**
+ * EOQualifierFixtures creates the entities, rows and qualifiers that the
+ * qualifier tests and benchmarks work on.
+ */
+public class EOQualifierFixtures {
+	protected static final String[] NAMES = new String[] { "Anna", "Andrew", "Annie", "Bob", "Bea", "Chris", "christine", "Dan", "Eve", "Frank", "Mike", "Mark", "O'Neil", "Zoe" };
+
+	protected static final String[] COUNTRIES = new String[] { "CH", "DE", "FR", "US" };
+
+	protected static final String[] PROJECTS = new String[] { "Apollo", "Gemini", "Mercury", "Skylab" };
+
+	/**
+	 * Returns a Person entity with an attribute of each kind of value, a
+	 * to-one company and a to-many projects.
+	 */
+	public static EOEntity createPersonEntity() throws Exception {
+		EOModel model = new EOModel("Evaluation");
+		EOEntity companyEntity = EOModelFixtures.addEntity(model, "Company", null);
+		EOModelFixtures.addAttribute(companyEntity, "name", null, EODataType.STRING);
+		EOModelFixtures.addAttribute(companyEntity, "country", null, EODataType.STRING);
+
+		EOEntity projectEntity = EOModelFixtures.addEntity(model, "Project", null);
+		EOModelFixtures.addAttribute(projectEntity, "name", null, EODataType.STRING);
+
+		EOEntity personEntity = EOModelFixtures.addEntity(model, "Person", null);
+		EOModelFixtures.addAttribute(personEntity, "id", null, EODataType.INTEGER);
+		EOModelFixtures.addAttribute(personEntity, "name", null, EODataType.STRING);
+		EOModelFixtures.addAttribute(personEntity, "age", null, EODataType.INTEGER);
+		EOModelFixtures.addAttribute(personEntity, "salary", null, EODataType.BIGDECIMAL);
+		EOModelFixtures.addAttribute(personEntity, "rating", null, EODataType.DOUBLE);
+		EOModelFixtures.addAttribute(personEntity, "active", null, EODataType.BOOLEAN);
+		EOModelFixtures.addAttribute(personEntity, "birthDate", null, EODataType.TIMESTAMP);
+		EOModelFixtures.addRelationship(personEntity, "company", companyEntity, false);
+		EOModelFixtures.addRelationship(personEntity, "projects", projectEntity, true);
+		return personEntity;
+	}
+
+	/**
+	 * Returns rows of Person with a company and up to two projects each. The
+	 * values are drawn from small pools, the way real data repeats itself.
+	 */
+	public static List<Map<String, Object>> createPersonRows(int rowCount) {
+		Random random = new Random(42);
+		List<Map<String, Object>> companies = new ArrayList<Map<String, Object>>();
+		for (int companyNum = 0; companyNum < 100; companyNum++) {
+			Map<String, Object> company = new HashMap<String, Object>();
+			company.put("name", "Company " + companyNum);
+			company.put("country", EOQualifierFixtures.COUNTRIES[companyNum % EOQualifierFixtures.COUNTRIES.length]);
+			companies.add(company);
+		}
+		List<List<Map<String, Object>>> projectLists = new ArrayList<List<Map<String, Object>>>();
+		for (int firstProjectNum = 0; firstProjectNum <= EOQualifierFixtures.PROJECTS.length; firstProjectNum++) {
+			List<Map<String, Object>> projects = new ArrayList<Map<String, Object>>();
+			for (int projectNum = firstProjectNum; projectNum < Math.min(firstProjectNum + 2, EOQualifierFixtures.PROJECTS.length); projectNum++) {
+				Map<String, Object> project = new HashMap<String, Object>();
+				project.put("name", EOQualifierFixtures.PROJECTS[projectNum]);
+				projects.add(project);
+			}
+			projectLists.add(projects);
+		}
+		BigDecimal[] salaries = new BigDecimal[1000];
+		for (int salaryNum = 0; salaryNum < salaries.length; salaryNum++) {
+			salaries[salaryNum] = new BigDecimal(salaryNum * 100).add(new BigDecimal("0.50"));
+		}
+		Double[] ratings = new Double[11];
+		for (int ratingNum = 0; ratingNum < ratings.length; ratingNum++) {
+			ratings[ratingNum] = Double.valueOf(ratingNum * 0.5);
+		}
+		Date[] birthDates = new Date[365];
+		for (int birthDateNum = 0; birthDateNum < birthDates.length; birthDateNum++) {
+			birthDates[birthDateNum] = new Date(java.sql.Timestamp.valueOf("1950-01-01 12:00:00").getTime() + birthDateNum * 60L * 24 * 60 * 60 * 1000 * 2);
+		}
+
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(rowCount);
+		for (int rowNum = 0; rowNum < rowCount; rowNum++) {
+			Map<String, Object> row = new HashMap<String, Object>(16);
+			row.put("id", Integer.valueOf(rowNum));
+			row.put("name", EOQualifierFixtures.NAMES[random.nextInt(EOQualifierFixtures.NAMES.length)]);
+			row.put("age", Integer.valueOf(18 + random.nextInt(50)));
+			row.put("salary", salaries[random.nextInt(salaries.length)]);
+			row.put("rating", random.nextInt(10) == 0 ? null : ratings[random.nextInt(ratings.length)]);
+			row.put("active", Boolean.valueOf(random.nextBoolean()));
+			row.put("birthDate", birthDates[random.nextInt(birthDates.length)]);
+			row.put("company", companies.get(random.nextInt(companies.size())));
+			row.put("projects", projectLists.get(random.nextInt(projectLists.size())));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns a qualifier of the given number of terms that mixes ands, ors,
+	 * nots, parentheses and escaped literals.
+	 */
+	public static String generateQualifier(int termCount) {
+		StringBuilder qualifierString = new StringBuilder();
+		for (int termNum = 0; termNum < termCount; termNum++) {
+			if (termNum > 0) {
+				qualifierString.append(termNum % 7 == 0 ? " or " : " and ");
+			}
+			if (termNum % 11 == 0) {
+				qualifierString.append("not (person.attribute").append(termNum).append(" like 'it\\'s*')");
+			} else if (termNum % 13 == 0) {
+				qualifierString.append("(amount").append(termNum).append(" >= ").append(termNum).append(".5 or name = $name").append(termNum).append(")");
+			} else {
+				qualifierString.append("person.attribute").append(termNum).append(" = 'value ").append(termNum).append("'");
+			}
+		}
+		return qualifierString.toString();
+	}
+}
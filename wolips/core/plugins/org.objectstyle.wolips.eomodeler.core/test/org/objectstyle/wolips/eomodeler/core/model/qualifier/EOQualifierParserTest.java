@@ -0,0 +1,325 @@
+package org.objectstyle.wolips.eomodeler.core.model.qualifier;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class EOQualifierParserTest extends TestCase {
+	protected static final String[] CORPUS = new String[] {
+		"name = 'Mike'",
+		"name = \"Mike\"",
+		"name == 'Mike'",
+		"name <> 'Mike'",
+		"age > 5",
+		"age >= 5",
+		"age < 5.5",
+		"age <= -5",
+		"age = 0.10",
+		"date = 2008-01-01",
+		"name like 'M*'",
+		"name LIKE 'M*'",
+		"name caseInsensitiveLike 'm*'",
+		"name caseinsensitivelike 'm*'",
+		"name contains 'ik'",
+		"name isEqualTo 'Mike'",
+		"name isequalto 'Mike'",
+		"name isLike: 'M*'",
+		"name = %@",
+		"name = %s and age = %d",
+		"name = %K",
+		"name = $name",
+		"name = $person.name",
+		"person.name = 'Mike'",
+		"person.name = otherPerson.name",
+		"name = otherName",
+		"name = null",
+		"name = nil",
+		"name <> NULL",
+		"TRUEPREDICATE",
+		"truepredicate",
+		"a = 1 and b = 2",
+		"a = 1 and b = 2 and c = 3 and d = 4",
+		"a = 1 or b = 2 or c = 3",
+		"a = 1 and b = 2 or c = 3",
+		"a = 1 or b = 2 and c = 3",
+		"a = 1 and b = 2 or c = 3 and d = 4 or e = 5",
+		"(a = 1 and b = 2) or c = 3",
+		"a = 1 and (b = 2 or c = 3)",
+		"((a = 1))",
+		"(a = 1 and (b = 2 and (c = 3 or d = 4)))",
+		"(a = 1 and b = 2) and (c = 3 and d = 4)",
+		"(a = 1 or b = 2) or (c = 3 or d = 4)",
+		"not a = 1",
+		"not (a = 1)",
+		"not a = 1 and b = 2",
+		"not (a = 1 and b = 2)",
+		"not not a = 1",
+		"a = 1 and not b = 2 or c = 3",
+		"(not a = 1)",
+		"a = 1 and not (status = $notStatus) and voucherID = $voucherID",
+		"name = 'it\\'s'",
+		"name = 'back\\\\slash'",
+		"name = \"say \\\"hi\\\"\"",
+		"name = 'double \" inside'",
+		"name = \"single ' inside\"",
+		"name = ''",
+		"a=1 and b>2",
+		"a>=1",
+		"  a  =  1  ",
+		"",
+		"a",
+		"a =",
+		"a = 1 and",
+		"a = 1 or",
+		"a = 1 b = 2",
+		"(a = 1",
+		"a = 1)",
+		"(a = 1))",
+		"a = 1 and )",
+		"a => 1",
+		"a = 'unterminated",
+		"a = \"unterminated",
+		"a = 1 \\ b",
+		"a = %",
+		"a = %x",
+		"a = $",
+		"a = 1a",
+		"1 = a",
+		"a = b = c",
+		"a # 1",
+		"and a = 1",
+		"a = (b)",
+		"not",
+		"a = 12345678901",
+	};
+
+	protected static final String[] EXPECTED = new String[] {
+		"KeyValue(name = String:Mike) | name = 'Mike'",
+		"KeyValue(name = String:Mike) | name = 'Mike'",
+		"KeyValue(name == String:Mike) | name == 'Mike'",
+		"KeyValue(name <> String:Mike) | name <> 'Mike'",
+		"KeyValue(age > Integer:5) | age > 5",
+		"KeyValue(age >= Integer:5) | age >= 5",
+		"KeyValue(age < BigDecimal:5.5) | age < 5.5",
+		"KeyValue(age <= Integer:-5) | age <= -5",
+		"KeyValue(age = BigDecimal:0.10) | age = 0.10",
+		"java.lang.NumberFormatException",
+		"KeyValue(name like String:M*) | name like 'M*'",
+		"KeyValue(name like String:M*) | name like 'M*'",
+		"KeyValue(name caseinsensitivelike String:m*) | name caseinsensitivelike 'm*'",
+		"KeyValue(name caseinsensitivelike String:m*) | name caseinsensitivelike 'm*'",
+		"KeyValue(name contains String:ik) | name contains 'ik'",
+		"KeyValue(name isEqualTo String:Mike) | name isEqualTo 'Mike'",
+		"KeyValue(name isEqualTo String:Mike) | name isEqualTo 'Mike'",
+		"KeyValue(name isLike: String:M*) | name isLike: 'M*'",
+		"KeyValue(name = EOQualifierVariable:%@) | name = %@",
+		"And[KeyValue(name = EOQualifierVariable:%s), KeyValue(age = EOQualifierVariable:%d)] | name = %s and age = %d",
+		"KeyValue(name = EOQualifierVariable:%K) | name = %K",
+		"KeyValue(name = EONamedQualifierVariable:$name) | name = $name",
+		"KeyValue(name = EONamedQualifierVariable:$person.name) | name = $person.name",
+		"KeyValue(person.name = String:Mike) | person.name = 'Mike'",
+		"KeyComparison(person.name = otherPerson.name) | person.name = otherPerson.name",
+		"KeyComparison(name = otherName) | name = otherName",
+		"KeyValue(name = null) | name = null",
+		"KeyValue(name = null) | name = null",
+		"KeyValue(name <> null) | name <> null",
+		"EOTruePredicate | TRUEPREDICATE",
+		"EOTruePredicate | TRUEPREDICATE",
+		"And[KeyValue(a = Integer:1), KeyValue(b = Integer:2)] | a = 1 and b = 2",
+		"And[KeyValue(a = Integer:1), KeyValue(b = Integer:2), KeyValue(c = Integer:3), KeyValue(d = Integer:4)] | a = 1 and b = 2 and c = 3 and d = 4",
+		"Or[KeyValue(a = Integer:1), KeyValue(b = Integer:2), KeyValue(c = Integer:3)] | a = 1 or b = 2 or c = 3",
+		"And[KeyValue(a = Integer:1), Or[KeyValue(b = Integer:2), KeyValue(c = Integer:3)]] | a = 1 and (b = 2 or c = 3)",
+		"Or[KeyValue(a = Integer:1), And[KeyValue(b = Integer:2), KeyValue(c = Integer:3)]] | a = 1 or (b = 2 and c = 3)",
+		"And[KeyValue(a = Integer:1), Or[KeyValue(b = Integer:2), And[KeyValue(c = Integer:3), Or[KeyValue(d = Integer:4), KeyValue(e = Integer:5)]]]] | a = 1 and (b = 2 or (c = 3 and (d = 4 or e = 5)))",
+		"Or[And[KeyValue(a = Integer:1), KeyValue(b = Integer:2)], KeyValue(c = Integer:3)] | (a = 1 and b = 2) or c = 3",
+		"And[KeyValue(a = Integer:1), Or[KeyValue(b = Integer:2), KeyValue(c = Integer:3)]] | a = 1 and (b = 2 or c = 3)",
+		"KeyValue(a = Integer:1) | a = 1",
+		"And[KeyValue(a = Integer:1), KeyValue(b = Integer:2), Or[KeyValue(c = Integer:3), KeyValue(d = Integer:4)]] | a = 1 and b = 2 and (c = 3 or d = 4)",
+		"And[KeyValue(a = Integer:1), KeyValue(b = Integer:2), KeyValue(c = Integer:3), KeyValue(d = Integer:4)] | a = 1 and b = 2 and c = 3 and d = 4",
+		"Or[KeyValue(a = Integer:1), KeyValue(b = Integer:2), KeyValue(c = Integer:3), KeyValue(d = Integer:4)] | a = 1 or b = 2 or c = 3 or d = 4",
+		"Not(KeyValue(a = Integer:1)) | not (a = 1)",
+		"Not(KeyValue(a = Integer:1)) | not (a = 1)",
+		"And[Not(KeyValue(a = Integer:1)), KeyValue(b = Integer:2)] | not (a = 1) and b = 2",
+		"Not(And[KeyValue(a = Integer:1), KeyValue(b = Integer:2)]) | not (a = 1 and b = 2)",
+		"Not(Not(KeyValue(a = Integer:1))) | not (not (a = 1))",
+		"And[KeyValue(a = Integer:1), Or[Not(KeyValue(b = Integer:2)), KeyValue(c = Integer:3)]] | a = 1 and (not (b = 2) or c = 3)",
+		"Not(KeyValue(a = Integer:1)) | not (a = 1)",
+		"And[KeyValue(a = Integer:1), Not(KeyValue(status = EONamedQualifierVariable:$notStatus)), KeyValue(voucherID = EONamedQualifierVariable:$voucherID)] | a = 1 and not (status = $notStatus) and voucherID = $voucherID",
+		"KeyValue(name = String:it's) | name = 'it\\'s'",
+		"KeyValue(name = String:back\\slash) | name = 'back\\\\slash'",
+		"KeyValue(name = String:say \"hi\") | name = 'say \"hi\"'",
+		"KeyValue(name = String:double \" inside) | name = 'double \" inside'",
+		"KeyValue(name = String:single ' inside) | name = 'single \\' inside'",
+		"KeyValue(name = String:) | name = ''",
+		"And[KeyValue(a = Integer:1), KeyValue(b > Integer:2)] | a = 1 and b > 2",
+		"KeyValue(a >= Integer:1) | a >= 1",
+		"KeyValue(a = Integer:1) | a = 1",
+		"null | null",
+		"ParseException at 0: Expected an operator after [Keyword: a] at offset 0.",
+		"ParseException at 2: Unknown operator  at offset 2.",
+		"ParseException at 6: 'and' requires a second qualifier at offset 6.",
+		"ParseException at 6: 'or' requires a second qualifier at offset 6.",
+		"ParseException at 6: Illegal token [Keyword: b] at offset 6.",
+		"ParseException at 1: Missing closing paren starting at offset 1.",
+		"ParseException at 5: Close paren without open paren at offset 5.",
+		"ParseException at 7: Close paren without open paren at offset 7.",
+		"ParseException at 10: Close paren without open paren at offset 10.",
+		"ParseException at 2: Unknown operator => at offset 2.",
+		"ParseException at 6: Missing closing ' starting at offset 6.",
+		"ParseException at 6: Missing closing \" starting at offset 6.",
+		"ParseException at 7: Backslash in invalid state 0 at offset 7.",
+		"ParseException at 4: Percent found without variable character at offset 4.",
+		"ParseException at 5: Unknown variable %x at offset 5.",
+		"KeyValue(a = EONamedQualifierVariable:$) | a = $",
+		"ParseException at 5: Unexpected character a at offset 5.",
+		"ParseException at 0: Invalid token [Number: 1] at offset 0.",
+		"ParseException at 6: Illegal token [Operator: =] at offset 6.",
+		"ParseException at 2: Unexpected character # at offset 2.",
+		"ParseException at 0: Invalid token [And] at offset 0.",
+		"ParseException at 0: [Keyword: a], [Operator: =], [OpenParen] is an invalid token sequence at offset 0.",
+		"Not(null) | java.lang.NullPointerException",
+		"java.lang.NumberFormatException",
+	};
+
+	public void testCorpus() {
+		List<String> descriptions = EOQualifierParserTest.describeCorpus(null);
+		for (int qualifierNum = 0; qualifierNum < EOQualifierParserTest.CORPUS.length; qualifierNum++) {
+			assertEquals(EOQualifierParserTest.CORPUS[qualifierNum], EOQualifierParserTest.EXPECTED[qualifierNum], descriptions.get(qualifierNum));
+		}
+	}
+
+	public void testCache() {
+		List<String> expected = EOQualifierParserTest.describeCorpus(null);
+		EOQualifierCache cache = new EOQualifierCache(16);
+		assertEquals(expected, EOQualifierParserTest.describeCorpus(cache));
+		assertEquals(expected, EOQualifierParserTest.describeCorpus(cache));
+		assertTrue(cache.size() <= 16);
+	}
+
+	public void testCachedQualifierIsShared() throws ParseException {
+		String qualifierString = EOQualifierFixtures.generateQualifier(200);
+		EOQualifierCache cache = new EOQualifierCache(16);
+		EOQualifier qualifier = cache.parseQualifier(qualifierString);
+		assertSame(qualifier, cache.parseQualifier(qualifierString));
+		try {
+			((EOAggregateQualifier) qualifier).getQualifiers().add(new EOTruePredicate());
+			fail("A cached qualifier could be changed.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testGeneratedQualifierParsesBackIntoItself() throws ParseException {
+		EOQualifier qualifier = new EOQualifierParser().parseQualifier(EOQualifierFixtures.generateQualifier(2000));
+		assertEquals(EOQualifierParserTest.describe(qualifier), EOQualifierParserTest.describe(new EOQualifierParser().parseQualifier(qualifier.toString())));
+	}
+
+	public void testParsingOnSeveralThreads() throws Exception {
+		final EOQualifierParser sharedParser = new EOQualifierParser();
+		final EOQualifierCache sharedCache = new EOQualifierCache(EOQualifierCache.DEFAULT_MAX_ENTRIES);
+		List<String> expected = EOQualifierParserTest.describeCorpus(null);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+			for (int thread = 0; thread < 8; thread++) {
+				final boolean cached = thread % 2 == 0;
+				futures.add(executor.submit(new Callable<List<String>>() {
+					public List<String> call() throws Exception {
+						List<String> descriptions = null;
+						for (int i = 0; i < 50; i++) {
+							descriptions = new ArrayList<String>();
+							for (String qualifierString : EOQualifierParserTest.CORPUS) {
+								descriptions.add(EOQualifierParserTest.describe(qualifierString, cached ? sharedCache : null, sharedParser));
+							}
+						}
+						return descriptions;
+					}
+				}));
+			}
+			for (Future<List<String>> future : futures) {
+				assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the descriptions of the corpus qualifiers, parsed through the
+	 * given cache or, if it's null, a new parser.
+	 */
+	protected static List<String> describeCorpus(EOQualifierCache cache) {
+		List<String> descriptions = new ArrayList<String>();
+		for (String qualifierString : EOQualifierParserTest.CORPUS) {
+			descriptions.add(EOQualifierParserTest.describe(qualifierString, cache));
+		}
+		return descriptions;
+	}
+
+	/**
+	 * Returns the structure and string form of the qualifier that the given
+	 * cache or a new parser makes of the given string, or the error it fails
+	 * with.
+	 */
+	protected static String describe(String qualifierString, EOQualifierCache cache) {
+		return EOQualifierParserTest.describe(qualifierString, cache, new EOQualifierParser());
+	}
+
+	/**
+	 * Returns the structure and string form of the qualifier that the given
+	 * cache or, if it's null, the given parser makes of the given string, or
+	 * the error it fails with.
+	 */
+	protected static String describe(String qualifierString, EOQualifierCache cache, EOQualifierParser parser) {
+		try {
+			EOQualifier qualifier = cache == null ? parser.parseQualifier(qualifierString) : cache.parseQualifier(qualifierString);
+			String qualifierDescription = EOQualifierParserTest.describe(qualifier);
+			try {
+				return qualifierDescription + " | " + qualifier;
+			} catch (RuntimeException e) {
+				return qualifierDescription + " | " + e.getClass().getName();
+			}
+		} catch (ParseException e) {
+			return "ParseException at " + e.getErrorOffset() + ": " + e.getMessage();
+		} catch (RuntimeException e) {
+			return e.getClass().getName();
+		}
+	}
+
+	protected static String describe(EOQualifier qualifier) {
+		StringBuilder description = new StringBuilder();
+		if (qualifier == null) {
+			description.append("null");
+		} else if (qualifier instanceof EOAggregateQualifier) {
+			description.append(qualifier instanceof EOAndQualifier ? "And[" : "Or[");
+			boolean first = true;
+			for (EOQualifier childQualifier : ((EOAggregateQualifier) qualifier).getQualifiers()) {
+				if (!first) {
+					description.append(", ");
+				}
+				description.append(EOQualifierParserTest.describe(childQualifier));
+				first = false;
+			}
+			description.append("]");
+		} else if (qualifier instanceof EONotQualifier) {
+			description.append("Not(").append(EOQualifierParserTest.describe(((EONotQualifier) qualifier).getQualifier())).append(")");
+		} else if (qualifier instanceof EOKeyValueQualifier) {
+			EOKeyValueQualifier keyValueQualifier = (EOKeyValueQualifier) qualifier;
+			Object value = keyValueQualifier.getValue();
+			description.append("KeyValue(").append(keyValueQualifier.getKey()).append(" ").append(keyValueQualifier.getComparison()).append(" ");
+			description.append(value == null ? "null" : value.getClass().getSimpleName() + ":" + value).append(")");
+		} else if (qualifier instanceof EOKeyComparisonQualifier) {
+			EOKeyComparisonQualifier keyComparisonQualifier = (EOKeyComparisonQualifier) qualifier;
+			description.append("KeyComparison(").append(keyComparisonQualifier.getLeftKey()).append(" ").append(keyComparisonQualifier.getComparison()).append(" ").append(keyComparisonQualifier.getRightKey()).append(")");
+		} else {
+			description.append(qualifier.getClass().getSimpleName());
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,176 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization;
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EODataType;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntityIndex;
+import org.objectstyle.wolips.eomodeler.core.model.EOJoin;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EORelationship;
+
+public class EntityIndexAdvisorTest extends TestCase {
+	private EOModelGroup _modelGroup;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_modelGroup = new EOModelGroup();
+		EOModel companyModel = new EOModel("Company");
+		_modelGroup.addModel(companyModel);
+		EOModel billingModel = new EOModel("Billing");
+		_modelGroup.addModel(billingModel);
+
+		EOEntity company = EOModelFixtures.addEntity(companyModel, "Company", "COMPANY");
+		EOAttribute companyID = EOModelFixtures.addAttribute(company, "id", "ID", EODataType.INTEGER);
+		companyID.setPrimaryKey(Boolean.TRUE);
+		EOAttribute companyName = EOModelFixtures.addAttribute(company, "name", "NAME", EODataType.STRING);
+		EOAttribute companyCountry = EOModelFixtures.addAttribute(company, "country", "COUNTRY", EODataType.STRING);
+		EOModelFixtures.addEntityIndex(company, "CompanyID", EOEntityIndex.Constraint.None, companyID);
+		// a distinct index isn't redundant, even if a wider index covers it
+		EOModelFixtures.addEntityIndex(company, "CompanyName", EOEntityIndex.Constraint.Distinct, companyName);
+		EOModelFixtures.addEntityIndex(company, "CompanyNameCountry", EOEntityIndex.Constraint.None, companyName, companyCountry);
+
+		EOEntity person = EOModelFixtures.addEntity(companyModel, "Person", "PERSON");
+		EOAttribute personID = EOModelFixtures.addAttribute(person, "id", "ID", EODataType.INTEGER);
+		personID.setPrimaryKey(Boolean.TRUE);
+		EOAttribute personName = EOModelFixtures.addAttribute(person, "name", "NAME", EODataType.STRING);
+		EOAttribute personAge = EOModelFixtures.addAttribute(person, "age", "AGE", EODataType.INTEGER);
+		EOAttribute personCompanyID = EOModelFixtures.addAttribute(person, "companyID", "COMPANY_ID", EODataType.INTEGER);
+		EOAttribute personManagerID = EOModelFixtures.addAttribute(person, "managerID", "MANAGER_ID", EODataType.INTEGER);
+		EOModelFixtures.addEntityIndex(person, "PersonName", EOEntityIndex.Constraint.None, personName);
+		EOModelFixtures.addEntityIndex(person, "PersonNameAge", EOEntityIndex.Constraint.None, personName, personAge);
+		EOModelFixtures.addEntityIndex(person, "PersonManager", EOEntityIndex.Constraint.None, personManagerID);
+		EOModelFixtures.addRelationship(person, "company", company, false, personCompanyID, companyID);
+		EOModelFixtures.addRelationship(company, "people", person, true, companyID, personCompanyID);
+		EOModelFixtures.addRelationship(person, "manager", person, false, personManagerID, personID);
+		EOModelFixtures.addRelationship(person, "reports", person, true, personID, personManagerID);
+
+		EOEntity employee = EOModelFixtures.addEntity(companyModel, "Employee", "PERSON");
+		employee.setParent(person);
+		EOAttribute employeeID = EOModelFixtures.addAttribute(employee, "id", "ID", EODataType.INTEGER);
+		employeeID.setPrimaryKey(Boolean.TRUE);
+		EOAttribute employeeCompanyID = EOModelFixtures.addAttribute(employee, "companyID", "COMPANY_ID", EODataType.INTEGER);
+		EOModelFixtures.addRelationship(employee, "employer", company, false, employeeCompanyID, companyID);
+
+		EOEntity project = EOModelFixtures.addEntity(companyModel, "Project", "PROJECT");
+		EOAttribute projectID = EOModelFixtures.addAttribute(project, "id", "ID", EODataType.INTEGER);
+		projectID.setPrimaryKey(Boolean.TRUE);
+		EOModelFixtures.addAttribute(project, "name", "NAME", EODataType.STRING);
+
+		// the primary key of the join table covers the join on both of its
+		// columns, but only possibly the joins on one of them
+		EOEntity projectPerson = EOModelFixtures.addEntity(companyModel, "ProjectPerson", "PROJECT_PERSON");
+		EOAttribute projectPersonProjectID = EOModelFixtures.addAttribute(projectPerson, "projectID", "PROJECT_ID", EODataType.INTEGER);
+		projectPersonProjectID.setPrimaryKey(Boolean.TRUE);
+		EOAttribute projectPersonPersonID = EOModelFixtures.addAttribute(projectPerson, "personID", "PERSON_ID", EODataType.INTEGER);
+		projectPersonPersonID.setPrimaryKey(Boolean.TRUE);
+		EOModelFixtures.addRelationship(person, "projectPeople", projectPerson, true, personID, projectPersonPersonID);
+		EOModelFixtures.addRelationship(projectPerson, "project", project, false, projectPersonProjectID, projectID);
+		EOModelFixtures.addRelationship(projectPerson, "person", person, false, projectPersonPersonID, personID);
+		EORelationship personProjects = new EORelationship("projects");
+		person.addRelationship(personProjects);
+		personProjects.setDefinition("projectPeople.project");
+
+		EOEntity invoice = EOModelFixtures.addEntity(billingModel, "Invoice", "INVOICE");
+		EOAttribute invoiceID = EOModelFixtures.addAttribute(invoice, "id", "ID", EODataType.INTEGER);
+		invoiceID.setPrimaryKey(Boolean.TRUE);
+		EOAttribute invoicePersonID = EOModelFixtures.addAttribute(invoice, "personID", "PERSON_ID", EODataType.INTEGER);
+		EOAttribute invoiceProjectID = EOModelFixtures.addAttribute(invoice, "projectID", "PROJECT_ID", EODataType.INTEGER);
+		EOModelFixtures.addAttribute(invoice, "amount", "AMOUNT", EODataType.DECIMAL_NUMBER);
+		EOModelFixtures.addRelationship(invoice, "person", person, false, invoicePersonID, personID);
+		EORelationship invoiceAssignment = EOModelFixtures.addRelationship(invoice, "assignment", projectPerson, false, invoiceProjectID, projectPersonProjectID);
+		EOJoin personJoin = new EOJoin();
+		personJoin.setSourceAttribute(invoicePersonID);
+		personJoin.setDestinationAttribute(projectPersonPersonID);
+		invoiceAssignment.addJoin(personJoin);
+		EOAttribute invoicePersonName = new EOAttribute("personName");
+		invoice.addAttribute(invoicePersonName);
+		invoicePersonName.setDefinition("person.name");
+	}
+
+
+	public void testMissingIndexes() {
+		List<EntityIndexReport.MissingIndex> missingIndexes = new EntityIndexAdvisor().advise(_modelGroup).getMissingIndexes();
+		assertEquals(4, missingIndexes.size());
+		// the index on PERSON_ID that Invoice.person needs is folded into
+		// the one on both columns that Invoice.assignment needs
+		assertMissingIndex(missingIndexes.get(0), "Invoice", "[PERSON_ID, PROJECT_ID]", "[Invoice.assignment joins ProjectPerson on it, Invoice.person joins Person on it, Invoice.personName goes through Invoice.person]");
+		assertFalse(missingIndexes.get(0).isPossible());
+		// Employee shares the PERSON table, so its join is reported on Person
+		assertMissingIndex(missingIndexes.get(1), "Person", "[COMPANY_ID]", "[Company.people fetches Person by it, Employee.employer joins Company on it, Person.company joins Company on it]");
+		assertFalse(missingIndexes.get(1).isPossible());
+		// the composite primary key only covers a single one of its columns
+		// if it lists it first
+		assertMissingIndex(missingIndexes.get(2), "ProjectPerson", "[PERSON_ID]", "[Person.projectPeople fetches ProjectPerson by it, Person.projects goes through Person.projectPeople, ProjectPerson.person joins Person on it]");
+		assertEquals("primary key", missingIndexes.get(2).getPossiblyCoveringIndexName());
+		assertMissingIndex(missingIndexes.get(3), "ProjectPerson", "[PROJECT_ID]", "[Person.projects goes through ProjectPerson.project, ProjectPerson.project joins Project on it]");
+		assertEquals("primary key", missingIndexes.get(3).getPossiblyCoveringIndexName());
+	}
+
+	public void testWiderIndexOnlyPossiblyCoversJoin() throws Exception {
+		EOEntity person = _modelGroup.getEntityNamed("Person");
+		EOModelFixtures.addEntityIndex(person, "PersonAgeCompany", EOEntityIndex.Constraint.None, person.getAttributeNamed("age"), person.getAttributeNamed("companyID"));
+		List<EntityIndexReport.MissingIndex> missingIndexes = new EntityIndexAdvisor().advise(_modelGroup).getMissingIndexes();
+		assertMissingIndex(missingIndexes.get(1), "Person", "[COMPANY_ID]", "[Company.people fetches Person by it, Employee.employer joins Company on it, Person.company joins Company on it]");
+		assertEquals("PersonAgeCompany", missingIndexes.get(1).getPossiblyCoveringIndexName());
+	}
+
+	public void testRedundantIndexes() {
+		List<EntityIndexReport.RedundantIndex> redundantIndexes = new EntityIndexAdvisor().advise(_modelGroup).getRedundantIndexes();
+		assertEquals(2, redundantIndexes.size());
+		assertRedundantIndex(redundantIndexes.get(0), "CompanyID", "primary key", true);
+		assertRedundantIndex(redundantIndexes.get(1), "PersonName", "PersonNameAge", false);
+		assertTrue(redundantIndexes.get(1).isPossible());
+	}
+
+	public void testPropertyList() throws Exception {
+		EntityIndexReport report = new EntityIndexAdvisor().advise(_modelGroup);
+		String propertyList = WOLPropertyListSerialization.stringFromPropertyList(report.toPropertyList());
+		Map<?, ?> reportMap = (Map<?, ?>) WOLPropertyListSerialization.propertyListFromString(propertyList);
+		List<?> missingIndexMaps = (List<?>) reportMap.get("missingIndexes");
+		List<?> redundantIndexMaps = (List<?>) reportMap.get("redundantIndexes");
+		assertEquals(4, missingIndexMaps.size());
+		assertEquals("[PERSON_ID, PROJECT_ID]", String.valueOf(((Map<?, ?>) missingIndexMaps.get(0)).get("columns")));
+		assertEquals("missing", ((Map<?, ?>) missingIndexMaps.get(0)).get("kind"));
+		assertEquals("possible", ((Map<?, ?>) missingIndexMaps.get(2)).get("kind"));
+		assertEquals("primary key", ((Map<?, ?>) missingIndexMaps.get(2)).get("possiblyCoveredBy"));
+		assertEquals(2, redundantIndexMaps.size());
+		assertEquals("possible", ((Map<?, ?>) redundantIndexMaps.get(1)).get("kind"));
+	}
+
+	public void testCreateMissingIndexes() throws Exception {
+		EntityIndexAdvisor advisor = new EntityIndexAdvisor();
+		List<EOEntityIndex> createdIndexes = advisor.createMissingIndexes(advisor.advise(_modelGroup));
+		assertEquals(2, createdIndexes.size());
+		assertEquals("personID_projectID_idx", createdIndexes.get(0).getName());
+		assertEquals("companyID_idx", createdIndexes.get(1).getName());
+		// only the possibly missing indexes are left, including the one on
+		// PERSON_ID that is folded into the new index on INVOICE
+		EntityIndexReport report = advisor.advise(_modelGroup);
+		assertEquals(report.toString(), 3, report.getMissingIndexes().size());
+		for (EntityIndexReport.MissingIndex missingIndex : report.getMissingIndexes()) {
+			assertTrue(report.toString(), missingIndex.isPossible());
+		}
+		assertEquals(2, report.getRedundantIndexes().size());
+	}
+
+	protected static void assertMissingIndex(EntityIndexReport.MissingIndex missingIndex, String entityName, String columnNames, String reasons) {
+		assertEquals(entityName, missingIndex.getEntity().getName());
+		assertEquals(columnNames, missingIndex.getColumnNames().toString());
+		assertEquals(reasons, missingIndex.getReasons().toString());
+	}
+
+	protected static void assertRedundantIndex(EntityIndexReport.RedundantIndex redundantIndex, String indexName, String coveringIndexName, boolean duplicate) {
+		assertEquals(indexName, redundantIndex.getEntityIndex().getName());
+		assertEquals(coveringIndexName, redundantIndex.getCoveringIndexName());
+		assertEquals(duplicate, redundantIndex.isDuplicate());
+	}
+}
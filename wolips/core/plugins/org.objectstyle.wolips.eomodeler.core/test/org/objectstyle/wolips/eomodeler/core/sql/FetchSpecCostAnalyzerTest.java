@@ -0,0 +1,135 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOAttribute;
+import org.objectstyle.wolips.eomodeler.core.model.EODataType;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOEntityIndex;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+
+public class FetchSpecCostAnalyzerTest extends TestCase {
+	private EOModel _model;
+
+	private EOEntity _person;
+
+	private FetchSpecCostAnalyzer _analyzer;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_model = EOModelFixtures.createCompanyModel();
+		_person = _model.getEntityNamed("Person");
+
+		Map<String, Integer> rowCounts = new HashMap<String, Integer>();
+		rowCounts.put("Company", Integer.valueOf(1000));
+		rowCounts.put("Person", Integer.valueOf(1000000));
+		rowCounts.put("Project", Integer.valueOf(5000000));
+		_analyzer = new FetchSpecCostAnalyzer(rowCounts, FetchSpecCostAnalyzer.DEFAULT_ROW_COUNT);
+	}
+
+	public void testPrimaryKeyLookup() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "byID", "id = $id", null, false, null, null);
+		assertReport("byID", "PRIMARY KEY PERSON", -1, 1, null);
+	}
+
+	public void testIndexLookup() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "byName", "name = $name", "age", false, null, null);
+		assertReport("byName", "INDEX PersonName PERSON", 100000, 100000, null);
+	}
+
+	public void testIndexLookupWithScannedCondition() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "adults", "age > 30 and name like 'A*'", null, false, null, null);
+		assertReport("adults", "INDEX PersonName PERSON", -1, 100000, null);
+	}
+
+	public void testScanWithoutFetchLimit() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "olderThan", "age > $age", null, false, null, null);
+		assertReport("olderThan", "SCAN PERSON", -1, 1000000, "no fetch limit");
+	}
+
+	public void testJoinAndPrefetch() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "inCountry", "company.country = 'CH'", null, false, null, "projects");
+		assertReport("inCountry", "SCAN PERSON,PRIMARY KEY COMPANY,SCAN PROJECT", -1, 6001000, "no index on PERSON_ID");
+		String sql = reportNamed(_analyzer.analyze(_model), "inCountry").getStatements().toString();
+		assertTrue(sql, sql.contains("INNER JOIN COMPANY t1 ON t0.COMPANY_ID = t1.ID WHERE t1.COUNTRY = 'CH'"));
+		assertTrue(sql, sql.contains("FROM PROJECT t0 WHERE t0.PERSON_ID IN (?)"));
+	}
+
+	public void testJoinUsesIndexOnJustTheJoinColumn() throws Exception {
+		EOEntity project = _model.getEntityNamed("Project");
+		EOModelFixtures.addEntityIndex(project, "ProjectPerson", EOEntityIndex.Constraint.None, project.getAttributeNamed("personID"));
+		EOModelFixtures.addFetchSpec(_person, "inCountry", "company.country = 'CH'", null, false, null, "projects");
+		assertReport("inCountry", "SCAN PERSON,PRIMARY KEY COMPANY,INDEX ProjectPerson PROJECT", -1, 1501000, null);
+	}
+
+	public void testWiderIndexDoesntCoverJoin() throws Exception {
+		EOEntity project = _model.getEntityNamed("Project");
+		EOAttribute projectName = EOModelFixtures.addAttribute(project, "name", "NAME", EODataType.STRING);
+		EOModelFixtures.addEntityIndex(project, "ProjectNamePerson", EOEntityIndex.Constraint.None, projectName, project.getAttributeNamed("personID"));
+		EOModelFixtures.addFetchSpec(_person, "inCountry", "company.country = 'CH'", null, false, null, "projects");
+		assertReport("inCountry", "SCAN PERSON,PRIMARY KEY COMPANY,SCAN PROJECT", -1, 6001000, "no index on PERSON_ID unless ProjectNamePerson lists these columns first");
+	}
+
+	public void testCaseInsensitiveSearch() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "search", "name caseInsensitiveLike $name", "name", true, null, null);
+		assertReport("search", "SCAN PERSON", 250000, 1000000, "can't use the index on NAME");
+	}
+
+	public void testFetchLimitOnIndexedSort() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "firstByName", null, "name", false, Integer.valueOf(10), null);
+		assertReport("firstByName", "INDEX PersonName PERSON", -1, 10, null);
+	}
+
+	public void testMostExpensiveFirst() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "byID", "id = $id", null, false, null, null);
+		EOModelFixtures.addFetchSpec(_person, "inCountry", "company.country = 'CH'", null, false, null, "projects");
+		EOModelFixtures.addFetchSpec(_person, "olderThan", "age > $age", null, false, null, null);
+		List<FetchSpecCostReport> reports = _analyzer.analyze(_model);
+		assertEquals("inCountry", reports.get(0).getFetchSpecification().getName());
+		assertEquals("byID", reports.get(2).getFetchSpecification().getName());
+	}
+
+	protected FetchSpecCostReport reportNamed(List<FetchSpecCostReport> reports, String fetchSpecName) {
+		for (FetchSpecCostReport report : reports) {
+			if (report.getFetchSpecification().getName().equals(fetchSpecName)) {
+				return report;
+			}
+		}
+		fail("There is no report for " + fetchSpecName + ".");
+		return null;
+	}
+
+	protected void assertReport(String fetchSpecName, String accesses, long sortedRowCount, long rowsRead, String warning) {
+		FetchSpecCostReport report = reportNamed(_analyzer.analyze(_model), fetchSpecName);
+		StringBuffer actualAccesses = new StringBuffer();
+		for (FetchSpecCostReport.TableAccess tableAccess : report.getTableAccesses()) {
+			if (actualAccesses.length() > 0) {
+				actualAccesses.append(",");
+			}
+			actualAccesses.append(tableAccess.getAccessType().getDisplayName());
+			if (tableAccess.getIndexName() != null) {
+				actualAccesses.append(" ").append(tableAccess.getIndexName());
+			}
+			actualAccesses.append(" ").append(tableAccess.getTableName());
+		}
+		assertEquals(accesses, actualAccesses.toString());
+		assertEquals(sortedRowCount, report.getSortedRowCount());
+		assertEquals(rowsRead, report.getRowsRead());
+		if (warning != null) {
+			boolean warned = false;
+			for (String reportWarning : report.getWarnings()) {
+				warned |= reportWarning.contains(warning);
+			}
+			for (FetchSpecCostReport.TableAccess tableAccess : report.getTableAccesses()) {
+				warned |= tableAccess.getDescription() != null && tableAccess.getDescription().contains(warning);
+			}
+			assertTrue(report.toString(), warned);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.objectstyle.wolips.eomodeler.core.sql;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.wolips.eomodeler.core.model.EOEntity;
+import org.objectstyle.wolips.eomodeler.core.model.EOModel;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelFixtures;
+
+public class FetchSpecCostDatabaseTest extends TestCase {
+	private EOModel _model;
+
+	private EOEntity _person;
+
+	private FetchSpecCostDatabase _database;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_model = EOModelFixtures.createCompanyModel();
+		_person = _model.getEntityNamed("Person");
+
+		Map<String, Integer> rowCounts = new HashMap<String, Integer>();
+		rowCounts.put("Company", Integer.valueOf(100));
+		rowCounts.put("Person", Integer.valueOf(1000000));
+		rowCounts.put("Project", Integer.valueOf(5000000));
+		FetchSpecCostAnalyzer analyzer = new FetchSpecCostAnalyzer(rowCounts, FetchSpecCostAnalyzer.DEFAULT_ROW_COUNT);
+		_database = new FetchSpecCostDatabase(analyzer, 2000, 2);
+	}
+
+	public void testPrimaryKeyLookup() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "byID", "id = $id", null, false, null, null);
+		FetchSpecCostReport.Execution execution = executionOf("byID", 0);
+		assertTrue(execution.getPlan(), execution.getPlan().contains("PRIMARY_KEY"));
+		assertEquals(1, execution.getRowsReturned());
+	}
+
+	public void testIndexLookup() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "byName", "name = $name", "age", false, null, null);
+		FetchSpecCostReport.Execution execution = executionOf("byName", 0);
+		assertTrue(execution.getPlan(), execution.getPlan().contains("\"PersonName\""));
+		assertEquals(200, execution.getRowsReturned());
+	}
+
+	public void testScan() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "olderThan", "age > $age", null, false, null, null);
+		FetchSpecCostReport.Execution execution = executionOf("olderThan", 0);
+		assertTrue(execution.getPlan(), execution.getPlan().contains("tableScan"));
+		assertEquals(1600, execution.getRowsReturned());
+	}
+
+	public void testJoinAndPrefetch() throws Exception {
+		EOModelFixtures.addFetchSpec(_person, "inCompany", "company.name = '1'", null, false, null, "projects");
+		FetchSpecCostReport report = reportNamed("inCompany");
+		assertEquals(report.toString(), 2, report.getExecutions().size());
+		assertTrue(report.toString(), report.getExecutions().get(0).getRowsReturned() > 0);
+		assertTrue(report.getExecutions().get(1).getPlan(), report.getExecutions().get(1).getPlan().contains("tableScan"));
+		assertTrue(report.toString(), report.toString().contains("EXECUTED: "));
+	}
+
+	public void testStatementThatDoesntRunIsAWarning() throws Exception {
+		_person.setExternalName("PERSON_VIEW");
+		EOModelFixtures.addFetchSpec(_person, "byID", "id = $id", null, false, null, null);
+		_database.open();
+		try {
+			_database.createTables(_model.getEntities());
+			_person.setExternalName("PERSON");
+			FetchSpecCostReport report = _database.getAnalyzer().analyze(_person.getFetchSpecNamed("byID"));
+			_database.execute(report);
+			assertTrue(report.getExecutions().isEmpty());
+			assertEquals(report.toString(), 1, report.getWarnings().size());
+			assertTrue(report.toString(), report.getWarnings().get(0).startsWith("H2 couldn't run"));
+		} finally {
+			_database.close();
+		}
+	}
+
+	protected FetchSpecCostReport reportNamed(String fetchSpecName) throws Exception {
+		List<FetchSpecCostReport> reports = _database.analyze(_model);
+		for (FetchSpecCostReport report : reports) {
+			if (report.getFetchSpecification().getName().equals(fetchSpecName)) {
+				assertTrue(report.toString(), report.getWarnings().isEmpty() || report.getExecutions().size() == report.getStatements().size());
+				return report;
+			}
+		}
+		fail("There is no report for " + fetchSpecName + ".");
+		return null;
+	}
+
+	protected FetchSpecCostReport.Execution executionOf(String fetchSpecName, int statementIndex) throws Exception {
+		FetchSpecCostReport report = reportNamed(fetchSpecName);
+		assertTrue(report.toString(), report.getExecutions().size() > statementIndex);
+		return report.getExecutions().get(statementIndex);
+	}
+}
@@ -49,10 +49,15 @@
  */
 package org.objectstyle.wolips.eomodeler;
 
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.resource.ImageRegistry;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.objectstyle.wolips.baseforuiplugins.AbstractBaseUIActivator;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.preferences.PreferenceConstants;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -115,6 +120,15 @@ public class Activator extends AbstractBaseUIActivator {
 	 */
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
+		IPreferenceStore preferenceStore = getPreferenceStore();
+		EOModelGroup.setPerformanceLint(preferenceStore.getBoolean(PreferenceConstants.SHOW_PERFORMANCE_LINT_KEY));
+		preferenceStore.addPropertyChangeListener(new IPropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent event) {
+				if (PreferenceConstants.SHOW_PERFORMANCE_LINT_KEY.equals(event.getProperty())) {
+					EOModelGroup.setPerformanceLint(getPreferenceStore().getBoolean(PreferenceConstants.SHOW_PERFORMANCE_LINT_KEY));
+				}
+			}
+		});
 	}
 
 	/*
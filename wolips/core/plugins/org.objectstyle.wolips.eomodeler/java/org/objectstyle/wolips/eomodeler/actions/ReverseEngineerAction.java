@@ -63,6 +63,7 @@ import org.eclipse.jface.window.Window;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.dialogs.ListSelectionDialog;
 import org.objectstyle.wolips.baseforuiplugins.utils.ErrorUtils;
+import org.objectstyle.wolips.eomodeler.core.model.EOChangeBatch;
 import org.objectstyle.wolips.eomodeler.core.model.EODatabaseConfig;
 import org.objectstyle.wolips.eomodeler.core.model.EOModel;
 import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
@@ -96,12 +97,17 @@ public class ReverseEngineerAction extends EMAction {
 					List<String> selectedTableNamesList = Arrays.asList(selectedTableNames);
 					File reverseEngineeredEOModelFolder = reverseEngineer.reverseEngineerWithTableNamesIntoModel(selectedTableNamesList);
 					Set<EOModelVerificationFailure> failures = new HashSet<EOModelVerificationFailure>();
-					model.importEntitiesFromModel(reverseEngineeredEOModelFolder.toURL(), failures);
+					EOChangeBatch batch = EOChangeBatch.begin();
+					try {
+						model.importEntitiesFromModel(reverseEngineeredEOModelFolder.toURL(), failures);
+						model.setReverseEngineered(true);
+					} finally {
+						batch.end();
+					}
 					if (failures.size() > 0) {
 						EOModelErrorDialog dialog = new EOModelErrorDialog(getWindow().getShell(), failures);
 						dialog.open();
 					}
-					model.setReverseEngineered(true);
 				}
 			}
 		} catch (Throwable e) {
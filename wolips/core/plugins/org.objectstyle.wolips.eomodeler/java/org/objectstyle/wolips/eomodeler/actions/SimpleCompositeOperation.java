@@ -13,6 +13,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.objectstyle.wolips.eomodeler.Activator;
+import org.objectstyle.wolips.eomodeler.core.model.EOChangeBatch;
 
 public class SimpleCompositeOperation extends AbstractOperation implements ICompositeOperation {
 	private List<IUndoableOperation> _operations;
@@ -24,6 +25,17 @@ public class SimpleCompositeOperation extends AbstractOperation implements IComp
 
 	@Override
 	public IStatus execute(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
+		// the listeners hear about the whole operation at once instead of
+		// refreshing after every step of it
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			return _execute(monitor, info);
+		} finally {
+			batch.end();
+		}
+	}
+
+	protected IStatus _execute(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
 		ExecutionException pendingException = null;
 		boolean completed = false;
 		List<IUndoableOperation> completedOperations = new LinkedList<IUndoableOperation>();
@@ -62,6 +74,15 @@ public class SimpleCompositeOperation extends AbstractOperation implements IComp
 
 	@Override
 	public IStatus redo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			return _redo(monitor, info);
+		} finally {
+			batch.end();
+		}
+	}
+
+	protected IStatus _redo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
 		IStatus status = Status.OK_STATUS;
 		for (IUndoableOperation operation : _operations) {
 			status = operation.redo(monitor, info);
@@ -74,6 +95,15 @@ public class SimpleCompositeOperation extends AbstractOperation implements IComp
 
 	@Override
 	public IStatus undo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
+		EOChangeBatch batch = EOChangeBatch.begin();
+		try {
+			return _undo(monitor, info);
+		} finally {
+			batch.end();
+		}
+	}
+
+	protected IStatus _undo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
 		IStatus status = Status.OK_STATUS;
 		for (IUndoableOperation operation : _operations) {
 			status = operation.undo(monitor, info);
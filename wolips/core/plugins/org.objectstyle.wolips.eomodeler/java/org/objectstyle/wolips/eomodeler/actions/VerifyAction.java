@@ -49,7 +49,7 @@
  */
 package org.objectstyle.wolips.eomodeler.actions;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.eclipse.jface.action.IAction;
@@ -66,7 +66,7 @@ public class VerifyAction extends EMAction {
 			model = EOModelUtils.getRelatedModel(selectedObject);
 		}
 		if (model != null) {
-			Set<EOModelVerificationFailure> verifyFailures = new HashSet<EOModelVerificationFailure>();
+			Set<EOModelVerificationFailure> verifyFailures = new LinkedHashSet<EOModelVerificationFailure>();
 			model.verify(verifyFailures);
 			EOModelErrorDialog dialog = new EOModelErrorDialog(getWindow().getShell(), verifyFailures);
 			dialog.open();
@@ -121,6 +121,7 @@ import org.objectstyle.wolips.eomodeler.core.model.EOLastModified;
 import org.objectstyle.wolips.eomodeler.core.model.EOModel;
 import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
 import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
+import org.objectstyle.wolips.eomodeler.core.model.EOPerformanceLintFailure;
 import org.objectstyle.wolips.eomodeler.core.model.EORelationship;
 import org.objectstyle.wolips.eomodeler.core.model.EORelationshipOptionalityMismatchFailure;
 import org.objectstyle.wolips.eomodeler.core.model.EOStoredProcedure;
@@ -628,7 +629,7 @@ public class EOModelEditor extends MultiPageEditorPart implements IResourceChang
 		try {
 			IEditorInput input = getEditorInput();
 			if (input != null && myModel != null) {
-				Set<EOModelVerificationFailure> failures = new HashSet<EOModelVerificationFailure>();
+				Set<EOModelVerificationFailure> failures = new LinkedHashSet<EOModelVerificationFailure>();
 
 				final List<EOModel> dirtyModels = new LinkedList<EOModel>();
 				for (EOModel model : myModel.getModelGroup().getModels()) {
@@ -903,6 +904,16 @@ public class EOModelEditor extends MultiPageEditorPart implements IResourceChang
 			}
 		}
 
+		if (!Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.SHOW_PERFORMANCE_LINT_KEY)) {
+			Iterator<EOModelVerificationFailure> failuresIter = failures.iterator();
+			while (failuresIter.hasNext()) {
+				EOModelVerificationFailure failure = failuresIter.next();
+				if (failure instanceof EOPerformanceLintFailure) {
+					failuresIter.remove();
+				}
+			}
+		}
+
 		boolean warnings = false;
 		boolean errors = false;
 		for (EOModelVerificationFailure failure : failures) {
@@ -41,7 +41,8 @@ public abstract class AggregateQualifierTypeEditor extends AbstractQualifierType
 		List<EOQualifier> qualifiers;
 		if (qualifier instanceof EOAggregateQualifier) {
 			EOAggregateQualifier andQualifier = (EOAggregateQualifier) qualifier;
-			qualifiers = andQualifier.getQualifiers();
+			// parsed qualifiers are shared and can't be changed
+			qualifiers = new LinkedList<EOQualifier>(andQualifier.getQualifiers());
 		} else {
 			qualifiers = new LinkedList<EOQualifier>();
 			qualifiers.add(qualifier);
@@ -70,6 +70,7 @@ public class EntityModelerPreferencePage extends FieldEditorPreferencePage imple
 	public void createFieldEditors() {
 		addField(new BooleanFieldEditor(PreferenceConstants.SHOW_ERRORS_IN_PROBLEMS_VIEW_KEY, Messages.getString("Preferences.ShowErrorsInProblemsViewLabel"), getFieldEditorParent()));
 		addField(new BooleanFieldEditor(PreferenceConstants.SHOW_RELATIONSHIP_ATTRIBUTE_OPTIONALITY_MISMATCH, Messages.getString("Preferences.ShowRelationshipAttributeOptionalityMismatchLabel"), getFieldEditorParent()));
+		addField(new BooleanFieldEditor(PreferenceConstants.SHOW_PERFORMANCE_LINT_KEY, Messages.getString("Preferences.ShowPerformanceLintLabel"), getFieldEditorParent()));
 		addField(new BooleanFieldEditor(PreferenceConstants.OPEN_WINDOW_ON_VERIFICATION_ERRORS_KEY, Messages.getString("Preferences.OpenWindowOnVerificationErrorsLabel"), getFieldEditorParent()));
 		addField(new BooleanFieldEditor(PreferenceConstants.OPEN_WINDOW_ON_VERIFICATION_WARNINGS_KEY, Messages.getString("Preferences.OpenWindowOnVerificationWarningsLabel"), getFieldEditorParent()));
 		addField(new BooleanFieldEditor(PreferenceConstants.CHANGE_PERSPECTIVES_KEY, Messages.getString("Preferences.ChangePerspectivesLabel"), getFieldEditorParent()));
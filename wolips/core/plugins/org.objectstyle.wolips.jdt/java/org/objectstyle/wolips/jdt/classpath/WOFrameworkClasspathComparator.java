@@ -2,6 +2,8 @@ package org.objectstyle.wolips.jdt.classpath;
 
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IPath;
@@ -14,6 +16,8 @@ public class WOFrameworkClasspathComparator implements Comparator<IClasspathEntr
 
 	private IClasspathEntry[] _entries;
 
+	private Map<IClasspathEntry, Integer> _originalPositions;
+
 	static {
 		_wonderFrameworks = new HashSet<String>();
 		_wonderFrameworks.add("Ajax");
@@ -90,16 +94,15 @@ public class WOFrameworkClasspathComparator implements Comparator<IClasspathEntr
 
 	public WOFrameworkClasspathComparator(IClasspathEntry[] entries) {
 		_entries = entries;
+		_originalPositions = new IdentityHashMap<IClasspathEntry, Integer>(entries.length * 2);
+		for (int originalPosition = entries.length - 1; originalPosition >= 0; originalPosition--) {
+			_originalPositions.put(entries[originalPosition], Integer.valueOf(originalPosition));
+		}
 	}
 
 	protected int originalPositionOf(IClasspathEntry entry) {
-		int originalPosition = -1;
-		for (originalPosition = 0; originalPosition < _entries.length; originalPosition++) {
-			if (_entries[originalPosition] == entry) {
-				break;
-			}
-		}
-		return originalPosition;
+		Integer originalPosition = _originalPositions.get(entry);
+		return originalPosition == null ? _entries.length : originalPosition.intValue();
 	}
 
 	protected int valueForFrameworkNamed(String frameworkName, IClasspathEntry entry) {
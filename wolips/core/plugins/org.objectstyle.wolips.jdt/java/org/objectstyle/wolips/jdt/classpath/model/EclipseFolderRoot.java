@@ -80,8 +80,12 @@ public class EclipseFolderRoot extends AbstractFolderRoot<IEclipseFramework> {
 		IEclipseFramework framework;
 		synchronized (_frameworks) {
 			framework = _frameworks.get(frameworkFolder);
-			if (framework == null || !frameworkFolder.exists()) {
-				framework = new EclipsePathFramework(this, frameworkFolder);
+		}
+		if (framework == null || !frameworkFolder.exists()) {
+			// build the framework outside the lock, so parallel discovery
+			// isn't serialized on it
+			framework = new EclipsePathFramework(this, frameworkFolder);
+			synchronized (_frameworks) {
 				_frameworks.put(frameworkFolder, framework);
 			}
 		}
@@ -1,6 +1,7 @@
 package eomodeldoc;
 
 import java.io.File;
+import java.net.URL;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -8,6 +9,7 @@ import java.util.Set;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelSnapshot;
 import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
 import org.objectstyle.wolips.eomodeler.doc.EOModelDocGenerator;
 import org.objectstyle.wolips.eomodeler.factories.EclipseProjectEOModelGroupFactory;
@@ -40,10 +42,13 @@ public class EOModelDoc {
       else if ("-entityURLTemplate".equals(arg)) {
         entityURLTemplate = args[++argNum];
       }
+      else if ("-snapshotCache".equals(arg)) {
+        EOModelSnapshot.setDefaultCacheFolder(new File(args[++argNum]));
+      }
     }
     
     if (outputFolder == null) {
-      System.out.println("eomodeldoc -output /path/to/output/folder [-model /path/to/model.eomodeld]* [-modelgroup /path/to/working/dir] [-templates /path/to/templates] [-entityURLTemplate \"http://whatever?${entity.classNamePath}.html\"");
+      System.out.println("eomodeldoc -output /path/to/output/folder [-model /path/to/model.eomodeld]* [-modelgroup /path/to/working/dir] [-templates /path/to/templates] [-entityURLTemplate \"http://whatever?${entity.classNamePath}.html\"] [-snapshotCache /path/to/cache/folder]");
       System.exit(0);
     }
 
@@ -55,9 +60,11 @@ public class EOModelDoc {
       new EclipseProjectEOModelGroupFactory().loadModelGroup(modelGroupFolder, modelGroup, failures, true, new NullProgressMonitor());
     }
     else {
+      List<URL> modelURLs = new LinkedList<URL>();
       for (String modelPath : modelPaths) {
-        modelGroup.loadModelFromURL(new File(modelPath).toURL());
+        modelURLs.add(new File(modelPath).toURL());
       }
+      modelGroup.loadModelsFromURLs(modelURLs);
     }
     modelGroup.resolve(failures);
     modelGroup.verify(failures);
@@ -3,6 +3,7 @@ package veogen;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.net.URL;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -15,6 +16,7 @@ import org.objectstyle.wolips.eogenerator.core.model.EOGeneratorModel;
 import org.objectstyle.wolips.eogenerator.core.model.EOModelReference;
 import org.objectstyle.wolips.eogenerator.core.runner.VelocityEOGeneratorRunner;
 import org.objectstyle.wolips.eomodeler.core.model.EOModelGroup;
+import org.objectstyle.wolips.eomodeler.core.model.EOModelSnapshot;
 import org.objectstyle.wolips.eomodeler.core.model.EOModelVerificationFailure;
 import org.objectstyle.wolips.eomodeler.factories.EclipseProjectEOModelGroupFactory;
 import org.objectstyle.wolips.eomodeler.factories.IDEAProjectEOModelGroupFactory;
@@ -121,6 +123,9 @@ public class Veogen {
 			else if ("-loadModelGroup".equalsIgnoreCase(arg)) {
 				loadModelGroup = true;
 			}
+			else if ("-snapshotCache".equalsIgnoreCase(arg)) {
+				EOModelSnapshot.setDefaultCacheFolder(new File(Veogen.path(workingDir, argsList.get(++argNum))));
+			}
 			else if ("-workingDir".equalsIgnoreCase(arg)) {
 				argNum ++;
 			}
@@ -172,6 +177,8 @@ public class Veogen {
 			System.out.println("    if no explicit generate flags are specified, the items from -model will be used.");
 			System.out.println("  -loadModelGroup");
 			System.out.println("    if specified and -modelgroup is not, an implicit modelgroup folder of '.' will be used.");
+			System.out.println("  -snapshotCache /path/to/cache/folder");
+			System.out.println("    the folder that keeps snapshots of the models, so unchanged model files aren't parsed again");
 			System.out.println("  -workingDir");
 			System.out.println("    the working directory to prepend to all the provided paths");
 			System.out.println();
@@ -190,9 +197,11 @@ public class Veogen {
 			new IDEAProjectEOModelGroupFactory().loadModelGroup(modelGroupFolder, modelGroup, failures, true, new NullProgressMonitor());
 			new EclipseProjectEOModelGroupFactory().loadModelGroup(modelGroupFolder, modelGroup, failures, true, new NullProgressMonitor());
 		}
+		List<URL> modelURLs = new LinkedList<URL>();
 		for (String modelPath : modelPaths) {
-			modelGroup.loadModelFromURL(new File(modelPath).toURL());
+			modelURLs.add(new File(modelPath).toURL());
 		}
+		modelGroup.loadModelsFromURLs(modelURLs);
 
 		modelGroup.resolve(failures);
 		modelGroup.verify(failures);
@@ -0,0 +1,469 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.frameworks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class DependencyOrderingTest extends TestCase {
+	private static final String[] FRAMEWORK_ROOTS = { "/System/Library/Frameworks", "/Library/Frameworks", "/Users/dev/Library/Frameworks", "/Users/dev/Roots", "C:\\Apple\\Library\\Frameworks", "/Library//Frameworks/" };
+
+	private static final String[] FRAMEWORK_NAMES = { "ERExtensions", "JavaWOExtensions", "ERJars", "Ajax", "ERDirectToWeb", "JavaWebObjects", "JavaFoundation", "JavaEOAccess", "JavaEOControl", "JavaXML" };
+
+	public void testWonderBeforeWebObjects() {
+		List<TestDependency> dependencies = new ArrayList<TestDependency>();
+		dependencies.add(new TestDependency("/System/Library/Frameworks/JavaWebObjects.framework/Resources/Java/javawebobjects.jar"));
+		dependencies.add(new TestDependency("/opt/lib/other.jar"));
+		dependencies.add(new TestDependency("/Library/Frameworks/ERExtensions.framework/Resources/Java/ERExtensions.jar"));
+		dependencies.add(new TestDependency("/Library/Frameworks/JavaWOExtensions.framework/Resources/Java/JavaWOExtensions.jar"));
+		dependencies.add(new TestDependency("/System/Library/Frameworks/JavaWOExtensions.framework/Resources/Java/javawoextensions.jar"));
+		dependencies.add(new TestDependency("/Library/Frameworks/ERExtensions.framework/Resources/Java/ognl.jar"));
+		List<TestDependency> ordered = new TestDependencyOrdering(false).orderDependencies(dependencies);
+		assertEquals(Arrays.asList(new TestDependency[] { dependencies.get(2), dependencies.get(5), dependencies.get(3), dependencies.get(0), dependencies.get(1) }), ordered);
+	}
+
+	public void testProjectsWinOverInstalledFrameworks() {
+		List<TestDependency> dependencies = new ArrayList<TestDependency>();
+		dependencies.add(new TestDependency("/Library/Frameworks/ERExtensions.framework/Resources/Java/ERExtensions.jar"));
+		TestDependency project = new TestDependency("/workspace/ERExtensions/bin", true, false, "ERExtensions.framework");
+		dependencies.add(project);
+		List<TestDependency> ordered = new TestDependencyOrdering(false).orderDependencies(dependencies);
+		assertEquals(Arrays.asList(new TestDependency[] { project }), ordered);
+	}
+
+	public void testSplitRawPathMatchesRegex() {
+		TestDependencyOrdering ordering = new TestDependencyOrdering(false);
+		String[] paths = { "", "/", "///", "a", "/a/b", "a/b/", "a//b", "\\a\\b\\", "C:\\x/y.framework//z/", "//a" };
+		for (String path : paths) {
+			assertEquals(path, Arrays.asList(path.split("[\\/]")), Arrays.asList(ordering.splitRawPath(path)));
+		}
+	}
+
+	public void testMatchesLegacyOrdering() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			int size = round == 0 ? 2000 : random.nextInt(2000) + 1;
+			List<TestDependency> dependencies = randomDependencies(size, random);
+			boolean includeProjectDependency = random.nextBoolean();
+			List<TestDependency> expected = new LegacyTestDependencyOrdering(includeProjectDependency).orderDependencies(dependencies);
+			List<TestDependency> actual = new TestDependencyOrdering(includeProjectDependency).orderDependencies(dependencies);
+			assertEquals("round " + round, expected, actual);
+		}
+	}
+
+	protected List<TestDependency> randomDependencies(int size, Random random) {
+		List<TestDependency> dependencies = new ArrayList<TestDependency>();
+		int frameworkCount = 1 + size / 10;
+		for (int i = 0; i < size; i++) {
+			int kind = random.nextInt(20);
+			String frameworkName = frameworkName(random.nextInt(frameworkCount));
+			TestDependency dependency;
+			if (kind < 12 || dependencies.isEmpty()) {
+				String root = FRAMEWORK_ROOTS[random.nextInt(FRAMEWORK_ROOTS.length)];
+				String separator = root.indexOf('\\') != -1 ? "\\" : "/";
+				dependency = new TestDependency(root + separator + frameworkName + ".framework" + separator + "Resources" + separator + "Java" + separator + frameworkName.toLowerCase() + random.nextInt(3) + ".jar");
+			} else if (kind < 14) {
+				dependency = new TestDependency("/workspace/" + frameworkName + "/bin", true, random.nextBoolean(), frameworkName + ".framework");
+			} else if (kind < 15) {
+				dependency = new TestDependency("/workspace/App" + random.nextInt(5) + "/build/App.woa/Contents/Resources/Java/app.jar");
+			} else if (kind < 16) {
+				dependency = new TestDependency("/workspace/" + frameworkName + "/build/" + frameworkName + ".framework/Resources/Java/" + frameworkName.toLowerCase() + ".jar");
+			} else if (kind < 18) {
+				dependency = new TestDependency("/opt/lib/library" + random.nextInt(size) + ".jar");
+			} else if (kind < 19) {
+				dependency = dependencies.get(random.nextInt(dependencies.size()));
+			} else {
+				TestDependency original = dependencies.get(random.nextInt(dependencies.size()));
+				dependency = new TestDependency(original.getRawPath(), original.isProject(), original.isWOProject(), original.getProjectFrameworkName());
+			}
+			dependencies.add(dependency);
+		}
+		return dependencies;
+	}
+
+	protected String frameworkName(int index) {
+		return index < FRAMEWORK_NAMES.length ? FRAMEWORK_NAMES[index] : "Framework" + index;
+	}
+
+	public static class TestDependency extends Dependency {
+		private String _rawPath;
+
+		private boolean _project;
+
+		private boolean _woProject;
+
+		private String _projectFrameworkName;
+
+		public TestDependency(String rawPath) {
+			this(rawPath, false, false, null);
+		}
+
+		public TestDependency(String rawPath, boolean project, boolean woProject, String projectFrameworkName) {
+			_rawPath = rawPath;
+			_project = project;
+			_woProject = woProject;
+			_projectFrameworkName = projectFrameworkName;
+		}
+
+		@Override
+		public String getProjectFrameworkName() {
+			return _projectFrameworkName;
+		}
+
+		@Override
+		public boolean isProject() {
+			return _project;
+		}
+
+		@Override
+		public boolean isWOProject() {
+			return _woProject;
+		}
+
+		@Override
+		public String getSystemRoot() {
+			return "/System";
+		}
+
+		@Override
+		public String getRawPath() {
+			return _rawPath;
+		}
+
+		@Override
+		public String getLocation() {
+			return _rawPath;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TestDependency)) {
+				return false;
+			}
+			TestDependency dependency = (TestDependency) obj;
+			return _rawPath.equals(dependency._rawPath) && _project == dependency._project && _woProject == dependency._woProject;
+		}
+
+		@Override
+		public int hashCode() {
+			return _rawPath.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return _rawPath;
+		}
+	}
+
+	/**
+	 * Mirrors EclipseDependencyOrdering: a WO project adds itself and its built
+	 * archive once.
+	 */
+	public static class TestDependencyOrdering extends DependencyOrdering<TestDependency> {
+		private Set<String> _archives;
+
+		public TestDependencyOrdering(boolean includeProjectDependency) {
+			super(includeProjectDependency);
+		}
+
+		@Override
+		protected void initialize() {
+			super.initialize();
+			_archives = new HashSet<String>();
+		}
+
+		@Override
+		protected void addWOProject(TestDependency dependency) {
+			String archive = dependency.getRawPath() + "/../build/Project.woa/Contents/Resources/Java/project.jar";
+			if (_archives.add(archive)) {
+				pendingResult.add(dependency);
+				pendingResult.add(new TestDependency(archive));
+			}
+		}
+	}
+
+	public static class LegacyTestDependencyOrdering extends LegacyDependencyOrdering<TestDependency> {
+		private Set<String> _archives;
+
+		public LegacyTestDependencyOrdering(boolean includeProjectDependency) {
+			super(includeProjectDependency);
+		}
+
+		@Override
+		protected void initialize() {
+			super.initialize();
+			_archives = new HashSet<String>();
+		}
+
+		@Override
+		protected void addWOProject(TestDependency dependency) {
+			String archive = dependency.getRawPath() + "/../build/Project.woa/Contents/Resources/Java/project.jar";
+			if (_archives.add(archive)) {
+				pendingResult.add(dependency);
+				pendingResult.add(new TestDependency(archive));
+			}
+		}
+	}
+
+	/**
+	 * The quadratic DependencyOrdering from before the hash-indexed rewrite,
+	 * kept as the reference for testMatchesLegacyOrdering.
+	 */
+	public static abstract class LegacyDependencyOrdering<T extends Dependency> {
+		// We need to track with frameworks were projects, because they "win" when competing
+		// with the same named framework from a /Frameworks folder
+		private Set<String> projectFrameworkNames;
+
+		// We need to track the name of the framework that contained each entry so we can
+		// look it back up when we're building the final classpath
+		private Map<T, String> dependencyFramework;
+		private Map<String, List<T>> frameworkDependencies;
+
+		// We also need to keep track of the location of the framework, so we only load
+		// jars from the first framework we come across 
+		private Map<String, String> addedFrameworkPaths;
+
+		private boolean _includeProjectDependency;
+
+		public LegacyDependencyOrdering(boolean includeProjectDependency) {
+			_includeProjectDependency = includeProjectDependency;
+		}
+
+		// Pending results contains all of the classpath entries, filtered such that we only
+		// load the first of a framework from a /Frameworks folder, but we may end up with
+		// dupes that are in a project AND a /Frameworks folder -- we'll clean that up later.
+		protected List<T> pendingResult;
+
+		protected void initialize() {
+			projectFrameworkNames = new HashSet<String>();
+			dependencyFramework = new HashMap<T, String>();
+			frameworkDependencies = new HashMap<String, List<T>>();
+			addedFrameworkPaths = new LinkedHashMap<String, String>();
+			pendingResult = new LinkedList<T>();
+		}
+
+		public List<T> orderDependencies(List<T> dependencies) {
+			initialize();
+
+			for (T dependency : dependencies) {
+				String dependencyRawPath = dependency.getRawPath();
+				String[] dependencyRawSegments = dependencyRawPath.split("[\\/]");
+
+				// rewrite the raw path from its segments to normalize it against
+				// other paths we will make (just makes sure they're all consistent)
+				dependencyRawPath = joinRawPath(dependencyRawSegments);
+
+				String frameworkName = null;
+				int frameworkSegment = frameworkSegmentForPath(dependencyRawSegments);
+				boolean addDependency = false;
+				if (frameworkSegment == -1) {
+					// MS: If ".framework" isn't in the path and we have a project, then
+					// put a "fake" entry in the framework list corresponding to the project.  This
+					// prevents /Library/Framework versions of the framework from loading later on 
+					// in the classpath.
+					if (dependency.isProject()) {
+						frameworkName = dependency.getProjectFrameworkName();
+						addedFrameworkPaths.put(frameworkName, dependencyRawPath);
+						projectFrameworkNames.add(frameworkName);
+					}
+					addDependency = true;
+				}
+				else {
+					// MS: Otherwise, we have a regular framework path.  In this case, we
+					// want to skip any jar that is coming from a different path for the 
+					// framework than we have previously loaded.
+					frameworkName = dependencyRawSegments[frameworkSegment];
+
+					String frameworkPath = joinRawPath(dependencyRawSegments, frameworkSegment + 1);
+
+					String previousFrameworkPath = addedFrameworkPaths.get(frameworkName);
+					if (previousFrameworkPath == null) {
+						addDependency = true;
+						addedFrameworkPaths.put(frameworkName, frameworkPath);
+					}
+					else if (previousFrameworkPath.equals(frameworkPath)) {
+						addDependency = true;
+					}
+				}
+
+				// MS: ... all the stars have aligned, and this is a valid entry.  Lets add it.
+				if (addDependency) {
+					if (frameworkName != null) {
+						dependencyFramework.put(dependency, frameworkName);
+						List<T> thisFrameworkDependencies = frameworkDependencies.get(frameworkName);
+						if (thisFrameworkDependencies == null) {
+							thisFrameworkDependencies = new LinkedList<T>();
+							frameworkDependencies.put(frameworkName, thisFrameworkDependencies);
+						}
+						thisFrameworkDependencies.add(dependency);
+					}
+					// MS: We need to get the build/BuiltFramework.framework folder from
+					// a project and add that instead of the bin folder ...
+					if (dependency.isWOProject()) {
+						addWOProject(dependency);
+					}
+					else {
+						pendingResult.add(dependency);
+					}
+				}
+			}
+
+			// sort classpath: project in front, then frameworks, then apple frameworks, then the rest
+			List<T> processedDeps = new LinkedList<T>();
+			List<T> otherDeps = new LinkedList<T>();
+			List<T> nonAppleDeps = new LinkedList<T>();
+			List<T> appleDeps = new LinkedList<T>();
+			List<T> projectDeps = new LinkedList<T>();
+			List<T> woaDeps = new LinkedList<T>();
+			for (T dependency : pendingResult) {
+				if (!processedDeps.contains(dependency)) {
+					String frameworkName = dependencyFramework.get(dependency);
+					if (dependency.isProject()) {
+						// Don't double-add project deps -- Remove the /bin folder, because the build/App.woa/Contents/Resources/Java version will also be in there
+						if (_includeProjectDependency || !dependency.isWOProject()) {
+							projectDeps.add(dependency);
+						}
+					}
+					// If the framework was added as a project, don't add it as a /Frameworks
+					// folder framework.  This is cleaning up from the case where we got, for
+					// instance /Library/Frameworks/WOOgnl.framework AND WOOgnl project.  We
+					// want the project to win.
+					else if (!projectFrameworkNames.contains(frameworkName)) {
+						if (dependency.isAppleProvided()) {
+							addDependencies(dependency, frameworkName, appleDeps, processedDeps);
+						}
+						else if (dependency.isFrameworkJar()) {
+							addDependencies(dependency, frameworkName, nonAppleDeps, processedDeps);
+						}
+						else if (dependency.isBuildProject()) {
+							addDependencies(dependency, frameworkName, nonAppleDeps, processedDeps);
+						}
+						else if (dependency.isWoa()) {
+							addDependencies(dependency, frameworkName, woaDeps, processedDeps);
+						}
+						else {
+							addDependencies(dependency, frameworkName, otherDeps, processedDeps);
+						}
+					}
+				}
+			}
+
+			List<T> sortedDependencies = new ArrayList<T>();
+			sortedDependencies.addAll(woaDeps);
+			sortedDependencies.addAll(projectDeps);
+			sortedDependencies.addAll(nonAppleDeps);
+			sortedDependencies.addAll(appleDeps);
+			sortedDependencies.addAll(otherDeps);
+			return sortedDependencies;
+		}
+
+		protected void addDependencies(T dependency, String frameworkName, List<T> categorizedDeps, List<T> processedDeps) {
+			if (frameworkName == null) {
+				categorizedDeps.add(dependency);
+				processedDeps.add(dependency);
+			}
+			else {
+				List<T> thisFrameworkDeps = frameworkDependencies.get(frameworkName);
+				if (thisFrameworkDeps == null) {
+					categorizedDeps.add(dependency);
+					processedDeps.add(dependency);
+				}
+				else {
+					categorizedDeps.addAll(thisFrameworkDeps);
+					processedDeps.addAll(thisFrameworkDeps);
+				}
+			}
+		}
+
+		protected abstract void addWOProject(T dependency);
+
+		protected String joinRawPath(String[] pathSegments) {
+			return joinRawPath(pathSegments, pathSegments.length);
+		}
+
+		protected String joinRawPath(String[] pathSegments, int length) {
+			StringBuffer path = new StringBuffer();
+			for (int i = 0; i < length; i++) {
+				path.append(pathSegments[i]);
+				if (i < length - 1) {
+					path.append("/");
+				}
+			}
+			return path.toString();
+		}
+
+		protected int frameworkSegmentForPath(String[] pathSegments) {
+			int frameworkSegment = -1;
+			for (int segmentNum = 0; frameworkSegment == -1 && segmentNum < pathSegments.length; segmentNum++) {
+				String segment = pathSegments[segmentNum];
+				if (segment.endsWith(".framework")) {
+					frameworkSegment = segmentNum;
+				}
+			}
+			return frameworkSegment;
+		}
+	}
+}
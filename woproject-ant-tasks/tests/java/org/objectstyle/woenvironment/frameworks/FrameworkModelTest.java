@@ -0,0 +1,242 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.frameworks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class FrameworkModelTest extends TestCase {
+	private static final String[] ROOT_NAMES = { Root.USER_ROOT, Root.LOCAL_ROOT, Root.SYSTEM_ROOT, Root.NETWORK_ROOT };
+
+	private File _folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_folder = File.createTempFile("FrameworkModelTest", "");
+		_folder.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FrameworkScanCacheTest.delete(_folder);
+		super.tearDown();
+	}
+
+	public void testParallelDiscoveryMatchesSerialDiscovery() throws IOException {
+		// 1,000 framework folders, 850 distinct names
+		createFrameworks(250, 200);
+		TestFrameworkModel serialModel = new TestFrameworkModel();
+		long serialStart = System.currentTimeMillis();
+		List<String> serialFrameworks = describe(serialModel.getAllFrameworks());
+		long serialTime = System.currentTimeMillis() - serialStart;
+
+		TestFrameworkModel parallelModel = new TestFrameworkModel();
+		parallelModel.setDiscoveryThreads(8);
+		long parallelStart = System.currentTimeMillis();
+		List<String> parallelFrameworks = describe(parallelModel.getAllFrameworks());
+		long parallelTime = System.currentTimeMillis() - parallelStart;
+
+		System.out.println("FrameworkModelTest: discovered " + serialFrameworks.size() + " frameworks in " + serialTime + " ms serially, " + parallelTime + " ms with 8 threads");
+		assertEquals(850, serialFrameworks.size());
+		assertEquals(serialFrameworks, parallelFrameworks);
+	}
+
+	public void testFirstRootWins() throws IOException {
+		createFrameworks(25, 20);
+		TestFrameworkModel model = new TestFrameworkModel();
+		model.setDiscoveryThreads(4);
+		assertEquals(Root.USER_ROOT, model.getFrameworkWithName("Framework24").getRoot().getShortName());
+		assertEquals(Root.LOCAL_ROOT, model.getFrameworkWithName("Framework25").getRoot().getShortName());
+		assertEquals(Root.NETWORK_ROOT, model.getFrameworkWithName("Framework84").getRoot().getShortName());
+		assertNull(model.getFrameworkWithName("Framework85"));
+	}
+
+	public void testNameIndexMatchesRootScan() throws IOException {
+		createFrameworks(25, 20);
+		TestFrameworkModel model = new TestFrameworkModel();
+		model.setDiscoveryThreads(4);
+		for (int i = 0; i < 100; i++) {
+			String frameworkName = "Framework" + i;
+			IFramework expectedFramework = null;
+			for (Root<IFramework> root : model.getRoots()) {
+				for (IFramework framework : root.getFrameworks()) {
+					if (expectedFramework == null && framework.getName().equals(frameworkName)) {
+						expectedFramework = framework;
+					}
+				}
+			}
+			assertSame(frameworkName, expectedFramework, model.getFrameworkWithName(frameworkName));
+		}
+	}
+
+	public void testInvalidateRootsRebuildsIndex() throws IOException {
+		createFrameworks(5, 5);
+		TestFrameworkModel model = new TestFrameworkModel();
+		assertNull(model.getFrameworkWithName("Extra"));
+		createFramework(new File(_folder, Root.SYSTEM_ROOT), "Extra", 0);
+		assertNull(model.getFrameworkWithName("Extra"));
+		model.invalidateRoots();
+		assertNotNull(model.getFrameworkWithName("Extra"));
+	}
+
+	public void testSnapshotsAreImmutable() throws IOException {
+		createFrameworks(5, 5);
+		TestFrameworkModel model = new TestFrameworkModel();
+		model.setDiscoveryThreads(2);
+		model.getAllFrameworks();
+		try {
+			model.getRoots().get(0).getFrameworks().clear();
+			fail("The frameworks of a root should be unmodifiable.");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	protected List<String> describe(Set<IFramework> frameworks) {
+		List<String> descriptions = new ArrayList<String>();
+		for (IFramework framework : frameworks) {
+			StringBuilder description = new StringBuilder();
+			description.append(framework.getName());
+			description.append(" in ");
+			description.append(framework.getRoot().getShortName());
+			description.append(" (");
+			description.append(framework.getVersion());
+			description.append("):");
+			for (FrameworkLibrary library : framework.getFrameworkLibraries()) {
+				description.append(' ');
+				description.append(library.getLibraryFile().getPath());
+				description.append('=');
+				description.append(library.getSourceJar().getName());
+			}
+			descriptions.add(description.toString());
+		}
+		Collections.sort(descriptions);
+		return descriptions;
+	}
+
+	/**
+	 * Creates the given number of frameworks in every root; the names of each
+	 * root start nameOffset after those of the previous one, so with
+	 * frameworksPerRoot > nameOffset every root shadows some frameworks of the
+	 * next one.
+	 */
+	protected void createFrameworks(int frameworksPerRoot, int nameOffset) throws IOException {
+		for (int rootNum = 0; rootNum < FrameworkModelTest.ROOT_NAMES.length; rootNum++) {
+			File frameworksFolder = new File(_folder, FrameworkModelTest.ROOT_NAMES[rootNum]);
+			for (int i = 0; i < frameworksPerRoot; i++) {
+				createFramework(frameworksFolder, "Framework" + (rootNum * nameOffset + i), i);
+			}
+		}
+	}
+
+	protected void createFramework(File frameworksFolder, String frameworkName, int variant) throws IOException {
+		File resourcesFolder = new File(frameworksFolder, frameworkName + ".framework/Resources");
+		File javaFolder = new File(resourcesFolder, "Java");
+		javaFolder.mkdirs();
+		createFile(new File(javaFolder, frameworkName + ".jar"), "");
+		createFile(new File(javaFolder, "src.jar"), "");
+		StringBuilder infoPlist = new StringBuilder();
+		infoPlist.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		infoPlist.append("<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" \"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n");
+		infoPlist.append("<plist version=\"1.0\">\n<dict>\n");
+		infoPlist.append("\t<key>CFBundleShortVersionString</key>\n\t<string>5." + (variant % 10) + "</string>\n");
+		if (variant % 2 == 0) {
+			infoPlist.append("\t<key>NSJavaPath</key>\n\t<array>\n\t\t<string>" + frameworkName + ".jar</string>\n\t</array>\n");
+		}
+		else {
+			File libFolder = new File(javaFolder, "lib");
+			libFolder.mkdirs();
+			createFile(new File(libFolder, "library" + variant + ".jar"), "");
+			createFile(new File(libFolder, "library" + variant + "-src.jar"), "");
+		}
+		infoPlist.append("</dict>\n</plist>\n");
+		createFile(new File(resourcesFolder, "Info.plist"), infoPlist.toString());
+	}
+
+	protected void createFile(File file, String contents) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			os.write(contents.getBytes("UTF-8"));
+		} finally {
+			os.close();
+		}
+	}
+
+	protected class TestFrameworkModel extends FrameworkModel<IFramework> {
+		@Override
+		protected List<Root<IFramework>> createRoots() {
+			List<Root<IFramework>> roots = new LinkedList<Root<IFramework>>();
+			for (String rootName : FrameworkModelTest.ROOT_NAMES) {
+				File frameworksFolder = new File(_folder, rootName);
+				ExternalFolderRoot root = new ExternalFolderRoot(rootName, rootName + " Frameworks", frameworksFolder, frameworksFolder);
+				root.setScanCache(null);
+				roots.add(root);
+			}
+			return roots;
+		}
+	}
+}
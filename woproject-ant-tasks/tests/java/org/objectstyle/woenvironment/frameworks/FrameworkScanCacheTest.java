@@ -0,0 +1,253 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.frameworks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class FrameworkScanCacheTest extends TestCase {
+	private static final long PAST = System.currentTimeMillis() - 3600000L;
+
+	private File _folder;
+
+	private File _frameworksFolder;
+
+	private File _cacheFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_folder = File.createTempFile("FrameworkScanCacheTest", "");
+		_folder.delete();
+		_frameworksFolder = new File(_folder, "Frameworks");
+		_cacheFolder = new File(_folder, "Cache");
+		createJar("ERExtensions.framework/Resources/Java/ERExtensions.jar");
+		createJar("ERExtensions.framework/Resources/Java/src.jar");
+		createJar("ERExtensions.framework/Resources/Java/lib/ognl.jar");
+		createJar("Ajax.framework/Resources/Java/Ajax.jar");
+		createJar("Ajax.framework/WebServerResources/Java/AjaxClient.jar");
+		new File(_frameworksFolder, "NotAFramework.framework/Resources").mkdirs();
+		new File(_frameworksFolder, "Other").mkdirs();
+		setLastModified(_folder, FrameworkScanCacheTest.PAST);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(_folder);
+		super.tearDown();
+	}
+
+	public void testWarmStartDoesNotScan() {
+		CountingRoot coldRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		List<String> coldLibraries = libraryPaths(coldRoot);
+		assertEquals(1, coldRoot.rootScans);
+		assertEquals(2, coldRoot.frameworkScans);
+		assertEquals(1, _cacheFolder.list().length);
+
+		CountingRoot warmRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		assertEquals(coldLibraries, libraryPaths(warmRoot));
+		assertEquals(0, warmRoot.rootScans);
+		assertEquals(0, warmRoot.frameworkScans);
+
+		CountingRoot uncachedRoot = new CountingRoot(null);
+		assertEquals(libraryPaths(uncachedRoot), coldLibraries);
+	}
+
+	public void testSourceJarsAreCached() {
+		new CountingRoot(new FrameworkScanCache(_cacheFolder)).getFrameworks();
+		CountingRoot warmRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		AbstractFolderFramework framework = (AbstractFolderFramework) warmRoot.getFrameworkWithName("ERExtensions");
+		for (FrameworkLibrary library : framework.getFrameworkLibraries()) {
+			if (library.getLibraryFile().getName().equals("ERExtensions.jar")) {
+				assertEquals("src.jar", library.getSourceJar().getName());
+			}
+			else {
+				assertEquals(library.getLibraryFile(), library.getSourceJar());
+			}
+		}
+		assertEquals(0, warmRoot.frameworkScans);
+	}
+
+	public void testNewFrameworkInvalidatesRoot() throws IOException {
+		new CountingRoot(new FrameworkScanCache(_cacheFolder)).getFrameworks();
+		createJar("WOOgnl.framework/Resources/Java/WOOgnl.jar");
+		_frameworksFolder.setLastModified(FrameworkScanCacheTest.PAST + 60000);
+
+		CountingRoot warmRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		assertEquals(3, warmRoot.getFrameworks().size());
+		assertEquals(1, warmRoot.rootScans);
+		assertEquals(1, warmRoot.frameworkScans);
+	}
+
+	public void testNewJarInvalidatesFramework() throws IOException {
+		new CountingRoot(new FrameworkScanCache(_cacheFolder)).getFrameworks();
+		createJar("ERExtensions.framework/Resources/Java/lib/commons-lang.jar");
+		new File(_frameworksFolder, "ERExtensions.framework/Resources/Java/lib").setLastModified(FrameworkScanCacheTest.PAST + 60000);
+
+		CountingRoot warmRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		assertTrue(libraryPaths(warmRoot).contains(new File(_frameworksFolder, "ERExtensions.framework/Resources/Java/lib/commons-lang.jar").getPath()));
+		assertEquals(0, warmRoot.rootScans);
+		assertEquals(1, warmRoot.frameworkScans);
+	}
+
+	public void testNewResourcesJavaFolderInvalidatesRoot() {
+		new CountingRoot(new FrameworkScanCache(_cacheFolder)).getFrameworks();
+		new File(_frameworksFolder, "NotAFramework.framework/Resources/Java").mkdirs();
+		new File(_frameworksFolder, "NotAFramework.framework").setLastModified(FrameworkScanCacheTest.PAST + 60000);
+
+		CountingRoot warmRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		assertNotNull(warmRoot.getFrameworkWithName("NotAFramework"));
+		assertEquals(1, warmRoot.rootScans);
+	}
+
+	public void testRecentChangesAreNotCached() {
+		_frameworksFolder.setLastModified(System.currentTimeMillis());
+		new CountingRoot(new FrameworkScanCache(_cacheFolder)).getFrameworks();
+
+		CountingRoot warmRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		warmRoot.getFrameworks();
+		assertEquals(1, warmRoot.rootScans);
+		assertEquals(0, warmRoot.frameworkScans);
+	}
+
+	public void testDamagedCacheIsIgnored() throws IOException {
+		CountingRoot coldRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		List<String> coldLibraries = libraryPaths(coldRoot);
+		File cacheFile = _cacheFolder.listFiles()[0];
+		FileOutputStream os = new FileOutputStream(cacheFile);
+		try {
+			os.write("bplist00garbage".getBytes("US-ASCII"));
+		} finally {
+			os.close();
+		}
+
+		CountingRoot warmRoot = new CountingRoot(new FrameworkScanCache(_cacheFolder));
+		assertEquals(coldLibraries, libraryPaths(warmRoot));
+		assertEquals(1, warmRoot.rootScans);
+		assertEquals(2, warmRoot.frameworkScans);
+	}
+
+	protected List<String> libraryPaths(Root<IFramework> root) {
+		List<String> libraryPaths = new ArrayList<String>();
+		for (IFramework framework : root.getFrameworks()) {
+			for (FrameworkLibrary library : framework.getFrameworkLibraries()) {
+				libraryPaths.add(library.getLibraryFile().getPath());
+			}
+		}
+		return libraryPaths;
+	}
+
+	protected void createJar(String path) throws IOException {
+		File jar = new File(_frameworksFolder, path);
+		jar.getParentFile().mkdirs();
+		new FileOutputStream(jar).close();
+	}
+
+	protected static void setLastModified(File file, long lastModified) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				FrameworkScanCacheTest.setLastModified(child, lastModified);
+			}
+		}
+		file.setLastModified(lastModified);
+	}
+
+	protected static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				FrameworkScanCacheTest.delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	protected class CountingRoot extends ExternalFolderRoot {
+		public int rootScans;
+
+		public int frameworkScans;
+
+		public CountingRoot(FrameworkScanCache scanCache) {
+			super(Root.LOCAL_ROOT, "Local Frameworks", _folder, _frameworksFolder);
+			setScanCache(scanCache);
+		}
+
+		@Override
+		protected List<String> scanFrameworkFolderNames() {
+			rootScans++;
+			return super.scanFrameworkFolderNames();
+		}
+
+		@Override
+		protected IFramework createFramework(File frameworkFolder) {
+			return new ExternalFolderFramework(this, frameworkFolder) {
+				@Override
+				protected File addJars(File defaultJarFolder, java.util.Map<String, Object> infoPlist, String jarRootKey, String jarListKey, List<File> jarFiles, List<File> inspectedFiles) {
+					if (jarRootKey.equals("NSJavaRoot")) {
+						frameworkScans++;
+					}
+					return super.addJars(defaultJarFolder, infoPlist, jarRootKey, jarListKey, jarFiles, inspectedFiles);
+				}
+			};
+		}
+	}
+}
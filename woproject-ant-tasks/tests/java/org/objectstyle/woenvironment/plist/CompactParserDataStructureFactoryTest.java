@@ -0,0 +1,218 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.plist;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class CompactParserDataStructureFactoryTest extends TestCase {
+	private static final int FOOTPRINT_ENTITY_COUNT = 2000;
+
+	private static final int FOOTPRINT_ATTRIBUTE_COUNT = 12;
+
+	public void testInsertionOrderedMapMatchesLinkedHashMap() {
+		Random random = new Random(1);
+		for (int round = 0; round < 50; round++) {
+			_compareRandomOperations(new CompactMap<Object, Object>(), new LinkedHashMap<Object, Object>(), random);
+		}
+	}
+
+	public void testSortedMapMatchesTreeMap() {
+		Comparator<Object> comparator = new Comparator<Object>() {
+			public int compare(Object o1, Object o2) {
+				return ((String) o1).compareTo((String) o2);
+			}
+		};
+		Random random = new Random(2);
+		for (int round = 0; round < 50; round++) {
+			_compareRandomOperations(new CompactMap<Object, Object>(comparator, null), new TreeMap<Object, Object>(comparator), random);
+		}
+	}
+
+	public void testNullKeys() {
+		Map<Object, Object> map = new CompactMap<Object, Object>();
+		map.put(null, "a");
+		map.put("b", null);
+		assertEquals("a", map.get(null));
+		assertTrue(map.containsKey("b"));
+		assertNull(map.remove("b"));
+		assertEquals(1, map.size());
+	}
+
+	public void testParsingMatchesSimpleFactory() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			String plist = WOLPropertyListSerialization.stringFromPropertyList(PropertyListFixtures.entity("Entity" + i, i * 4, i % 5, i));
+			Object expected = WOLPropertyListSerialization.propertyListFromString(plist, new SimpleParserDataStructureFactory());
+			Object compact = WOLPropertyListSerialization.propertyListFromString(plist, new CompactParserDataStructureFactory(new StringCanonicalizer(1000, 48)));
+			assertEquals(expected, compact);
+			assertEquals(plist, WOLPropertyListSerialization.stringFromPropertyList(compact));
+		}
+	}
+
+	public void testKeysAndValuesAreShared() throws Exception {
+		CompactParserDataStructureFactory factory = new CompactParserDataStructureFactory(new StringCanonicalizer(1000, 48));
+		Map<?, ?> first = (Map<?, ?>) WOLPropertyListSerialization.propertyListFromString("{ name = Person; allowsNull = Y; }", factory);
+		Map<?, ?> second = (Map<?, ?>) WOLPropertyListSerialization.propertyListFromString("{ name = Company; allowsNull = Y; }", factory);
+		assertSame(_key(first, "name"), _key(second, "name"));
+		assertSame(first.get("allowsNull"), second.get("allowsNull"));
+		assertEquals(5, factory.getCanonicalizer().size());
+	}
+
+	public void testCanonicalizerIsBounded() {
+		StringCanonicalizer canonicalizer = new StringCanonicalizer(2, 4);
+		String a = canonicalizer.canonicalize(new String("a"));
+		assertSame(a, canonicalizer.canonicalize(new String("a")));
+		String tooLong = new String("abcde");
+		assertSame(tooLong, canonicalizer.canonicalize(tooLong));
+		canonicalizer.canonicalize(new String("b"));
+		String c = new String("c");
+		assertSame(c, canonicalizer.canonicalize(c));
+		assertEquals(2, canonicalizer.size());
+	}
+
+	/**
+	 * Parses a synthetic 2000 entity model with both factories and reports the
+	 * heap that the parsed property lists retain per attribute.
+	 */
+	public void testHeapFootprint() throws Exception {
+		List<String> plists = new ArrayList<String>();
+		for (int i = 0; i < CompactParserDataStructureFactoryTest.FOOTPRINT_ENTITY_COUNT; i++) {
+			plists.add(WOLPropertyListSerialization.stringFromPropertyList(PropertyListFixtures.entity("Entity" + i, CompactParserDataStructureFactoryTest.FOOTPRINT_ATTRIBUTE_COUNT - 1, 3, i)));
+		}
+		int attributeCount = CompactParserDataStructureFactoryTest.FOOTPRINT_ENTITY_COUNT * CompactParserDataStructureFactoryTest.FOOTPRINT_ATTRIBUTE_COUNT;
+		long simpleBytes = _retainedBytes(plists, new SimpleParserDataStructureFactory());
+		long compactBytes = _retainedBytes(plists, new CompactParserDataStructureFactory(new StringCanonicalizer(StringCanonicalizer.DEFAULT_MAX_ENTRIES, StringCanonicalizer.DEFAULT_MAX_LENGTH)));
+		System.out.println("CompactParserDataStructureFactoryTest.testHeapFootprint: " + FOOTPRINT_ENTITY_COUNT + " entities, simple = " + (simpleBytes / attributeCount) + " bytes/attribute, compact = " + (compactBytes / attributeCount) + " bytes/attribute");
+		assertTrue("compact = " + compactBytes + ", simple = " + simpleBytes, compactBytes < simpleBytes);
+	}
+
+	protected long _retainedBytes(List<String> plists, ParserDataStructureFactory factory) throws Exception {
+		long before = _usedMemory();
+		List<Object> models = new ArrayList<Object>(plists.size());
+		for (String plist : plists) {
+			models.add(WOLPropertyListSerialization.propertyListFromString(plist, factory));
+		}
+		long after = _usedMemory();
+		assertEquals(plists.size(), models.size());
+		return after - before;
+	}
+
+	protected long _usedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	protected Object _key(Map<?, ?> map, Object key) {
+		for (Object existingKey : map.keySet()) {
+			if (key.equals(existingKey)) {
+				return existingKey;
+			}
+		}
+		return null;
+	}
+
+	protected void _compareRandomOperations(Map<Object, Object> compactMap, Map<Object, Object> expectedMap, Random random) {
+		int operationCount = random.nextInt(200);
+		int keyRange = 1 + random.nextInt(60);
+		for (int i = 0; i < operationCount; i++) {
+			String key = "key" + random.nextInt(keyRange);
+			int operation = random.nextInt(10);
+			if (operation < 6) {
+				String value = "value" + i;
+				assertEquals(expectedMap.put(key, value), compactMap.put(key, value));
+			} else if (operation < 8) {
+				assertEquals(expectedMap.remove(key), compactMap.remove(key));
+			} else if (operation < 9) {
+				Iterator<Map.Entry<Object, Object>> expectedIterator = expectedMap.entrySet().iterator();
+				Iterator<Map.Entry<Object, Object>> compactIterator = compactMap.entrySet().iterator();
+				while (expectedIterator.hasNext()) {
+					Map.Entry<Object, Object> expectedEntry = expectedIterator.next();
+					Map.Entry<Object, Object> compactEntry = compactIterator.next();
+					assertEquals(expectedEntry, compactEntry);
+					if (key.equals(expectedEntry.getKey())) {
+						expectedIterator.remove();
+						compactIterator.remove();
+					} else if (random.nextInt(4) == 0) {
+						expectedEntry.setValue("set" + i);
+						compactEntry.setValue("set" + i);
+					}
+				}
+				assertFalse(compactIterator.hasNext());
+			} else {
+				assertEquals(expectedMap.get(key), compactMap.get(key));
+				assertEquals(expectedMap.containsKey(key), compactMap.containsKey(key));
+			}
+			assertEquals(expectedMap.size(), compactMap.size());
+		}
+		assertEquals(expectedMap, compactMap);
+		assertEquals(compactMap, expectedMap);
+		assertEquals(expectedMap.hashCode(), compactMap.hashCode());
+		assertEquals(new ArrayList<Object>(expectedMap.keySet()), new ArrayList<Object>(compactMap.keySet()));
+		assertEquals(new ArrayList<Object>(expectedMap.values()), new ArrayList<Object>(compactMap.values()));
+	}
+}
@@ -0,0 +1,171 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.plist;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic EOModel-style property lists for the plist tests.
+ */
+public class PropertyListFixtures {
+	private static final String[] PROTOTYPES = { "id", "boolean", "varchar50", "varchar255", "intNumber", "dateTime", "longText", "amount" };
+
+	private static final String[] EXTERNAL_TYPES = { "int", "varchar", "timestamp", "decimal", "text", "blob" };
+
+	/**
+	 * Returns a Map equivalent to an entity plist with the given number of
+	 * attributes and relationships. The same name and seed always produce the
+	 * same plist.
+	 */
+	public static Map<Object, Object> entity(String name, int attributeCount, int relationshipCount, long seed) {
+		Random random = new Random(seed);
+		Map<Object, Object> entity = new HashMap<Object, Object>();
+		entity.put("name", name);
+		entity.put("className", "com.example.model." + name);
+		entity.put("externalName", name.toUpperCase());
+		entity.put("primaryKeyAttributes", list("id"));
+
+		List<Object> attributes = new LinkedList<Object>();
+		List<Object> classProperties = new LinkedList<Object>();
+		List<Object> attributesUsedForLocking = new LinkedList<Object>();
+		attributes.add(attribute("id", "id", "int", false, random));
+		for (int i = 0; i < attributeCount; i++) {
+			String attributeName = "attribute" + i;
+			String prototypeName = PROTOTYPES[random.nextInt(PROTOTYPES.length)];
+			String externalType = EXTERNAL_TYPES[random.nextInt(EXTERNAL_TYPES.length)];
+			attributes.add(attribute(attributeName, prototypeName, externalType, random.nextBoolean(), random));
+			classProperties.add(attributeName);
+			if (random.nextInt(3) == 0) {
+				attributesUsedForLocking.add(attributeName);
+			}
+		}
+		entity.put("attributes", attributes);
+
+		List<Object> relationships = new LinkedList<Object>();
+		for (int i = 0; i < relationshipCount; i++) {
+			Map<Object, Object> relationship = new HashMap<Object, Object>();
+			String relationshipName = "relationship" + i;
+			relationship.put("name", relationshipName);
+			relationship.put("destination", "Entity" + random.nextInt(1000));
+			relationship.put("isToMany", random.nextBoolean() ? "Y" : "N");
+			relationship.put("joinSemantic", "EOInnerJoin");
+			Map<Object, Object> join = new HashMap<Object, Object>();
+			join.put("sourceAttribute", "attribute" + random.nextInt(Math.max(1, attributeCount)));
+			join.put("destinationAttribute", "id");
+			relationship.put("joins", list(join));
+			relationships.add(relationship);
+			classProperties.add(relationshipName);
+		}
+		entity.put("relationships", relationships);
+		entity.put("classProperties", classProperties);
+		entity.put("attributesUsedForLocking", attributesUsedForLocking);
+
+		Map<Object, Object> userInfo = new HashMap<Object, Object>();
+		userInfo.put("comment", "Generated entity \"" + name + "\"\n\twith escapes \\ and unicode \u00e9\u4e2d");
+		userInfo.put("empty", "");
+		entity.put("userInfo", userInfo);
+		return entity;
+	}
+
+	/**
+	 * Returns a Map equivalent to an index.eomodeld with the given entity
+	 * names.
+	 */
+	public static Map<Object, Object> modelIndex(List<String> entityNames) {
+		Map<Object, Object> index = new HashMap<Object, Object>();
+		index.put("EOModelVersion", "2.1");
+		index.put("adaptorName", "JDBC");
+		Map<Object, Object> connectionDictionary = new HashMap<Object, Object>();
+		connectionDictionary.put("URL", "jdbc:example://localhost/test");
+		connectionDictionary.put("username", "test");
+		index.put("connectionDictionary", connectionDictionary);
+		List<Object> entities = new ArrayList<Object>();
+		for (String entityName : entityNames) {
+			Map<Object, Object> entity = new HashMap<Object, Object>();
+			entity.put("name", entityName);
+			entity.put("className", "com.example.model." + entityName);
+			entities.add(entity);
+		}
+		index.put("entities", entities);
+		return index;
+	}
+
+	private static Map<Object, Object> attribute(String name, String prototypeName, String externalType, boolean allowsNull, Random random) {
+		Map<Object, Object> attribute = new HashMap<Object, Object>();
+		attribute.put("name", name);
+		attribute.put("columnName", name.toUpperCase());
+		attribute.put("prototypeName", prototypeName);
+		attribute.put("externalType", externalType);
+		attribute.put("allowsNull", allowsNull ? "Y" : "N");
+		if (random.nextBoolean()) {
+			attribute.put("width", String.valueOf(random.nextInt(1000)));
+		}
+		return attribute;
+	}
+
+	private static List<Object> list(Object... objects) {
+		List<Object> list = new ArrayList<Object>();
+		for (Object object : objects) {
+			list.add(object);
+		}
+		return list;
+	}
+}
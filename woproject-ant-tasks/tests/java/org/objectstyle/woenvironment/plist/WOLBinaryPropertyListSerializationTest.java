@@ -0,0 +1,172 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.plist;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization.EMMutableData;
+
+public class WOLBinaryPropertyListSerializationTest extends TestCase {
+	public static final File ART_MODEL = new File("tests/wo/frameworks/art/src/art.eomodeld");
+
+	public static final File[] INFO_PLISTS = { new File("src/resources/woframework/Info.plist"), new File("src/resources/woapp/Info.plist"), new File("src/resources/woapp_52/Info.plist") };
+
+	public void testHeader() throws Exception {
+		byte[] bytes = WOLBinaryPropertyListSerialization.bytesFromPropertyList("abc");
+		assertTrue(WOLBinaryPropertyListSerialization.isBinaryPropertyList(bytes));
+		assertFalse(WOLBinaryPropertyListSerialization.isBinaryPropertyList("{ a = b; }".getBytes()));
+	}
+
+	public void testRoundTripAgainstASCII() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			String ascii = WOLPropertyListSerialization.stringFromPropertyList(PropertyListFixtures.entity("Entity" + i, i * 2, i % 6, i));
+			Object expected = WOLPropertyListSerialization.propertyListFromString(ascii);
+			byte[] bytes = WOLBinaryPropertyListSerialization.bytesFromPropertyList(expected);
+			assertEquals(expected, WOLBinaryPropertyListSerialization.propertyListFromBytes(bytes));
+		}
+	}
+
+	public void testRoundTripModelFiles() throws Exception {
+		File[] files = ART_MODEL.listFiles();
+		assertNotNull(files);
+		for (File file : files) {
+			if (file.isFile()) {
+				Object expected = WOLPropertyListSerialization.propertyListFromFile(file);
+				Object actual = WOLBinaryPropertyListSerialization.propertyListFromBytes(WOLBinaryPropertyListSerialization.bytesFromPropertyList(expected));
+				assertEquals(file.getName(), WOLPropertyListSerialization.stringFromPropertyList(expected), WOLPropertyListSerialization.stringFromPropertyList(actual));
+			}
+		}
+	}
+
+	public void testRoundTripAgainstXML() throws Exception {
+		for (File infoPlist : INFO_PLISTS) {
+			Object expected = WOLXMLPropertyListSerialization.propertyListWithContentsOfFile(infoPlist, new SimpleParserDataStructureFactory());
+			assertNotNull(infoPlist.getPath(), expected);
+			byte[] bytes = WOLBinaryPropertyListSerialization.bytesFromPropertyList(expected);
+			assertEquals(infoPlist.getPath(), expected, WOLBinaryPropertyListSerialization.propertyListFromBytes(bytes));
+		}
+	}
+
+	public void testScalarTypes() throws Exception {
+		Map<Object, Object> dictionary = new HashMap<Object, Object>();
+		dictionary.put("true", Boolean.TRUE);
+		dictionary.put("false", Boolean.FALSE);
+		dictionary.put("small", Integer.valueOf(7));
+		dictionary.put("wide", Integer.valueOf(70000));
+		dictionary.put("negative", Integer.valueOf(-5));
+		dictionary.put("long", Long.valueOf(1L << 40));
+		dictionary.put("real", Double.valueOf(3.25));
+		dictionary.put("date", new Date(1200000000000L));
+		dictionary.put("unicode", "caf\u00e9 \u4e2d");
+		dictionary.put("long string", "a string that is longer than fifteen characters");
+		Map<?, ?> result = (Map<?, ?>) WOLBinaryPropertyListSerialization.propertyListFromBytes(WOLBinaryPropertyListSerialization.bytesFromPropertyList(dictionary));
+		assertEquals(dictionary, result);
+	}
+
+	public void testData() throws Exception {
+		EMMutableData data = new EMMutableData(300);
+		for (int i = 0; i < 300; i++) {
+			data.appendByte((byte) i);
+		}
+		List<Object> array = new ArrayList<Object>();
+		array.add(data);
+		List<?> result = (List<?>) WOLBinaryPropertyListSerialization.propertyListFromBytes(WOLBinaryPropertyListSerialization.bytesFromPropertyList(array));
+		assertTrue(Arrays.equals(data.bytes(), ((EMMutableData) result.get(0)).bytes()));
+	}
+
+	public void testStringsAreUniqued() throws Exception {
+		List<Object> array = new ArrayList<Object>();
+		for (int i = 0; i < 100; i++) {
+			array.add("allowsNull");
+		}
+		byte[] bytes = WOLBinaryPropertyListSerialization.bytesFromPropertyList(array);
+		assertTrue(bytes.length < 200);
+		List<?> result = (List<?>) WOLBinaryPropertyListSerialization.propertyListFromBytes(bytes);
+		assertSame(result.get(0), result.get(99));
+	}
+
+	public void testASCIIReadersDetectBinary() throws Exception {
+		Map<Object, Object> entity = PropertyListFixtures.entity("Person", 10, 2, 3);
+		File file = File.createTempFile("WOLBinaryPropertyListSerializationTest", ".plist");
+		try {
+			WOLPropertyListSerialization.propertyListToFile("", file, entity, PropertyListFormat.BINARY);
+			assertTrue(WOLBinaryPropertyListSerialization.isBinaryPropertyList(WOLPropertyListSerialization.bytesFromFile(file)));
+			assertEquals(entity, WOLPropertyListSerialization.propertyListFromFile(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testTruncatedData() throws Exception {
+		byte[] bytes = WOLBinaryPropertyListSerialization.bytesFromPropertyList(PropertyListFixtures.entity("Person", 10, 2, 3));
+		byte[] truncated = new byte[bytes.length / 2];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		try {
+			WOLBinaryPropertyListSerialization.propertyListFromBytes(truncated);
+			fail("Expected truncated data to fail.");
+		} catch (PropertyListParserException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.plist;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.woenvironment.plist.WOLXMLPropertyListSerializationTest.RecordingFactory;
+
+public class WOLLazyPropertyListTest extends TestCase {
+	private List<File> _tempFiles = new ArrayList<File>();
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File tempFile : _tempFiles) {
+			tempFile.delete();
+		}
+	}
+
+	public void testMatchesFullParse() throws Exception {
+		File[] files = WOLBinaryPropertyListSerializationTest.ART_MODEL.listFiles();
+		int count = 0;
+		for (File file : files) {
+			if (file.isFile()) {
+				Object expected = WOLPropertyListSerialization.propertyListFromFile(file);
+				Object lazy = WOLPropertyListSerialization.lazyPropertyListFromFile(file);
+				assertTrue(file.getName(), lazy instanceof WOLLazyPropertyList);
+				assertEquals(file.getName(), expected, lazy);
+				assertEquals(file.getName(), lazy, expected);
+				assertEquals(file.getName(), expected.hashCode(), lazy.hashCode());
+				count++;
+			}
+		}
+		assertTrue(count >= 8);
+	}
+
+	public void testValuesAreDecodedOnDemand() throws Exception {
+		RecordingFactory factory = new RecordingFactory();
+		WOLLazyPropertyList index = (WOLLazyPropertyList) WOLPropertyListSerialization.lazyPropertyListFromFile(new File(WOLBinaryPropertyListSerializationTest.ART_MODEL, "index.eomodeld"), factory);
+		assertTrue(index.containsKey("entities"));
+		assertTrue(index.containsKey("connectionDictionary"));
+		assertTrue(factory.getKeyPaths().isEmpty());
+
+		List<?> entities = (List<?>) index.get("entities");
+		assertEquals(6, entities.size());
+		assertTrue(index.isDecoded("entities"));
+		assertFalse(index.isDecoded("connectionDictionary"));
+		for (String keyPath : factory.getKeyPaths()) {
+			assertTrue(keyPath, keyPath.startsWith("root.entities"));
+		}
+		assertSame(entities, index.get("entities"));
+	}
+
+	public void testKeyPathsMatchFullParse() throws Exception {
+		File file = new File(WOLBinaryPropertyListSerializationTest.ART_MODEL, "Painting.plist");
+		RecordingFactory expectedFactory = new RecordingFactory();
+		WOLPropertyListSerialization.propertyListFromFile(file, expectedFactory);
+		List<String> expectedKeyPaths = expectedFactory.getKeyPaths();
+		assertEquals(WOLPropertyListParser.ROOT, expectedKeyPaths.remove(0));
+
+		RecordingFactory lazyFactory = new RecordingFactory();
+		Map<?, ?> lazy = (Map<?, ?>) WOLPropertyListSerialization.lazyPropertyListFromFile(file, lazyFactory);
+		for (Object key : lazy.keySet()) {
+			lazy.get(key);
+		}
+		assertEquals(expectedKeyPaths, lazyFactory.getKeyPaths());
+	}
+
+	public void testTricky() throws Exception {
+		String plist = "// comment { (\n{\n\t\"quoted key\" = \"a } ; \\\" ( value\";\n\t/* { */ \"esc\\\"aped\" = (a, \"b)\", <0fa1>, {c = d;});\n\tpath = a//b;\n\tdup = first;\n\tnested = {x = {y = (z);};};\n\tdup = second;\n}\n// trailing";
+		File file = _writeTempFile(plist.getBytes());
+		Object expected = WOLPropertyListSerialization.propertyListFromString(plist);
+		Map<?, ?> lazy = (Map<?, ?>) WOLPropertyListSerialization.lazyPropertyListFromFile(file);
+		assertEquals(Arrays.asList(new Object[] { "quoted key", "esc\"aped", "path", "dup", "nested" }), new ArrayList<Object>(lazy.keySet()));
+		assertEquals("second", lazy.get("dup"));
+		assertEquals("a//b", lazy.get("path"));
+		assertEquals("a } ; \" ( value", lazy.get("quoted key"));
+		assertNull(lazy.get("missing"));
+		assertEquals(((Map<?, ?>) expected).get("nested"), lazy.get("nested"));
+	}
+
+	public void testNonDictionariesAreParsedCompletely() throws Exception {
+		File list = _writeTempFile("(a, b)".getBytes());
+		assertEquals(Arrays.asList(new String[] { "a", "b" }), WOLPropertyListSerialization.lazyPropertyListFromFile(list));
+
+		Map<Object, Object> entity = PropertyListFixtures.entity("Person", 5, 1, 1);
+		File binary = _writeTempFile(WOLBinaryPropertyListSerialization.bytesFromPropertyList(entity));
+		Object plist = WOLPropertyListSerialization.lazyPropertyListFromFile(binary);
+		assertFalse(plist instanceof WOLLazyPropertyList);
+		assertEquals(entity, plist);
+	}
+
+	public void testMalformedDocumentsFail() throws Exception {
+		try {
+			WOLPropertyListSerialization.lazyPropertyListFromFile(_writeTempFile("{ a = b; }\n c".getBytes()));
+			fail("Expected a truncated property list to fail.");
+		} catch (PropertyListParserException e) {
+			// expected
+		}
+		try {
+			WOLPropertyListSerialization.lazyPropertyListFromFile(_writeTempFile("{ a = (b, c; }".getBytes()));
+			fail("Expected an unterminated array to fail.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			WOLPropertyListSerialization.lazyPropertyListFromFile(_writeTempFile("{ a = b }".getBytes()));
+			fail("Expected a missing semicolon to fail.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	protected File _writeTempFile(byte[] bytes) throws IOException {
+		File file = File.createTempFile("WOLLazyPropertyListTest", ".plist");
+		_tempFiles.add(file);
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(bytes);
+		} finally {
+			fos.close();
+		}
+		return file;
+	}
+}
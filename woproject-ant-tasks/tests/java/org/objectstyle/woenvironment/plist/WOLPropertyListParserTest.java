@@ -0,0 +1,137 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.plist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class WOLPropertyListParserTest extends TestCase {
+	private static final int ENTITY_COUNT = 400;
+
+	public void testParseMatchesStaticEntryPoint() throws Exception {
+		String plist = WOLPropertyListSerialization.stringFromPropertyList(PropertyListFixtures.entity("Person", 20, 5, 1));
+		Object expected = WOLPropertyListSerialization.propertyListFromString(plist);
+		assertEquals(expected, new WOLPropertyListParser().parse(plist));
+	}
+
+	public void testParserCanBeReused() throws Exception {
+		WOLPropertyListParser parser = new WOLPropertyListParser(new SimpleParserDataStructureFactory());
+		for (int i = 0; i < 10; i++) {
+			Map<Object, Object> entity = PropertyListFixtures.entity("Entity" + i, i * 3, i, i);
+			assertEquals(entity, parser.parse(WOLPropertyListSerialization.stringFromPropertyList(entity)));
+		}
+	}
+
+	public void testTruncatedPropertyListReportsPosition() throws Exception {
+		try {
+			new WOLPropertyListParser().parse("{ a = b; }\n c");
+			fail("Expected a truncated property list to fail.");
+		} catch (PropertyListParserException e) {
+			assertTrue(e.getMessage(), e.getMessage().indexOf("line number: 2") != -1);
+		}
+	}
+
+	public void testErrorPositionsAreNotShared() throws Exception {
+		WOLPropertyListParser first = new WOLPropertyListParser();
+		WOLPropertyListParser second = new WOLPropertyListParser();
+		try {
+			first.parse("{ a = \"unterminated; }");
+			fail("Expected an unterminated quote to fail.");
+		} catch (IllegalArgumentException e) {
+			second.parse("\n\n\n{ b = \"quoted\"; }");
+			assertTrue(e.getMessage(), e.getMessage().indexOf("line number: 1, column: 6") != -1);
+		}
+	}
+
+	public void testConcurrentParsingMatchesSerialParsing() throws Exception {
+		final List<String> plists = new ArrayList<String>();
+		for (int i = 0; i < ENTITY_COUNT; i++) {
+			plists.add(WOLPropertyListSerialization.stringFromPropertyList(PropertyListFixtures.entity("Entity" + i, 10 + i % 40, i % 8, i)));
+		}
+
+		List<Object> serialResults = new ArrayList<Object>();
+		for (String plist : plists) {
+			serialResults.add(WOLPropertyListSerialization.propertyListFromString(plist));
+		}
+
+		int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			for (int pass = 0; pass < 3; pass++) {
+				List<Future<Object>> futures = new ArrayList<Future<Object>>();
+				for (final String plist : plists) {
+					futures.add(executor.submit(new Callable<Object>() {
+						public Object call() throws Exception {
+							return new WOLPropertyListParser().parse(plist);
+						}
+					}));
+				}
+				for (int i = 0; i < futures.size(); i++) {
+					assertEquals("Entity" + i + " differs on pass " + pass, serialResults.get(i), futures.get(i).get());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
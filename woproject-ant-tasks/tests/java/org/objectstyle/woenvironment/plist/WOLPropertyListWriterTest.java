@@ -0,0 +1,143 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.plist;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class WOLPropertyListWriterTest extends TestCase {
+	public void testOneLineDictionary() throws Exception {
+		assertEquals("{allowsNull = true; columns = (a, \"b c\"); name = Person; }", WOLPropertyListSerialization.stringFromPropertyList(smallDictionary()));
+	}
+
+	public void testMultiLineDictionary() throws Exception {
+		Map<Object, Object> dictionary = smallDictionary();
+		dictionary.put("comment", "a fairly long comment that will not fit on a single line together with the rest");
+		dictionary.put("quote", "say \"hi\"\n");
+		String expected = "{\n" + "    allowsNull = true; \n" + "    columns = (a, \"b c\"); \n" + "    comment = \"a fairly long comment that will not fit on a single line together with the rest\"; \n" + "    name = Person; \n" + "    quote = \"say \\\"hi\\\"\\n\"; \n" + "}";
+		assertEquals(expected, WOLPropertyListSerialization.stringFromPropertyList(dictionary));
+	}
+
+	public void testWriterMatchesString() throws Exception {
+		Map<Object, Object> model = modelWithEntities(50);
+		StringWriter writer = new StringWriter();
+		new WOLPropertyListWriter().write(model, writer);
+		assertEquals(WOLPropertyListSerialization.stringFromPropertyList(model), writer.toString());
+	}
+
+	public void testOutputStreamRoundTrip() throws Exception {
+		Map<Object, Object> entity = PropertyListFixtures.entity("Person", 30, 4, 7);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new WOLPropertyListWriter().write(entity, out, "UTF-8");
+		assertEquals(entity, WOLPropertyListSerialization.propertyListFromString(new String(out.toByteArray(), "UTF-8")));
+	}
+
+	public void testNormalizedPropertyListMatchesParsedOutput() throws Exception {
+		Map<Object, Object> dictionary = smallDictionary();
+		dictionary.put("count", Integer.valueOf(5));
+		dictionary.put("missing", null);
+		WOLPropertyListWriter writer = new WOLPropertyListWriter();
+		Object parsed = WOLPropertyListSerialization.propertyListFromString(WOLPropertyListSerialization.stringFromPropertyList(dictionary));
+		assertEquals(parsed, writer.normalizedPropertyList(dictionary));
+	}
+
+	public void testPropertyListToFileSkipsEquivalentContent() throws Exception {
+		File file = File.createTempFile("WOLPropertyListWriterTest", ".plist");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write("{ name = Person; columns = ( a, \"b c\" ); allowsNull = true; }".getBytes("UTF-8"));
+			out.close();
+			String original = WOLPropertyListSerialization.stringFromFile(file);
+
+			WOLPropertyListSerialization.propertyListToFile("", file, smallDictionary());
+			assertEquals(original, WOLPropertyListSerialization.stringFromFile(file));
+
+			Map<Object, Object> changed = smallDictionary();
+			changed.put("name", "Company");
+			WOLPropertyListSerialization.propertyListToFile("", file, changed);
+			assertEquals(WOLPropertyListSerialization.stringFromPropertyList(changed) + "\n", WOLPropertyListSerialization.stringFromFile(file, "UTF-8"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	protected Map<Object, Object> smallDictionary() {
+		Map<Object, Object> dictionary = new HashMap<Object, Object>();
+		dictionary.put("name", "Person");
+		dictionary.put("allowsNull", Boolean.TRUE);
+		dictionary.put("columns", Arrays.asList(new String[] { "a", "b c" }));
+		return dictionary;
+	}
+
+	protected Map<Object, Object> modelWithEntities(int entityCount) {
+		List<Object> entities = new ArrayList<Object>();
+		for (int i = 0; i < entityCount; i++) {
+			entities.add(PropertyListFixtures.entity("Entity" + i, 20, 5, i));
+		}
+		Map<Object, Object> model = new HashMap<Object, Object>();
+		model.put("entities", entities);
+		return model;
+	}
+}
@@ -0,0 +1,241 @@
+/* ====================================================================
+ * 
+ * The ObjectStyle Group Software License, Version 1.0 
+ *
+ * Copyright (c) 2002 The ObjectStyle Group 
+ * and individual authors of the software.  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution, if
+ *    any, must include the following acknowlegement:  
+ *       "This product includes software developed by the 
+ *        ObjectStyle Group (http://objectstyle.org/)."
+ *    Alternately, this acknowlegement may appear in the software itself,
+ *    if and wherever such third-party acknowlegements normally appear.
+ *
+ * 4. The names "ObjectStyle Group" and "Cayenne" 
+ *    must not be used to endorse or promote products derived
+ *    from this software without prior written permission. For written 
+ *    permission, please contact andrus@objectstyle.org.
+ *
+ * 5. Products derived from this software may not be called "ObjectStyle"
+ *    nor may "ObjectStyle" appear in their names without prior written
+ *    permission of the ObjectStyle Group.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE OBJECTSTYLE GROUP OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the ObjectStyle Group.  For more
+ * information on the ObjectStyle Group, please see
+ * <http://objectstyle.org/>.
+ *
+ */
+package org.objectstyle.woenvironment.plist;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.objectstyle.woenvironment.plist.WOLPropertyListSerialization.EMMutableData;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class WOLXMLPropertyListSerializationTest extends TestCase {
+	public static final File[] FIXTURE_ROOTS = { new File("src/resources"), new File("tests") };
+
+	public void testConformanceWithDOM() throws Exception {
+		List<File> infoPlists = new ArrayList<File>();
+		for (File fixtureRoot : FIXTURE_ROOTS) {
+			findInfoPlists(fixtureRoot, infoPlists);
+		}
+		assertTrue(infoPlists.size() >= 4);
+		for (File infoPlist : infoPlists) {
+			Object expected = DOMPropertyListParser.parse(infoPlist);
+			assertNotNull(infoPlist.getPath(), expected);
+			RecordingFactory factory = new RecordingFactory();
+			assertEquals(infoPlist.getPath(), expected, WOLXMLPropertyListSerialization.propertyListWithContentsOfFile(infoPlist, factory));
+			assertEquals(infoPlist.getPath(), DOMPropertyListParser.keyPaths(infoPlist), factory.getKeyPaths());
+		}
+	}
+
+	public void testKeyPaths() throws Exception {
+		RecordingFactory factory = new RecordingFactory();
+		WOLXMLPropertyListSerialization.propertyListWithContentsOfFile(new File("src/resources/japplication/mac/Info.plist"), factory);
+		assertEquals(Arrays.asList(new String[] { "", "Java", "Java.ClassPath", "Java.Properties" }), factory.getKeyPaths());
+	}
+
+	public void testScalarTypes() throws Exception {
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<plist version=\"1.0\"><dict>" + "<key>data</key><data>\n\tAAEC/f7/\n</data>" + "<key>date</key><date>2008-01-10T21:20:00Z</date>" + "<key>int</key><integer>-42</integer>" + "<key>long</key><integer>12345678901</integer>" + "<key>big</key><integer>123456789012345678901234567890</integer>" + "<key>real</key><real>1.5</real>" + "<key>nan</key><real>nan</real>" + "<key>true</key><true/>" + "<key>false</key><false/>" + "<key>string</key><string>a &amp; <![CDATA[<b>]]></string>" + "<key>unknown</key><foo>bar</foo>" + "</dict></plist>";
+		Map<?, ?> plist = (Map<?, ?>) WOLXMLPropertyListSerialization.propertyListFromString(xml);
+		assertTrue(Arrays.equals(new byte[] { 0, 1, 2, (byte) 0xfd, (byte) 0xfe, (byte) 0xff }, ((EMMutableData) plist.get("data")).bytes()));
+		assertEquals(new Date(1200000000000L), plist.get("date"));
+		assertEquals(Integer.valueOf(-42), plist.get("int"));
+		assertEquals(Long.valueOf(12345678901L), plist.get("long"));
+		assertEquals(new BigInteger("123456789012345678901234567890"), plist.get("big"));
+		assertEquals(Double.valueOf(1.5), plist.get("real"));
+		assertTrue(((Double) plist.get("nan")).isNaN());
+		assertEquals(Boolean.TRUE, plist.get("true"));
+		assertEquals(Boolean.FALSE, plist.get("false"));
+		assertEquals("a & <b>", plist.get("string"));
+		assertTrue(plist.containsKey("unknown"));
+		assertNull(plist.get("unknown"));
+	}
+
+	public void testOnlyFirstElementIsParsed() throws Exception {
+		assertEquals("a", WOLXMLPropertyListSerialization.propertyListFromString("<plist><string>a</string><string>b</string></plist>"));
+		assertNull(WOLXMLPropertyListSerialization.propertyListFromString("<dict><key>a</key><string>b</string></dict>"));
+	}
+
+	public void testExternalDTDIsNotLoaded() throws Exception {
+		String xml = "<?xml version=\"1.0\"?>\n<!DOCTYPE plist SYSTEM \"http://localhost:1/PropertyList-1.0.dtd\">\n<plist><array><string>a</string></array></plist>";
+		assertEquals(Arrays.asList(new String[] { "a" }), WOLXMLPropertyListSerialization.propertyListFromString(xml));
+	}
+
+	protected static void findInfoPlists(File folder, List<File> infoPlists) {
+		File[] files = folder.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isDirectory()) {
+					findInfoPlists(file, infoPlists);
+				} else if ("Info.plist".equals(file.getName())) {
+					infoPlists.add(file);
+				}
+			}
+		}
+	}
+
+	protected static class RecordingFactory extends SimpleParserDataStructureFactory {
+		private List<String> _keyPaths = new ArrayList<String>();
+
+		@Override
+		public Collection<Object> createCollection(String keyPath) {
+			_keyPaths.add(keyPath);
+			return super.createCollection(keyPath);
+		}
+
+		@Override
+		public Map<Object, Object> createMap(String keyPath) {
+			_keyPaths.add(keyPath);
+			return super.createMap(keyPath);
+		}
+
+		public List<String> getKeyPaths() {
+			return _keyPaths;
+		}
+	}
+
+	/**
+	 * The DOM based parser that WOLXMLPropertyListSerialization used to be,
+	 * kept as the reference for the conformance test.
+	 */
+	protected static class DOMPropertyListParser {
+		public static Object parse(File file) throws Exception {
+			return parse(file, new SimpleParserDataStructureFactory());
+		}
+
+		public static List<String> keyPaths(File file) throws Exception {
+			RecordingFactory factory = new RecordingFactory();
+			parse(file, factory);
+			return factory.getKeyPaths();
+		}
+
+		public static Object parse(File file, ParserDataStructureFactory factory) throws Exception {
+			DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+			builderFactory.setValidating(false);
+			builderFactory.setNamespaceAware(false);
+			builderFactory.setAttribute("http://apache.org/xml/features/nonvalidating/load-external-dtd", Boolean.FALSE);
+			Document document = builderFactory.newDocumentBuilder().parse(file);
+			document.normalize();
+			Element plistElement = document.getDocumentElement();
+			if ("plist".equalsIgnoreCase(plistElement.getNodeName())) {
+				NodeList plistChildren = plistElement.getChildNodes();
+				for (int i = 0; i < plistChildren.getLength(); i++) {
+					Node plistChild = plistChildren.item(i);
+					if (plistChild instanceof Element) {
+						return parseValue((Element) plistChild, "", factory);
+					}
+				}
+			}
+			return null;
+		}
+
+		protected static Object parseValue(Element element, String keyPath, ParserDataStructureFactory factory) {
+			Object value;
+			String nodeName = element.getNodeName();
+			if ("string".equalsIgnoreCase(nodeName)) {
+				value = element.getTextContent();
+			} else if ("integer".equalsIgnoreCase(nodeName)) {
+				value = Integer.valueOf(element.getTextContent().trim());
+			} else if ("real".equalsIgnoreCase(nodeName)) {
+				value = Double.valueOf(element.getTextContent().trim());
+			} else if ("true".equalsIgnoreCase(nodeName)) {
+				value = Boolean.TRUE;
+			} else if ("false".equalsIgnoreCase(nodeName)) {
+				value = Boolean.FALSE;
+			} else if ("array".equalsIgnoreCase(nodeName)) {
+				Collection<Object> collection = factory.createCollection(keyPath);
+				NodeList nodes = element.getChildNodes();
+				for (int i = 0; i < nodes.getLength(); i++) {
+					if (nodes.item(i) instanceof Element) {
+						collection.add(parseValue((Element) nodes.item(i), keyPath, factory));
+					}
+				}
+				value = collection;
+			} else if ("dict".equalsIgnoreCase(nodeName)) {
+				Map<Object, Object> map = factory.createMap(keyPath);
+				NodeList nodes = element.getChildNodes();
+				String key = null;
+				for (int i = 0; i < nodes.getLength(); i++) {
+					Node node = nodes.item(i);
+					if (node instanceof Element) {
+						if ("key".equalsIgnoreCase(node.getNodeName())) {
+							key = node.getTextContent();
+						} else {
+							String newKeyPath = keyPath.length() == 0 ? key : (keyPath + "." + key);
+							map.put(key, parseValue((Element) node, newKeyPath, factory));
+						}
+					}
+				}
+				value = map;
+			} else {
+				value = null;
+			}
+			return value;
+		}
+	}
+}